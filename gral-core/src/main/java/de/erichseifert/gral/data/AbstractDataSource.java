@@ -24,24 +24,49 @@ package de.erichseifert.gral.data;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import de.erichseifert.gral.data.statistics.Statistics;
 
 
 /**
- * Abstract implementation of the {@code DataSource} interface.
+ * <p>Abstract implementation of the {@code DataSource} interface.
  * This class provides access to statistical information,
  * administration and notification of listeners and supports
- * iteration of data values.
+ * iteration of data values.</p>
+ *
+ * <p>Statistics of the whole data source and of single columns are cached.
+ * Subclasses must notify listeners about all changes, because the cached
+ * statistics are updated or invalidated with every notification.</p>
+ *
+ * <p>Concurrency model: Listeners can be added and removed from any thread.
+ * They are stored in a copy-on-write array, so notifications neither
+ * allocate memory nor block. Mutable implementations guard their values
+ * with a single read/write lock: Methods that read values hold the
+ * {@link #getReadLock() read lock}, methods that change values hold the
+ * {@link #getWriteLock() write lock}. They call the notification methods
+ * while they still hold the write lock: cached statistics are updated
+ * immediately, so readers never see values that aren't contained in the
+ * statistics yet, but listeners are notified on the thread that changed the
+ * data after the write lock has been released. This way, a thread can
+ * append data while other threads, e.g. the rendering thread, read
+ * consistent values.</p>
+ *
+ * <p>Each notification increments the {@link #getVersion() version} of the
+ * data source. Readers that have to see the same values over a longer
+ * period of time, e.g. while a plot is rendered, should read from a
+ * {@link #snapshot() snapshot} instead of holding the read lock.</p>
  */
 public abstract class AbstractDataSource implements DataSource, Serializable {
 	/** Version id for serialization. */
@@ -53,10 +78,110 @@ public abstract class AbstractDataSource implements DataSource, Serializable {
 	private int columnCount;
 	/** Data types that are allowed in the respective columns. */
 	private Class<? extends Comparable<?>>[] types;
-	/** Set of objects that will be notified of changes to the data values. */
-	private transient Set<DataListener> dataListeners;
+	/** Objects that will be notified of changes to the data values. The
+	array is replaced whenever listeners are added or removed. */
+	private transient AtomicReference<DataListener[]> dataListeners;
+	/** Lock that guards the data values of mutable implementations. */
+	private transient ReentrantReadWriteLock lock;
+	/** Write lock that notifies listeners after it has been released. */
+	private transient Lock writeLock;
+	/** Notifications that are sent when the write lock is released. Guarded
+	by the write lock. */
+	private transient List<Notification> pendingNotifications;
+	/** Number of changes that have been notified. */
+	private transient AtomicLong version;
 	/** Statistical description of the data values. */
 	private transient Statistics statistics;
+	/** Statistical description of the data values in each column. */
+	private transient volatile Statistics[] columnStatistics;
+
+	/** Kind of change that listeners are notified about. */
+	private enum ChangeType {
+		/** Values have been added. */
+		ADDED,
+		/** Values have been updated. */
+		UPDATED,
+		/** Values have been removed. */
+		REMOVED
+	}
+
+	/**
+	 * Notification that is sent to the listeners after the write lock has
+	 * been released.
+	 */
+	private static final class Notification {
+		/** Kind of change. */
+		private final ChangeType type;
+		/** Event objects describing the changed values. */
+		private final DataChangeEvent[] events;
+
+		/**
+		 * Initializes a new notification.
+		 * @param type Kind of change.
+		 * @param events Event objects describing the changed values.
+		 */
+		public Notification(ChangeType type, DataChangeEvent[] events) {
+			this.type = type;
+			this.events = events;
+		}
+	}
+
+	/**
+	 * Write lock that sends the notifications which have been issued while
+	 * it was held as soon as it has been released completely.
+	 */
+	private final class WriteLock implements Lock {
+		/** Lock that is used to guard the values. */
+		private final Lock delegate;
+
+		/**
+		 * Initializes a new instance.
+		 * @param delegate Lock that is used to guard the values.
+		 */
+		public WriteLock(Lock delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void lock() {
+			delegate.lock();
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			delegate.lockInterruptibly();
+		}
+
+		@Override
+		public boolean tryLock() {
+			return delegate.tryLock();
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+			return delegate.tryLock(time, unit);
+		}
+
+		@Override
+		public void unlock() {
+			List<Notification> notifications = null;
+			if (lock.getWriteHoldCount() == 1) {
+				notifications = pendingNotifications;
+				pendingNotifications = null;
+			}
+			delegate.unlock();
+			if (notifications != null) {
+				for (Notification notification : notifications) {
+					fireDataChanged(notification.type, notification.events);
+				}
+			}
+		}
+
+		@Override
+		public Condition newCondition() {
+			return delegate.newCondition();
+		}
+	}
 
 	/**
 	 * Iterator that returns each row of the DataSource.
@@ -124,7 +249,9 @@ public abstract class AbstractDataSource implements DataSource, Serializable {
 	public AbstractDataSource(String name, Class<? extends Comparable<?>>... types) {
 		this.name = name;
 		setColumnTypes(types);
-		dataListeners = new LinkedHashSet<>();
+		dataListeners = new AtomicReference<>(new DataListener[0]);
+		initLock();
+		version = new AtomicLong();
 	}
 
 	/**
@@ -144,7 +271,9 @@ public abstract class AbstractDataSource implements DataSource, Serializable {
 		}
 		setColumnTypes(columnTypes);
 
-		dataListeners = new LinkedHashSet<>();
+		dataListeners = new AtomicReference<>(new DataListener[0]);
+		initLock();
+		version = new AtomicLong();
 	}
 
 	/**
@@ -159,6 +288,45 @@ public abstract class AbstractDataSource implements DataSource, Serializable {
 		return statistics;
 	}
 
+	/**
+	 * Retrieves a object instance that contains various statistical
+	 * information on the values of the specified column. The instance is
+	 * cached and kept up to date when the data changes.
+	 * @param col Index of the column.
+	 * @return statistical information
+	 */
+	public Statistics getStatistics(int col) {
+		Statistics[] columnStatistics = this.columnStatistics;
+		if (columnStatistics != null && columnStatistics.length == getColumnCount()
+				&& columnStatistics[col] != null) {
+			return columnStatistics[col];
+		}
+		synchronized (this) {
+			columnStatistics = this.columnStatistics;
+			if (columnStatistics == null || columnStatistics.length != getColumnCount()) {
+				columnStatistics = new Statistics[getColumnCount()];
+			}
+			if (columnStatistics[col] == null) {
+				columnStatistics[col] = new Statistics(this, col);
+			}
+			this.columnStatistics = columnStatistics;
+			return columnStatistics[col];
+		}
+	}
+
+	/**
+	 * Returns whether the events of this data source describe every change
+	 * exactly, i.e. the values of single value events are complete and
+	 * range events only describe added rows or shifts. In this case cached
+	 * statistics are updated incrementally, otherwise they are invalidated
+	 * with every change. The default implementation returns {@code false}.
+	 * @return {@code true} if statistics can be updated using the events,
+	 *         otherwise {@code false}.
+	 */
+	protected boolean isStatisticsIncremental() {
+		return false;
+	}
+
 	public DataSource getColumnStatistics(String key) {
 		Class[] columnTypes = new Class[getColumnCount()];
 		Arrays.fill(columnTypes, Double.class);
@@ -188,7 +356,19 @@ public abstract class AbstractDataSource implements DataSource, Serializable {
 	 * @param dataListener listener to be added.
 	 */
 	public void addDataListener(DataListener dataListener) {
-		dataListeners.add(dataListener);
+		while (true) {
+			DataListener[] listeners = dataListeners.get();
+			for (DataListener listener : listeners) {
+				if (listener.equals(dataListener)) {
+					return;
+				}
+			}
+			DataListener[] listenersNew = Arrays.copyOf(listeners, listeners.length + 1);
+			listenersNew[listeners.length] = dataListener;
+			if (dataListeners.compareAndSet(listeners, listenersNew)) {
+				return;
+			}
+		}
 	}
 
 	/**
@@ -196,7 +376,124 @@ public abstract class AbstractDataSource implements DataSource, Serializable {
 	 * @param dataListener listener to be removed.
 	 */
 	public void removeDataListener(DataListener dataListener) {
-		dataListeners.remove(dataListener);
+		while (true) {
+			DataListener[] listeners = dataListeners.get();
+			int index = -1;
+			for (int i = 0; i < listeners.length; i++) {
+				if (listeners[i].equals(dataListener)) {
+					index = i;
+					break;
+				}
+			}
+			if (index < 0) {
+				return;
+			}
+			DataListener[] listenersNew = new DataListener[listeners.length - 1];
+			System.arraycopy(listeners, 0, listenersNew, 0, index);
+			System.arraycopy(listeners, index + 1, listenersNew, index, listenersNew.length - index);
+			if (dataListeners.compareAndSet(listeners, listenersNew)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns a number that is incremented whenever listeners are notified
+	 * about changed values.
+	 * @return Current version.
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * Returns an immutable copy of the current values. The default
+	 * implementation copies all rows while the read lock is held.
+	 * Implementations that store their values in arrays should override this
+	 * method and share the arrays with the snapshot instead.
+	 * @return Snapshot of the current values.
+	 */
+	public DataSource snapshot() {
+		// The version is read first, so it is never newer than the values
+		long version = getVersion();
+		Record[] rows;
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			rows = new Record[getRowCount()];
+			for (int row = 0; row < rows.length; row++) {
+				rows[row] = getRecord(row);
+			}
+		} finally {
+			lock.unlock();
+		}
+		return new DataSnapshot(this, version, rows, rows.length);
+	}
+
+	/**
+	 * Returns whether {@link #snapshot()} shares the stored values with this
+	 * data source instead of copying every row. Readers that only need a
+	 * snapshot for consistency can read other data sources directly. The
+	 * default implementation returns {@code false}.
+	 * @return {@code true} if snapshots are cheap to create, otherwise
+	 *         {@code false}.
+	 */
+	public boolean isSnapshotShared() {
+		return false;
+	}
+
+	/**
+	 * Returns the lock that must be held while values of this data source
+	 * are read. Implementations of mutable data sources use it together with
+	 * the {@link #getWriteLock() write lock}.
+	 * @return Read lock.
+	 */
+	protected Lock getReadLock() {
+		return lock.readLock();
+	}
+
+	/**
+	 * Returns the lock that must be held while values of this data source
+	 * are changed. Listeners should be notified while the lock is held; the
+	 * notifications are delivered after the lock has been released.
+	 * @return Write lock.
+	 */
+	protected Lock getWriteLock() {
+		return writeLock;
+	}
+
+	/**
+	 * Creates the read/write lock that guards the values.
+	 */
+	private void initLock() {
+		lock = new ReentrantReadWriteLock();
+		writeLock = new WriteLock(lock.writeLock());
+	}
+
+	/**
+	 * Notifies all registered listeners about changed values. If the
+	 * calling thread holds the write lock, the listeners are notified after
+	 * it has been released.
+	 * @param type Kind of change.
+	 * @param events Event objects describing the changed values.
+	 */
+	private void fireDataChanged(ChangeType type, DataChangeEvent[] events) {
+		if (lock.isWriteLockedByCurrentThread()) {
+			if (pendingNotifications == null) {
+				pendingNotifications = new ArrayList<>();
+			}
+			pendingNotifications.add(new Notification(type, events));
+			return;
+		}
+		for (DataListener dataListener : dataListeners.get()) {
+			if (type == ChangeType.ADDED) {
+				dataListener.dataAdded(this, events);
+			} else if (type == ChangeType.UPDATED) {
+				dataListener.dataUpdated(this, events);
+			} else {
+				dataListener.dataRemoved(this, events);
+			}
+		}
 	}
 
     /**
@@ -210,51 +507,316 @@ public abstract class AbstractDataSource implements DataSource, Serializable {
 
 	/**
 	 * Notifies all registered listeners that data values have been added.
+	 * Cached statistics are updated immediately. If the calling thread holds
+	 * the write lock, the listeners are notified after it has been released.
 	 * @param events Event objects describing all values that have been added.
 	 */
 	protected void notifyDataAdded(DataChangeEvent... events) {
-		List<DataListener> listeners = new LinkedList<>(dataListeners);
-		for (DataListener dataListener : listeners) {
-			dataListener.dataAdded(this, events);
+		if (isStatisticsIncremental() && events != null && events.length > 0) {
+			for (DataChangeEvent event : events) {
+				int col = event.getCol();
+				if (!event.isRange()) {
+					addStatistics(col, toDouble(event.getNew()));
+					continue;
+				}
+				if (!hasStatistics(col)) {
+					// Large ranges are only read if statistics are cached
+					continue;
+				}
+				int rowEnd = event.getRow() + event.getRowCount();
+				for (int row = event.getRow(); row < rowEnd; row++) {
+					addStatistics(col, getDouble(col, row));
+				}
+			}
+		} else {
+			invalidateStatistics();
+		}
+		version.incrementAndGet();
+		fireDataChanged(ChangeType.ADDED, events);
+	}
+
+	/**
+	 * Notifies all registered listeners that a range of rows has been added.
+	 * A single notification is sent that contains one event per column.
+	 * @param row Index of the first row that has been added.
+	 * @param rowCount Number of rows that have been added.
+	 */
+	protected void notifyRowsAdded(int row, int rowCount) {
+		DataChangeEvent[] events = new DataChangeEvent[getColumnCount()];
+		for (int col = 0; col < events.length; col++) {
+			events[col] = new DataChangeEvent(this, col, row, rowCount);
+		}
+		notifyDataAdded(events);
+	}
+
+	/**
+	 * Notifies all registered listeners that a range of rows has been
+	 * removed. A single notification is sent that contains one event per
+	 * column.
+	 * @param row Index of the first row that has been removed.
+	 * @param rowCount Number of rows that have been removed.
+	 */
+	protected void notifyRowsRemoved(int row, int rowCount) {
+		DataChangeEvent[] events = new DataChangeEvent[getColumnCount()];
+		for (int col = 0; col < events.length; col++) {
+			events[col] = new DataChangeEvent(this, col, row, rowCount);
+		}
+		notifyDataRemoved(events);
+	}
+
+	/**
+	 * Notifies all registered listeners that rows have been appended and
+	 * that the oldest rows have been discarded to make room for them. A single
+	 * update notification is sent that contains one event per column. Each
+	 * event covers all rows and reports the number of discarded rows as
+	 * {@link DataChangeEvent#getShift() shift}. A shift of zero means that
+	 * the rows have been reordered, e.g. after sorting.
+	 * @param rowCount Number of rows after the shift.
+	 * @param shift Number of rows that have been discarded at the start.
+	 */
+	protected void notifyRowsShifted(int rowCount, int shift) {
+		DataChangeEvent[] events = new DataChangeEvent[getColumnCount()];
+		for (int col = 0; col < events.length; col++) {
+			events[col] = new DataChangeEvent(this, col, 0, rowCount, shift);
 		}
+		notifyDataUpdated(events);
+	}
+
+	/**
+	 * Notifies all registered listeners that rows have been appended and
+	 * that the oldest rows have been discarded to make room for them, like
+	 * {@link #notifyRowsShifted(int, int)}. Instead of being invalidated,
+	 * cached statistics are updated with the discarded values and the
+	 * values of the appended rows, which are read from this data source.
+	 * @param rowCount Number of rows after the shift.
+	 * @param shift Number of rows that have been discarded at the start.
+	 * @param discarded Numeric values of the discarded rows for each column,
+	 *        or {@code null} for columns without cached statistics, see
+	 *        {@link #hasStatistics(int)}.
+	 * @param appended Number of rows that have been appended at the end.
+	 */
+	protected void notifyRowsShifted(int rowCount, int shift, double[][] discarded,
+			int appended) {
+		DataChangeEvent[] events = new DataChangeEvent[getColumnCount()];
+		for (int col = 0; col < events.length; col++) {
+			events[col] = new DataChangeEvent(this, col, 0, rowCount, shift);
+		}
+		if (isStatisticsIncremental()) {
+			for (int col = 0; col < events.length; col++) {
+				if (!hasStatistics(col)) {
+					continue;
+				}
+				if (discarded == null || discarded[col] == null) {
+					invalidateStatistics();
+					break;
+				}
+				for (double value : discarded[col]) {
+					removeStatistics(col, value);
+				}
+				for (int row = rowCount - appended; row < rowCount; row++) {
+					addStatistics(col, getDouble(col, row));
+				}
+			}
+		} else {
+			invalidateStatistics();
+		}
+		version.incrementAndGet();
+		fireDataChanged(ChangeType.UPDATED, events);
 	}
 
 	/**
 	 * Notifies all registered listeners that data values have been removed.
+	 * Cached statistics are updated immediately. If the calling thread holds
+	 * the write lock, the listeners are notified after it has been released.
 	 * @param events Event objects describing all values that have been removed.
 	 */
 	protected void notifyDataRemoved(DataChangeEvent... events) {
-		List<DataListener> listeners = new LinkedList<>(dataListeners);
-		for (DataListener dataListener : listeners) {
-			dataListener.dataRemoved(this, events);
+		if (isStatisticsIncremental() && events != null && events.length > 0
+				&& !containsRange(events)) {
+			for (DataChangeEvent event : events) {
+				removeStatistics(event.getCol(), toDouble(event.getOld()));
+			}
+		} else {
+			invalidateStatistics();
 		}
+		version.incrementAndGet();
+		fireDataChanged(ChangeType.REMOVED, events);
 	}
 
 	/**
 	 * Notifies all registered listeners that data values have changed.
+	 * Cached statistics are updated immediately. If the calling thread holds
+	 * the write lock, the listeners are notified after it has been released.
 	 * @param events Event objects describing all values that have changed.
 	 */
 	protected void notifyDataUpdated(DataChangeEvent... events) {
-		List<DataListener> listeners = new LinkedList<>(dataListeners);
-		for (DataListener dataListener : listeners) {
-			dataListener.dataUpdated(this, events);
+		if (isStatisticsIncremental() && events != null && events.length > 0
+				&& !containsRange(events)) {
+			for (DataChangeEvent event : events) {
+				removeStatistics(event.getCol(), toDouble(event.getOld()));
+				addStatistics(event.getCol(), toDouble(event.getNew()));
+			}
+		} else {
+			invalidateStatistics();
 		}
+		version.incrementAndGet();
+		fireDataChanged(ChangeType.UPDATED, events);
 	}
 
 	/**
-	 * Returns the column with the specified index.
+	 * Returns whether the specified events contain range events.
+	 * @param events Event objects.
+	 * @return {@code true} if at least one event is a range event.
+	 */
+	private static boolean containsRange(DataChangeEvent[] events) {
+		for (DataChangeEvent event : events) {
+			if (event.isRange()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the numeric value of a cell as a primitive {@code double}.
+	 * @param value Value of a cell.
+	 * @return Numeric value, or {@code NaN} if the value isn't numeric.
+	 */
+	private static double toDouble(Comparable<?> value) {
+		if (!(value instanceof Number)) {
+			return Double.NaN;
+		}
+		return ((Number) value).doubleValue();
+	}
+
+	/**
+	 * Returns whether any cached statistics contain the specified column.
+	 * @param col Column index.
+	 * @return {@code true} if statistics of the column are cached.
+	 */
+	protected boolean hasStatistics(int col) {
+		Statistics[] columnStatistics = this.columnStatistics;
+		return statistics != null || (columnStatistics != null
+			&& col < columnStatistics.length && columnStatistics[col] != null);
+	}
+
+	/**
+	 * Updates all cached statistics after a value has been added.
+	 * @param col Column of the value.
+	 * @param value Value that has been added.
+	 */
+	private void addStatistics(int col, double value) {
+		Statistics[] columnStatistics = this.columnStatistics;
+		if (statistics != null) {
+			statistics.add(value);
+		}
+		if (columnStatistics != null && col < columnStatistics.length
+				&& columnStatistics[col] != null) {
+			columnStatistics[col].add(value);
+		}
+	}
+
+	/**
+	 * Updates all cached statistics after a value has been removed.
+	 * @param col Column of the value.
+	 * @param value Value that has been removed.
+	 */
+	private void removeStatistics(int col, double value) {
+		Statistics[] columnStatistics = this.columnStatistics;
+		if (statistics != null) {
+			statistics.remove(value);
+		}
+		if (columnStatistics != null && col < columnStatistics.length
+				&& columnStatistics[col] != null) {
+			columnStatistics[col].remove(value);
+		}
+	}
+
+	/**
+	 * Discards all cached statistics, so they will be recalculated when they
+	 * are requested the next time.
+	 */
+	private void invalidateStatistics() {
+		Statistics[] columnStatistics = this.columnStatistics;
+		if (statistics != null) {
+			statistics.invalidate();
+		}
+		if (columnStatistics != null) {
+			for (Statistics colStatistics : columnStatistics) {
+				if (colStatistics != null) {
+					colStatistics.invalidate();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the column with the specified index. The column is a
+	 * read-only view of the data source, i.e. no values are copied.
 	 * @param col index of the column to return
 	 * @return the specified column of the data source
 	 */
 	@Override
+	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public Column<?> getColumn(int col) {
-		Class<? extends Comparable<?>> columnType = getColumnTypes()[col];
-		List<Comparable<?>> columnData = new LinkedList<>();
-		for (int rowIndex = 0; rowIndex < getRowCount(); rowIndex++) {
-			Record record = getRecord(rowIndex);
-			columnData.add(record.get(col));
+		return new Column(this, col);
+	}
+
+
+	/**
+	 * Returns the numeric value with the specified row and column index as a
+	 * primitive {@code double}. The default implementation unboxes the value
+	 * returned by {@link #get(int, int)}.
+	 * @param col index of the column to return
+	 * @param row index of the row to return
+	 * @return the specified value of the data cell, or {@code NaN} if the
+	 *         cell is empty or not numeric
+	 */
+	@Override
+	public double getDouble(int col, int row) {
+		Comparable<?> value = get(col, row);
+		if (!(value instanceof Number)) {
+			return Double.NaN;
+		}
+		return ((Number) value).doubleValue();
+	}
+
+	/**
+	 * Copies the numeric values of consecutive rows of a column into the
+	 * specified array. The default implementation calls
+	 * {@link #getDouble(int, int)} for every row while the read lock is held.
+	 * @param col index of the column
+	 * @param row index of the first row
+	 * @param values destination array
+	 * @param offset index of the first element in the destination array
+	 * @param length number of rows to copy
+	 * @throws IndexOutOfBoundsException if the rows don't exist
+	 */
+	public void getDoubles(int col, int row, double[] values, int offset, int length) {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			checkRows(row, length, getRowCount());
+			for (int i = 0; i < length; i++) {
+				values[offset + i] = getDouble(col, row + i);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Throws an exception if the specified range of rows is out of bounds.
+	 * @param row Index of the first row.
+	 * @param length Number of rows.
+	 * @param rowCount Number of rows of the data source.
+	 */
+	static void checkRows(int row, int length, int rowCount) {
+		if (row < 0 || length < 0 || row + length > rowCount) {
+			throw new IndexOutOfBoundsException(MessageFormat.format(
+				"Rows [{0,number,integer}, {1,number,integer}) are out of bounds [0, {2,number,integer}).", //$NON-NLS-1$
+				row, row + length, rowCount));
 		}
-		return new Column(columnType, columnData.toArray(new Comparable[0]));
 	}
 
 	@Override
@@ -334,7 +896,9 @@ public abstract class AbstractDataSource implements DataSource, Serializable {
 		in.defaultReadObject();
 
 		// Handle transient fields
-		dataListeners = new HashSet<>();
+		dataListeners = new AtomicReference<>(new DataListener[0]);
+		initLock();
+		version = new AtomicLong();
 		// Statistics can be omitted. It's created using a lazy getter.
 	}
 }
@@ -21,11 +21,13 @@
  */
 package de.erichseifert.gral.data;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import de.erichseifert.gral.data.statistics.Statistics;
 
@@ -39,6 +41,12 @@ import de.erichseifert.gral.data.statistics.Statistics;
  * Number v = col.get(3);
  * </pre>
  *
+ * <p>A column that is created for a data source is a read-only view: no
+ * values are copied, and all changes of the data source are visible in the
+ * column. Numeric values can be read without boxing using
+ * {@link #getDouble(int)} or {@link #doubleIterator()}. A copy of the
+ * current values can be created with {@link #snapshot()}.</p>
+ *
  * @see DataSource
  */
 public class Column<T extends Comparable<T>> implements Iterable<T>, Serializable {
@@ -46,7 +54,33 @@ public class Column<T extends Comparable<T>> implements Iterable<T>, Serializabl
 	private static final long serialVersionUID = 7380420622890027262L;
 
 	private final Class<T> dataType;
+	/** Values of the column, or {@code null} if the column is a view of a
+	data source. */
 	private final List<T> data;
+	/** Data source that contains the values, or {@code null} if the values
+	are stored in the column itself. */
+	private final transient DataSource source;
+	/** Index of the column in the data source. */
+	private final int col;
+
+	/**
+	 * An iterator over primitive {@code double} values.
+	 */
+	public interface DoubleIterator {
+		/**
+		 * Returns {@code true} if the iteration has more elements.
+		 * @return {@code true} if the iterator has more elements.
+		 */
+		boolean hasNext();
+
+		/**
+		 * Returns the next element in the iteration.
+		 * @return the next element in the iteration, or {@code NaN} if the
+		 *         element is empty or not numeric.
+		 * @exception NoSuchElementException iteration has no more elements.
+		 */
+		double nextDouble();
+	}
 
 	public Column(Class<T> dataType, T... data) {
 		this(dataType, Arrays.asList(data));
@@ -58,14 +92,52 @@ public class Column<T extends Comparable<T>> implements Iterable<T>, Serializabl
 		for (T item : data) {
 			this.data.add(item);
 		}
+		this.source = null;
+		this.col = -1;
 	}
 
+	/**
+	 * Initializes a new read-only view of the column with the specified
+	 * index in a data source.
+	 * @param source Data source.
+	 * @param col Index of the column.
+	 */
+	@SuppressWarnings("unchecked")
+	public Column(DataSource source, int col) {
+		this.dataType = (Class<T>) source.getColumnTypes()[col];
+		this.data = null;
+		this.source = source;
+		this.col = col;
+	}
+
+	@SuppressWarnings("unchecked")
 	public T get(int row) {
+		if (source != null) {
+			return row >= source.getRowCount() ? null : (T) source.get(col, row);
+		}
 		return row >= data.size() ? null : data.get(row);
 	}
 
+	/**
+	 * Returns the numeric value in the specified row as a primitive
+	 * {@code double}.
+	 * @param row Index of the row.
+	 * @return Numeric value, or {@code NaN} if the value is empty or not
+	 *         numeric.
+	 */
+	public double getDouble(int row) {
+		if (source != null) {
+			return row >= source.getRowCount() ? Double.NaN : source.getDouble(col, row);
+		}
+		T value = get(row);
+		if (!(value instanceof Number)) {
+			return Double.NaN;
+		}
+		return ((Number) value).doubleValue();
+	}
+
 	public int size() {
-		return data.size();
+		return (source != null) ? source.getRowCount() : data.size();
 	}
 
 	/**
@@ -80,13 +152,40 @@ public class Column<T extends Comparable<T>> implements Iterable<T>, Serializabl
 		return dataType;
 	}
 
+	/**
+	 * Returns the specified statistics value of the column. If the column
+	 * is a view of a data source, the cached statistics of the data source
+	 * are used.
+	 * @param key Requested information.
+	 * @return The value for the specified key, or <i>NaN</i> if the
+	 *         specified statistical value does not exist
+	 * @see Statistics
+	 */
 	public double getStatistics(String key) {
+		if (source instanceof AbstractDataSource) {
+			return ((AbstractDataSource) source).getStatistics(col).get(key);
+		} else if (source != null) {
+			return new Statistics(source, col).get(key);
+		}
 		return new Statistics(data).get(key);
 	}
 
+	/**
+	 * Returns a column that contains a copy of the current values. Later
+	 * changes of the data source won't be visible in the copy.
+	 * @return Column with copied values.
+	 */
+	public Column<T> snapshot() {
+		return new Column<>(dataType, this);
+	}
+
 	@Override
 	public int hashCode() {
-		return dataType.hashCode() ^ data.hashCode();
+		int hashCode = 1;
+		for (T value : this) {
+			hashCode = 31*hashCode + (value == null ? 0 : value.hashCode());
+		}
+		return dataType.hashCode() ^ hashCode;
 	}
 
 	@Override
@@ -95,11 +194,77 @@ public class Column<T extends Comparable<T>> implements Iterable<T>, Serializabl
 			return false;
 		}
 		Column<?> column = (Column<?>) obj;
-		return getType().equals(column.getType()) && data.equals(column.data);
+		if (!getType().equals(column.getType()) || size() != column.size()) {
+			return false;
+		}
+		for (int row = 0; row < size(); row++) {
+			Object value1 = get(row);
+			Object value2 = column.get(row);
+			if (value1 == null ? value2 != null : !value1.equals(value2)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	@Override
 	public Iterator<T> iterator() {
-		return data.iterator();
+		if (source == null) {
+			return data.iterator();
+		}
+		return new Iterator<T>() {
+			private int row;
+
+			public boolean hasNext() {
+				return row < size();
+			}
+
+			public T next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return get(row++);
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Returns an iterator over the values of this column as primitive
+	 * {@code double} values. Empty or non-numeric values are returned as
+	 * {@code NaN}.
+	 * @return Iterator over primitive values.
+	 */
+	public DoubleIterator doubleIterator() {
+		return new DoubleIterator() {
+			private int row;
+
+			public boolean hasNext() {
+				return row < size();
+			}
+
+			public double nextDouble() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return getDouble(row++);
+			}
+		};
+	}
+
+	/**
+	 * Replaces views of a data source by a copy of the values during
+	 * serialization.
+	 * @return Serializable column.
+	 * @throws ObjectStreamException if the column can't be replaced.
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+		if (source != null) {
+			return snapshot();
+		}
+		return this;
 	}
 }
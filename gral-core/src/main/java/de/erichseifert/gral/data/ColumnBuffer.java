@@ -0,0 +1,806 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import java.io.Serializable;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * <p>Growable buffer that stores the values of a single numeric column in a
+ * primitive array. Empty cells ({@code null}) are tracked separately, so
+ * every value of the column type can be stored without loss. Values of
+ * other column types are stored in an object array.</p>
+ *
+ * <p>Buffers are not thread-safe. Synchronization is left to the data source
+ * that owns the buffer.</p>
+ *
+ * <p>A {@link #snapshot() snapshot} shares the array of values with the
+ * buffer. The array is copied lazily as soon as a stored value of the buffer
+ * is changed, removed, or reordered. Appending values doesn't require a
+ * copy, because the snapshot never reads beyond its own size.</p>
+ */
+abstract class ColumnBuffer implements Serializable, Cloneable {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = -2594310848463301208L;
+
+	/** Capacity that is used when no capacity is specified. */
+	static final int DEFAULT_CAPACITY = 16;
+
+	/** Number of values stored in the buffer. */
+	private int size;
+	/** Indexes of all empty cells, or {@code null} if there are none. */
+	private BitSet nulls;
+	/** Whether the array of values is shared with a snapshot. */
+	private transient boolean shared;
+
+	/**
+	 * Returns whether values of the specified type can be stored in a
+	 * primitive buffer.
+	 * @param type Data type of the column.
+	 * @return {@code true} if the type is supported, otherwise {@code false}.
+	 */
+	static boolean isSupported(Class<?> type) {
+		return Double.class.equals(type) || Float.class.equals(type) ||
+			Long.class.equals(type) || Integer.class.equals(type);
+	}
+
+	/**
+	 * Creates a new buffer for values of the specified type. Primitive arrays
+	 * are used for all {@link #isSupported(Class) supported} types, for all
+	 * other types the values are stored in an object array.
+	 * @param type Data type of the column.
+	 * @param capacity Initial capacity.
+	 * @return A new buffer instance.
+	 */
+	static ColumnBuffer create(Class<?> type, int capacity) {
+		if (Double.class.equals(type)) {
+			return new OfDouble(capacity);
+		} else if (Float.class.equals(type)) {
+			return new OfFloat(capacity);
+		} else if (Long.class.equals(type)) {
+			return new OfLong(capacity);
+		} else if (Integer.class.equals(type)) {
+			return new OfInteger(capacity);
+		}
+		return new OfObject(capacity);
+	}
+
+	/**
+	 * Returns the number of stored values.
+	 * @return Number of values.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns whether the cell at the specified index is empty.
+	 * @param index Index of the cell.
+	 * @return {@code true} if the cell is empty, otherwise {@code false}.
+	 */
+	public boolean isNull(int index) {
+		return nulls != null && nulls.get(index);
+	}
+
+	/**
+	 * Returns the boxed value at the specified index.
+	 * @param index Index of the cell.
+	 * @return Value, or {@code null} if the cell is empty.
+	 */
+	public Comparable<?> get(int index) {
+		checkIndex(index);
+		if (isNull(index)) {
+			return null;
+		}
+		return getValue(index);
+	}
+
+	/**
+	 * Returns the value at the specified index as a primitive {@code double}.
+	 * @param index Index of the cell.
+	 * @return Value, or {@code NaN} if the cell is empty.
+	 */
+	public double getDouble(int index) {
+		checkIndex(index);
+		if (isNull(index)) {
+			return Double.NaN;
+		}
+		return getDoubleValue(index);
+	}
+
+	/**
+	 * Copies a block of values as primitive {@code double}s into the
+	 * specified array. Empty cells are copied as {@code NaN}.
+	 * @param index Index of the first cell.
+	 * @param dest Destination array.
+	 * @param offset Index of the first element in the destination array.
+	 * @param length Number of values to copy.
+	 */
+	public void getDoubles(int index, double[] dest, int offset, int length) {
+		if (length <= 0) {
+			return;
+		}
+		checkIndex(index);
+		checkIndex(index + length - 1);
+		copyDoubles(index, dest, offset, length);
+		if (nulls == null) {
+			return;
+		}
+		int end = index + length;
+		for (int i = nulls.nextSetBit(index); i >= 0 && i < end; i = nulls.nextSetBit(i + 1)) {
+			dest[offset + i - index] = Double.NaN;
+		}
+	}
+
+	/**
+	 * Appends the specified value.
+	 * @param value Value to be added, or {@code null}.
+	 */
+	public void add(Comparable<?> value) {
+		ensureCapacity(size + 1);
+		size++;
+		store(size - 1, value);
+	}
+
+	/**
+	 * Appends the specified primitive value.
+	 * @param value Value to be added.
+	 */
+	public void addDouble(double value) {
+		ensureCapacity(size + 1);
+		size++;
+		setDoubleValue(size - 1, value);
+		setNull(size - 1, false);
+	}
+
+	/**
+	 * Appends the value at the specified index of another buffer of the
+	 * same type without boxing it.
+	 * @param source Buffer that contains the value.
+	 * @param index Index of the cell in the other buffer.
+	 */
+	public void add(ColumnBuffer source, int index) {
+		source.checkIndex(index);
+		ensureCapacity(size + 1);
+		copyElement(source.getArray(), index, getArray(), size);
+		size++;
+		setNull(size - 1, source.isNull(index));
+	}
+
+	/**
+	 * Replaces the value at the specified index.
+	 * @param index Index of the cell.
+	 * @param value New value, or {@code null}.
+	 */
+	public void set(int index, Comparable<?> value) {
+		checkIndex(index);
+		unshare();
+		store(index, value);
+	}
+
+	/**
+	 * Stores a value or an empty cell at the specified index without checks.
+	 * @param index Index of the cell.
+	 * @param value New value, or {@code null}.
+	 */
+	private void store(int index, Comparable<?> value) {
+		if (value == null) {
+			setNull(index, true);
+		} else {
+			setValue(index, value);
+			setNull(index, false);
+		}
+	}
+
+	/**
+	 * Removes the value at the specified index. All following values are
+	 * shifted to the front.
+	 * @param index Index of the cell.
+	 */
+	public void remove(int index) {
+		checkIndex(index);
+		unshare();
+		int tail = size - index - 1;
+		if (tail > 0) {
+			Object array = getArray();
+			System.arraycopy(array, index + 1, array, index, tail);
+			if (nulls != null) {
+				BitSet shifted = nulls.get(index + 1, size);
+				nulls.clear(index, size);
+				for (int i = shifted.nextSetBit(0); i >= 0; i = shifted.nextSetBit(i + 1)) {
+					nulls.set(index + i);
+				}
+			}
+		} else if (nulls != null) {
+			nulls.clear(index);
+		}
+		size--;
+	}
+
+	/**
+	 * Removes all values.
+	 */
+	public void clear() {
+		if (shared) {
+			// The snapshot still uses the old array, so it must not be reused
+			resize(0);
+			shared = false;
+		}
+		size = 0;
+		nulls = null;
+	}
+
+	/**
+	 * Reorders the values so that the value at position {@code order[i]}
+	 * is moved to position {@code i}.
+	 * @param order Permutation of all indexes.
+	 */
+	public void permute(int[] order) {
+		unshare();
+		Object array = getArray();
+		Object copy = copyArray(array, size);
+		for (int i = 0; i < size; i++) {
+			copyElement(copy, order[i], array, i);
+		}
+		if (nulls != null) {
+			BitSet permuted = new BitSet(size);
+			for (int i = 0; i < size; i++) {
+				if (nulls.get(order[i])) {
+					permuted.set(i);
+				}
+			}
+			nulls = permuted;
+		}
+	}
+
+	/**
+	 * Makes sure the buffer can hold at least the specified number of
+	 * values without growing.
+	 * @param capacity Minimal capacity.
+	 */
+	public void ensureCapacity(int capacity) {
+		int current = getCapacity();
+		if (capacity <= current) {
+			return;
+		}
+		int grown = Math.max(capacity, current + (current >> 1) + 1);
+		resize(grown);
+		shared = false;
+	}
+
+	/**
+	 * Reduces the capacity of the buffer to its size.
+	 */
+	public void trimToSize() {
+		if (getCapacity() > size) {
+			resize(size);
+			shared = false;
+		}
+	}
+
+	/**
+	 * Returns a read-only copy of the buffer that shares the array of values
+	 * with this buffer. The copy is unaffected by later changes of this
+	 * buffer.
+	 * @return Snapshot of the current values.
+	 */
+	public ColumnBuffer snapshot() {
+		ColumnBuffer snapshot;
+		try {
+			snapshot = (ColumnBuffer) clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+		if (nulls != null) {
+			snapshot.nulls = (BitSet) nulls.clone();
+		}
+		shared = true;
+		snapshot.shared = true;
+		return snapshot;
+	}
+
+	/**
+	 * Returns whether the array of values is shared with a snapshot.
+	 * @return {@code true} if the array must not be changed in place.
+	 */
+	protected boolean isShared() {
+		return shared;
+	}
+
+	/**
+	 * Copies the array of values if it is shared with a snapshot, so that
+	 * stored values can be changed in place.
+	 */
+	private void unshare() {
+		if (shared) {
+			resize(getCapacity());
+			shared = false;
+		}
+	}
+
+	/**
+	 * Marks the cell at the specified index as empty or non-empty.
+	 * @param index Index of the cell.
+	 * @param isNull {@code true} if the cell is empty.
+	 */
+	private void setNull(int index, boolean isNull) {
+		if (isNull) {
+			if (nulls == null) {
+				nulls = new BitSet();
+			}
+			nulls.set(index);
+		} else if (nulls != null) {
+			nulls.clear(index);
+		}
+	}
+
+	/**
+	 * Throws an exception if the specified index is out of bounds.
+	 * @param index Index to be checked.
+	 */
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(MessageFormat.format(
+				"Index {0,number,integer} is out of bounds [0, {1,number,integer}).", //$NON-NLS-1$
+				index, size));
+		}
+	}
+
+	/**
+	 * Returns the current capacity of the primitive array.
+	 * @return Capacity.
+	 */
+	protected abstract int getCapacity();
+
+	/**
+	 * Replaces the primitive array by an array of the specified length.
+	 * @param capacity New capacity.
+	 */
+	protected abstract void resize(int capacity);
+
+	/**
+	 * Returns the primitive array that stores the values.
+	 * @return Primitive array.
+	 */
+	protected abstract Object getArray();
+
+	/**
+	 * Returns a copy of the first {@code length} values of the specified
+	 * primitive array.
+	 * @param array Primitive array.
+	 * @param length Number of values to copy.
+	 * @return Copied array.
+	 */
+	protected abstract Object copyArray(Object array, int length);
+
+	/**
+	 * Copies a single element between two primitive arrays of the buffer type.
+	 * @param src Source array.
+	 * @param srcIndex Index in the source array.
+	 * @param dest Destination array.
+	 * @param destIndex Index in the destination array.
+	 */
+	protected abstract void copyElement(Object src, int srcIndex, Object dest, int destIndex);
+
+	/**
+	 * Returns the boxed value at the specified index without checks.
+	 * @param index Index of the cell.
+	 * @return Boxed value.
+	 */
+	protected abstract Comparable<?> getValue(int index);
+
+	/**
+	 * Returns the value at the specified index without checks.
+	 * @param index Index of the cell.
+	 * @return Primitive value.
+	 */
+	protected abstract double getDoubleValue(int index);
+
+	/**
+	 * Copies a block of values as primitive {@code double}s without checks.
+	 * The default implementation copies the values one by one; primitive
+	 * buffers override it with a loop over their array.
+	 * @param index Index of the first cell.
+	 * @param dest Destination array.
+	 * @param offset Index of the first element in the destination array.
+	 * @param length Number of values to copy.
+	 */
+	protected void copyDoubles(int index, double[] dest, int offset, int length) {
+		for (int i = 0; i < length; i++) {
+			dest[offset + i] = getDoubleValue(index + i);
+		}
+	}
+
+	/**
+	 * Stores a value at the specified index without checks.
+	 * @param index Index of the cell.
+	 * @param value Value.
+	 */
+	protected abstract void setValue(int index, Comparable<?> value);
+
+	/**
+	 * Stores a primitive value at the specified index without checks.
+	 * @param index Index of the cell.
+	 * @param value Value.
+	 */
+	protected abstract void setDoubleValue(int index, double value);
+
+	/**
+	 * Buffer for {@code Double} values.
+	 */
+	static final class OfDouble extends ColumnBuffer {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = 4208427917066419733L;
+
+		/** Stored values. */
+		private double[] values;
+
+		/**
+		 * Creates a new buffer with the specified capacity.
+		 * @param capacity Initial capacity.
+		 */
+		OfDouble(int capacity) {
+			values = new double[capacity];
+		}
+
+		@Override
+		protected int getCapacity() {
+			return values.length;
+		}
+
+		@Override
+		protected void resize(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		protected Object getArray() {
+			return values;
+		}
+
+		@Override
+		protected Object copyArray(Object array, int length) {
+			return Arrays.copyOf((double[]) array, length);
+		}
+
+		@Override
+		protected void copyElement(Object src, int srcIndex, Object dest, int destIndex) {
+			((double[]) dest)[destIndex] = ((double[]) src)[srcIndex];
+		}
+
+		@Override
+		protected Comparable<?> getValue(int index) {
+			return values[index];
+		}
+
+		@Override
+		protected double getDoubleValue(int index) {
+			return values[index];
+		}
+
+		@Override
+		protected void copyDoubles(int index, double[] dest, int offset, int length) {
+			System.arraycopy(values, index, dest, offset, length);
+		}
+
+		@Override
+		protected void setValue(int index, Comparable<?> value) {
+			values[index] = ((Number) value).doubleValue();
+		}
+
+		@Override
+		protected void setDoubleValue(int index, double value) {
+			values[index] = value;
+		}
+	}
+
+	/**
+	 * Buffer for {@code Float} values.
+	 */
+	static final class OfFloat extends ColumnBuffer {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = -3520296779005848932L;
+
+		/** Stored values. */
+		private float[] values;
+
+		/**
+		 * Creates a new buffer with the specified capacity.
+		 * @param capacity Initial capacity.
+		 */
+		OfFloat(int capacity) {
+			values = new float[capacity];
+		}
+
+		@Override
+		protected int getCapacity() {
+			return values.length;
+		}
+
+		@Override
+		protected void resize(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		protected Object getArray() {
+			return values;
+		}
+
+		@Override
+		protected Object copyArray(Object array, int length) {
+			return Arrays.copyOf((float[]) array, length);
+		}
+
+		@Override
+		protected void copyElement(Object src, int srcIndex, Object dest, int destIndex) {
+			((float[]) dest)[destIndex] = ((float[]) src)[srcIndex];
+		}
+
+		@Override
+		protected Comparable<?> getValue(int index) {
+			return values[index];
+		}
+
+		@Override
+		protected double getDoubleValue(int index) {
+			return values[index];
+		}
+
+		@Override
+		protected void copyDoubles(int index, double[] dest, int offset, int length) {
+			for (int i = 0; i < length; i++) {
+				dest[offset + i] = values[index + i];
+			}
+		}
+
+		@Override
+		protected void setValue(int index, Comparable<?> value) {
+			values[index] = ((Number) value).floatValue();
+		}
+
+		@Override
+		protected void setDoubleValue(int index, double value) {
+			values[index] = (float) value;
+		}
+	}
+
+	/**
+	 * Buffer for {@code Long} values.
+	 */
+	static final class OfLong extends ColumnBuffer {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = 1861529496385826853L;
+
+		/** Stored values. */
+		private long[] values;
+
+		/**
+		 * Creates a new buffer with the specified capacity.
+		 * @param capacity Initial capacity.
+		 */
+		OfLong(int capacity) {
+			values = new long[capacity];
+		}
+
+		@Override
+		protected int getCapacity() {
+			return values.length;
+		}
+
+		@Override
+		protected void resize(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		protected Object getArray() {
+			return values;
+		}
+
+		@Override
+		protected Object copyArray(Object array, int length) {
+			return Arrays.copyOf((long[]) array, length);
+		}
+
+		@Override
+		protected void copyElement(Object src, int srcIndex, Object dest, int destIndex) {
+			((long[]) dest)[destIndex] = ((long[]) src)[srcIndex];
+		}
+
+		@Override
+		protected Comparable<?> getValue(int index) {
+			return values[index];
+		}
+
+		@Override
+		protected double getDoubleValue(int index) {
+			return values[index];
+		}
+
+		@Override
+		protected void copyDoubles(int index, double[] dest, int offset, int length) {
+			for (int i = 0; i < length; i++) {
+				dest[offset + i] = values[index + i];
+			}
+		}
+
+		@Override
+		protected void setValue(int index, Comparable<?> value) {
+			values[index] = ((Number) value).longValue();
+		}
+
+		@Override
+		protected void setDoubleValue(int index, double value) {
+			values[index] = (long) value;
+		}
+	}
+
+	/**
+	 * Buffer for {@code Integer} values.
+	 */
+	static final class OfInteger extends ColumnBuffer {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = -6915472853002367453L;
+
+		/** Stored values. */
+		private int[] values;
+
+		/**
+		 * Creates a new buffer with the specified capacity.
+		 * @param capacity Initial capacity.
+		 */
+		OfInteger(int capacity) {
+			values = new int[capacity];
+		}
+
+		@Override
+		protected int getCapacity() {
+			return values.length;
+		}
+
+		@Override
+		protected void resize(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		protected Object getArray() {
+			return values;
+		}
+
+		@Override
+		protected Object copyArray(Object array, int length) {
+			return Arrays.copyOf((int[]) array, length);
+		}
+
+		@Override
+		protected void copyElement(Object src, int srcIndex, Object dest, int destIndex) {
+			((int[]) dest)[destIndex] = ((int[]) src)[srcIndex];
+		}
+
+		@Override
+		protected Comparable<?> getValue(int index) {
+			return values[index];
+		}
+
+		@Override
+		protected double getDoubleValue(int index) {
+			return values[index];
+		}
+
+		@Override
+		protected void copyDoubles(int index, double[] dest, int offset, int length) {
+			for (int i = 0; i < length; i++) {
+				dest[offset + i] = values[index + i];
+			}
+		}
+
+		@Override
+		protected void setValue(int index, Comparable<?> value) {
+			values[index] = ((Number) value).intValue();
+		}
+
+		@Override
+		protected void setDoubleValue(int index, double value) {
+			values[index] = (int) value;
+		}
+	}
+
+	/**
+	 * Buffer for values of arbitrary comparable types.
+	 */
+	static final class OfObject extends ColumnBuffer {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = 7380524315094802254L;
+
+		/** Stored values. */
+		private Comparable<?>[] values;
+
+		/**
+		 * Creates a new buffer with the specified capacity.
+		 * @param capacity Initial capacity.
+		 */
+		OfObject(int capacity) {
+			values = new Comparable<?>[capacity];
+		}
+
+		@Override
+		protected int getCapacity() {
+			return values.length;
+		}
+
+		@Override
+		protected void resize(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		protected Object getArray() {
+			return values;
+		}
+
+		@Override
+		protected Object copyArray(Object array, int length) {
+			return Arrays.copyOf((Comparable<?>[]) array, length);
+		}
+
+		@Override
+		protected void copyElement(Object src, int srcIndex, Object dest, int destIndex) {
+			((Comparable<?>[]) dest)[destIndex] = ((Comparable<?>[]) src)[srcIndex];
+		}
+
+		@Override
+		public void clear() {
+			if (!isShared()) {
+				Arrays.fill(values, null);
+			}
+			super.clear();
+		}
+
+		@Override
+		protected Comparable<?> getValue(int index) {
+			return values[index];
+		}
+
+		@Override
+		protected double getDoubleValue(int index) {
+			Comparable<?> value = values[index];
+			if (!(value instanceof Number)) {
+				return Double.NaN;
+			}
+			return ((Number) value).doubleValue();
+		}
+
+		@Override
+		protected void setValue(int index, Comparable<?> value) {
+			values[index] = value;
+		}
+
+		@Override
+		protected void setDoubleValue(int index, double value) {
+			values[index] = value;
+		}
+	}
+}
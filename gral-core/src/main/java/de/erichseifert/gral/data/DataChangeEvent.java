@@ -24,8 +24,19 @@ package de.erichseifert.gral.data;
 import java.util.EventObject;
 
 /**
- * Class that stores information on a change of a specific data value in a
- * data source.
+ * <p>Class that stores information on a change of a specific data value in a
+ * data source.</p>
+ * <p>An event can also describe a range of consecutive rows of one column,
+ * e.g. when many rows have been added at once. Such range events don't store
+ * the old and new values. The current values can be retrieved from the data
+ * source instead.</p>
+ * <p>Range events may additionally describe a shift of rows: If a data source
+ * with a limited capacity discards its oldest rows to make room for new rows,
+ * all remaining rows move towards the start. In this case
+ * {@link #getShift()} returns the number of rows that have been discarded at
+ * the start, and the new rows can be found at the end of the range. The
+ * shift never exceeds the number of rows before the change, because new
+ * rows that have been discarded again are never reported.</p>
  * @see DataListener
  * @see DataSource
  */
@@ -37,6 +48,12 @@ public class DataChangeEvent extends EventObject {
 	private final int col;
 	/** Row of the value that has changed. */
 	private final int row;
+	/** Number of consecutive rows that have changed. */
+	private final int rowCount;
+	/** Number of rows by which the values have been moved to the start. */
+	private final int shift;
+	/** Whether the event describes a range of rows without values. */
+	private final boolean range;
 	/** Value before changes have been applied. */
 	private final Comparable<?> valOld;
 	/** Changed value. */
@@ -57,10 +74,46 @@ public class DataChangeEvent extends EventObject {
 		super(source);
 		this.col = col;
 		this.row = row;
+		this.rowCount = 1;
+		this.shift = 0;
+		this.range = false;
 		this.valOld = valOld;
 		this.valNew = valNew;
 	}
 
+	/**
+	 * Initializes a new event with data source, column, and a range of rows
+	 * that have changed.
+	 * @param source Data source.
+	 * @param col Column of the values.
+	 * @param row First row of the range.
+	 * @param rowCount Number of rows in the range.
+	 */
+	public DataChangeEvent(DataSource source, int col, int row, int rowCount) {
+		this(source, col, row, rowCount, 0);
+	}
+
+	/**
+	 * Initializes a new event with data source, column, a range of rows
+	 * that have changed, and the number of rows by which the values in the
+	 * range have been moved to the start.
+	 * @param source Data source.
+	 * @param col Column of the values.
+	 * @param row First row of the range.
+	 * @param rowCount Number of rows in the range.
+	 * @param shift Number of rows that have been discarded at the start.
+	 */
+	public DataChangeEvent(DataSource source, int col, int row, int rowCount, int shift) {
+		super(source);
+		this.col = col;
+		this.row = row;
+		this.rowCount = rowCount;
+		this.shift = shift;
+		this.range = true;
+		this.valOld = null;
+		this.valNew = null;
+	}
+
 	/**
 	 * Returns the column index of the value that was changed.
 	 * @return Column index of the changed value.
@@ -77,6 +130,34 @@ public class DataChangeEvent extends EventObject {
 		return row;
 	}
 
+	/**
+	 * Returns the number of consecutive rows that were changed, starting at
+	 * {@link #getRow()}. For changes of a single value this is {@code 1}.
+	 * @return Number of changed rows.
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Returns whether the event describes a range of rows. Range events
+	 * don't store old and new values.
+	 * @return {@code true} if this is a range event, otherwise {@code false}.
+	 */
+	public boolean isRange() {
+		return range;
+	}
+
+	/**
+	 * Returns the number of rows by which the values in the range have been
+	 * moved to the start. For all events that don't describe a shift of rows
+	 * this is {@code 0}.
+	 * @return Number of rows that have been discarded at the start.
+	 */
+	public int getShift() {
+		return shift;
+	}
+
 	/**
 	 * Returns the old value before it has changed.
 	 * @return Value before the change.
@@ -26,6 +26,8 @@ import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.List;
 
+import de.erichseifert.gral.data.statistics.Statistics;
+
 /**
  * Class that represents a view on several columns of a {@code DataSource}.
  * @see DataSource
@@ -102,6 +104,11 @@ public class DataSeries extends AbstractDataSource implements DataListener {
 		}
 	}
 
+	@Override
+	public void getDoubles(int col, int row, double[] values, int offset, int length) {
+		data.getDoubles(cols.get(col), row, values, offset, length);
+	}
+
 	@Override
 	public int getColumnCount() {
 		return cols.size();
@@ -124,7 +131,7 @@ public class DataSeries extends AbstractDataSource implements DataListener {
 	 *        have been added.
 	 */
 	public void dataAdded(DataSource source, DataChangeEvent... events) {
-		notifyDataAdded(events);
+		notifyDataAdded(takeEvents(events));
 	}
 
 	/**
@@ -136,7 +143,7 @@ public class DataSeries extends AbstractDataSource implements DataListener {
 	 *        have been updated.
 	 */
 	public void dataUpdated(DataSource source, DataChangeEvent... events) {
-		notifyDataUpdated(events);
+		notifyDataUpdated(takeEvents(events));
 	}
 
 	/**
@@ -148,7 +155,87 @@ public class DataSeries extends AbstractDataSource implements DataListener {
 	 *        have been removed.
 	 */
 	public void dataRemoved(DataSource source, DataChangeEvent... events) {
-		notifyDataRemoved(events);
+		notifyDataRemoved(takeEvents(events));
+	}
+
+	/**
+	 * Changes the source and the columns of the specified event objects to
+	 * make them look as if they originated from this data series. Events of
+	 * columns that are not part of this series are dropped. The row ranges of
+	 * the events are retained.
+	 * @param events Original events.
+	 * @return Changed events.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private DataChangeEvent[] takeEvents(DataChangeEvent[] events) {
+		if (events == null || events.length == 0) {
+			return events;
+		}
+		List<DataChangeEvent> eventsTx = new ArrayList<>(events.length);
+		for (DataChangeEvent event : events) {
+			for (int col = 0; col < cols.size(); col++) {
+				if (cols.get(col) != event.getCol()) {
+					continue;
+				}
+				if (event.isRange()) {
+					eventsTx.add(new DataChangeEvent(
+						this, col, event.getRow(), event.getRowCount(),
+						event.getShift()));
+				} else {
+					Comparable valOld = event.getOld();
+					Comparable valNew = event.getNew();
+					eventsTx.add(new DataChangeEvent(
+						this, col, event.getRow(), valOld, valNew));
+				}
+			}
+		}
+		return eventsTx.toArray(new DataChangeEvent[eventsTx.size()]);
+	}
+
+	/**
+	 * Returns the statistics of the corresponding column in the underlying
+	 * data source if it caches them, because those are already kept up to
+	 * date while the data source is locked. Changes are only forwarded to
+	 * this series after the data source has been unlocked.
+	 * @param col Index of the column.
+	 * @return statistical information
+	 */
+	@Override
+	public Statistics getStatistics(int col) {
+		if (data instanceof AbstractDataSource) {
+			return ((AbstractDataSource) data).getStatistics(cols.get(col));
+		}
+		return super.getStatistics(col);
+	}
+
+	/**
+	 * Returns the version of the underlying data source, because the values
+	 * of the series only change with the values of the data source.
+	 * @return Current version.
+	 */
+	@Override
+	public long getVersion() {
+		return data.getVersion();
+	}
+
+	/**
+	 * Returns a series with the same columns of a snapshot of the underlying
+	 * data source.
+	 * @return Snapshot of the current values.
+	 */
+	@Override
+	public DataSource snapshot() {
+		int[] dataCols = new int[cols.size()];
+		for (int col = 0; col < dataCols.length; col++) {
+			dataCols[col] = cols.get(col);
+		}
+		return new DataSeries(getName(), data.snapshot(), dataCols);
+	}
+
+	@Override
+	public boolean isSnapshotShared() {
+		return (data instanceof AbstractDataSource) &&
+			((AbstractDataSource) data).isSnapshotShared();
 	}
 
 	@Override
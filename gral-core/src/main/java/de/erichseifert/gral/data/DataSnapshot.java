@@ -0,0 +1,179 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import java.text.MessageFormat;
+
+/**
+ * <p>Immutable copy of the values of a data source at a certain
+ * {@link DataSource#getVersion() version}. Snapshots are created using
+ * {@link DataSource#snapshot()} and are intended for readers like the
+ * rendering of a plot that have to see consistent values while other threads
+ * continue to change the original data source.</p>
+ *
+ * <p>The values aren't copied when a snapshot is created. Instead, the
+ * snapshot shares the arrays of the original data source which copies them
+ * lazily before stored values are changed. Reading values from a snapshot
+ * never requires a lock.</p>
+ */
+final class DataSnapshot extends AbstractDataSource {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = 2209446553870117802L;
+
+	/** Version of the original data source. */
+	private final long version;
+	/** Number of rows. */
+	private final int rowCount;
+	/** Values stored as rows, or {@code null} if the values are stored in
+	columns. */
+	private final Record[] rows;
+	/** Values stored as columns, or {@code null} if the values are stored
+	in rows. */
+	private final ColumnBuffer[] columns;
+	/** Position of the first row in the column buffers. */
+	private final int head;
+
+	/**
+	 * Initializes a new snapshot with values that are stored as rows.
+	 * @param source Original data source.
+	 * @param version Version of the original data source.
+	 * @param rows Rows of the original data source. The array must not be
+	 *        changed afterwards.
+	 * @param rowCount Number of rows.
+	 */
+	DataSnapshot(DataSource source, long version, Record[] rows, int rowCount) {
+		super(source.getName(), source.getColumnTypes());
+		this.version = version;
+		this.rows = rows;
+		this.rowCount = rowCount;
+		this.columns = null;
+		this.head = 0;
+	}
+
+	/**
+	 * Initializes a new snapshot with values that are stored in column
+	 * buffers. If the buffers are used as ring buffers, the first row is
+	 * stored at position {@code head}.
+	 * @param source Original data source.
+	 * @param version Version of the original data source.
+	 * @param columns {@link ColumnBuffer#snapshot() Snapshots} of the column
+	 *        buffers.
+	 * @param head Position of the first row in the column buffers.
+	 */
+	DataSnapshot(DataSource source, long version, ColumnBuffer[] columns, int head) {
+		super(source.getName(), source.getColumnTypes());
+		this.version = version;
+		this.rows = null;
+		this.rowCount = columns.length > 0 ? columns[0].size() : 0;
+		this.columns = columns;
+		this.head = head;
+	}
+
+	/**
+	 * Returns the position of the specified row in the column buffers.
+	 * @param row Row index.
+	 * @return Position in the column buffers.
+	 */
+	private int toIndex(int row) {
+		int index = head + row;
+		return (index < rowCount) ? index : index - rowCount;
+	}
+
+	@Override
+	public Comparable<?> get(int col, int row) {
+		if (row >= rowCount) {
+			return null;
+		}
+		if (columns != null) {
+			return columns[col].get(toIndex(row));
+		}
+		Record record = rows[row];
+		return (record != null) ? record.get(col) : null;
+	}
+
+	@Override
+	public double getDouble(int col, int row) {
+		if (columns != null && row < rowCount) {
+			return columns[col].getDouble(toIndex(row));
+		}
+		return super.getDouble(col, row);
+	}
+
+	@Override
+	public void getDoubles(int col, int row, double[] values, int offset, int length) {
+		if (columns == null) {
+			super.getDoubles(col, row, values, offset, length);
+			return;
+		}
+		checkRows(row, length, rowCount);
+		if (length == 0) {
+			return;
+		}
+		// The rows may wrap around the end of the column buffer
+		int index = toIndex(row);
+		int lengthFirst = Math.min(length, rowCount - index);
+		columns[col].getDoubles(index, values, offset, lengthFirst);
+		columns[col].getDoubles(0, values, offset + lengthFirst, length - lengthFirst);
+	}
+
+	@Override
+	public Record getRecord(int row) {
+		if (row < 0 || row >= rowCount) {
+			throw new IndexOutOfBoundsException(MessageFormat.format(
+				"Row {0,number,integer} is out of bounds [0, {1,number,integer}).", //$NON-NLS-1$
+				row, rowCount));
+		}
+		if (rows != null) {
+			return rows[row];
+		}
+		Comparable<?>[] values = new Comparable<?>[columns.length];
+		int index = toIndex(row);
+		for (int col = 0; col < values.length; col++) {
+			values[col] = columns[col].get(index);
+		}
+		return new Record(values);
+	}
+
+	@Override
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	@Override
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns this instance, because a snapshot never changes.
+	 * @return This snapshot.
+	 */
+	@Override
+	public DataSource snapshot() {
+		return this;
+	}
+
+	@Override
+	public boolean isSnapshotShared() {
+		return true;
+	}
+}
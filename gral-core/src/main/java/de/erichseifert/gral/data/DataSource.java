@@ -59,6 +59,31 @@ public interface DataSource extends Iterable<Comparable<?>> {
 	 */
 	Comparable<?> get(int col, int row);
 
+	/**
+	 * Returns the numeric value with the specified row and column index as a
+	 * primitive {@code double}. Implementations that store numbers in
+	 * primitive form can return the value without boxing it.
+	 * @param col index of the column to return
+	 * @param row index of the row to return
+	 * @return the specified value of the data cell, or {@code NaN} if the
+	 *         cell is empty or not numeric
+	 */
+	double getDouble(int col, int row);
+
+	/**
+	 * Copies the numeric values of consecutive rows of a column into the
+	 * specified array. Empty or non-numeric cells are copied as {@code NaN}.
+	 * Implementations that store numbers in primitive arrays can copy whole
+	 * blocks at once.
+	 * @param col index of the column
+	 * @param row index of the first row
+	 * @param values destination array
+	 * @param offset index of the first element in the destination array
+	 * @param length number of rows to copy
+	 * @throws IndexOutOfBoundsException if the rows don't exist
+	 */
+	void getDoubles(int col, int row, double[] values, int offset, int length);
+
 	/**
 	 * Retrieves a object instance that contains various statistical
 	 * information on the current data source.
@@ -108,4 +133,22 @@ public interface DataSource extends Iterable<Comparable<?>> {
 	void removeDataListener(DataListener dataListener);
 
 	Record getRecord(int row);
+
+	/**
+	 * Returns a number that is incremented whenever the values of this data
+	 * source change. Readers can compare versions to find out whether the
+	 * data has changed since they have read it.
+	 * @return Current version.
+	 */
+	long getVersion();
+
+	/**
+	 * Returns an immutable view of the current values of this data source.
+	 * The snapshot isn't affected by later changes, and it can be read
+	 * without blocking threads that change this data source. The
+	 * {@link #getVersion() version} of the snapshot is the version of this
+	 * data source at the time the snapshot was created.
+	 * @return Snapshot of the current values.
+	 */
+	DataSource snapshot();
 }
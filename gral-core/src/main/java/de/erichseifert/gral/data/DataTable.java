@@ -24,15 +24,15 @@ package de.erichseifert.gral.data;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 
 import de.erichseifert.gral.data.comparators.DataComparator;
 
 /**
  * An in-memory, random access implementation of a mutable data source using
- * arrays to store its values.
+ * arrays to store its values. Values can be read and changed from multiple
+ * threads, see {@link AbstractDataSource} for details.
  *
  * @see DataSource
  * @see MutableDataSource
@@ -41,48 +41,20 @@ public class DataTable extends AbstractDataSource implements MutableDataSource {
 	/** Version id for serialization. */
 	private static final long serialVersionUID = 535236774042654449L;
 
-	/** All values stored as rows of column arrays. */
-	private final List<Record> rows;
+	/** Capacity that is used when no capacity is specified. */
+	private static final int DEFAULT_CAPACITY = 16;
 
-	/**
-	 * Comparator class for comparing two records using a
-	 * specified set of {@code DataComparator}s.
-	 */
-	private final class RecordComparator implements Comparator<Record> {
-		/** Rules to use for sorting. */
-		private final DataComparator[] comparators;
-
-		/**
-		 * Initializes a new instance with a specified set of
-		 * {@code DataComparator}s.
-		 * @param comparators Set of {@code DataComparator}s to use as rules.
-		 */
-		public RecordComparator(DataComparator[] comparators) {
-			this.comparators = comparators;
-		}
-
-		/**
-		 * Compares two records using the rules defined by the
-		 * {@code DataComparator}s of this instance.
-		 * @param record1 First record to compare.
-		 * @param record2 Second record to compare.
-	     * @return A negative number if first argument is less than the second,
-	     *         zero if first argument is equal to the second,
-	     *         or a positive integer as the greater than the second.
-		 */
-		public int compare(Record record1, Record record2) {
-			for (DataComparator comparator : comparators) {
-				int result = comparator.compare(record1, record2);
-				if (result != 0) {
-					return result;
-				}
-			}
-			return 0;
-		}
-	}
+	/** All values stored as rows of column arrays. Only the first
+	{@code rowCount} elements are used. */
+	private Record[] rows;
+	/** Number of rows. */
+	private int rowCount;
+	/** Whether the array of rows is shared with a snapshot. In this case,
+	the array must be copied before existing elements are changed. */
+	private transient boolean shared;
 
 	public DataTable() {
-		rows = new ArrayList<>();
+		rows = new Record[DEFAULT_CAPACITY];
 	}
 
 	/**
@@ -92,7 +64,7 @@ public class DataTable extends AbstractDataSource implements MutableDataSource {
 	 */
 	public DataTable(Class<? extends Comparable<?>>... types) {
 		super(types);
-		rows = new ArrayList<>();
+		rows = new Record[DEFAULT_CAPACITY];
 	}
 
 	/**
@@ -123,7 +95,7 @@ public class DataTable extends AbstractDataSource implements MutableDataSource {
 
 	public DataTable(Column... columns) {
 		super(columns);
-		rows = new ArrayList<>();
+		rows = new Record[DEFAULT_CAPACITY];
 
 		int maxRowCount = 0;
 		for (Column column : columns) {
@@ -135,7 +107,7 @@ public class DataTable extends AbstractDataSource implements MutableDataSource {
 			for (Column column : columns) {
 				rowData.add(column.get(rowIndex));
 			}
-			rows.add(new Record(rowData));
+			append(new Record(rowData));
 		}
 	}
 
@@ -161,14 +133,80 @@ public class DataTable extends AbstractDataSource implements MutableDataSource {
 	 */
 	public int add(List<? extends Comparable<?>> values) {
 		DataChangeEvent[] events;
-		if (values.size() != getColumnCount()) {
+		checkRow(values, getColumnTypes());
+
+		// Add data to row
+		Record row = new Record(values);
+		events = new DataChangeEvent[row.size()];
+
+		int rowIndex;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			rowIndex = rowCount;
+			append(row);
+			for (int columnIndex = 0; columnIndex < row.size(); columnIndex++) {
+				Comparable<?> value = values.get(columnIndex);
+				events[columnIndex] = new DataChangeEvent(this, columnIndex, rowIndex, null, value);
+			}
+			notifyDataAdded(events);
+		} finally {
+			lock.unlock();
+		}
+		return rowIndex;
+	}
+
+	/**
+	 * Adds all specified rows to the table at once. All rows are validated
+	 * before any of them is added, and listeners are notified only once with
+	 * one event per column that describes the range of added rows. If the
+	 * types of the table columns and the values do not match, an
+	 * {@code IllegalArgumentException} is thrown and no row is added.
+	 * @param rows Rows to be added.
+	 * @return Index of the first row that has been added.
+	 */
+	public int addAll(Iterable<? extends List<? extends Comparable<?>>> rows) {
+		Class<? extends Comparable<?>>[] types = getColumnTypes();
+		List<Record> records = new ArrayList<>();
+		for (List<? extends Comparable<?>> values : rows) {
+			checkRow(values, types);
+			records.add(new Record(values));
+		}
+
+		int rowIndex;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			rowIndex = rowCount;
+			ensureCapacity(rowCount + records.size());
+			for (Record record : records) {
+				append(record);
+			}
+			if (!records.isEmpty()) {
+				notifyRowsAdded(rowIndex, records.size());
+			}
+		} finally {
+			lock.unlock();
+		}
+		return rowIndex;
+	}
+
+	/**
+	 * Checks whether the specified values can be added as a row to this
+	 * table. An {@code IllegalArgumentException} is thrown if the number of
+	 * values or their types don't match the columns.
+	 * @param values Values of a row.
+	 * @param types Data types of all columns.
+	 */
+	private void checkRow(List<? extends Comparable<?>> values,
+			Class<? extends Comparable<?>>[] types) {
+		if (values.size() != types.length) {
 			throw new IllegalArgumentException(MessageFormat.format(
 					"Wrong number of columns! Expected {0,number,integer}, got {1,number,integer}.", //$NON-NLS-1$
-					getColumnCount(), values.size()));
+					types.length, values.size()));
 		}
 
 		// Check row data types
-		Class<? extends Comparable<?>>[] types = getColumnTypes();
 		for (int colIndex = 0; colIndex < values.size(); colIndex++) {
 			Comparable<?> value = values.get(colIndex);
 			if ((value != null)
@@ -178,22 +216,6 @@ public class DataTable extends AbstractDataSource implements MutableDataSource {
 						types[colIndex], value.getClass()));
 			}
 		}
-
-		// Add data to row
-		Record row = new Record(values);
-		events = new DataChangeEvent[row.size()];
-		for (int columnIndex = 0; columnIndex < row.size(); columnIndex++) {
-			Comparable<?> value = values.get(columnIndex);
-			events[columnIndex] = new DataChangeEvent(this, columnIndex, rows.size(), null, value);
-		}
-
-		int rowIndex;
-		synchronized (rows) {
-			rows.add(row);
-			rowIndex = rows.size();
-		}
-		notifyDataAdded(events);
-		return rowIndex - 1;
 	}
 
 	/**
@@ -220,7 +242,21 @@ public class DataTable extends AbstractDataSource implements MutableDataSource {
 			throw new IllegalArgumentException("Invalid element count in Record to be added. " +
 					"Expected: "+getColumnCount()+", got: "+row.size());
 		}
-		rows.add(row);
+		DataChangeEvent[] events = new DataChangeEvent[row.size()];
+		int rowIndex;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			rowIndex = rowCount;
+			append(row);
+			for (int columnIndex = 0; columnIndex < row.size(); columnIndex++) {
+				events[columnIndex] = new DataChangeEvent(
+					this, columnIndex, rowIndex, null, row.get(columnIndex));
+			}
+			notifyDataAdded(events);
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
@@ -229,15 +265,14 @@ public class DataTable extends AbstractDataSource implements MutableDataSource {
 	 */
 	public void remove(int row) {
 		DataChangeEvent[] events;
-		synchronized (rows) {
-			Row r = new Row(this, row);
-			events = new DataChangeEvent[getColumnCount()];
-			for (int col = 0; col < events.length; col++) {
-				events[col] = new DataChangeEvent(this, col, row, r.get(col), null);
-			}
-			rows.remove(row);
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			events = removeRow(row);
+			notifyDataRemoved(events);
+		} finally {
+			lock.unlock();
 		}
-		notifyDataRemoved(events);
 	}
 
 	/**
@@ -245,16 +280,83 @@ public class DataTable extends AbstractDataSource implements MutableDataSource {
 	 */
 	public void removeLast() {
 		DataChangeEvent[] events;
-		synchronized (this) {
-			int row = getRowCount() - 1;
-			Row r = new Row(this, row);
-			events = new DataChangeEvent[getColumnCount()];
-			for (int col = 0; col < events.length; col++) {
-				events[col] = new DataChangeEvent(this, col, row, r.get(col), null);
-			}
-			rows.remove(row);
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			events = removeRow(rowCount - 1);
+			notifyDataRemoved(events);
+		} finally {
+			lock.unlock();
 		}
-		notifyDataRemoved(events);
+	}
+
+	/**
+	 * Removes a specified row without notifying listeners. The write lock
+	 * must be held by the caller.
+	 * @param row Index of the row to remove
+	 * @return Events that describe the removed values.
+	 */
+	private DataChangeEvent[] removeRow(int row) {
+		Record r = getRecordInternal(row);
+		DataChangeEvent[] events = new DataChangeEvent[getColumnCount()];
+		for (int col = 0; col < events.length; col++) {
+			events[col] = new DataChangeEvent(this, col, row, r.get(col), null);
+		}
+		unshare();
+		System.arraycopy(rows, row + 1, rows, row, rowCount - row - 1);
+		rows[--rowCount] = null;
+		return events;
+	}
+
+	/**
+	 * Appends a row without notifying listeners. The write lock must be held
+	 * by the caller.
+	 * @param row Row to be added.
+	 */
+	private void append(Record row) {
+		ensureCapacity(rowCount + 1);
+		rows[rowCount++] = row;
+	}
+
+	/**
+	 * Makes sure the array of rows can hold at least the specified number of
+	 * rows without growing.
+	 * @param capacity Minimal capacity.
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity <= rows.length) {
+			return;
+		}
+		int grown = Math.max(capacity, rows.length + (rows.length >> 1) + 1);
+		rows = Arrays.copyOf(rows, grown);
+		shared = false;
+	}
+
+	/**
+	 * Copies the array of rows if it is shared with a snapshot, so that
+	 * existing rows can be changed. The write lock must be held by the
+	 * caller.
+	 */
+	private void unshare() {
+		if (shared) {
+			rows = Arrays.copyOf(rows, rows.length);
+			shared = false;
+		}
+	}
+
+	/**
+	 * Returns the row with the specified index. An
+	 * {@code IndexOutOfBoundsException} is thrown for invalid indexes.
+	 * @param row Index of the row.
+	 * @return Row values.
+	 */
+	private Record getRecordInternal(int row) {
+		if (row < 0 || row >= rowCount) {
+			throw new IndexOutOfBoundsException(MessageFormat.format(
+				"Row {0,number,integer} is out of bounds [0, {1,number,integer}).", //$NON-NLS-1$
+				row, rowCount));
+		}
+		return rows[row];
 	}
 
 	/**
@@ -262,19 +364,27 @@ public class DataTable extends AbstractDataSource implements MutableDataSource {
 	 */
 	public void clear() {
 		DataChangeEvent[] events;
-		synchronized (this) {
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
 			int cols = getColumnCount();
-			int rows = getRowCount();
+			int rows = rowCount;
 			events = new DataChangeEvent[cols*rows];
 			for (int row = 0; row < rows; row++) {
+				Record record = this.rows[row];
 				for (int col = 0; col < cols; col++) {
 					events[col + row*cols] = new DataChangeEvent(
-						this, col, row, get(col, row), null);
+						this, col, row, record.get(col), null);
 				}
 			}
-			this.rows.clear();
+			// A new array is used, because a snapshot might still use the old one
+			this.rows = new Record[DEFAULT_CAPACITY];
+			rowCount = 0;
+			shared = false;
+			notifyDataRemoved(events);
+		} finally {
+			lock.unlock();
 		}
-		notifyDataRemoved(events);
 	}
 
 	/**
@@ -285,11 +395,15 @@ public class DataTable extends AbstractDataSource implements MutableDataSource {
 	 */
 	public Comparable<?> get(int col, int row) {
 		Record r;
-		synchronized (rows) {
-			if (row >= rows.size()) {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			if (row >= rowCount) {
 				return null;
 			}
-			r = rows.get(row);
+			r = rows[row];
+		} finally {
+			lock.unlock();
 		}
 		if (r == null) {
 			return null;
@@ -297,6 +411,17 @@ public class DataTable extends AbstractDataSource implements MutableDataSource {
 		return r.get(col);
 	}
 
+	@Override
+	public Record getRecord(int row) {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			return getRecordInternal(row);
+		} finally {
+			lock.unlock();
+		}
+	}
+
 	/**
 	 * Sets the value of a cell specified by its column and row indexes.
 	 * @param <T> Data type of the cell.
@@ -309,22 +434,25 @@ public class DataTable extends AbstractDataSource implements MutableDataSource {
 	public <T> Comparable<T> set(int col, int row, Comparable<T> value) {
 		Comparable<T> old;
 		DataChangeEvent event = null;
-		synchronized (this) {
-			old = (Comparable<T>) get(col, row);
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			Record record = getRecordInternal(row);
+			old = (Comparable<T>) record.get(col);
 			if (old == null || !old.equals(value)) {
-				Record record = rows.get(row);
 				ArrayList<Comparable<?>> values = new ArrayList<>(record.size());
 				for (Comparable<?> element : record) {
 					values.add(element);
 				}
 				values.set(col, value);
 				Record updatedRecord = new Record(values);
-				rows.set(row, updatedRecord);
+				unshare();
+				rows[row] = updatedRecord;
 				event = new DataChangeEvent(this, col, row, old, value);
+				notifyDataUpdated(event);
 			}
-		}
-		if (event != null) {
-			notifyDataUpdated(event);
+		} finally {
+			lock.unlock();
 		}
 		return old;
 	}
@@ -334,21 +462,76 @@ public class DataTable extends AbstractDataSource implements MutableDataSource {
 	 * @return number of rows in the data source.
 	 */
 	public int getRowCount() {
-		return rows.size();
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			return rowCount;
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
 	 * Sorts the table rows with the specified DataComparators.
 	 * The row values are compared in the way the comparators are specified.
+	 * A permutation of the row indexes is sorted, and numeric columns are
+	 * compared without boxing their values. Listeners are notified with one
+	 * update event per column that covers all rows.
 	 * @param comparators comparators used for sorting
 	 */
 	public void sort(final DataComparator... comparators) {
-		synchronized (rows) {
-			RecordComparator comparator = new RecordComparator(comparators);
-			Collections.sort(rows, comparator);
+		int sortedRows;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			int[] order = RowSorter.sort(this, comparators);
+			// A new array is used, so it's never shared with a snapshot
+			Record[] sorted = new Record[rows.length];
+			for (int row = 0; row < rowCount; row++) {
+				sorted[row] = rows[order[row]];
+			}
+			rows = sorted;
+			shared = false;
+			sortedRows = rowCount;
+			// All rows may have been moved
+			if (sortedRows > 0) {
+				notifyRowsShifted(sortedRows, 0);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns an immutable view of the current rows. The array of rows is
+	 * shared with the snapshot and is only copied when existing rows are
+	 * changed, removed, or reordered afterwards.
+	 * @return Snapshot of the current values.
+	 */
+	@Override
+	public DataSource snapshot() {
+		long version = getVersion();
+		// Concurrent snapshots only set the shared flag, so the read lock suffices
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			shared = true;
+			return new DataSnapshot(this, version, rows, rowCount);
+		} finally {
+			lock.unlock();
 		}
 	}
 
+	@Override
+	public boolean isSnapshotShared() {
+		return true;
+	}
+
+	@Override
+	protected boolean isStatisticsIncremental() {
+		return true;
+	}
+
 	@Override
 	public void setName(String name) {
 		super.setName(name);
@@ -165,6 +165,11 @@ public class EnumeratedData extends AbstractDataSource
 				col = event.getCol() + 1;
 				row = event.getRow();
 			}
+			if (event.isRange()) {
+				eventsTx[i] = new DataChangeEvent(
+					this, col, row, event.getRowCount(), event.getShift());
+				continue;
+			}
 			Comparable valOld = event.getOld();
 			Comparable valNew = event.getNew();
 			eventsTx[i] = new DataChangeEvent(
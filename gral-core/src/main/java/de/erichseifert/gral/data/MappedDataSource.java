@@ -0,0 +1,386 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+/**
+ * <p>Read-only data source that serves its values directly from a memory
+ * mapped binary column file. The values aren't loaded into the heap, so the
+ * file can be much larger than the available memory, and opening a file
+ * only requires reading its header. Column files can be created from any
+ * data source using {@link de.erichseifert.gral.io.data.ColumnFileWriter}.</p>
+ *
+ * <p>All numbers of a column file are stored in little-endian byte
+ * order:</p>
+ * <pre>
+ * Offset  Size     Content
+ * 0       8        Magic bytes "GRALCOLS"
+ * 8       4        Format version
+ * 12      4        Number of columns
+ * 16      8        Number of rows
+ * 24      24*cols  Description of each column:
+ *                  int type code, int flags, long offset of the values,
+ *                  long offset of the bitmap of empty cells or -1
+ * ...              Values of each column followed by its bitmap of empty
+ *                  cells if flag {@link #FLAG_NULLS} is set. Each section
+ *                  starts at a multiple of eight.
+ * </pre>
+ *
+ * <p>Only {@code Double}, {@code Float}, {@code Long}, and {@code Integer}
+ * columns are supported. Mapped files can be read concurrently from multiple
+ * threads.</p>
+ */
+public class MappedDataSource extends AbstractDataSource {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = -6906187919405233563L;
+
+	/** Magic bytes that identify a column file. */
+	public static final String MAGIC = "GRALCOLS"; //$NON-NLS-1$
+	/** Version of the file format. */
+	public static final int FORMAT_VERSION = 1;
+	/** Size of the file header without column descriptions in bytes. */
+	public static final int HEADER_SIZE = 24;
+	/** Size of the description of a single column in bytes. */
+	public static final int COLUMN_HEADER_SIZE = 24;
+	/** Flag that is set if a column contains empty cells. */
+	public static final int FLAG_NULLS = 1;
+
+	/** Type code of {@code Double} columns. */
+	public static final int TYPE_DOUBLE = 1;
+	/** Type code of {@code Float} columns. */
+	public static final int TYPE_FLOAT = 2;
+	/** Type code of {@code Long} columns. */
+	public static final int TYPE_LONG = 3;
+	/** Type code of {@code Integer} columns. */
+	public static final int TYPE_INTEGER = 4;
+
+	/** Number of address bits of a single mapped segment. */
+	private static final int SEGMENT_BITS = 30;
+	/** Maximal size of a single mapped segment in bytes. */
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+	/** Mapped file. */
+	private final File file;
+	/** Number of rows. */
+	private int rowCount;
+	/** Type code of each column. */
+	private transient int[] typeCodes;
+	/** Mapped values of each column. Columns larger than
+	{@link #SEGMENT_SIZE} are split into several segments. */
+	private transient ByteBuffer[][] values;
+	/** Mapped bitmaps of empty cells, or {@code null} for columns without
+	empty cells. */
+	private transient ByteBuffer[] nulls;
+
+	/**
+	 * Opens the specified column file.
+	 * @param file Column file.
+	 * @throws IOException if the file cannot be read or has an invalid
+	 *         format.
+	 */
+	public MappedDataSource(File file) throws IOException {
+		super(file.getName());
+		this.file = file;
+		map();
+	}
+
+	/**
+	 * Returns the type code that is used for the specified column type.
+	 * @param type Column type.
+	 * @return Type code, or {@code -1} if the type is not supported.
+	 */
+	public static int getTypeCode(Class<?> type) {
+		if (Double.class.equals(type)) {
+			return TYPE_DOUBLE;
+		} else if (Float.class.equals(type)) {
+			return TYPE_FLOAT;
+		} else if (Long.class.equals(type)) {
+			return TYPE_LONG;
+		} else if (Integer.class.equals(type)) {
+			return TYPE_INTEGER;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the size of a single value of the specified type in bytes.
+	 * @param typeCode Type code.
+	 * @return Size in bytes.
+	 */
+	public static int getTypeSize(int typeCode) {
+		return (typeCode == TYPE_DOUBLE || typeCode == TYPE_LONG) ? 8 : 4;
+	}
+
+	/**
+	 * Returns the column type for the specified type code.
+	 * @param typeCode Type code.
+	 * @return Column type.
+	 */
+	private static Class<? extends Comparable<?>> getType(int typeCode) {
+		switch (typeCode) {
+		case TYPE_DOUBLE:
+			return Double.class;
+		case TYPE_FLOAT:
+			return Float.class;
+		case TYPE_LONG:
+			return Long.class;
+		case TYPE_INTEGER:
+			return Integer.class;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the header of the file and maps all columns into memory.
+	 * @throws IOException if the file cannot be read or has an invalid
+	 *         format.
+	 */
+	@SuppressWarnings("unchecked")
+	private void map() throws IOException {
+		RandomAccessFile input = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try {
+			FileChannel channel = input.getChannel();
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+				Math.min(channel.size(), HEADER_SIZE));
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			byte[] magic = new byte[MAGIC.length()];
+			if (header.remaining() >= HEADER_SIZE) {
+				header.get(magic);
+			}
+			if (!Arrays.equals(magic, MAGIC.getBytes("US-ASCII"))) { //$NON-NLS-1$
+				throw new IOException(MessageFormat.format(
+					"{0} is not a column file.", file)); //$NON-NLS-1$
+			}
+			int version = header.getInt();
+			if (version != FORMAT_VERSION) {
+				throw new IOException(MessageFormat.format(
+					"Unsupported format version {0,number,integer} of {1}.", //$NON-NLS-1$
+					version, file));
+			}
+			int columnCount = header.getInt();
+			long rows = header.getLong();
+			if (columnCount < 0 || rows < 0 || rows > Integer.MAX_VALUE) {
+				throw new IOException(MessageFormat.format(
+					"Invalid size of {0}: {1,number,integer} columns, {2,number,integer} rows.", //$NON-NLS-1$
+					file, columnCount, rows));
+			}
+			rowCount = (int) rows;
+
+			ByteBuffer columnHeaders = channel.map(FileChannel.MapMode.READ_ONLY,
+				HEADER_SIZE, (long) columnCount*COLUMN_HEADER_SIZE);
+			columnHeaders.order(ByteOrder.LITTLE_ENDIAN);
+			Class<? extends Comparable<?>>[] types = new Class[columnCount];
+			typeCodes = new int[columnCount];
+			values = new ByteBuffer[columnCount][];
+			nulls = new ByteBuffer[columnCount];
+			for (int col = 0; col < columnCount; col++) {
+				int typeCode = columnHeaders.getInt();
+				int flags = columnHeaders.getInt();
+				long valuesOffset = columnHeaders.getLong();
+				long nullsOffset = columnHeaders.getLong();
+				types[col] = getType(typeCode);
+				if (types[col] == null) {
+					throw new IOException(MessageFormat.format(
+						"Column {0,number,integer} of {1} has the unknown type code {2,number,integer}.", //$NON-NLS-1$
+						col, file, typeCode));
+				}
+				typeCodes[col] = typeCode;
+				values[col] = mapSegments(channel, valuesOffset, rows*getTypeSize(typeCode));
+				if ((flags & FLAG_NULLS) != 0) {
+					nulls[col] = mapSegments(channel, nullsOffset, (rows + 7)/8)[0];
+				}
+			}
+			setColumnTypes(types);
+		} finally {
+			// Mapped buffers stay valid after the channel has been closed
+			input.close();
+		}
+	}
+
+	/**
+	 * Maps a region of a file into one or more buffers that aren't larger
+	 * than {@link #SEGMENT_SIZE}.
+	 * @param channel File channel.
+	 * @param offset Start of the region.
+	 * @param size Size of the region in bytes.
+	 * @return Mapped buffers.
+	 * @throws IOException if the region cannot be mapped.
+	 */
+	private static ByteBuffer[] mapSegments(FileChannel channel, long offset, long size)
+			throws IOException {
+		if (offset < 0 || offset + size > channel.size()) {
+			throw new IOException(MessageFormat.format(
+				"Invalid region [{0,number,integer}, {1,number,integer}) in a file of {2,number,integer} bytes.", //$NON-NLS-1$
+				offset, offset + size, channel.size()));
+		}
+		int segmentCount = (int) Math.max(1, (size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+		ByteBuffer[] segments = new ByteBuffer[segmentCount];
+		for (int segment = 0; segment < segmentCount; segment++) {
+			long start = (long) segment << SEGMENT_BITS;
+			long length = Math.min(SEGMENT_SIZE, size - start);
+			segments[segment] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start, length);
+			segments[segment].order(ByteOrder.LITTLE_ENDIAN);
+		}
+		return segments;
+	}
+
+	/**
+	 * Returns the mapped file.
+	 * @return Column file.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns whether the specified cell is empty.
+	 * @param col Column index.
+	 * @param row Row index.
+	 * @return {@code true} if the cell is empty, otherwise {@code false}.
+	 */
+	private boolean isNull(int col, int row) {
+		ByteBuffer bitmap = nulls[col];
+		return bitmap != null && (bitmap.get(row >>> 3) & (1 << (row & 7))) != 0;
+	}
+
+	/**
+	 * Returns the value of a cell as a primitive {@code double} without
+	 * checking whether the cell is empty.
+	 * @param col Column index.
+	 * @param row Row index.
+	 * @return Value of the cell.
+	 */
+	private double read(int col, int row) {
+		int typeCode = typeCodes[col];
+		if (typeCode == TYPE_LONG) {
+			return readLong(col, row);
+		}
+		long position = (long) row*getTypeSize(typeCode);
+		ByteBuffer segment = values[col][(int) (position >>> SEGMENT_BITS)];
+		int index = (int) (position & (SEGMENT_SIZE - 1));
+		switch (typeCode) {
+		case TYPE_DOUBLE:
+			return segment.getDouble(index);
+		case TYPE_FLOAT:
+			return segment.getFloat(index);
+		default:
+			return segment.getInt(index);
+		}
+	}
+
+	/**
+	 * Returns the value of a cell in a {@code Long} column without checking
+	 * whether the cell is empty.
+	 * @param col Column index.
+	 * @param row Row index.
+	 * @return Value of the cell.
+	 */
+	private long readLong(int col, int row) {
+		long position = (long) row*8;
+		ByteBuffer segment = values[col][(int) (position >>> SEGMENT_BITS)];
+		return segment.getLong((int) (position & (SEGMENT_SIZE - 1)));
+	}
+
+	/**
+	 * Returns the value with the specified row and column index.
+	 * @param col index of the column to return
+	 * @param row index of the row to return
+	 * @return the specified value of the data cell
+	 */
+	public Comparable<?> get(int col, int row) {
+		if (row < 0 || row >= rowCount || isNull(col, row)) {
+			return null;
+		}
+		switch (typeCodes[col]) {
+		case TYPE_DOUBLE:
+			return read(col, row);
+		case TYPE_FLOAT:
+			return (float) read(col, row);
+		case TYPE_LONG:
+			// Long values are read directly to avoid a loss of precision
+			return readLong(col, row);
+		default:
+			return (int) read(col, row);
+		}
+	}
+
+	/**
+	 * Returns the value with the specified row and column index as a
+	 * primitive {@code double} without boxing it.
+	 * @param col index of the column to return
+	 * @param row index of the row to return
+	 * @return the specified value of the data cell, or {@code NaN} if the
+	 *         cell is empty
+	 */
+	@Override
+	public double getDouble(int col, int row) {
+		if (row < 0 || row >= rowCount || isNull(col, row)) {
+			return Double.NaN;
+		}
+		return read(col, row);
+	}
+
+	/**
+	 * Returns the number of rows of the data source.
+	 * @return number of rows in the data source.
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Returns this instance, because the values never change.
+	 * @return This data source.
+	 */
+	@Override
+	public DataSource snapshot() {
+		return this;
+	}
+
+	@Override
+	public boolean isSnapshotShared() {
+		return true;
+	}
+
+	/**
+	 * Custom deserialization method that maps the file again.
+	 * @param in Input stream.
+	 * @throws ClassNotFoundException if a serialized class doesn't exist anymore.
+	 * @throws IOException if there is an error while reading data from the
+	 *         input stream.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws ClassNotFoundException, IOException {
+		in.defaultReadObject();
+		map();
+	}
+}
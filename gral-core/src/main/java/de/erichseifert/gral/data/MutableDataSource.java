@@ -54,6 +54,17 @@ public interface MutableDataSource extends DataSource {
 	 */
 	int add(List<? extends Comparable<?>> values);
 
+	/**
+	 * Adds all specified rows to the data sink at once. The rows are
+	 * validated before any of them is added, and listeners are notified only
+	 * once with one event per column that describes the range of added rows.
+	 * If the types of the data sink columns and the values do not match, an
+	 * {@code IllegalArgumentException} is thrown and no row is added.
+	 * @param rows Rows to be added.
+	 * @return Index of the first row that has been added.
+	 */
+	int addAll(Iterable<? extends List<? extends Comparable<?>>> rows);
+
 	/**
 	 * Adds the specified row to the data sink. The values are added in the
 	 * order they are specified. If the types of the data sink columns and the
@@ -0,0 +1,602 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+import de.erichseifert.gral.data.comparators.DataComparator;
+
+/**
+ * <p>An in-memory, random access implementation of a mutable data source
+ * that stores its values column by column in primitive arrays. Only the
+ * column types {@code Double}, {@code Float}, {@code Long}, and
+ * {@code Integer} are supported.</p>
+ *
+ * <p>Compared to {@link DataTable} no objects are allocated for single
+ * values or rows, which drastically reduces the memory footprint of large
+ * numeric tables. Numeric values can be read without boxing using
+ * {@link #getDouble(int, int)}.</p>
+ *
+ * <p>Values can be read and changed from multiple threads, see
+ * {@link AbstractDataSource} for details.</p>
+ *
+ * @see DataTable
+ * @see MutableDataSource
+ */
+public class NumericDataTable extends AbstractDataSource implements MutableDataSource {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = -4181460218404817398L;
+
+	/** Values of each column stored in primitive arrays. */
+	private ColumnBuffer[] columns;
+
+	/**
+	 * Initializes a new instance with the specified number of columns and
+	 * column types.
+	 * @param types Type for each column
+	 */
+	public NumericDataTable(Class<? extends Comparable<?>>... types) {
+		super(types);
+		columns = createColumns(types, ColumnBuffer.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Initializes a new instance with the specified number of columns and
+	 * a single column type.
+	 * @param cols Number of columns
+	 * @param type Data type for all columns
+	 */
+	@SuppressWarnings("unchecked")
+	public NumericDataTable(int cols, Class<? extends Comparable<?>> type) {
+		this(createTypes(cols, type));
+	}
+
+	/**
+	 * Initializes a new instance with the column types, and data of another
+	 * data source.
+	 * @param source Data source to clone.
+	 */
+	public NumericDataTable(DataSource source) {
+		this(source.getColumnTypes());
+		int rowCount = source.getRowCount();
+		for (ColumnBuffer column : columns) {
+			column.ensureCapacity(rowCount);
+		}
+		for (int rowIndex = 0; rowIndex < rowCount; rowIndex++) {
+			for (int colIndex = 0; colIndex < columns.length; colIndex++) {
+				columns[colIndex].add(source.get(colIndex, rowIndex));
+			}
+		}
+	}
+
+	/**
+	 * Utility method that creates an array of column types.
+	 * @param cols Number of columns.
+	 * @param type Data type for all columns.
+	 * @return Array of column types.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Class<? extends Comparable<?>>[] createTypes(int cols, Class<? extends Comparable<?>> type) {
+		Class<? extends Comparable<?>>[] types = new Class[cols];
+		Arrays.fill(types, type);
+		return types;
+	}
+
+	/**
+	 * Utility method that creates empty buffers for all columns.
+	 * @param types Data types of all columns.
+	 * @param capacity Initial capacity of each buffer.
+	 * @return Array of buffers.
+	 */
+	private static ColumnBuffer[] createColumns(Class<?>[] types, int capacity) {
+		ColumnBuffer[] columns = new ColumnBuffer[types.length];
+		for (int colIndex = 0; colIndex < types.length; colIndex++) {
+			if (!ColumnBuffer.isSupported(types[colIndex])) {
+				throw new IllegalArgumentException(MessageFormat.format(
+					"Column {0,number,integer} has the unsupported type {1}. Only Double, Float, Long, and Integer columns can be stored.", //$NON-NLS-1$
+					colIndex, types[colIndex]));
+			}
+			columns[colIndex] = ColumnBuffer.create(types[colIndex], capacity);
+		}
+		return columns;
+	}
+
+	/**
+	 * Adds a row with the specified comparable values to the table.
+	 * The values are added in the order they are specified. If the types of
+	 * the table columns and the values do not match, an
+	 * {@code IllegalArgumentException} is thrown.
+	 * @param values values to be added as a row
+	 * @return Index of the row that has been added.
+	 */
+	public int add(Comparable<?>... values) {
+		return add(Arrays.asList(values));
+	}
+
+	/**
+	 * Adds a row with the specified container's elements to the table.
+	 * The values are added in the order they are specified. If the types of
+	 * the table columns and the values do not match, an
+	 * {@code IllegalArgumentException} is thrown.
+	 * @param values values to be added as a row
+	 * @return Index of the row that has been added.
+	 */
+	public int add(List<? extends Comparable<?>> values) {
+		checkRow(values, getColumnTypes());
+
+		DataChangeEvent[] events = new DataChangeEvent[columns.length];
+		int rowIndex;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			rowIndex = getRowCount();
+			for (int colIndex = 0; colIndex < columns.length; colIndex++) {
+				Comparable<?> value = values.get(colIndex);
+				columns[colIndex].add(value);
+				events[colIndex] = new DataChangeEvent(this, colIndex, rowIndex, null, value);
+			}
+			notifyDataAdded(events);
+		} finally {
+			lock.unlock();
+		}
+		return rowIndex;
+	}
+
+	/**
+	 * Adds all specified rows to the table at once. All rows are validated
+	 * before any of them is added, and listeners are notified only once with
+	 * one event per column that describes the range of added rows. If the
+	 * types of the table columns and the values do not match, an
+	 * {@code IllegalArgumentException} is thrown and no row is added.
+	 * @param rows Rows to be added.
+	 * @return Index of the first row that has been added.
+	 */
+	public int addAll(Iterable<? extends List<? extends Comparable<?>>> rows) {
+		Class<? extends Comparable<?>>[] types = getColumnTypes();
+		List<List<? extends Comparable<?>>> validRows = new ArrayList<>();
+		for (List<? extends Comparable<?>> values : rows) {
+			checkRow(values, types);
+			validRows.add(values);
+		}
+
+		int rowIndex;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			rowIndex = getRowCount();
+			for (int colIndex = 0; colIndex < columns.length; colIndex++) {
+				ColumnBuffer column = columns[colIndex];
+				column.ensureCapacity(rowIndex + validRows.size());
+				for (List<? extends Comparable<?>> values : validRows) {
+					column.add(values.get(colIndex));
+				}
+			}
+			if (!validRows.isEmpty()) {
+				notifyRowsAdded(rowIndex, validRows.size());
+			}
+		} finally {
+			lock.unlock();
+		}
+		return rowIndex;
+	}
+
+	/**
+	 * <p>Adds rows from primitive arrays that contain the values of each
+	 * column. All arrays must have the same length and there must be one
+	 * array for each column. Listeners are notified only once with one event
+	 * per column that describes the range of added rows.</p>
+	 * <p>Values are converted to the respective column type. {@code NaN}
+	 * values in {@code Long} or {@code Integer} columns are stored as empty
+	 * cells.</p>
+	 * @param columnValues Values for each column.
+	 * @return Index of the first row that has been added.
+	 */
+	public int addColumns(double[]... columnValues) {
+		int count = columnValues.length > 0 ? columnValues[0].length : 0;
+		for (double[] values : columnValues) {
+			if (values.length != count) {
+				throw new IllegalArgumentException(MessageFormat.format(
+					"All columns must have the same length! Expected {0,number,integer}, got {1,number,integer}.", //$NON-NLS-1$
+					count, values.length));
+			}
+		}
+		return addColumns(count, null, columnValues);
+	}
+
+	/**
+	 * <p>Adds rows from the first {@code count} values of primitive arrays
+	 * that contain the values of each column. This allows to reuse the
+	 * arrays for adding further rows. Listeners are notified only once with
+	 * one event per column that describes the range of added rows.</p>
+	 * <p>Values are converted to the respective column type. Cells whose
+	 * bit is set in the respective {@code BitSet} of {@code nulls} are
+	 * stored as empty cells, as well as {@code NaN} values in {@code Long}
+	 * or {@code Integer} columns.</p>
+	 * @param count Number of rows to be added.
+	 * @param nulls Indexes of empty cells for each column, or {@code null}
+	 *        if there are no empty cells. Single elements may be
+	 *        {@code null}, too.
+	 * @param columnValues Values for each column.
+	 * @return Index of the first row that has been added.
+	 */
+	public int addColumns(int count, BitSet[] nulls, double[]... columnValues) {
+		if (columnValues.length != getColumnCount()) {
+			throw new IllegalArgumentException(MessageFormat.format(
+					"Wrong number of columns! Expected {0,number,integer}, got {1,number,integer}.", //$NON-NLS-1$
+					getColumnCount(), columnValues.length));
+		}
+		for (double[] values : columnValues) {
+			if (values.length < count) {
+				throw new IllegalArgumentException(MessageFormat.format(
+					"Not enough values in column! Expected {0,number,integer}, got {1,number,integer}.", //$NON-NLS-1$
+					count, values.length));
+			}
+		}
+
+		int rowIndex;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			rowIndex = getRowCount();
+			for (int colIndex = 0; colIndex < columns.length; colIndex++) {
+				ColumnBuffer column = columns[colIndex];
+				column.ensureCapacity(rowIndex + count);
+				boolean integral = !isFloatingPoint(colIndex);
+				double[] values = columnValues[colIndex];
+				BitSet empty = nulls != null ? nulls[colIndex] : null;
+				for (int i = 0; i < count; i++) {
+					double value = values[i];
+					if ((empty != null && empty.get(i)) ||
+							(integral && Double.isNaN(value))) {
+						column.add(null);
+					} else {
+						column.addDouble(value);
+					}
+				}
+			}
+			if (count > 0) {
+				notifyRowsAdded(rowIndex, count);
+			}
+		} finally {
+			lock.unlock();
+		}
+		return rowIndex;
+	}
+
+	/**
+	 * Returns whether the specified column stores floating point values.
+	 * @param col Column index.
+	 * @return {@code true} if the column stores {@code Double} or
+	 *         {@code Float} values, otherwise {@code false}.
+	 */
+	private boolean isFloatingPoint(int col) {
+		return columns[col] instanceof ColumnBuffer.OfDouble ||
+			columns[col] instanceof ColumnBuffer.OfFloat;
+	}
+
+	/**
+	 * Checks whether the specified values can be added as a row to this
+	 * table. An {@code IllegalArgumentException} is thrown if the number of
+	 * values or their types don't match the columns.
+	 * @param values Values of a row.
+	 * @param types Data types of all columns.
+	 */
+	private static void checkRow(List<? extends Comparable<?>> values,
+			Class<? extends Comparable<?>>[] types) {
+		if (values.size() != types.length) {
+			throw new IllegalArgumentException(MessageFormat.format(
+					"Wrong number of columns! Expected {0,number,integer}, got {1,number,integer}.", //$NON-NLS-1$
+					types.length, values.size()));
+		}
+
+		// Check row data types
+		for (int colIndex = 0; colIndex < values.size(); colIndex++) {
+			Comparable<?> value = values.get(colIndex);
+			if ((value != null)
+					&& !(types[colIndex].isAssignableFrom(value.getClass()))) {
+				throw new IllegalArgumentException(MessageFormat.format(
+						"Wrong column type! Expected {0}, got {1}.", //$NON-NLS-1$
+						types[colIndex], value.getClass()));
+			}
+		}
+	}
+
+	/**
+	 * Adds the specified row to the table.
+	 * The values are added in the order they are specified. If the types of
+	 * the table columns and the values do not match, an
+	 * {@code IllegalArgumentException} is thrown.
+	 * @param row Row to be added
+	 * @return Index of the row that has been added.
+	 */
+	public int add(Row row) {
+		List<Comparable<?>> values;
+		synchronized (row) {
+			values = new ArrayList<>(row.size());
+			for (Comparable<?> value : row) {
+				values.add(value);
+			}
+		}
+		return add(values);
+	}
+
+	/**
+	 * Removes a specified row from the table.
+	 * @param row Index of the row to remove
+	 */
+	public void remove(int row) {
+		DataChangeEvent[] events;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			events = removeRow(row);
+			notifyDataRemoved(events);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the last row from the table.
+	 */
+	public void removeLast() {
+		DataChangeEvent[] events;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			events = removeRow(getRowCount() - 1);
+			notifyDataRemoved(events);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes a specified row without notifying listeners. The write lock
+	 * must be held by the caller.
+	 * @param row Index of the row to remove
+	 * @return Events that describe the removed values.
+	 */
+	private DataChangeEvent[] removeRow(int row) {
+		DataChangeEvent[] events = new DataChangeEvent[columns.length];
+		for (int col = 0; col < events.length; col++) {
+			events[col] = new DataChangeEvent(this, col, row, columns[col].get(row), null);
+			columns[col].remove(row);
+		}
+		return events;
+	}
+
+	/**
+	 * Deletes all rows this table contains.
+	 */
+	public void clear() {
+		DataChangeEvent[] events;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			int cols = getColumnCount();
+			int rows = getRowCount();
+			events = new DataChangeEvent[cols*rows];
+			for (int row = 0; row < rows; row++) {
+				for (int col = 0; col < cols; col++) {
+					events[col + row*cols] = new DataChangeEvent(
+						this, col, row, columns[col].get(row), null);
+				}
+			}
+			for (ColumnBuffer column : columns) {
+				column.clear();
+			}
+			notifyDataRemoved(events);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the row with the specified index.
+	 * @param col index of the column to return
+	 * @param row index of the row to return
+	 * @return the specified value of the data cell
+	 */
+	public Comparable<?> get(int col, int row) {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			if (row >= getRowCount()) {
+				return null;
+			}
+			return columns[col].get(row);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the value with the specified row and column index as a
+	 * primitive {@code double} without boxing it.
+	 * @param col index of the column to return
+	 * @param row index of the row to return
+	 * @return the specified value of the data cell, or {@code NaN} if the
+	 *         cell is empty
+	 */
+	@Override
+	public double getDouble(int col, int row) {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			if (row >= getRowCount()) {
+				return Double.NaN;
+			}
+			return columns[col].getDouble(row);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void getDoubles(int col, int row, double[] values, int offset, int length) {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			checkRows(row, length, getRowCount());
+			columns[col].getDoubles(row, values, offset, length);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Record getRecord(int row) {
+		Comparable<?>[] values = new Comparable<?>[columns.length];
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			for (int col = 0; col < values.length; col++) {
+				values[col] = columns[col].get(row);
+			}
+		} finally {
+			lock.unlock();
+		}
+		return new Record(values);
+	}
+
+
+	/**
+	 * Sets the value of a cell specified by its column and row indexes.
+	 * @param <T> Data type of the cell.
+	 * @param col Column of the cell to change.
+	 * @param row Row of the cell to change.
+	 * @param value New value to be set.
+	 * @return Old value that was replaced.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> Comparable<T> set(int col, int row, Comparable<T> value) {
+		Class<? extends Comparable<?>> type = getColumnTypes()[col];
+		if (value != null && !type.isAssignableFrom(value.getClass())) {
+			throw new IllegalArgumentException(MessageFormat.format(
+					"Wrong column type! Expected {0}, got {1}.", //$NON-NLS-1$
+					type, value.getClass()));
+		}
+		Comparable<T> old;
+		DataChangeEvent event = null;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			old = (Comparable<T>) columns[col].get(row);
+			if (old == null || !old.equals(value)) {
+				columns[col].set(row, value);
+				event = new DataChangeEvent(this, col, row, old, value);
+			}
+			if (event != null) {
+				notifyDataUpdated(event);
+			}
+		} finally {
+			lock.unlock();
+		}
+		return old;
+	}
+
+	/**
+	 * Returns the number of rows of the data source.
+	 * @return number of rows in the data source.
+	 */
+	public int getRowCount() {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			return columns.length > 0 ? columns[0].size() : 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Sorts the table rows with the specified DataComparators.
+	 * The row values are compared in the way the comparators are specified.
+	 * A permutation of the row indexes is sorted, and numeric columns are
+	 * compared without boxing their values. Listeners are notified with one
+	 * update event per column that covers all rows.
+	 * @param comparators comparators used for sorting
+	 */
+	public void sort(final DataComparator... comparators) {
+		int sortedRows;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			int[] permutation = RowSorter.sort(this, comparators);
+			for (ColumnBuffer column : columns) {
+				column.permute(permutation);
+			}
+			sortedRows = getRowCount();
+			// All rows may have been moved
+			if (sortedRows > 0) {
+				notifyRowsShifted(sortedRows, 0);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns an immutable view of the current values. The arrays of the
+	 * column buffers are shared with the snapshot and are only copied when
+	 * stored values are changed afterwards.
+	 * @return Snapshot of the current values.
+	 */
+	@Override
+	public DataSource snapshot() {
+		long version = getVersion();
+		// Concurrent snapshots only mark the buffers as shared, so the read
+		// lock suffices
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			ColumnBuffer[] snapshots = new ColumnBuffer[columns.length];
+			for (int col = 0; col < columns.length; col++) {
+				snapshots[col] = columns[col].snapshot();
+			}
+			return new DataSnapshot(this, version, snapshots, 0);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isSnapshotShared() {
+		return true;
+	}
+
+	@Override
+	protected boolean isStatisticsIncremental() {
+		return true;
+	}
+
+	@Override
+	public void setName(String name) {
+		super.setName(name);
+	}
+}
@@ -0,0 +1,615 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+import de.erichseifert.gral.data.comparators.DataComparator;
+
+/**
+ * <p>A mutable data source with a fixed row capacity that is intended for
+ * streaming data like time series. Rows are appended until the capacity is
+ * reached. After that, every appended row replaces the oldest row in
+ * constant time, while the row indexes stay contiguous, i.e. the oldest row
+ * always has the index {@code 0}.</p>
+ *
+ * <p>Listeners are notified of rows that replace old rows with a single
+ * update notification that contains one event per column. The events cover
+ * all rows and report the number of discarded rows as
+ * {@link DataChangeEvent#getShift() shift}. Cached statistics are updated
+ * with the discarded and appended values instead of being calculated
+ * again.</p>
+ *
+ * <p>Values of the column types {@code Double}, {@code Float}, {@code Long},
+ * and {@code Integer} are stored in primitive arrays.</p>
+ *
+ * <p>Values can be read and changed from multiple threads, see
+ * {@link AbstractDataSource} for details.</p>
+ *
+ * @see DataTable
+ * @see MutableDataSource
+ */
+public class RingBufferDataTable extends AbstractDataSource implements MutableDataSource {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = 3125318920167412585L;
+
+	/** Maximal number of rows. */
+	private final int capacity;
+	/** Values of each column. */
+	private final ColumnBuffer[] columns;
+	/** Position of the oldest row in the column buffers. */
+	private int head;
+
+	/**
+	 * Initializes a new instance with the specified capacity, number of
+	 * columns, and column types.
+	 * @param capacity Maximal number of rows.
+	 * @param types Type for each column
+	 */
+	public RingBufferDataTable(int capacity, Class<? extends Comparable<?>>... types) {
+		super(types);
+		if (capacity < 1) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Invalid capacity: {0,number,integer}. The capacity must be at least 1.", //$NON-NLS-1$
+				capacity));
+		}
+		this.capacity = capacity;
+		columns = new ColumnBuffer[types.length];
+		for (int colIndex = 0; colIndex < types.length; colIndex++) {
+			columns[colIndex] = ColumnBuffer.create(types[colIndex], capacity);
+		}
+	}
+
+	/**
+	 * Initializes a new instance with the specified capacity, and the column
+	 * types and data of another data source. If the data source contains more
+	 * rows than the capacity, only the last rows are copied.
+	 * @param capacity Maximal number of rows.
+	 * @param source Data source to clone.
+	 */
+	public RingBufferDataTable(int capacity, DataSource source) {
+		this(capacity, source.getColumnTypes());
+		int rowCount = source.getRowCount();
+		for (int rowIndex = Math.max(0, rowCount - capacity); rowIndex < rowCount; rowIndex++) {
+			for (int colIndex = 0; colIndex < columns.length; colIndex++) {
+				columns[colIndex].add(source.get(colIndex, rowIndex));
+			}
+		}
+	}
+
+	/**
+	 * Returns the maximal number of rows this table can store.
+	 * @return Maximal number of rows.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns whether the table contains as many rows as its capacity. If
+	 * the table is full, every added row replaces the oldest row.
+	 * @return {@code true} if the table is full, otherwise {@code false}.
+	 */
+	public boolean isFull() {
+		return getRowCount() == capacity;
+	}
+
+	/**
+	 * Adds a row with the specified comparable values to the table. If the
+	 * table is full, the oldest row is discarded. The values are added in
+	 * the order they are specified. If the types of the table columns and
+	 * the values do not match, an {@code IllegalArgumentException} is thrown.
+	 * @param values values to be added as a row
+	 * @return Index of the row that has been added.
+	 */
+	public int add(Comparable<?>... values) {
+		return add(Arrays.asList(values));
+	}
+
+	/**
+	 * Adds a row with the specified container's elements to the table. If
+	 * the table is full, the oldest row is discarded. The values are added in
+	 * the order they are specified. If the types of the table columns and
+	 * the values do not match, an {@code IllegalArgumentException} is thrown.
+	 * @param values values to be added as a row
+	 * @return Index of the row that has been added.
+	 */
+	public int add(List<? extends Comparable<?>> values) {
+		checkRow(values, getColumnTypes());
+
+		DataChangeEvent[] events = null;
+		int rowIndex;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			double[][] discarded = isFull() ? getDiscarded(1) : null;
+			boolean shifted = append(values);
+			rowIndex = getRowCount() - 1;
+			if (!shifted) {
+				events = new DataChangeEvent[columns.length];
+				for (int colIndex = 0; colIndex < columns.length; colIndex++) {
+					events[colIndex] = new DataChangeEvent(
+						this, colIndex, rowIndex, null, values.get(colIndex));
+				}
+			}
+			if (events != null) {
+				notifyDataAdded(events);
+			} else {
+				notifyRowsShifted(rowIndex + 1, 1, discarded, 1);
+			}
+		} finally {
+			lock.unlock();
+		}
+		return rowIndex;
+	}
+
+	/**
+	 * Adds all specified rows to the table at once. If the table becomes
+	 * full, the oldest rows are discarded. All rows are validated before any
+	 * of them is added, and listeners are notified only once. If the types
+	 * of the table columns and the values do not match, an
+	 * {@code IllegalArgumentException} is thrown and no row is added.
+	 * @param rows Rows to be added.
+	 * @return Index of the first row that has been added and is still
+	 *         stored in the table.
+	 */
+	public int addAll(Iterable<? extends List<? extends Comparable<?>>> rows) {
+		Class<? extends Comparable<?>>[] types = getColumnTypes();
+		List<List<? extends Comparable<?>>> validRows = new ArrayList<>();
+		for (List<? extends Comparable<?>> values : rows) {
+			checkRow(values, types);
+			validRows.add(values);
+		}
+
+		int rowCount;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			int rowIndex = getRowCount();
+			// Only rows that existed before are reported as discarded. Rows
+			// of this call that are overwritten again are never reported.
+			int shift = Math.min(rowIndex, Math.max(0, rowIndex + validRows.size() - capacity));
+			double[][] discarded = (shift > 0) ? getDiscarded(shift) : null;
+			for (List<? extends Comparable<?>> values : validRows) {
+				append(values);
+			}
+			rowCount = getRowCount();
+			int appended = rowCount - (rowIndex - shift);
+			if (shift > 0) {
+				notifyRowsShifted(rowCount, shift, discarded, appended);
+			} else if (appended > 0) {
+				notifyRowsAdded(rowIndex, appended);
+			}
+		} finally {
+			lock.unlock();
+		}
+		return rowCount - Math.min(validRows.size(), capacity);
+	}
+
+	/**
+	 * Adds the specified row to the table. If the table is full, the oldest
+	 * row is discarded. The values are added in the order they are
+	 * specified. If the types of the table columns and the values do not
+	 * match, an {@code IllegalArgumentException} is thrown.
+	 * @param row Row to be added
+	 * @return Index of the row that has been added.
+	 */
+	public int add(Row row) {
+		List<Comparable<?>> values;
+		synchronized (row) {
+			values = new ArrayList<>(row.size());
+			for (Comparable<?> value : row) {
+				values.add(value);
+			}
+		}
+		return add(values);
+	}
+
+	/**
+	 * Appends the specified values without notifying listeners. If the
+	 * table is full, the oldest row is overwritten.
+	 * @param values Values of the new row.
+	 * @return {@code true} if the oldest row has been discarded,
+	 *         otherwise {@code false}.
+	 */
+	private boolean append(List<? extends Comparable<?>> values) {
+		if (!isFull()) {
+			for (int colIndex = 0; colIndex < columns.length; colIndex++) {
+				columns[colIndex].add(values.get(colIndex));
+			}
+			return false;
+		}
+		for (int colIndex = 0; colIndex < columns.length; colIndex++) {
+			columns[colIndex].set(head, values.get(colIndex));
+		}
+		head = (head + 1) % capacity;
+		return true;
+	}
+
+	/**
+	 * Returns the numeric values of the oldest rows for all columns whose
+	 * statistics are cached, so the statistics can be updated after the
+	 * rows have been overwritten.
+	 * @param count Number of rows.
+	 * @return Values of each column, or {@code null} for columns without
+	 *         cached statistics.
+	 */
+	private double[][] getDiscarded(int count) {
+		double[][] discarded = new double[columns.length][];
+		for (int colIndex = 0; colIndex < columns.length; colIndex++) {
+			if (!hasStatistics(colIndex)) {
+				continue;
+			}
+			discarded[colIndex] = new double[count];
+			for (int row = 0; row < count; row++) {
+				discarded[colIndex][row] = columns[colIndex].getDouble(toIndex(row));
+			}
+		}
+		return discarded;
+	}
+
+	/**
+	 * Checks whether the specified values can be added as a row to this
+	 * table. An {@code IllegalArgumentException} is thrown if the number of
+	 * values or their types don't match the columns.
+	 * @param values Values of a row.
+	 * @param types Data types of all columns.
+	 */
+	private static void checkRow(List<? extends Comparable<?>> values,
+			Class<? extends Comparable<?>>[] types) {
+		if (values.size() != types.length) {
+			throw new IllegalArgumentException(MessageFormat.format(
+					"Wrong number of columns! Expected {0,number,integer}, got {1,number,integer}.", //$NON-NLS-1$
+					types.length, values.size()));
+		}
+
+		// Check row data types
+		for (int colIndex = 0; colIndex < values.size(); colIndex++) {
+			Comparable<?> value = values.get(colIndex);
+			if ((value != null)
+					&& !(types[colIndex].isAssignableFrom(value.getClass()))) {
+				throw new IllegalArgumentException(MessageFormat.format(
+						"Wrong column type! Expected {0}, got {1}.", //$NON-NLS-1$
+						types[colIndex], value.getClass()));
+			}
+		}
+	}
+
+	/**
+	 * Returns the position of the specified row in the column buffers.
+	 * @param row Row index.
+	 * @return Position in the column buffers.
+	 */
+	private int toIndex(int row) {
+		int index = head + row;
+		return (index < capacity) ? index : index - capacity;
+	}
+
+	/**
+	 * Throws an exception if the specified row index is out of bounds.
+	 * @param row Row index to be checked.
+	 */
+	private void checkIndex(int row) {
+		int rowCount = getRowCount();
+		if (row < 0 || row >= rowCount) {
+			throw new IndexOutOfBoundsException(MessageFormat.format(
+				"Row {0,number,integer} is out of bounds [0, {1,number,integer}).", //$NON-NLS-1$
+				row, rowCount));
+		}
+	}
+
+	/**
+	 * Moves the oldest row to the start of the column buffers, so that row
+	 * indexes and positions in the column buffers are equal.
+	 */
+	private void linearize() {
+		if (head == 0) {
+			return;
+		}
+		int rowCount = getRowCount();
+		int[] order = new int[rowCount];
+		for (int row = 0; row < rowCount; row++) {
+			order[row] = toIndex(row);
+		}
+		for (ColumnBuffer column : columns) {
+			column.permute(order);
+		}
+		head = 0;
+	}
+
+	/**
+	 * Removes a specified row from the table. All following rows are moved
+	 * to the front.
+	 * @param row Index of the row to remove
+	 */
+	public void remove(int row) {
+		DataChangeEvent[] events;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			events = removeRow(row);
+			notifyDataRemoved(events);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the last row from the table.
+	 */
+	public void removeLast() {
+		DataChangeEvent[] events;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			events = removeRow(getRowCount() - 1);
+			notifyDataRemoved(events);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes a specified row without notifying listeners. The write lock
+	 * must be held by the caller.
+	 * @param row Index of the row to remove
+	 * @return Events that describe the removed values.
+	 */
+	private DataChangeEvent[] removeRow(int row) {
+		linearize();
+		DataChangeEvent[] events = new DataChangeEvent[columns.length];
+		for (int col = 0; col < events.length; col++) {
+			events[col] = new DataChangeEvent(this, col, row, columns[col].get(row), null);
+			columns[col].remove(row);
+		}
+		return events;
+	}
+
+	/**
+	 * Deletes all rows this table contains.
+	 */
+	public void clear() {
+		DataChangeEvent[] events;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			int cols = getColumnCount();
+			int rows = getRowCount();
+			events = new DataChangeEvent[cols*rows];
+			for (int row = 0; row < rows; row++) {
+				for (int col = 0; col < cols; col++) {
+					events[col + row*cols] = new DataChangeEvent(
+						this, col, row, columns[col].get(toIndex(row)), null);
+				}
+			}
+			for (ColumnBuffer column : columns) {
+				column.clear();
+			}
+			head = 0;
+			notifyDataRemoved(events);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the row with the specified index.
+	 * @param col index of the column to return
+	 * @param row index of the row to return
+	 * @return the specified value of the data cell
+	 */
+	public Comparable<?> get(int col, int row) {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			if (row < 0 || row >= getRowCount()) {
+				return null;
+			}
+			return columns[col].get(toIndex(row));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the value with the specified row and column index as a
+	 * primitive {@code double}. Values of numeric columns are returned
+	 * without boxing.
+	 * @param col index of the column to return
+	 * @param row index of the row to return
+	 * @return the specified value of the data cell, or {@code NaN} if the
+	 *         cell is empty or not numeric
+	 */
+	@Override
+	public double getDouble(int col, int row) {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			if (row < 0 || row >= getRowCount()) {
+				return Double.NaN;
+			}
+			return columns[col].getDouble(toIndex(row));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void getDoubles(int col, int row, double[] values, int offset, int length) {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			checkRows(row, length, getRowCount());
+			if (length == 0) {
+				return;
+			}
+			// The rows may wrap around the end of the column buffer
+			int index = toIndex(row);
+			int lengthFirst = Math.min(length, capacity - index);
+			columns[col].getDoubles(index, values, offset, lengthFirst);
+			columns[col].getDoubles(0, values, offset + lengthFirst, length - lengthFirst);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Record getRecord(int row) {
+		Comparable<?>[] values = new Comparable<?>[columns.length];
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			checkIndex(row);
+			int index = toIndex(row);
+			for (int col = 0; col < values.length; col++) {
+				values[col] = columns[col].get(index);
+			}
+		} finally {
+			lock.unlock();
+		}
+		return new Record(values);
+	}
+
+
+	/**
+	 * Sets the value of a cell specified by its column and row indexes.
+	 * @param <T> Data type of the cell.
+	 * @param col Column of the cell to change.
+	 * @param row Row of the cell to change.
+	 * @param value New value to be set.
+	 * @return Old value that was replaced.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> Comparable<T> set(int col, int row, Comparable<T> value) {
+		Class<? extends Comparable<?>> type = getColumnTypes()[col];
+		if (value != null && !type.isAssignableFrom(value.getClass())) {
+			throw new IllegalArgumentException(MessageFormat.format(
+					"Wrong column type! Expected {0}, got {1}.", //$NON-NLS-1$
+					type, value.getClass()));
+		}
+		Comparable<T> old;
+		DataChangeEvent event = null;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			checkIndex(row);
+			int index = toIndex(row);
+			old = (Comparable<T>) columns[col].get(index);
+			if (old == null || !old.equals(value)) {
+				columns[col].set(index, value);
+				event = new DataChangeEvent(this, col, row, old, value);
+			}
+			if (event != null) {
+				notifyDataUpdated(event);
+			}
+		} finally {
+			lock.unlock();
+		}
+		return old;
+	}
+
+	/**
+	 * Returns the number of rows of the data source.
+	 * @return number of rows in the data source.
+	 */
+	public int getRowCount() {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			return columns.length > 0 ? columns[0].size() : 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Sorts the table rows with the specified DataComparators.
+	 * The row values are compared in the way the comparators are specified.
+	 * A permutation of the row indexes is sorted, and numeric columns are
+	 * compared without boxing their values. Listeners are notified with one
+	 * update event per column that covers all rows.
+	 * @param comparators comparators used for sorting
+	 */
+	public void sort(final DataComparator... comparators) {
+		int sortedRows;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			linearize();
+			int[] permutation = RowSorter.sort(this, comparators);
+			for (ColumnBuffer column : columns) {
+				column.permute(permutation);
+			}
+			sortedRows = getRowCount();
+			// All rows may have been moved
+			if (sortedRows > 0) {
+				notifyRowsShifted(sortedRows, 0);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns an immutable view of the current values. The arrays of the
+	 * column buffers are shared with the snapshot and are only copied when
+	 * stored values are changed afterwards, e.g. when the oldest rows are
+	 * overwritten.
+	 * @return Snapshot of the current values.
+	 */
+	@Override
+	public DataSource snapshot() {
+		long version = getVersion();
+		// Concurrent snapshots only mark the buffers as shared, so the read
+		// lock suffices
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			ColumnBuffer[] snapshots = new ColumnBuffer[columns.length];
+			for (int col = 0; col < columns.length; col++) {
+				snapshots[col] = columns[col].snapshot();
+			}
+			return new DataSnapshot(this, version, snapshots, head);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isSnapshotShared() {
+		return true;
+	}
+
+	@Override
+	protected boolean isStatisticsIncremental() {
+		return true;
+	}
+
+	@Override
+	public void setName(String name) {
+		super.setName(name);
+	}
+}
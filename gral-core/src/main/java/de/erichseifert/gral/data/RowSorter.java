@@ -0,0 +1,359 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import java.util.BitSet;
+import java.util.concurrent.RecursiveAction;
+
+import de.erichseifert.gral.data.comparators.Ascending;
+import de.erichseifert.gral.data.comparators.DataComparator;
+import de.erichseifert.gral.data.comparators.Descending;
+import de.erichseifert.gral.util.ConcurrencyUtils;
+
+/**
+ * <p>Utility class that sorts the rows of a data source by calculating a
+ * permutation of row indexes instead of moving the rows themselves. The
+ * values of numeric columns are compared as primitive {@code double}
+ * values if they are sorted using {@link Ascending} or {@link Descending}.
+ * Other comparators are applied to the records of the data source.</p>
+ *
+ * <p>The sort is stable. Large data sources are sorted in parallel, so
+ * custom comparators must be thread-safe.</p>
+ */
+final class RowSorter {
+	/** Minimal number of rows that are sorted in parallel. */
+	static final int PARALLEL_THRESHOLD = 1 << 14;
+	/** Maximal number of rows that are sorted using insertion sort. */
+	private static final int INSERTION_THRESHOLD = 32;
+
+	/**
+	 * Comparison of two rows identified by their indexes.
+	 */
+	interface RowComparator {
+		/**
+		 * Compares two rows.
+		 * @param row1 Index of the first row.
+		 * @param row2 Index of the second row.
+		 * @return A negative number if the first row is less than the second,
+		 *         zero if both rows are equal, or a positive number if the
+		 *         first row is greater.
+		 */
+		int compare(int row1, int row2);
+	}
+
+	/**
+	 * Comparison of the primitive values of a numeric column. Empty cells
+	 * are larger than all other values, like in {@link Ascending}.
+	 */
+	private static final class NumericRowComparator implements RowComparator {
+		/** Values of all rows. */
+		private final double[] values;
+		/** Indexes of all empty cells, or {@code null} if there are none. */
+		private final BitSet nulls;
+		/** {@code 1} for ascending order, {@code -1} for descending order. */
+		private final int sign;
+
+		/**
+		 * Reads the values of a column.
+		 * @param data Data source.
+		 * @param col Column index.
+		 * @param rowCount Number of rows.
+		 * @param ascending {@code true} for ascending order.
+		 */
+		public NumericRowComparator(DataSource data, int col, int rowCount, boolean ascending) {
+			values = new double[rowCount];
+			BitSet nulls = null;
+			for (int row = 0; row < rowCount; row++) {
+				values[row] = data.getDouble(col, row);
+				// NaN can be a value as well as an empty cell
+				if (Double.isNaN(values[row]) && data.get(col, row) == null) {
+					if (nulls == null) {
+						nulls = new BitSet(rowCount);
+					}
+					nulls.set(row);
+				}
+			}
+			this.nulls = nulls;
+			sign = ascending ? 1 : -1;
+		}
+
+		@Override
+		public int compare(int row1, int row2) {
+			if (nulls != null) {
+				boolean null1 = nulls.get(row1);
+				boolean null2 = nulls.get(row2);
+				if (null1 || null2) {
+					return sign*(null1 == null2 ? 0 : (null1 ? 1 : -1));
+				}
+			}
+			return sign*Double.compare(values[row1], values[row2]);
+		}
+	}
+
+	/**
+	 * Comparison of records using an arbitrary {@code DataComparator}.
+	 */
+	private static final class RecordRowComparator implements RowComparator {
+		/** Records of all rows. */
+		private final Record[] records;
+		/** Comparator that is applied to the records. */
+		private final DataComparator comparator;
+
+		/**
+		 * Initializes a new instance.
+		 * @param records Records of all rows.
+		 * @param comparator Comparator that is applied to the records.
+		 */
+		public RecordRowComparator(Record[] records, DataComparator comparator) {
+			this.records = records;
+			this.comparator = comparator;
+		}
+
+		@Override
+		public int compare(int row1, int row2) {
+			return comparator.compare(records[row1], records[row2]);
+		}
+	}
+
+	/**
+	 * Comparison that applies several comparisons one after another until
+	 * two rows differ.
+	 */
+	private static final class CompositeRowComparator implements RowComparator {
+		/** Comparisons in the order of their priority. */
+		private final RowComparator[] comparators;
+
+		/**
+		 * Initializes a new instance.
+		 * @param comparators Comparisons in the order of their priority.
+		 */
+		public CompositeRowComparator(RowComparator[] comparators) {
+			this.comparators = comparators;
+		}
+
+		@Override
+		public int compare(int row1, int row2) {
+			for (RowComparator comparator : comparators) {
+				int result = comparator.compare(row1, row2);
+				if (result != 0) {
+					return result;
+				}
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * Task that sorts a range of indexes by sorting both halves in parallel
+	 * and merging them afterwards.
+	 */
+	private static final class SortTask extends RecursiveAction {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = 8457813853711012434L;
+
+		/** Indexes to be sorted. */
+		private final int[] order;
+		/** Temporary storage that is used for merging. */
+		private final int[] buffer;
+		/** Start of the range (inclusive). */
+		private final int from;
+		/** End of the range (exclusive). */
+		private final int to;
+		/** Comparison of rows. */
+		private final RowComparator comparator;
+
+		/**
+		 * Initializes a new task.
+		 * @param order Indexes to be sorted.
+		 * @param buffer Temporary storage that is used for merging.
+		 * @param from Start of the range (inclusive).
+		 * @param to End of the range (exclusive).
+		 * @param comparator Comparison of rows.
+		 */
+		public SortTask(int[] order, int[] buffer, int from, int to, RowComparator comparator) {
+			this.order = order;
+			this.buffer = buffer;
+			this.from = from;
+			this.to = to;
+			this.comparator = comparator;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= PARALLEL_THRESHOLD) {
+				sort(order, buffer, from, to, comparator);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new SortTask(order, buffer, from, mid, comparator),
+				new SortTask(order, buffer, mid, to, comparator));
+			merge(order, buffer, from, mid, to, comparator);
+		}
+	}
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private RowSorter() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns the indexes of all rows of a data source in sorted order. The
+	 * data source must not be changed while the values are read.
+	 * @param data Data source.
+	 * @param comparators Comparators in the order of their priority.
+	 * @return Indexes of all rows, so that row {@code order[i]} is moved to
+	 *         position {@code i}.
+	 */
+	public static int[] sort(DataSource data, DataComparator... comparators) {
+		int rowCount = data.getRowCount();
+		int[] order = new int[rowCount];
+		for (int row = 0; row < rowCount; row++) {
+			order[row] = row;
+		}
+		sort(order, createComparator(data, rowCount, comparators));
+		return order;
+	}
+
+	/**
+	 * Sorts the specified indexes. Large arrays are sorted in parallel.
+	 * @param order Indexes to be sorted.
+	 * @param comparator Comparison of rows.
+	 */
+	public static void sort(int[] order, RowComparator comparator) {
+		int[] buffer = new int[order.length];
+		if (order.length <= PARALLEL_THRESHOLD) {
+			sort(order, buffer, 0, order.length, comparator);
+		} else {
+			ConcurrencyUtils.getForkJoinPool().invoke(
+				new SortTask(order, buffer, 0, order.length, comparator));
+		}
+	}
+
+	/**
+	 * Creates a comparison of rows for the specified comparators.
+	 * @param data Data source.
+	 * @param rowCount Number of rows.
+	 * @param comparators Comparators in the order of their priority.
+	 * @return Comparison of rows.
+	 */
+	private static RowComparator createComparator(DataSource data, int rowCount,
+			DataComparator[] comparators) {
+		RowComparator[] rowComparators = new RowComparator[comparators.length];
+		Record[] records = null;
+		for (int i = 0; i < comparators.length; i++) {
+			DataComparator comparator = comparators[i];
+			Class<?> comparatorType = comparator.getClass();
+			int col = comparator.getColumn();
+			if ((comparatorType == Ascending.class || comparatorType == Descending.class)
+					&& isExactlyNumeric(data, col)) {
+				rowComparators[i] = new NumericRowComparator(
+					data, col, rowCount, comparatorType == Ascending.class);
+				continue;
+			}
+			if (records == null) {
+				records = new Record[rowCount];
+				for (int row = 0; row < rowCount; row++) {
+					records[row] = data.getRecord(row);
+				}
+			}
+			rowComparators[i] = new RecordRowComparator(records, comparator);
+		}
+		if (rowComparators.length == 1) {
+			return rowComparators[0];
+		}
+		return new CompositeRowComparator(rowComparators);
+	}
+
+	/**
+	 * Returns whether all values of the specified column can be compared
+	 * as {@code double} values without changing their order.
+	 * @param data Data source.
+	 * @param col Column index.
+	 * @return {@code true} if the column type can be represented exactly.
+	 */
+	private static boolean isExactlyNumeric(DataSource data, int col) {
+		if (col < 0 || col >= data.getColumnCount()) {
+			return false;
+		}
+		Class<?> type = data.getColumnTypes()[col];
+		return Double.class.equals(type) || Float.class.equals(type) ||
+			Integer.class.equals(type) || Short.class.equals(type) ||
+			Byte.class.equals(type);
+	}
+
+	/**
+	 * Sorts a range of indexes using a stable merge sort.
+	 * @param order Indexes to be sorted.
+	 * @param buffer Temporary storage that is used for merging.
+	 * @param from Start of the range (inclusive).
+	 * @param to End of the range (exclusive).
+	 * @param comparator Comparison of rows.
+	 */
+	private static void sort(int[] order, int[] buffer, int from, int to,
+			RowComparator comparator) {
+		if (to - from <= INSERTION_THRESHOLD) {
+			for (int i = from + 1; i < to; i++) {
+				int row = order[i];
+				int j = i;
+				while (j > from && comparator.compare(order[j - 1], row) > 0) {
+					order[j] = order[j - 1];
+					j--;
+				}
+				order[j] = row;
+			}
+			return;
+		}
+		int mid = (from + to) >>> 1;
+		sort(order, buffer, from, mid, comparator);
+		sort(order, buffer, mid, to, comparator);
+		merge(order, buffer, from, mid, to, comparator);
+	}
+
+	/**
+	 * Merges two adjacent sorted ranges of indexes.
+	 * @param order Indexes to be merged.
+	 * @param buffer Temporary storage that is used for merging.
+	 * @param from Start of the first range (inclusive).
+	 * @param mid End of the first range and start of the second range.
+	 * @param to End of the second range (exclusive).
+	 * @param comparator Comparison of rows.
+	 */
+	private static void merge(int[] order, int[] buffer, int from, int mid, int to,
+			RowComparator comparator) {
+		// Nothing to do if the ranges are already in order
+		if (comparator.compare(order[mid - 1], order[mid]) <= 0) {
+			return;
+		}
+		System.arraycopy(order, from, buffer, from, to - from);
+		int left = from;
+		int right = mid;
+		for (int i = from; i < to; i++) {
+			if (right >= to || (left < mid && comparator.compare(buffer[left], buffer[right]) <= 0)) {
+				order[i] = buffer[left++];
+			} else {
+				order[i] = buffer[right++];
+			}
+		}
+	}
+}
@@ -23,8 +23,11 @@ package de.erichseifert.gral.data;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 
 /**
  * <p>Abstract class that represents a view on several rows of a data source.
@@ -40,6 +43,15 @@ import java.util.List;
  *     }
  * };
  * </pre>
+ *
+ * <p>Changes of the original data source are processed incrementally: Only
+ * the rows that are described by the change events are tested again, and
+ * the indexes of the remaining rows are shifted when rows are removed.
+ * Listeners of the subset receive events with row indexes of the subset.
+ * If the original data source reports that its rows have been reordered,
+ * or if a change isn't described by events, all rows are tested again and
+ * listeners receive a single update event per column that covers all
+ * rows.</p>
  */
 public abstract class RowSubset extends AbstractDataSource
 		implements DataListener {
@@ -48,8 +60,14 @@ public abstract class RowSubset extends AbstractDataSource
 
 	/** Original data source. */
 	private final DataSource original;
-	/** List of row indexes that are stored in this filtered data source. */
-	private transient List<Integer> accepted;
+	/** Sorted row indexes of the original data source that are stored in
+	this filtered data source. Only the first {@code acceptedCount} elements
+	are used. */
+	private transient int[] accepted;
+	/** Number of accepted rows. */
+	private transient int acceptedCount;
+	/** Number of rows of the original data source that have been tested. */
+	private transient int originalRowCount;
 
 	/**
 	 * Creates a new instance with the specified data source.
@@ -57,7 +75,7 @@ public abstract class RowSubset extends AbstractDataSource
 	 */
 	@SuppressWarnings("unchecked")
 	public RowSubset(DataSource original) {
-		accepted = new ArrayList<>();
+		accepted = new int[ColumnBuffer.DEFAULT_CAPACITY];
 		this.original = original;
 		this.original.addDataListener(this);
 		dataUpdated(this.original);
@@ -65,8 +83,7 @@ public abstract class RowSubset extends AbstractDataSource
 
 	@Override
 	public Row getRow(int row) {
-		int rowOrig = accepted.get(row);
-		return original.getRow(rowOrig);
+		return original.getRow(toOriginalRow(row));
 	}
 
 	/**
@@ -76,8 +93,32 @@ public abstract class RowSubset extends AbstractDataSource
 	 * @return the specified value of the data cell
 	 */
 	public Comparable<?> get(int col, int row) {
-		int rowOrig = accepted.get(row);
-		return original.get(col, rowOrig);
+		return original.get(col, toOriginalRow(row));
+	}
+
+	@Override
+	public double getDouble(int col, int row) {
+		return original.getDouble(col, toOriginalRow(row));
+	}
+
+	/**
+	 * Returns the index of the specified row in the original data source.
+	 * @param row Row index in this data source.
+	 * @return Row index in the original data source.
+	 */
+	private int toOriginalRow(int row) {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			if (row < 0 || row >= acceptedCount) {
+				throw new IndexOutOfBoundsException(MessageFormat.format(
+					"Row {0,number,integer} is out of bounds [0, {1,number,integer}).", //$NON-NLS-1$
+					row, acceptedCount));
+			}
+			return accepted[row];
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	@Override
@@ -90,7 +131,13 @@ public abstract class RowSubset extends AbstractDataSource
 	 * @return number of rows in the data source.
 	 */
 	public int getRowCount() {
-		return accepted.size();
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			return acceptedCount;
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	@Override
@@ -107,8 +154,27 @@ public abstract class RowSubset extends AbstractDataSource
 	 *        have been added.
 	 */
 	public void dataAdded(DataSource source, DataChangeEvent... events) {
-		dataChanged(source, events);
-		notifyDataAdded(events);
+		List<DataChangeEvent> added = new ArrayList<>();
+		boolean updated = false;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			if (isAppended(events)) {
+				// Only the new rows at the end of the original have to be tested
+				int rowEnd = originalRowCount;
+				for (DataChangeEvent event : events) {
+					rowEnd = Math.max(rowEnd, event.getRow() + event.getRowCount());
+				}
+				acceptRows(originalRowCount, Math.min(rowEnd, original.getRowCount()));
+				translate(events, added);
+			} else {
+				update();
+				updated = true;
+			}
+			notifyChanges(updated, null, added, null);
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
@@ -120,8 +186,43 @@ public abstract class RowSubset extends AbstractDataSource
 	 *        have been added
 	 */
 	public void dataUpdated(DataSource source, DataChangeEvent... events) {
-		dataChanged(source, events);
-		notifyDataUpdated(events);
+		List<DataChangeEvent> removed = new ArrayList<>();
+		List<DataChangeEvent> added = new ArrayList<>();
+		List<DataChangeEvent> updated = new ArrayList<>();
+		boolean rescanned = false;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			int shift = getShift(events);
+			int rowCount = (shift > 0) ? events[0].getRowCount() : 0;
+			int kept = originalRowCount - shift;
+			if (shift > 0 && kept >= 0 && rowCount >= kept) {
+				// The oldest rows have been discarded and new rows appended
+				int removedCount = removeFirst(shift);
+				if (removedCount > 0) {
+					for (int col = 0; col < getColumnCount(); col++) {
+						removed.add(new DataChangeEvent(this, col, 0, removedCount));
+					}
+				}
+				int acceptedBefore = acceptedCount;
+				acceptRows(originalRowCount, Math.min(rowCount, original.getRowCount()));
+				if (acceptedCount > acceptedBefore) {
+					for (int col = 0; col < getColumnCount(); col++) {
+						added.add(new DataChangeEvent(this, col, acceptedBefore, acceptedCount - acceptedBefore));
+					}
+				}
+			} else if (events == null || events.length == 0 || containsRange(events)) {
+				update();
+				rescanned = true;
+			} else {
+				for (DataChangeEvent event : events) {
+					retest(event, removed, added, updated);
+				}
+			}
+			notifyChanges(rescanned, removed, added, updated);
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
@@ -133,33 +234,288 @@ public abstract class RowSubset extends AbstractDataSource
 	 *        have been removed.
 	 */
 	public void dataRemoved(DataSource source, DataChangeEvent... events) {
-		dataChanged(source, events);
-		notifyDataRemoved(events);
+		List<DataChangeEvent> removed = new ArrayList<>();
+		boolean updated = false;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			if (events == null || events.length == 0) {
+				update();
+				updated = true;
+			} else {
+				translate(events, removed);
+				removeRows(events);
+			}
+			notifyChanges(updated, removed, null, null);
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
-	 * Method that is invoked when data has been added, updated, or removed.
-	 * This method is invoked by objects that provide support for
-	 * {@code DataListener}s and should not be called manually.
-	 * @param source Data source that has been changed.
-	 * @param events Optional event object describing the data values that
-	 *        have been changed.
+	 * Notifies all listeners about translated changes. If all rows have been
+	 * tested again, a single update event per column is sent instead.
+	 * @param rescanned {@code true} if all rows have been tested again.
+	 * @param removed Events describing removed rows, or {@code null}.
+	 * @param added Events describing added rows, or {@code null}.
+	 * @param updated Events describing updated values, or {@code null}.
+	 */
+	private void notifyChanges(boolean rescanned, List<DataChangeEvent> removed,
+			List<DataChangeEvent> added, List<DataChangeEvent> updated) {
+		if (rescanned) {
+			notifyRowsShifted(getRowCount(), 0);
+			return;
+		}
+		if (removed != null && !removed.isEmpty()) {
+			notifyDataRemoved(removed.toArray(new DataChangeEvent[removed.size()]));
+		}
+		if (added != null && !added.isEmpty()) {
+			notifyDataAdded(added.toArray(new DataChangeEvent[added.size()]));
+		}
+		if (updated != null && !updated.isEmpty()) {
+			notifyDataUpdated(updated.toArray(new DataChangeEvent[updated.size()]));
+		}
+	}
+
+	/**
+	 * Returns whether the specified events only describe rows that have been
+	 * appended to the original data source since the last update.
+	 * @param events Event objects describing the added data values.
+	 * @return {@code true} if only rows have been appended.
+	 */
+	private boolean isAppended(DataChangeEvent... events) {
+		if (events == null || events.length == 0) {
+			return false;
+		}
+		for (DataChangeEvent event : events) {
+			if (event.getRow() < originalRowCount) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether the specified events contain range events.
+	 * @param events Event objects.
+	 * @return {@code true} if at least one event is a range event.
+	 */
+	private static boolean containsRange(DataChangeEvent[] events) {
+		for (DataChangeEvent event : events) {
+			if (event.isRange()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of discarded rows if the specified events only
+	 * describe that the oldest rows have been discarded and new rows have
+	 * been appended.
+	 * @param events Event objects describing the updated data values.
+	 * @return Number of discarded rows, or {@code 0} if the events describe
+	 *         a different change.
+	 */
+	private static int getShift(DataChangeEvent[] events) {
+		if (events == null || events.length == 0) {
+			return 0;
+		}
+		int shift = events[0].getShift();
+		for (DataChangeEvent event : events) {
+			if (!event.isRange() || event.getRow() != 0 || event.getShift() != shift) {
+				return 0;
+			}
+		}
+		return shift;
+	}
+
+	/**
+	 * Returns the position of the first accepted row that is greater than or
+	 * equal to the specified row of the original data source.
+	 * @param row Row index in the original data source.
+	 * @return Position in the array of accepted rows.
 	 */
-	private void dataChanged(DataSource source, DataChangeEvent... events) {
-		update();
+	private int lowerBound(int row) {
+		int index = Arrays.binarySearch(accepted, 0, acceptedCount, row);
+		return (index >= 0) ? index : -index - 1;
 	}
 
 	/**
-	 * Updates the list of accepted rows.
+	 * Translates events of the original data source into events of this
+	 * data source. Only accepted rows are considered.
+	 * @param events Event objects of the original data source.
+	 * @param translated List the translated events are added to.
+	 */
+	private void translate(DataChangeEvent[] events, List<DataChangeEvent> translated) {
+		for (DataChangeEvent event : events) {
+			if (event.isRange()) {
+				int from = lowerBound(event.getRow());
+				int to = lowerBound(event.getRow() + event.getRowCount());
+				if (to > from) {
+					translated.add(new DataChangeEvent(this, event.getCol(), from, to - from));
+				}
+				continue;
+			}
+			int position = Arrays.binarySearch(accepted, 0, acceptedCount, event.getRow());
+			if (position >= 0) {
+				translated.add(translate(event, position));
+			}
+		}
+	}
+
+	/**
+	 * Creates a copy of a single value event with a row index of this data
+	 * source.
+	 * @param event Event object of the original data source.
+	 * @param row Row index in this data source.
+	 * @return Translated event object.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private DataChangeEvent translate(DataChangeEvent event, int row) {
+		Comparable valueOld = event.getOld();
+		Comparable valueNew = event.getNew();
+		return new DataChangeEvent(this, event.getCol(), row, valueOld, valueNew);
+	}
+
+	/**
+	 * Tests a row whose value has changed again and updates the array of
+	 * accepted rows.
+	 * @param event Event object describing the changed value.
+	 * @param removed List of events describing removed rows.
+	 * @param added List of events describing added rows.
+	 * @param updated List of events describing updated values.
+	 */
+	private void retest(DataChangeEvent event, List<DataChangeEvent> removed,
+			List<DataChangeEvent> added, List<DataChangeEvent> updated) {
+		int row = event.getRow();
+		int position = Arrays.binarySearch(accepted, 0, acceptedCount, row);
+		boolean wasAccepted = position >= 0;
+		boolean isAccepted = accept(original.getRow(row));
+		if (wasAccepted && isAccepted) {
+			updated.add(translate(event, position));
+		} else if (wasAccepted) {
+			for (int col = 0; col < getColumnCount(); col++) {
+				Comparable<?> valueOld = (col == event.getCol()) ? event.getOld() : original.get(col, row);
+				removed.add(new DataChangeEvent(this, col, position, valueOld, null));
+			}
+			System.arraycopy(accepted, position + 1, accepted, position, acceptedCount - position - 1);
+			acceptedCount--;
+		} else if (isAccepted) {
+			position = -position - 1;
+			insert(position, row);
+			for (int col = 0; col < getColumnCount(); col++) {
+				added.add(new DataChangeEvent(this, col, position, null, original.get(col, row)));
+			}
+		}
+	}
+
+	/**
+	 * Removes the specified rows and shifts the indexes of all following
+	 * accepted rows. No row has to be tested again.
+	 * @param events Event objects describing the removed rows with their
+	 *        indexes before the removal.
+	 */
+	private void removeRows(DataChangeEvent[] events) {
+		int[] removedRows = getRows(events);
+		int removedIndex = 0;
+		int count = 0;
+		for (int i = 0; i < acceptedCount; i++) {
+			int row = accepted[i];
+			while (removedIndex < removedRows.length && removedRows[removedIndex] < row) {
+				removedIndex++;
+			}
+			if (removedIndex < removedRows.length && removedRows[removedIndex] == row) {
+				continue;
+			}
+			accepted[count++] = row - removedIndex;
+		}
+		acceptedCount = count;
+		originalRowCount -= removedRows.length;
+	}
+
+	/**
+	 * Removes the specified number of rows from the start of the original
+	 * data source and shifts the indexes of all following accepted rows.
+	 * @param rowCount Number of discarded rows.
+	 * @return Number of accepted rows that have been removed.
+	 */
+	private int removeFirst(int rowCount) {
+		int removedCount = lowerBound(rowCount);
+		for (int i = removedCount; i < acceptedCount; i++) {
+			accepted[i - removedCount] = accepted[i] - rowCount;
+		}
+		acceptedCount -= removedCount;
+		originalRowCount -= rowCount;
+		return removedCount;
+	}
+
+	/**
+	 * Returns the distinct row indexes that are described by the specified
+	 * events in ascending order.
+	 * @param events Event objects.
+	 * @return Sorted row indexes.
+	 */
+	private static int[] getRows(DataChangeEvent[] events) {
+		int size = 0;
+		for (DataChangeEvent event : events) {
+			size += event.getRowCount();
+		}
+		int[] rows = new int[size];
+		int index = 0;
+		for (DataChangeEvent event : events) {
+			for (int i = 0; i < event.getRowCount(); i++) {
+				rows[index++] = event.getRow() + i;
+			}
+		}
+		Arrays.sort(rows);
+		int distinct = 0;
+		for (int i = 0; i < rows.length; i++) {
+			if (distinct == 0 || rows[i] != rows[distinct - 1]) {
+				rows[distinct++] = rows[i];
+			}
+		}
+		return Arrays.copyOf(rows, distinct);
+	}
+
+	/**
+	 * Inserts a row index at the specified position of the array of
+	 * accepted rows.
+	 * @param position Position in the array.
+	 * @param row Row index in the original data source.
+	 */
+	private void insert(int position, int row) {
+		if (acceptedCount == accepted.length) {
+			accepted = Arrays.copyOf(accepted, acceptedCount + (acceptedCount >> 1) + 1);
+		}
+		System.arraycopy(accepted, position, accepted, position + 1, acceptedCount - position);
+		accepted[position] = row;
+		acceptedCount++;
+	}
+
+	/**
+	 * Updates the array of accepted rows by testing all rows again.
 	 */
 	private void update() {
-		accepted.clear();
-		for (int rowIndex = 0; rowIndex < original.getRowCount(); rowIndex++) {
+		acceptedCount = 0;
+		originalRowCount = 0;
+		acceptRows(0, original.getRowCount());
+	}
+
+	/**
+	 * Tests the specified range of rows of the original data source and
+	 * appends the indexes of all accepted rows.
+	 * @param rowStart Index of the first row to be tested.
+	 * @param rowEnd Index after the last row to be tested.
+	 */
+	private void acceptRows(int rowStart, int rowEnd) {
+		for (int rowIndex = rowStart; rowIndex < rowEnd; rowIndex++) {
 			Row row = original.getRow(rowIndex);
 			if (accept(row)) {
-				accepted.add(rowIndex);
+				insert(acceptedCount, rowIndex);
 			}
 		}
+		originalRowCount = Math.max(originalRowCount, rowEnd);
 	}
 
 	/**
@@ -182,7 +538,7 @@ public abstract class RowSubset extends AbstractDataSource
 		in.defaultReadObject();
 
 		// Handle transient fields
-		accepted = new ArrayList<>();
+		accepted = new int[ColumnBuffer.DEFAULT_CAPACITY];
 
 		// Update caches
 		dataUpdated(original);
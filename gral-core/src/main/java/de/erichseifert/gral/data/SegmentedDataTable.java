@@ -0,0 +1,1082 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import java.io.Serializable;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+import de.erichseifert.gral.data.comparators.DataComparator;
+
+/**
+ * <p>A mutable data source for very large tables that stores its rows in
+ * chunks of a fixed size. Each chunk stores the values column by column,
+ * numeric columns in primitive arrays. Appending rows never copies existing
+ * values, because a new chunk is started when the last one is full.</p>
+ *
+ * <p>Removed rows are only marked as deleted, so removing rows never copies
+ * values. Chunks without any remaining rows are released immediately. The
+ * values of deleted rows in all other chunks are kept until the chunks are
+ * compacted explicitly using {@link #compact()}, e.g. periodically from a
+ * background thread. {@link #removeFirst(int)} discards the oldest rows,
+ * which releases whole chunks without copying anything. This is useful for
+ * time series that only keep a certain time window.</p>
+ *
+ * <p>Values can be read and changed from multiple threads, see
+ * {@link AbstractDataSource} for details.</p>
+ *
+ * @see DataTable
+ * @see NumericDataTable
+ * @see MutableDataSource
+ */
+public class SegmentedDataTable extends AbstractDataSource implements MutableDataSource {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = -5735043914311658229L;
+
+	/** Number of rows per chunk that is used when no size is specified. */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+	/** Maximal number of rows per chunk. */
+	private final int chunkSize;
+	/** Chunks that store the rows in their order. */
+	private final List<Chunk> chunks;
+	/** Index of the first row of each chunk. */
+	private int[] offsets;
+	/** Number of rows that haven't been deleted. */
+	private int rowCount;
+
+	/**
+	 * Part of the table that stores a limited number of consecutive rows.
+	 */
+	private static final class Chunk implements Serializable {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = 4914796734129578330L;
+
+		/** Values of each column. */
+		private final ColumnBuffer[] columns;
+		/** Number of stored rows including deleted rows. */
+		private int size;
+		/** Positions of all deleted rows as bits of 64-bit words, or
+		{@code null} if there are none. */
+		private long[] deleted;
+		/** Number of deleted rows before each word of {@code deleted}. */
+		private int[] deletedBefore;
+		/** Number of deleted rows. */
+		private int deletedCount;
+
+		/**
+		 * Creates a new empty chunk.
+		 * @param types Data types of all columns.
+		 * @param capacity Initial capacity of each column.
+		 */
+		public Chunk(Class<?>[] types, int capacity) {
+			columns = new ColumnBuffer[types.length];
+			for (int col = 0; col < types.length; col++) {
+				columns[col] = ColumnBuffer.create(types[col], capacity);
+			}
+		}
+
+		/**
+		 * Creates a chunk with the specified values.
+		 * @param columns Values of each column.
+		 * @param size Number of stored rows including deleted rows.
+		 * @param deleted Positions of all deleted rows, or {@code null}.
+		 * @param deletedBefore Number of deleted rows before each word of
+		 *        {@code deleted}, or {@code null}.
+		 * @param deletedCount Number of deleted rows.
+		 */
+		private Chunk(ColumnBuffer[] columns, int size, long[] deleted,
+				int[] deletedBefore, int deletedCount) {
+			this.columns = columns;
+			this.size = size;
+			this.deleted = deleted;
+			this.deletedBefore = deletedBefore;
+			this.deletedCount = deletedCount;
+		}
+
+		/**
+		 * Returns the number of rows that haven't been deleted.
+		 * @return Number of remaining rows.
+		 */
+		public int getLiveCount() {
+			return size - deletedCount;
+		}
+
+		/**
+		 * Returns the storage position of the row with the specified index.
+		 * Only rows that haven't been deleted are counted. The word that
+		 * contains the row is found with a binary search of the number of
+		 * deleted rows before each word.
+		 * @param index Index of the row in this chunk.
+		 * @return Storage position.
+		 */
+		public int toPosition(int index) {
+			if (deleted == null) {
+				return index;
+			}
+			int words = deleted.length;
+			if (index >= (words << 6) - deletedCount) {
+				// Rows after the last word haven't been deleted
+				return index + deletedCount;
+			}
+			int low = 0;
+			int high = words - 1;
+			while (low < high) {
+				int mid = (low + high + 1) >>> 1;
+				if ((mid << 6) - deletedBefore[mid] <= index) {
+					low = mid;
+				} else {
+					high = mid - 1;
+				}
+			}
+			long live = ~deleted[low];
+			for (int skip = index - (low << 6) + deletedBefore[low]; skip > 0; skip--) {
+				live &= live - 1L;
+			}
+			return (low << 6) + Long.numberOfTrailingZeros(live);
+		}
+
+		/**
+		 * Returns whether the row at the specified storage position has been
+		 * deleted.
+		 * @param position Storage position.
+		 * @return {@code true} if the row has been deleted.
+		 */
+		public boolean isDeleted(int position) {
+			int word = position >>> 6;
+			return deleted != null && word < deleted.length
+				&& (deleted[word] & (1L << position)) != 0L;
+		}
+
+		/**
+		 * Returns the storage position of the next deleted row.
+		 * @param position Storage position to start from.
+		 * @return Storage position of the next deleted row, or the number of
+		 *         stored rows if there is none.
+		 */
+		private int nextDeleted(int position) {
+			if (deleted == null) {
+				return size;
+			}
+			int word = position >>> 6;
+			if (word >= deleted.length) {
+				return size;
+			}
+			long bits = deleted[word] & (-1L << position);
+			while (bits == 0L) {
+				if (++word >= deleted.length) {
+					return size;
+				}
+				bits = deleted[word];
+			}
+			return (word << 6) + Long.numberOfTrailingZeros(bits);
+		}
+
+		/**
+		 * Returns the storage position of the next row that hasn't been
+		 * deleted.
+		 * @param position Storage position to start from.
+		 * @return Storage position of the next remaining row.
+		 */
+		private int nextLive(int position) {
+			if (deleted == null) {
+				return position;
+			}
+			int word = position >>> 6;
+			if (word >= deleted.length) {
+				return position;
+			}
+			long bits = ~deleted[word] & (-1L << position);
+			while (bits == 0L) {
+				if (++word >= deleted.length) {
+					return word << 6;
+				}
+				bits = ~deleted[word];
+			}
+			return (word << 6) + Long.numberOfTrailingZeros(bits);
+		}
+
+		/**
+		 * Copies the values of consecutive remaining rows of the specified
+		 * column as primitive {@code double} values. Runs of rows that
+		 * haven't been deleted are copied at once.
+		 * @param col Column index.
+		 * @param index Index of the first row in this chunk.
+		 * @param values Array that receives the values.
+		 * @param offset Index of the first element in the array.
+		 * @param length Number of rows.
+		 */
+		public void getDoubles(int col, int index, double[] values, int offset, int length) {
+			int position = toPosition(index);
+			while (length > 0) {
+				position = nextLive(position);
+				int count = Math.min(length, nextDeleted(position) - position);
+				columns[col].getDoubles(position, values, offset, count);
+				position += count;
+				offset += count;
+				length -= count;
+			}
+		}
+
+		/**
+		 * Appends a row.
+		 * @param values Values of the row.
+		 */
+		public void add(List<? extends Comparable<?>> values) {
+			for (int col = 0; col < columns.length; col++) {
+				columns[col].add(values.get(col));
+			}
+			size++;
+		}
+
+		/**
+		 * Marks the row at the specified storage position as deleted.
+		 * @param position Storage position.
+		 */
+		public void delete(int position) {
+			int word = setDeleted(position);
+			deletedCount++;
+			for (int i = word + 1; i < deletedBefore.length; i++) {
+				deletedBefore[i]++;
+			}
+		}
+
+		/**
+		 * Marks the specified number of rows at the beginning of the chunk
+		 * as deleted.
+		 * @param count Number of rows.
+		 */
+		public void deleteFirst(int count) {
+			int position = 0;
+			for (int i = 0; i < count; i++) {
+				position = nextLive(position);
+				setDeleted(position);
+				deletedCount++;
+			}
+			// The counts are calculated once for all deleted rows
+			int before = 0;
+			for (int word = 0; word < deleted.length; word++) {
+				deletedBefore[word] = before;
+				before += Long.bitCount(deleted[word]);
+			}
+		}
+
+		/**
+		 * Sets the bit of a deleted row. The number of deleted rows before
+		 * each word has to be updated by the caller.
+		 * @param position Storage position.
+		 * @return Index of the word that contains the bit.
+		 */
+		private int setDeleted(int position) {
+			int word = position >>> 6;
+			if (deleted == null) {
+				deleted = new long[(size + 63) >>> 6];
+				deletedBefore = new int[deleted.length];
+			} else if (word >= deleted.length) {
+				// Rows have been added since the words were allocated
+				int length = deleted.length;
+				deleted = Arrays.copyOf(deleted, (size + 63) >>> 6);
+				deletedBefore = Arrays.copyOf(deletedBefore, deleted.length);
+				Arrays.fill(deletedBefore, length, deletedBefore.length, deletedCount);
+			}
+			deleted[word] |= 1L << position;
+			return word;
+		}
+
+		/**
+		 * Removes all deleted rows from the buffers.
+		 */
+		public void compact() {
+			if (deletedCount == 0) {
+				return;
+			}
+			// Move remaining rows to the front and deleted rows to the end
+			int[] order = new int[size];
+			int live = 0;
+			int dead = getLiveCount();
+			for (int position = 0; position < size; position++) {
+				if (isDeleted(position)) {
+					order[dead++] = position;
+				} else {
+					order[live++] = position;
+				}
+			}
+			for (ColumnBuffer column : columns) {
+				column.permute(order);
+				for (int i = 0; i < deletedCount; i++) {
+					column.remove(column.size() - 1);
+				}
+			}
+			size = live;
+			deleted = null;
+			deletedBefore = null;
+			deletedCount = 0;
+		}
+
+		/**
+		 * Returns a copy of this chunk that shares the arrays of values.
+		 * @return Copy of the chunk.
+		 * @see ColumnBuffer#snapshot()
+		 */
+		public Chunk snapshot() {
+			ColumnBuffer[] snapshots = new ColumnBuffer[columns.length];
+			for (int col = 0; col < columns.length; col++) {
+				snapshots[col] = columns[col].snapshot();
+			}
+			if (deleted == null) {
+				return new Chunk(snapshots, size, null, null, 0);
+			}
+			return new Chunk(snapshots, size, deleted.clone(), deletedBefore.clone(),
+				deletedCount);
+		}
+	}
+
+	/**
+	 * Immutable copy of a segmented table that shares the arrays of values
+	 * with the table.
+	 */
+	private static final class Snapshot extends AbstractDataSource {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = -2375917806133596618L;
+
+		/** Version of the original data source. */
+		private final long version;
+		/** Copies of all chunks. */
+		private final Chunk[] chunks;
+		/** Index of the first row of each chunk. */
+		private final int[] offsets;
+		/** Number of rows. */
+		private final int rowCount;
+
+		/**
+		 * Initializes a new snapshot.
+		 * @param source Original table.
+		 * @param version Version of the original table.
+		 * @param chunks Copies of all chunks.
+		 * @param offsets Index of the first row of each chunk.
+		 * @param rowCount Number of rows.
+		 */
+		public Snapshot(SegmentedDataTable source, long version, Chunk[] chunks,
+				int[] offsets, int rowCount) {
+			super(source.getName(), source.getColumnTypes());
+			this.version = version;
+			this.chunks = chunks;
+			this.offsets = offsets;
+			this.rowCount = rowCount;
+		}
+
+		@Override
+		public Comparable<?> get(int col, int row) {
+			if (row < 0 || row >= rowCount) {
+				return null;
+			}
+			int chunkIndex = toChunk(offsets, chunks.length, row);
+			Chunk chunk = chunks[chunkIndex];
+			return chunk.columns[col].get(chunk.toPosition(row - offsets[chunkIndex]));
+		}
+
+		@Override
+		public double getDouble(int col, int row) {
+			if (row < 0 || row >= rowCount) {
+				return Double.NaN;
+			}
+			int chunkIndex = toChunk(offsets, chunks.length, row);
+			Chunk chunk = chunks[chunkIndex];
+			return chunk.columns[col].getDouble(chunk.toPosition(row - offsets[chunkIndex]));
+		}
+
+		@Override
+		public void getDoubles(int col, int row, double[] values, int offset, int length) {
+			checkRows(row, length, rowCount);
+			SegmentedDataTable.getDoubles(Arrays.asList(chunks), offsets, col, row,
+				values, offset, length);
+		}
+
+		@Override
+		public int getRowCount() {
+			return rowCount;
+		}
+
+		@Override
+		public long getVersion() {
+			return version;
+		}
+
+		@Override
+		public DataSource snapshot() {
+			return this;
+		}
+
+		@Override
+		public boolean isSnapshotShared() {
+			return true;
+		}
+	}
+
+	/**
+	 * Initializes a new instance with the default chunk size, and the
+	 * specified column types.
+	 * @param types Type for each column
+	 */
+	public SegmentedDataTable(Class<? extends Comparable<?>>... types) {
+		this(DEFAULT_CHUNK_SIZE, types);
+	}
+
+	/**
+	 * Initializes a new instance with the specified chunk size, and column
+	 * types.
+	 * @param chunkSize Maximal number of rows per chunk.
+	 * @param types Type for each column
+	 */
+	public SegmentedDataTable(int chunkSize, Class<? extends Comparable<?>>... types) {
+		super(types);
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Invalid chunk size: {0,number,integer}. The chunk size must be at least 1.", //$NON-NLS-1$
+				chunkSize));
+		}
+		this.chunkSize = chunkSize;
+		chunks = new ArrayList<>();
+		offsets = new int[ColumnBuffer.DEFAULT_CAPACITY];
+	}
+
+	/**
+	 * Initializes a new instance with the specified chunk size, and the
+	 * column types and data of another data source.
+	 * @param chunkSize Maximal number of rows per chunk.
+	 * @param source Data source to clone.
+	 */
+	public SegmentedDataTable(int chunkSize, DataSource source) {
+		this(chunkSize, source.getColumnTypes());
+		for (int rowIndex = 0; rowIndex < source.getRowCount(); rowIndex++) {
+			append(toValues(source.getRecord(rowIndex)));
+		}
+	}
+
+	/**
+	 * Returns the maximal number of rows per chunk.
+	 * @return Number of rows.
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Returns the number of chunks that are currently allocated.
+	 * @return Number of chunks.
+	 */
+	int getChunkCount() {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			return chunks.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds a row with the specified comparable values to the table.
+	 * The values are added in the order they are specified. If the types of
+	 * the table columns and the values do not match, an
+	 * {@code IllegalArgumentException} is thrown.
+	 * @param values values to be added as a row
+	 * @return Index of the row that has been added.
+	 */
+	public int add(Comparable<?>... values) {
+		return add(Arrays.asList(values));
+	}
+
+	/**
+	 * Adds a row with the specified container's elements to the table.
+	 * The values are added in the order they are specified. If the types of
+	 * the table columns and the values do not match, an
+	 * {@code IllegalArgumentException} is thrown.
+	 * @param values values to be added as a row
+	 * @return Index of the row that has been added.
+	 */
+	public int add(List<? extends Comparable<?>> values) {
+		checkRow(values, getColumnTypes());
+
+		int rowIndex;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			rowIndex = rowCount;
+			append(values);
+			DataChangeEvent[] events = new DataChangeEvent[values.size()];
+			for (int colIndex = 0; colIndex < events.length; colIndex++) {
+				events[colIndex] = new DataChangeEvent(this, colIndex, rowIndex, null, values.get(colIndex));
+			}
+			notifyDataAdded(events);
+		} finally {
+			lock.unlock();
+		}
+		return rowIndex;
+	}
+
+	/**
+	 * Adds all specified rows to the table at once. All rows are validated
+	 * before any of them is added, and listeners are notified only once with
+	 * one event per column that describes the range of added rows. If the
+	 * types of the table columns and the values do not match, an
+	 * {@code IllegalArgumentException} is thrown and no row is added.
+	 * @param rows Rows to be added.
+	 * @return Index of the first row that has been added.
+	 */
+	public int addAll(Iterable<? extends List<? extends Comparable<?>>> rows) {
+		Class<? extends Comparable<?>>[] types = getColumnTypes();
+		List<List<? extends Comparable<?>>> validRows = new ArrayList<>();
+		for (List<? extends Comparable<?>> values : rows) {
+			checkRow(values, types);
+			validRows.add(values);
+		}
+
+		int rowIndex;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			rowIndex = rowCount;
+			for (List<? extends Comparable<?>> values : validRows) {
+				append(values);
+			}
+			if (!validRows.isEmpty()) {
+				notifyRowsAdded(rowIndex, validRows.size());
+			}
+		} finally {
+			lock.unlock();
+		}
+		return rowIndex;
+	}
+
+	/**
+	 * Adds the specified row to the table.
+	 * The values are added in the order they are specified. If the types of
+	 * the table columns and the values do not match, an
+	 * {@code IllegalArgumentException} is thrown.
+	 * @param row Row to be added
+	 * @return Index of the row that has been added.
+	 */
+	public int add(Row row) {
+		List<Comparable<?>> values;
+		synchronized (row) {
+			values = new ArrayList<>(row.size());
+			for (Comparable<?> value : row) {
+				values.add(value);
+			}
+		}
+		return add(values);
+	}
+
+	/**
+	 * Appends a row without notifying listeners. A new chunk is started if
+	 * the last chunk is full. The write lock must be held by the caller.
+	 * @param values Values of the new row.
+	 */
+	private void append(List<? extends Comparable<?>> values) {
+		int chunkCount = chunks.size();
+		Chunk last = (chunkCount > 0) ? chunks.get(chunkCount - 1) : null;
+		if (last == null || last.size >= chunkSize) {
+			// Small tables shouldn't allocate a whole chunk in advance
+			int capacity = (chunkCount > 0) ? chunkSize : Math.min(chunkSize, ColumnBuffer.DEFAULT_CAPACITY);
+			last = new Chunk(getColumnTypes(), capacity);
+			chunks.add(last);
+			if (offsets.length <= chunkCount) {
+				offsets = Arrays.copyOf(offsets, 2*offsets.length);
+			}
+			offsets[chunkCount] = rowCount;
+		}
+		last.add(values);
+		rowCount++;
+	}
+
+	/**
+	 * Returns the values of the specified record as a list.
+	 * @param record Record.
+	 * @return List of values.
+	 */
+	private static List<Comparable<?>> toValues(Record record) {
+		List<Comparable<?>> values = new ArrayList<>(record.size());
+		for (Comparable<?> value : record) {
+			values.add(value);
+		}
+		return values;
+	}
+
+	/**
+	 * Checks whether the specified values can be added as a row to this
+	 * table. An {@code IllegalArgumentException} is thrown if the number of
+	 * values or their types don't match the columns.
+	 * @param values Values of a row.
+	 * @param types Data types of all columns.
+	 */
+	private static void checkRow(List<? extends Comparable<?>> values,
+			Class<? extends Comparable<?>>[] types) {
+		if (values.size() != types.length) {
+			throw new IllegalArgumentException(MessageFormat.format(
+					"Wrong number of columns! Expected {0,number,integer}, got {1,number,integer}.", //$NON-NLS-1$
+					types.length, values.size()));
+		}
+
+		// Check row data types
+		for (int colIndex = 0; colIndex < values.size(); colIndex++) {
+			Comparable<?> value = values.get(colIndex);
+			if ((value != null)
+					&& !(types[colIndex].isAssignableFrom(value.getClass()))) {
+				throw new IllegalArgumentException(MessageFormat.format(
+						"Wrong column type! Expected {0}, got {1}.", //$NON-NLS-1$
+						types[colIndex], value.getClass()));
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the chunk that contains the specified row.
+	 * @param offsets Index of the first row of each chunk.
+	 * @param chunkCount Number of chunks.
+	 * @param row Row index.
+	 * @return Chunk index.
+	 */
+	private static int toChunk(int[] offsets, int chunkCount, int row) {
+		int index = Arrays.binarySearch(offsets, 0, chunkCount, row);
+		return (index >= 0) ? index : -index - 2;
+	}
+
+	/**
+	 * Copies the values of consecutive rows of the specified column as
+	 * primitive {@code double} values chunk by chunk.
+	 * @param chunks Chunks that store the rows.
+	 * @param offsets Index of the first row of each chunk.
+	 * @param col Column index.
+	 * @param row Index of the first row.
+	 * @param values Array that receives the values.
+	 * @param offset Index of the first element in the array.
+	 * @param length Number of rows.
+	 */
+	private static void getDoubles(List<Chunk> chunks, int[] offsets, int col,
+			int row, double[] values, int offset, int length) {
+		if (length == 0) {
+			return;
+		}
+		int chunkIndex = toChunk(offsets, chunks.size(), row);
+		while (length > 0) {
+			Chunk chunk = chunks.get(chunkIndex);
+			int index = row - offsets[chunkIndex];
+			int count = Math.min(length, chunk.getLiveCount() - index);
+			chunk.getDoubles(col, index, values, offset, count);
+			row += count;
+			offset += count;
+			length -= count;
+			chunkIndex++;
+		}
+	}
+
+	/**
+	 * Throws an exception if the specified row index is out of bounds.
+	 * @param row Row index to be checked.
+	 */
+	private void checkIndex(int row) {
+		if (row < 0 || row >= rowCount) {
+			throw new IndexOutOfBoundsException(MessageFormat.format(
+				"Row {0,number,integer} is out of bounds [0, {1,number,integer}).", //$NON-NLS-1$
+				row, rowCount));
+		}
+	}
+
+	/**
+	 * Recalculates the index of the first row of each chunk.
+	 */
+	private void updateOffsets() {
+		int offset = 0;
+		for (int chunkIndex = 0; chunkIndex < chunks.size(); chunkIndex++) {
+			offsets[chunkIndex] = offset;
+			offset += chunks.get(chunkIndex).getLiveCount();
+		}
+	}
+
+	/**
+	 * Removes a specified row from the table.
+	 * @param row Index of the row to remove
+	 */
+	public void remove(int row) {
+		DataChangeEvent[] events;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			events = removeRow(row);
+			notifyDataRemoved(events);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the last row from the table.
+	 */
+	public void removeLast() {
+		DataChangeEvent[] events;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			events = removeRow(rowCount - 1);
+			notifyDataRemoved(events);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Marks a specified row as deleted without notifying listeners. The
+	 * write lock must be held by the caller.
+	 * @param row Index of the row to remove
+	 * @return Events that describe the removed values.
+	 */
+	private DataChangeEvent[] removeRow(int row) {
+		checkIndex(row);
+		int chunkIndex = toChunk(offsets, chunks.size(), row);
+		Chunk chunk = chunks.get(chunkIndex);
+		int position = chunk.toPosition(row - offsets[chunkIndex]);
+
+		DataChangeEvent[] events = new DataChangeEvent[chunk.columns.length];
+		for (int col = 0; col < events.length; col++) {
+			events[col] = new DataChangeEvent(this, col, row, chunk.columns[col].get(position), null);
+		}
+
+		chunk.delete(position);
+		rowCount--;
+		if (chunk.getLiveCount() == 0) {
+			chunks.remove(chunkIndex);
+			updateOffsets();
+			return events;
+		}
+		for (int i = chunkIndex + 1; i < chunks.size(); i++) {
+			offsets[i]--;
+		}
+		return events;
+	}
+
+	/**
+	 * Removes the specified number of rows from the beginning of the table.
+	 * Chunks that only contain removed rows are released without copying
+	 * any values. Listeners are notified once with one event per column that
+	 * describes the range of removed rows.
+	 * @param count Number of rows to remove.
+	 */
+	public void removeFirst(int count) {
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			if (count < 0 || count > rowCount) {
+				throw new IllegalArgumentException(MessageFormat.format(
+					"Invalid number of rows: {0,number,integer}. Expected a number in [0, {1,number,integer}].", //$NON-NLS-1$
+					count, rowCount));
+			}
+			int remaining = count;
+			while (remaining > 0) {
+				Chunk first = chunks.get(0);
+				int liveCount = first.getLiveCount();
+				if (liveCount <= remaining) {
+					chunks.remove(0);
+					remaining -= liveCount;
+				} else {
+					first.deleteFirst(remaining);
+					remaining = 0;
+				}
+			}
+			rowCount -= count;
+			updateOffsets();
+			if (count > 0) {
+				notifyRowsRemoved(0, count);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Deletes all rows this table contains. Listeners are notified once with
+	 * one event per column that describes the range of removed rows.
+	 */
+	public void clear() {
+		int count;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			count = rowCount;
+			chunks.clear();
+			rowCount = 0;
+			if (count > 0) {
+				notifyRowsRemoved(0, count);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the values of all deleted rows from the chunks. Row indexes
+	 * don't change, so listeners aren't notified. The method can be invoked
+	 * periodically from a background thread.
+	 */
+	public void compact() {
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			for (Chunk chunk : chunks) {
+				chunk.compact();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the row with the specified index.
+	 * @param col index of the column to return
+	 * @param row index of the row to return
+	 * @return the specified value of the data cell
+	 */
+	public Comparable<?> get(int col, int row) {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			if (row < 0 || row >= rowCount) {
+				return null;
+			}
+			int chunkIndex = toChunk(offsets, chunks.size(), row);
+			Chunk chunk = chunks.get(chunkIndex);
+			return chunk.columns[col].get(chunk.toPosition(row - offsets[chunkIndex]));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the value with the specified row and column index as a
+	 * primitive {@code double}. Values of numeric columns are returned
+	 * without boxing.
+	 * @param col index of the column to return
+	 * @param row index of the row to return
+	 * @return the specified value of the data cell, or {@code NaN} if the
+	 *         cell is empty or not numeric
+	 */
+	@Override
+	public double getDouble(int col, int row) {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			if (row < 0 || row >= rowCount) {
+				return Double.NaN;
+			}
+			int chunkIndex = toChunk(offsets, chunks.size(), row);
+			Chunk chunk = chunks.get(chunkIndex);
+			return chunk.columns[col].getDouble(chunk.toPosition(row - offsets[chunkIndex]));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void getDoubles(int col, int row, double[] values, int offset, int length) {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			checkRows(row, length, rowCount);
+			getDoubles(chunks, offsets, col, row, values, offset, length);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Record getRecord(int row) {
+		Comparable<?>[] values = new Comparable<?>[getColumnCount()];
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			checkIndex(row);
+			int chunkIndex = toChunk(offsets, chunks.size(), row);
+			Chunk chunk = chunks.get(chunkIndex);
+			int position = chunk.toPosition(row - offsets[chunkIndex]);
+			for (int col = 0; col < values.length; col++) {
+				values[col] = chunk.columns[col].get(position);
+			}
+		} finally {
+			lock.unlock();
+		}
+		return new Record(values);
+	}
+
+	/**
+	 * Sets the value of a cell specified by its column and row indexes.
+	 * @param <T> Data type of the cell.
+	 * @param col Column of the cell to change.
+	 * @param row Row of the cell to change.
+	 * @param value New value to be set.
+	 * @return Old value that was replaced.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> Comparable<T> set(int col, int row, Comparable<T> value) {
+		Class<? extends Comparable<?>> type = getColumnTypes()[col];
+		if (value != null && !type.isAssignableFrom(value.getClass())) {
+			throw new IllegalArgumentException(MessageFormat.format(
+					"Wrong column type! Expected {0}, got {1}.", //$NON-NLS-1$
+					type, value.getClass()));
+		}
+		Comparable<T> old;
+		DataChangeEvent event = null;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			checkIndex(row);
+			int chunkIndex = toChunk(offsets, chunks.size(), row);
+			Chunk chunk = chunks.get(chunkIndex);
+			int position = chunk.toPosition(row - offsets[chunkIndex]);
+			old = (Comparable<T>) chunk.columns[col].get(position);
+			if (old == null || !old.equals(value)) {
+				chunk.columns[col].set(position, value);
+				event = new DataChangeEvent(this, col, row, old, value);
+			}
+			if (event != null) {
+				notifyDataUpdated(event);
+			}
+		} finally {
+			lock.unlock();
+		}
+		return old;
+	}
+
+	/**
+	 * Returns the number of rows of the data source.
+	 * @return number of rows in the data source.
+	 */
+	public int getRowCount() {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			return rowCount;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Sorts the table rows with the specified DataComparators.
+	 * The row values are compared in the way the comparators are specified.
+	 * A permutation of the row indexes is sorted, and numeric columns are
+	 * compared without boxing their values. Listeners are notified with one
+	 * update event per column that covers all rows.
+	 * The values are copied column by column into new chunks without
+	 * boxing them, so all deleted rows are removed as well.
+	 * @param comparators comparators used for sorting
+	 */
+	public void sort(final DataComparator... comparators) {
+		int sortedRows;
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			int[] order = RowSorter.sort(this, comparators);
+			// Without deleted rows the position of a row in its chunk equals
+			// its offset
+			for (Chunk chunk : chunks) {
+				chunk.compact();
+			}
+			Class<? extends Comparable<?>>[] types = getColumnTypes();
+			int chunkCount = chunks.size();
+			int sortedChunkCount = (rowCount + chunkSize - 1)/chunkSize;
+			ColumnBuffer[][] sortedColumns = new ColumnBuffer[sortedChunkCount][types.length];
+			for (int col = 0; col < types.length; col++) {
+				for (int chunkIndex = 0; chunkIndex < sortedChunkCount; chunkIndex++) {
+					int start = chunkIndex*chunkSize;
+					int size = Math.min(chunkSize, rowCount - start);
+					ColumnBuffer column = ColumnBuffer.create(types[col], size);
+					for (int i = start; i < start + size; i++) {
+						int row = order[i];
+						int sourceIndex = toChunk(offsets, chunkCount, row);
+						column.add(chunks.get(sourceIndex).columns[col], row - offsets[sourceIndex]);
+					}
+					sortedColumns[chunkIndex][col] = column;
+				}
+				// Release the unsorted values of the column right away
+				for (Chunk chunk : chunks) {
+					chunk.columns[col] = null;
+				}
+			}
+			chunks.clear();
+			for (int chunkIndex = 0; chunkIndex < sortedChunkCount; chunkIndex++) {
+				int size = Math.min(chunkSize, rowCount - chunkIndex*chunkSize);
+				chunks.add(new Chunk(sortedColumns[chunkIndex], size, null, null, 0));
+			}
+			updateOffsets();
+			sortedRows = rowCount;
+			// All rows may have been moved
+			if (sortedRows > 0) {
+				notifyRowsShifted(sortedRows, 0);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns an immutable view of the current values. The arrays of all
+	 * chunks are shared with the snapshot and are only copied when stored
+	 * values are changed or chunks are compacted afterwards.
+	 * @return Snapshot of the current values.
+	 */
+	@Override
+	public DataSource snapshot() {
+		long version = getVersion();
+		// Concurrent snapshots only mark the buffers as shared, so the read
+		// lock suffices
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			Chunk[] snapshots = new Chunk[chunks.size()];
+			for (int chunkIndex = 0; chunkIndex < snapshots.length; chunkIndex++) {
+				snapshots[chunkIndex] = chunks.get(chunkIndex).snapshot();
+			}
+			int[] offsetsCopy = Arrays.copyOf(offsets, snapshots.length);
+			return new Snapshot(this, version, snapshots, offsetsCopy, rowCount);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isSnapshotShared() {
+		return true;
+	}
+
+	@Override
+	protected boolean isStatisticsIncremental() {
+		return true;
+	}
+
+	@Override
+	public void setName(String name) {
+		super.setName(name);
+	}
+}
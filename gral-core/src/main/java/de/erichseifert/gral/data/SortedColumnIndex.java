@@ -0,0 +1,295 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+/**
+ * <p>Secondary index that stores the rows of a data source sorted by the
+ * values of a numeric column. It is used to find all rows with values in a
+ * certain range using binary search instead of scanning all rows, e.g. the
+ * visible part of a long time series:</p>
+ * <pre>
+ * SortedColumnIndex index = new SortedColumnIndex(data, 0);
+ * int[] rows = index.getRows(xMin, xMax);
+ * </pre>
+ *
+ * <p>The index listens to changes of the data source. Rows that are
+ * appended with values that are not smaller than all indexed values are
+ * added to the index immediately, which is the common case for time series.
+ * All other changes cause the index to be rebuilt the next time it is
+ * accessed. Empty cells and {@code NaN} values aren't indexed.</p>
+ */
+public class SortedColumnIndex implements DataListener {
+	/** Indexed data source. */
+	private final DataSource data;
+	/** Indexed column. */
+	private final int col;
+
+	/** Indexes of the rows in the order of their values. */
+	private int[] rows;
+	/** Values in ascending order. */
+	private double[] values;
+	/** Number of indexed rows. */
+	private int size;
+	/** Number of rows of the data source that have been indexed. */
+	private int indexedRowCount;
+	/** Whether the index has to be rebuilt. */
+	private boolean valid;
+
+	/**
+	 * Creates a new index of the specified column and registers it as a
+	 * listener of the data source.
+	 * @param data Data source.
+	 * @param col Index of a numeric column.
+	 */
+	public SortedColumnIndex(DataSource data, int col) {
+		this.data = data;
+		this.col = col;
+		rows = new int[0];
+		values = new double[0];
+		data.addDataListener(this);
+	}
+
+	/**
+	 * Returns the indexed data source.
+	 * @return Data source.
+	 */
+	public DataSource getData() {
+		return data;
+	}
+
+	/**
+	 * Returns the indexed column.
+	 * @return Column index.
+	 */
+	public int getColumn() {
+		return col;
+	}
+
+	/**
+	 * Returns the number of indexed rows. Rows with empty cells or
+	 * {@code NaN} values aren't counted.
+	 * @return Number of rows in the index.
+	 */
+	public synchronized int size() {
+		validate();
+		return size;
+	}
+
+	/**
+	 * Returns the index of the row at the specified position of the index.
+	 * @param position Position in the index.
+	 * @return Row index.
+	 */
+	public synchronized int getRow(int position) {
+		validate();
+		checkPosition(position);
+		return rows[position];
+	}
+
+	/**
+	 * Returns the value at the specified position of the index.
+	 * @param position Position in the index.
+	 * @return Value of the indexed column.
+	 */
+	public synchronized double getValue(int position) {
+		validate();
+		checkPosition(position);
+		return values[position];
+	}
+
+	/**
+	 * Returns the first position of the index with a value that is greater
+	 * than or equal to the specified value.
+	 * @param value Value.
+	 * @return Position, or {@link #size()} if all values are smaller.
+	 */
+	public synchronized int lowerBound(double value) {
+		validate();
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (values[mid] < value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the first position of the index with a value that is greater
+	 * than the specified value.
+	 * @param value Value.
+	 * @return Position, or {@link #size()} if no value is greater.
+	 */
+	public synchronized int upperBound(double value) {
+		validate();
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (values[mid] <= value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the indexes of all rows with values in the range
+	 * {@code [min, max]} in the order of their values.
+	 * @param min Minimal value (inclusive).
+	 * @param max Maximal value (inclusive).
+	 * @return Row indexes.
+	 */
+	public synchronized int[] getRows(double min, double max) {
+		int from = lowerBound(min);
+		int to = Math.max(from, upperBound(max));
+		return Arrays.copyOfRange(rows, from, to);
+	}
+
+	/**
+	 * Throws an exception if the specified position is out of bounds.
+	 * @param position Position to be checked.
+	 */
+	private void checkPosition(int position) {
+		if (position < 0 || position >= size) {
+			throw new IndexOutOfBoundsException(MessageFormat.format(
+				"Position {0,number,integer} is out of bounds [0, {1,number,integer}).", //$NON-NLS-1$
+				position, size));
+		}
+	}
+
+	/**
+	 * Rebuilds the index if it isn't valid anymore.
+	 */
+	private void validate() {
+		if (valid) {
+			return;
+		}
+		// All values are read from a snapshot, so they are consistent
+		DataSource snapshot = data.snapshot();
+		int rowCount = snapshot.getRowCount();
+		final double[] columnValues = new double[rowCount];
+		int[] order = new int[rowCount];
+		int count = 0;
+		for (int row = 0; row < rowCount; row++) {
+			columnValues[row] = snapshot.getDouble(col, row);
+			if (!Double.isNaN(columnValues[row])) {
+				order[count++] = row;
+			}
+		}
+		order = Arrays.copyOf(order, count);
+		RowSorter.sort(order, new RowSorter.RowComparator() {
+			public int compare(int row1, int row2) {
+				return Double.compare(columnValues[row1], columnValues[row2]);
+			}
+		});
+		rows = order;
+		values = new double[count];
+		for (int position = 0; position < count; position++) {
+			values[position] = columnValues[order[position]];
+		}
+		size = count;
+		indexedRowCount = rowCount;
+		valid = true;
+	}
+
+	/**
+	 * Adds an appended row to the index if its value is not smaller than
+	 * all indexed values. Otherwise the index is marked as invalid.
+	 * @param row Index of the appended row.
+	 */
+	private void append(int row) {
+		if (row != indexedRowCount) {
+			valid = false;
+			return;
+		}
+		indexedRowCount++;
+		double value = data.getDouble(col, row);
+		if (Double.isNaN(value)) {
+			return;
+		}
+		if (size > 0 && value < values[size - 1]) {
+			valid = false;
+			return;
+		}
+		if (size == rows.length) {
+			int capacity = Math.max(16, size + (size >> 1));
+			rows = Arrays.copyOf(rows, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		rows[size] = row;
+		values[size] = value;
+		size++;
+	}
+
+	/**
+	 * Method that is invoked when data has been added. Appended rows are
+	 * added to the index if possible.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been added.
+	 */
+	public synchronized void dataAdded(DataSource source, DataChangeEvent... events) {
+		if (!valid) {
+			return;
+		}
+		for (DataChangeEvent event : events) {
+			if (event.getCol() != col) {
+				continue;
+			}
+			for (int row = event.getRow(); valid && row < event.getRow() + event.getRowCount(); row++) {
+				append(row);
+			}
+		}
+	}
+
+	/**
+	 * Method that is invoked when data has been updated. The index will be
+	 * rebuilt.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been updated.
+	 */
+	public synchronized void dataUpdated(DataSource source, DataChangeEvent... events) {
+		valid = false;
+	}
+
+	/**
+	 * Method that is invoked when data has been removed. The index will be
+	 * rebuilt.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been removed.
+	 */
+	public synchronized void dataRemoved(DataSource source, DataChangeEvent... events) {
+		valid = false;
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.expressions;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+import de.erichseifert.gral.data.AbstractDataSource;
+import de.erichseifert.gral.data.DataChangeEvent;
+import de.erichseifert.gral.data.DataListener;
+import de.erichseifert.gral.data.DataSource;
+
+/**
+ * <p>Class that represents a data source whose columns are computed from
+ * the columns of another data source. Each column is defined by an
+ * {@link Expression} and contains {@code Double} values; empty cells are
+ * represented by {@code NaN} values and returned as {@code null}.</p>
+ *
+ * <p>The expressions are evaluated lazily: When this data source is read
+ * for the first time after the original data source has changed, all
+ * columns are computed in blocks of {@link Expression#BLOCK_SIZE} rows
+ * from a {@link DataSource#snapshot() snapshot} of the original data
+ * source and stored in primitive arrays until the next change.</p>
+ *
+ * <p>Listeners are notified with an update event without further
+ * information whenever the original data source changes.</p>
+ */
+public class ComputedData extends AbstractDataSource implements DataListener {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = 1398414963417693740L;
+
+	/** Original data source. */
+	private final DataSource original;
+	/** Expressions that define the columns. */
+	private final Expression[] expressions;
+	/** Result of the last evaluation, or {@code null} if the expressions
+	haven't been evaluated yet. */
+	private transient volatile Evaluation evaluation;
+
+	/**
+	 * Result of an evaluation of the expressions.
+	 */
+	private static final class Evaluation {
+		/** Version of the original data source that has been evaluated. */
+		private final long version;
+		/** Number of rows. */
+		private final int rowCount;
+		/** Computed values of all columns. */
+		private final double[][] columns;
+
+		/**
+		 * Initializes a new instance.
+		 * @param version Version of the original data source.
+		 * @param rowCount Number of rows.
+		 * @param columns Computed values of all columns.
+		 */
+		public Evaluation(long version, int rowCount, double[][] columns) {
+			this.version = version;
+			this.rowCount = rowCount;
+			this.columns = columns;
+		}
+	}
+
+	/**
+	 * Creates a new instance with the specified data source and column
+	 * expressions.
+	 * @param original Data source the columns are computed from.
+	 * @param expressions Expressions that define the columns.
+	 */
+	@SuppressWarnings("unchecked")
+	public ComputedData(DataSource original, Expression... expressions) {
+		for (Expression expression : expressions) {
+			if (expression == null) {
+				throw new IllegalArgumentException("Expressions must not be null."); //$NON-NLS-1$
+			}
+		}
+		this.original = original;
+		this.expressions = Arrays.copyOf(expressions, expressions.length);
+		Class<? extends Comparable<?>>[] types = new Class[expressions.length];
+		Arrays.fill(types, Double.class);
+		setColumnTypes(types);
+		this.original.addDataListener(this);
+	}
+
+	/**
+	 * Returns the original data source.
+	 * @return Original data source.
+	 */
+	public DataSource getOriginal() {
+		return original;
+	}
+
+	/**
+	 * Returns the expression of the specified column.
+	 * @param col Index of the column.
+	 * @return Expression.
+	 */
+	public Expression getExpression(int col) {
+		return expressions[col];
+	}
+
+	/**
+	 * Returns the current values and evaluates the expressions again if the
+	 * original data source has changed.
+	 * @return Current evaluation.
+	 */
+	private Evaluation evaluate() {
+		Evaluation evaluation = this.evaluation;
+		if (evaluation != null && evaluation.version == original.getVersion()) {
+			return evaluation;
+		}
+		synchronized (this) {
+			evaluation = this.evaluation;
+			if (evaluation != null && evaluation.version == original.getVersion()) {
+				return evaluation;
+			}
+			DataSource data = original.snapshot();
+			int rowCount = data.getRowCount();
+			double[][] columns = new double[expressions.length][rowCount];
+			for (int rowStart = 0; rowStart < rowCount; rowStart += Expression.BLOCK_SIZE) {
+				int length = Math.min(Expression.BLOCK_SIZE, rowCount - rowStart);
+				for (int col = 0; col < columns.length; col++) {
+					expressions[col].evaluate(data, rowStart, columns[col], rowStart, length);
+				}
+			}
+			evaluation = new Evaluation(data.getVersion(), rowCount, columns);
+			this.evaluation = evaluation;
+			return evaluation;
+		}
+	}
+
+	/**
+	 * Returns the row with the specified index.
+	 * @param col index of the column to return
+	 * @param row index of the row to return
+	 * @return the specified value of the data cell
+	 */
+	public Comparable<?> get(int col, int row) {
+		double value = getDouble(col, row);
+		if (Double.isNaN(value)) {
+			return null;
+		}
+		return value;
+	}
+
+	@Override
+	public double getDouble(int col, int row) {
+		Evaluation evaluation = evaluate();
+		checkRows(row, 1, evaluation.rowCount);
+		return evaluation.columns[col][row];
+	}
+
+	@Override
+	public void getDoubles(int col, int row, double[] values, int offset, int length) {
+		Evaluation evaluation = evaluate();
+		checkRows(row, length, evaluation.rowCount);
+		System.arraycopy(evaluation.columns[col], row, values, offset, length);
+	}
+
+	/**
+	 * Throws an exception if the specified range of rows is out of bounds.
+	 * @param row Index of the first row.
+	 * @param length Number of rows.
+	 * @param rowCount Number of rows of the data source.
+	 */
+	private static void checkRows(int row, int length, int rowCount) {
+		if (row < 0 || length < 0 || row + length > rowCount) {
+			throw new IndexOutOfBoundsException(MessageFormat.format(
+				"Rows [{0,number,integer}, {1,number,integer}) are out of bounds [0, {2,number,integer}).", //$NON-NLS-1$
+				row, row + length, rowCount));
+		}
+	}
+
+	/**
+	 * Returns the number of rows of the data source.
+	 * @return number of rows in the data source.
+	 */
+	public int getRowCount() {
+		return evaluate().rowCount;
+	}
+
+	/**
+	 * Method that is invoked when data has been added.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been added.
+	 */
+	public void dataAdded(DataSource source, DataChangeEvent... events) {
+		notifyDataUpdated();
+	}
+
+	/**
+	 * Method that is invoked when data has been updated.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been updated.
+	 */
+	public void dataUpdated(DataSource source, DataChangeEvent... events) {
+		notifyDataUpdated();
+	}
+
+	/**
+	 * Method that is invoked when data has been removed.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been removed.
+	 */
+	public void dataRemoved(DataSource source, DataChangeEvent... events) {
+		notifyDataUpdated();
+	}
+
+	/**
+	 * Custom deserialization method.
+	 * @param in Input stream.
+	 * @throws ClassNotFoundException if a serialized class doesn't exist anymore.
+	 * @throws IOException if there is an error while reading data from the
+	 *         input stream.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws ClassNotFoundException, IOException {
+		// Normal deserialization
+		in.defaultReadObject();
+
+		// Restore listeners
+		original.addDataListener(this);
+	}
+}
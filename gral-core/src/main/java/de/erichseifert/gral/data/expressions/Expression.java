@@ -0,0 +1,490 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.expressions;
+
+import java.io.Serializable;
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+import de.erichseifert.gral.data.DataSource;
+
+/**
+ * <p>Abstract class that represents a numeric expression over the columns of
+ * a data source. Expressions are created with the static methods
+ * {@link #col(int)} and {@link #constant(double)} and combined with
+ * arithmetic methods like {@link #add(Expression)} or
+ * {@link #div(Expression)}. Comparison methods like {@link #gt(double)}
+ * create {@link Predicate}s.</p>
+ *
+ * <p>Example that computes the ratio of two columns:</p>
+ * <pre>
+ * DataSource ratio = new ComputedData(data,
+ *     Expression.col(0), Expression.col(2).div(Expression.col(3)));
+ * </pre>
+ *
+ * <p>Expressions are evaluated for a block of rows at once: Column values are
+ * copied with {@link DataSource#getDoubles(int, int, double[], int, int)}
+ * and every operation is a loop over primitive arrays. Empty or non-numeric
+ * cells are evaluated as {@code NaN}.</p>
+ */
+public abstract class Expression implements Serializable {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = 6137421690217312468L;
+
+	/** Number of rows that are evaluated at once by derived data sources. */
+	public static final int BLOCK_SIZE = 1024;
+
+	/**
+	 * Returns an expression that evaluates to the values of the specified
+	 * column.
+	 * @param col Index of the column.
+	 * @return Expression.
+	 */
+	public static Expression col(int col) {
+		if (col < 0) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Invalid column index: {0,number,integer}", col)); //$NON-NLS-1$
+		}
+		return new ColumnExpression(col);
+	}
+
+	/**
+	 * Returns an expression that evaluates to the specified value for every
+	 * row.
+	 * @param value Constant value.
+	 * @return Expression.
+	 */
+	public static Expression constant(double value) {
+		return new ConstantExpression(value);
+	}
+
+	/**
+	 * Evaluates this expression for consecutive rows of the specified data
+	 * source and stores the results in an array.
+	 * @param data Data source.
+	 * @param row Index of the first row.
+	 * @param values Array the results are stored in.
+	 * @param offset Index of the first element in the result array.
+	 * @param length Number of rows.
+	 */
+	public abstract void evaluate(DataSource data, int row, double[] values, int offset, int length);
+
+	/**
+	 * Returns an expression that adds the values of the specified expression.
+	 * @param other Second summand.
+	 * @return Expression.
+	 */
+	public Expression add(Expression other) {
+		return new BinaryExpression(this, Operator.ADD, other);
+	}
+
+	/**
+	 * Returns an expression that adds a constant value.
+	 * @param value Second summand.
+	 * @return Expression.
+	 */
+	public Expression add(double value) {
+		return add(constant(value));
+	}
+
+	/**
+	 * Returns an expression that subtracts the values of the specified
+	 * expression.
+	 * @param other Subtrahend.
+	 * @return Expression.
+	 */
+	public Expression sub(Expression other) {
+		return new BinaryExpression(this, Operator.SUB, other);
+	}
+
+	/**
+	 * Returns an expression that subtracts a constant value.
+	 * @param value Subtrahend.
+	 * @return Expression.
+	 */
+	public Expression sub(double value) {
+		return sub(constant(value));
+	}
+
+	/**
+	 * Returns an expression that multiplies by the values of the specified
+	 * expression.
+	 * @param other Second factor.
+	 * @return Expression.
+	 */
+	public Expression mul(Expression other) {
+		return new BinaryExpression(this, Operator.MUL, other);
+	}
+
+	/**
+	 * Returns an expression that multiplies by a constant value.
+	 * @param value Second factor.
+	 * @return Expression.
+	 */
+	public Expression mul(double value) {
+		return mul(constant(value));
+	}
+
+	/**
+	 * Returns an expression that divides by the values of the specified
+	 * expression.
+	 * @param other Divisor.
+	 * @return Expression.
+	 */
+	public Expression div(Expression other) {
+		return new BinaryExpression(this, Operator.DIV, other);
+	}
+
+	/**
+	 * Returns an expression that divides by a constant value.
+	 * @param value Divisor.
+	 * @return Expression.
+	 */
+	public Expression div(double value) {
+		return div(constant(value));
+	}
+
+	/**
+	 * Returns an expression that negates the values of this expression.
+	 * @return Expression.
+	 */
+	public Expression neg() {
+		return mul(-1.0);
+	}
+
+	/**
+	 * Returns a predicate that is true where this expression is greater than
+	 * the specified expression.
+	 * @param other Expression to compare with.
+	 * @return Predicate.
+	 */
+	public Predicate gt(Expression other) {
+		return new Predicate.Comparison(this, Predicate.Relation.GREATER, other);
+	}
+
+	/**
+	 * Returns a predicate that is true where this expression is greater than
+	 * the specified value.
+	 * @param value Value to compare with.
+	 * @return Predicate.
+	 */
+	public Predicate gt(double value) {
+		return gt(constant(value));
+	}
+
+	/**
+	 * Returns a predicate that is true where this expression is greater than
+	 * or equal to the specified expression.
+	 * @param other Expression to compare with.
+	 * @return Predicate.
+	 */
+	public Predicate ge(Expression other) {
+		return new Predicate.Comparison(this, Predicate.Relation.GREATER_OR_EQUAL, other);
+	}
+
+	/**
+	 * Returns a predicate that is true where this expression is greater than
+	 * or equal to the specified value.
+	 * @param value Value to compare with.
+	 * @return Predicate.
+	 */
+	public Predicate ge(double value) {
+		return ge(constant(value));
+	}
+
+	/**
+	 * Returns a predicate that is true where this expression is less than
+	 * the specified expression.
+	 * @param other Expression to compare with.
+	 * @return Predicate.
+	 */
+	public Predicate lt(Expression other) {
+		return new Predicate.Comparison(this, Predicate.Relation.LESS, other);
+	}
+
+	/**
+	 * Returns a predicate that is true where this expression is less than
+	 * the specified value.
+	 * @param value Value to compare with.
+	 * @return Predicate.
+	 */
+	public Predicate lt(double value) {
+		return lt(constant(value));
+	}
+
+	/**
+	 * Returns a predicate that is true where this expression is less than or
+	 * equal to the specified expression.
+	 * @param other Expression to compare with.
+	 * @return Predicate.
+	 */
+	public Predicate le(Expression other) {
+		return new Predicate.Comparison(this, Predicate.Relation.LESS_OR_EQUAL, other);
+	}
+
+	/**
+	 * Returns a predicate that is true where this expression is less than or
+	 * equal to the specified value.
+	 * @param value Value to compare with.
+	 * @return Predicate.
+	 */
+	public Predicate le(double value) {
+		return le(constant(value));
+	}
+
+	/**
+	 * Returns a predicate that is true where this expression is equal to
+	 * the specified expression.
+	 * @param other Expression to compare with.
+	 * @return Predicate.
+	 */
+	public Predicate eq(Expression other) {
+		return new Predicate.Comparison(this, Predicate.Relation.EQUAL, other);
+	}
+
+	/**
+	 * Returns a predicate that is true where this expression is equal to
+	 * the specified value.
+	 * @param value Value to compare with.
+	 * @return Predicate.
+	 */
+	public Predicate eq(double value) {
+		return eq(constant(value));
+	}
+
+	/**
+	 * Returns a predicate that is true where this expression is not equal
+	 * to the specified expression. Like all comparisons it is false where
+	 * one of the values is {@code NaN}.
+	 * @param other Expression to compare with.
+	 * @return Predicate.
+	 */
+	public Predicate ne(Expression other) {
+		return new Predicate.Comparison(this, Predicate.Relation.NOT_EQUAL, other);
+	}
+
+	/**
+	 * Returns a predicate that is true where this expression is not equal
+	 * to the specified value. Like all comparisons it is false where the
+	 * value of this expression is {@code NaN}.
+	 * @param value Value to compare with.
+	 * @return Predicate.
+	 */
+	public Predicate ne(double value) {
+		return ne(constant(value));
+	}
+
+	/**
+	 * Returns a predicate that is true where this expression lies in the
+	 * specified closed interval.
+	 * @param min Lower bound (inclusive).
+	 * @param max Upper bound (inclusive).
+	 * @return Predicate.
+	 */
+	public Predicate between(double min, double max) {
+		return new Predicate.Between(this, min, max);
+	}
+
+	/**
+	 * Arithmetic operators of binary expressions.
+	 */
+	enum Operator {
+		/** Addition. */
+		ADD,
+		/** Subtraction. */
+		SUB,
+		/** Multiplication. */
+		MUL,
+		/** Division. */
+		DIV
+	}
+
+	/**
+	 * Expression that evaluates to the values of a column.
+	 */
+	static final class ColumnExpression extends Expression {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = -3045962210937817548L;
+
+		/** Index of the column. */
+		private final int col;
+
+		/**
+		 * Initializes a new instance with the specified column.
+		 * @param col Index of the column.
+		 */
+		ColumnExpression(int col) {
+			this.col = col;
+		}
+
+		@Override
+		public void evaluate(DataSource data, int row, double[] values, int offset, int length) {
+			data.getDoubles(col, row, values, offset, length);
+		}
+	}
+
+	/**
+	 * Expression that evaluates to a constant value.
+	 */
+	static final class ConstantExpression extends Expression {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = 3718720453452036532L;
+
+		/** Constant value. */
+		private final double value;
+
+		/**
+		 * Initializes a new instance with the specified value.
+		 * @param value Constant value.
+		 */
+		ConstantExpression(double value) {
+			this.value = value;
+		}
+
+		/**
+		 * Returns the constant value.
+		 * @return Value.
+		 */
+		double getValue() {
+			return value;
+		}
+
+		@Override
+		public void evaluate(DataSource data, int row, double[] values, int offset, int length) {
+			Arrays.fill(values, offset, offset + length, value);
+		}
+	}
+
+	/**
+	 * Expression that combines two expressions with an arithmetic operator.
+	 */
+	static final class BinaryExpression extends Expression {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = -8286318245364458870L;
+
+		/** Left operand. */
+		private final Expression left;
+		/** Operator. */
+		private final Operator operator;
+		/** Right operand. */
+		private final Expression right;
+
+		/**
+		 * Initializes a new instance with the specified operands and
+		 * operator.
+		 * @param left Left operand.
+		 * @param operator Operator.
+		 * @param right Right operand.
+		 */
+		BinaryExpression(Expression left, Operator operator, Expression right) {
+			if (left == null || right == null) {
+				throw new IllegalArgumentException("Operands must not be null."); //$NON-NLS-1$
+			}
+			this.left = left;
+			this.operator = operator;
+			this.right = right;
+		}
+
+		@Override
+		public void evaluate(DataSource data, int row, double[] values, int offset, int length) {
+			left.evaluate(data, row, values, offset, length);
+			if (right instanceof ConstantExpression) {
+				apply(values, offset, length, ((ConstantExpression) right).getValue());
+				return;
+			}
+			double[] operands = new double[length];
+			right.evaluate(data, row, operands, 0, length);
+			apply(values, offset, length, operands);
+		}
+
+		/**
+		 * Applies the operator to the values and a constant.
+		 * @param values Values of the left operand and results.
+		 * @param offset Index of the first value.
+		 * @param length Number of values.
+		 * @param operand Right operand.
+		 */
+		private void apply(double[] values, int offset, int length, double operand) {
+			int end = offset + length;
+			switch (operator) {
+			case ADD:
+				for (int i = offset; i < end; i++) {
+					values[i] += operand;
+				}
+				break;
+			case SUB:
+				for (int i = offset; i < end; i++) {
+					values[i] -= operand;
+				}
+				break;
+			case MUL:
+				for (int i = offset; i < end; i++) {
+					values[i] *= operand;
+				}
+				break;
+			case DIV:
+				for (int i = offset; i < end; i++) {
+					values[i] /= operand;
+				}
+				break;
+			default:
+				throw new IllegalStateException(MessageFormat.format(
+					"Unknown operator: {0}", operator)); //$NON-NLS-1$
+			}
+		}
+
+		/**
+		 * Applies the operator to the values and an array of operands.
+		 * @param values Values of the left operand and results.
+		 * @param offset Index of the first value.
+		 * @param length Number of values.
+		 * @param operands Values of the right operand starting at index 0.
+		 */
+		private void apply(double[] values, int offset, int length, double[] operands) {
+			switch (operator) {
+			case ADD:
+				for (int i = 0; i < length; i++) {
+					values[offset + i] += operands[i];
+				}
+				break;
+			case SUB:
+				for (int i = 0; i < length; i++) {
+					values[offset + i] -= operands[i];
+				}
+				break;
+			case MUL:
+				for (int i = 0; i < length; i++) {
+					values[offset + i] *= operands[i];
+				}
+				break;
+			case DIV:
+				for (int i = 0; i < length; i++) {
+					values[offset + i] /= operands[i];
+				}
+				break;
+			default:
+				throw new IllegalStateException(MessageFormat.format(
+					"Unknown operator: {0}", operator)); //$NON-NLS-1$
+			}
+		}
+	}
+}
@@ -0,0 +1,249 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.expressions;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+import de.erichseifert.gral.data.AbstractDataSource;
+import de.erichseifert.gral.data.DataChangeEvent;
+import de.erichseifert.gral.data.DataListener;
+import de.erichseifert.gral.data.DataSource;
+
+/**
+ * <p>Class that represents a view on the rows of a data source that satisfy
+ * a {@link Predicate}.</p>
+ *
+ * <p>The predicate is evaluated lazily: When this data source is read for
+ * the first time after the original data source has changed, the
+ * predicate is evaluated in blocks of {@link Expression#BLOCK_SIZE} rows
+ * on a {@link DataSource#snapshot() snapshot} of the original data source.
+ * All values are read from this snapshot until the next change.</p>
+ *
+ * <p>Listeners are notified with an update event without further
+ * information whenever the original data source changes, because the
+ * affected rows are only known after the predicate has been evaluated.</p>
+ */
+public class FilteredData extends AbstractDataSource implements DataListener {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = -4392812066271707362L;
+
+	/** Original data source. */
+	private final DataSource original;
+	/** Predicate that decides which rows are kept. */
+	private final Predicate predicate;
+	/** Result of the last evaluation, or {@code null} if the predicate
+	hasn't been evaluated yet. */
+	private transient volatile Evaluation evaluation;
+
+	/**
+	 * Result of an evaluation of the predicate.
+	 */
+	private static final class Evaluation {
+		/** Snapshot of the original data source. */
+		private final DataSource data;
+		/** Indexes of the rows in the snapshot that satisfy the predicate. */
+		private final int[] rows;
+
+		/**
+		 * Initializes a new instance.
+		 * @param data Snapshot of the original data source.
+		 * @param rows Indexes of the rows that satisfy the predicate.
+		 */
+		public Evaluation(DataSource data, int[] rows) {
+			this.data = data;
+			this.rows = rows;
+		}
+	}
+
+	/**
+	 * Creates a new instance with the specified data source and predicate.
+	 * @param original Data source to be filtered.
+	 * @param predicate Predicate that decides which rows are kept.
+	 */
+	public FilteredData(DataSource original, Predicate predicate) {
+		if (predicate == null) {
+			throw new IllegalArgumentException("Predicate must not be null."); //$NON-NLS-1$
+		}
+		this.original = original;
+		this.predicate = predicate;
+		this.original.addDataListener(this);
+	}
+
+	/**
+	 * Returns the original data source.
+	 * @return Original data source.
+	 */
+	public DataSource getOriginal() {
+		return original;
+	}
+
+	/**
+	 * Returns the predicate that decides which rows are kept.
+	 * @return Predicate.
+	 */
+	public Predicate getPredicate() {
+		return predicate;
+	}
+
+	/**
+	 * Returns the current result of the predicate and evaluates the
+	 * predicate again if the original data source has changed.
+	 * @return Current evaluation.
+	 */
+	private Evaluation evaluate() {
+		Evaluation evaluation = this.evaluation;
+		if (evaluation != null && evaluation.data.getVersion() == original.getVersion()) {
+			return evaluation;
+		}
+		synchronized (this) {
+			evaluation = this.evaluation;
+			if (evaluation != null && evaluation.data.getVersion() == original.getVersion()) {
+				return evaluation;
+			}
+			DataSource data = original.snapshot();
+			int rowCount = data.getRowCount();
+			int[] rows = new int[Math.min(rowCount, Expression.BLOCK_SIZE)];
+			int size = 0;
+			boolean[] accepted = new boolean[Expression.BLOCK_SIZE];
+			for (int rowStart = 0; rowStart < rowCount; rowStart += Expression.BLOCK_SIZE) {
+				int length = Math.min(Expression.BLOCK_SIZE, rowCount - rowStart);
+				predicate.evaluate(data, rowStart, accepted, 0, length);
+				if (rows.length - size < length) {
+					rows = Arrays.copyOf(rows, Math.min(rowCount, Math.max(
+						size + length, rows.length + (rows.length >> 1))));
+				}
+				for (int i = 0; i < length; i++) {
+					if (accepted[i]) {
+						rows[size++] = rowStart + i;
+					}
+				}
+			}
+			evaluation = new Evaluation(data, Arrays.copyOf(rows, size));
+			this.evaluation = evaluation;
+			return evaluation;
+		}
+	}
+
+	/**
+	 * Returns the row with the specified index.
+	 * @param col index of the column to return
+	 * @param row index of the row to return
+	 * @return the specified value of the data cell
+	 */
+	public Comparable<?> get(int col, int row) {
+		Evaluation evaluation = evaluate();
+		return evaluation.data.get(col, evaluation.rows[row]);
+	}
+
+	@Override
+	public double getDouble(int col, int row) {
+		Evaluation evaluation = evaluate();
+		return evaluation.data.getDouble(col, evaluation.rows[row]);
+	}
+
+	@Override
+	public void getDoubles(int col, int row, double[] values, int offset, int length) {
+		Evaluation evaluation = evaluate();
+		int[] rows = evaluation.rows;
+		if (row < 0 || length < 0 || row + length > rows.length) {
+			throw new IndexOutOfBoundsException(MessageFormat.format(
+				"Rows [{0,number,integer}, {1,number,integer}) are out of bounds [0, {2,number,integer}).", //$NON-NLS-1$
+				row, row + length, rows.length));
+		}
+		for (int i = 0; i < length; i++) {
+			values[offset + i] = evaluation.data.getDouble(col, rows[row + i]);
+		}
+	}
+
+	/**
+	 * Returns the number of rows of the data source.
+	 * @return number of rows in the data source.
+	 */
+	public int getRowCount() {
+		return evaluate().rows.length;
+	}
+
+	@Override
+	public int getColumnCount() {
+		return original.getColumnCount();
+	}
+
+	@Override
+	public Class<? extends Comparable<?>>[] getColumnTypes() {
+		return original.getColumnTypes();
+	}
+
+	/**
+	 * Method that is invoked when data has been added.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been added.
+	 */
+	public void dataAdded(DataSource source, DataChangeEvent... events) {
+		notifyDataUpdated();
+	}
+
+	/**
+	 * Method that is invoked when data has been updated.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been updated.
+	 */
+	public void dataUpdated(DataSource source, DataChangeEvent... events) {
+		notifyDataUpdated();
+	}
+
+	/**
+	 * Method that is invoked when data has been removed.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been removed.
+	 */
+	public void dataRemoved(DataSource source, DataChangeEvent... events) {
+		notifyDataUpdated();
+	}
+
+	/**
+	 * Custom deserialization method.
+	 * @param in Input stream.
+	 * @throws ClassNotFoundException if a serialized class doesn't exist anymore.
+	 * @throws IOException if there is an error while reading data from the
+	 *         input stream.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws ClassNotFoundException, IOException {
+		// Normal deserialization
+		in.defaultReadObject();
+
+		// Restore listeners
+		original.addDataListener(this);
+	}
+}
@@ -0,0 +1,360 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.expressions;
+
+import java.io.Serializable;
+import java.text.MessageFormat;
+
+import de.erichseifert.gral.data.DataSource;
+
+/**
+ * <p>Abstract class that represents a condition on the rows of a data source.
+ * Predicates are created by comparing {@link Expression}s and can be
+ * combined with {@link #and(Predicate)}, {@link #or(Predicate)}, and
+ * {@link #not()}.</p>
+ *
+ * <p>Example that keeps rows with a value greater than 0.5 in column 1 and a
+ * value between 10 and 20 in column 0:</p>
+ * <pre>
+ * DataSource filtered = new FilteredData(data,
+ *     Expression.col(1).gt(0.5).and(Expression.col(0).between(10.0, 20.0)));
+ * </pre>
+ *
+ * <p>Like the comparison operators of Java, all comparisons except
+ * {@link Expression#ne(Expression)} are false if one of the values is
+ * {@code NaN}.</p>
+ */
+public abstract class Predicate implements Serializable {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = -2361564417380049925L;
+
+	/**
+	 * Evaluates this predicate for consecutive rows of the specified data
+	 * source and stores the results in an array.
+	 * @param data Data source.
+	 * @param row Index of the first row.
+	 * @param result Array the results are stored in.
+	 * @param offset Index of the first element in the result array.
+	 * @param length Number of rows.
+	 */
+	public abstract void evaluate(DataSource data, int row, boolean[] result, int offset, int length);
+
+	/**
+	 * Returns a predicate that is true where both this and the specified
+	 * predicate are true.
+	 * @param other Second predicate.
+	 * @return Predicate.
+	 */
+	public Predicate and(Predicate other) {
+		return new Junction(this, true, other);
+	}
+
+	/**
+	 * Returns a predicate that is true where this or the specified
+	 * predicate is true.
+	 * @param other Second predicate.
+	 * @return Predicate.
+	 */
+	public Predicate or(Predicate other) {
+		return new Junction(this, false, other);
+	}
+
+	/**
+	 * Returns a predicate that is true where this predicate is false.
+	 * @return Predicate.
+	 */
+	public Predicate not() {
+		return new Negation(this);
+	}
+
+	/**
+	 * Relations of comparisons.
+	 */
+	enum Relation {
+		/** Left value is greater than the right value. */
+		GREATER,
+		/** Left value is greater than or equal to the right value. */
+		GREATER_OR_EQUAL,
+		/** Left value is less than the right value. */
+		LESS,
+		/** Left value is less than or equal to the right value. */
+		LESS_OR_EQUAL,
+		/** Values are equal. */
+		EQUAL,
+		/** Values are not equal. */
+		NOT_EQUAL
+	}
+
+	/**
+	 * Predicate that compares the values of two expressions.
+	 */
+	static final class Comparison extends Predicate {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = 4526436264981436432L;
+
+		/** Left operand. */
+		private final Expression left;
+		/** Relation between the operands. */
+		private final Relation relation;
+		/** Right operand. */
+		private final Expression right;
+
+		/**
+		 * Initializes a new instance with the specified operands and
+		 * relation.
+		 * @param left Left operand.
+		 * @param relation Relation.
+		 * @param right Right operand.
+		 */
+		Comparison(Expression left, Relation relation, Expression right) {
+			if (left == null || right == null) {
+				throw new IllegalArgumentException("Operands must not be null."); //$NON-NLS-1$
+			}
+			this.left = left;
+			this.relation = relation;
+			this.right = right;
+		}
+
+		@Override
+		public void evaluate(DataSource data, int row, boolean[] result, int offset, int length) {
+			double[] values = new double[length];
+			left.evaluate(data, row, values, 0, length);
+			if (right instanceof Expression.ConstantExpression) {
+				compare(values, ((Expression.ConstantExpression) right).getValue(),
+					result, offset, length);
+				return;
+			}
+			double[] operands = new double[length];
+			right.evaluate(data, row, operands, 0, length);
+			compare(values, operands, result, offset, length);
+		}
+
+		/**
+		 * Compares values with a constant.
+		 * @param values Values of the left operand.
+		 * @param operand Right operand.
+		 * @param result Array the results are stored in.
+		 * @param offset Index of the first element in the result array.
+		 * @param length Number of values.
+		 */
+		private void compare(double[] values, double operand, boolean[] result,
+				int offset, int length) {
+			switch (relation) {
+			case GREATER:
+				for (int i = 0; i < length; i++) {
+					result[offset + i] = values[i] > operand;
+				}
+				break;
+			case GREATER_OR_EQUAL:
+				for (int i = 0; i < length; i++) {
+					result[offset + i] = values[i] >= operand;
+				}
+				break;
+			case LESS:
+				for (int i = 0; i < length; i++) {
+					result[offset + i] = values[i] < operand;
+				}
+				break;
+			case LESS_OR_EQUAL:
+				for (int i = 0; i < length; i++) {
+					result[offset + i] = values[i] <= operand;
+				}
+				break;
+			case EQUAL:
+				for (int i = 0; i < length; i++) {
+					result[offset + i] = values[i] == operand;
+				}
+				break;
+			case NOT_EQUAL:
+				for (int i = 0; i < length; i++) {
+					result[offset + i] = values[i] != operand;
+				}
+				break;
+			default:
+				throw new IllegalStateException(MessageFormat.format(
+					"Unknown relation: {0}", relation)); //$NON-NLS-1$
+			}
+		}
+
+		/**
+		 * Compares values with an array of operands.
+		 * @param values Values of the left operand.
+		 * @param operands Values of the right operand.
+		 * @param result Array the results are stored in.
+		 * @param offset Index of the first element in the result array.
+		 * @param length Number of values.
+		 */
+		private void compare(double[] values, double[] operands, boolean[] result,
+				int offset, int length) {
+			switch (relation) {
+			case GREATER:
+				for (int i = 0; i < length; i++) {
+					result[offset + i] = values[i] > operands[i];
+				}
+				break;
+			case GREATER_OR_EQUAL:
+				for (int i = 0; i < length; i++) {
+					result[offset + i] = values[i] >= operands[i];
+				}
+				break;
+			case LESS:
+				for (int i = 0; i < length; i++) {
+					result[offset + i] = values[i] < operands[i];
+				}
+				break;
+			case LESS_OR_EQUAL:
+				for (int i = 0; i < length; i++) {
+					result[offset + i] = values[i] <= operands[i];
+				}
+				break;
+			case EQUAL:
+				for (int i = 0; i < length; i++) {
+					result[offset + i] = values[i] == operands[i];
+				}
+				break;
+			case NOT_EQUAL:
+				for (int i = 0; i < length; i++) {
+					result[offset + i] = values[i] != operands[i];
+				}
+				break;
+			default:
+				throw new IllegalStateException(MessageFormat.format(
+					"Unknown relation: {0}", relation)); //$NON-NLS-1$
+			}
+		}
+	}
+
+	/**
+	 * Predicate that tests whether the values of an expression lie in a
+	 * closed interval.
+	 */
+	static final class Between extends Predicate {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = -7370404425493766624L;
+
+		/** Tested expression. */
+		private final Expression expression;
+		/** Lower bound (inclusive). */
+		private final double min;
+		/** Upper bound (inclusive). */
+		private final double max;
+
+		/**
+		 * Initializes a new instance with the specified expression and
+		 * bounds.
+		 * @param expression Tested expression.
+		 * @param min Lower bound (inclusive).
+		 * @param max Upper bound (inclusive).
+		 */
+		Between(Expression expression, double min, double max) {
+			this.expression = expression;
+			this.min = min;
+			this.max = max;
+		}
+
+		@Override
+		public void evaluate(DataSource data, int row, boolean[] result, int offset, int length) {
+			double[] values = new double[length];
+			expression.evaluate(data, row, values, 0, length);
+			for (int i = 0; i < length; i++) {
+				double value = values[i];
+				result[offset + i] = value >= min && value <= max;
+			}
+		}
+	}
+
+	/**
+	 * Predicate that combines two predicates with a logical conjunction or
+	 * disjunction.
+	 */
+	static final class Junction extends Predicate {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = 2936616738934505637L;
+
+		/** Left operand. */
+		private final Predicate left;
+		/** {@code true} for a conjunction, {@code false} for a
+		disjunction. */
+		private final boolean conjunction;
+		/** Right operand. */
+		private final Predicate right;
+
+		/**
+		 * Initializes a new instance with the specified operands.
+		 * @param left Left operand.
+		 * @param conjunction {@code true} for a conjunction, {@code false}
+		 *        for a disjunction.
+		 * @param right Right operand.
+		 */
+		Junction(Predicate left, boolean conjunction, Predicate right) {
+			if (left == null || right == null) {
+				throw new IllegalArgumentException("Operands must not be null."); //$NON-NLS-1$
+			}
+			this.left = left;
+			this.conjunction = conjunction;
+			this.right = right;
+		}
+
+		@Override
+		public void evaluate(DataSource data, int row, boolean[] result, int offset, int length) {
+			left.evaluate(data, row, result, offset, length);
+			boolean[] operands = new boolean[length];
+			right.evaluate(data, row, operands, 0, length);
+			if (conjunction) {
+				for (int i = 0; i < length; i++) {
+					result[offset + i] &= operands[i];
+				}
+			} else {
+				for (int i = 0; i < length; i++) {
+					result[offset + i] |= operands[i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Predicate that negates another predicate.
+	 */
+	static final class Negation extends Predicate {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = -1510416155434335542L;
+
+		/** Negated predicate. */
+		private final Predicate predicate;
+
+		/**
+		 * Initializes a new instance with the specified predicate.
+		 * @param predicate Negated predicate.
+		 */
+		Negation(Predicate predicate) {
+			this.predicate = predicate;
+		}
+
+		@Override
+		public void evaluate(DataSource data, int row, boolean[] result, int offset, int length) {
+			predicate.evaluate(data, row, result, offset, length);
+			for (int i = 0; i < length; i++) {
+				result[offset + i] = !result[offset + i];
+			}
+		}
+	}
+}
@@ -23,9 +23,12 @@ package de.erichseifert.gral.data.filters;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 import de.erichseifert.gral.data.DataSource;
-import de.erichseifert.gral.util.DataUtils;
 import de.erichseifert.gral.util.MathUtils;
 
 /**
@@ -39,6 +42,10 @@ public class Convolution extends Filter2D {
 	/** Version id for serialization. */
 	private static final long serialVersionUID = 7155205321415314271L;
 
+	/** Minimal kernel size for which the convolution is calculated using
+	fast Fourier transforms instead of direct summation. */
+	static final int FFT_MIN_KERNEL_SIZE = 64;
+
 	/** Kernel that provides the values to convolve the data source. */
 	private final Kernel kernel;
 
@@ -67,40 +74,52 @@ public class Convolution extends Filter2D {
 	@Override
 	protected void filter() {
 		clear();
-		for (int rowIndex = 0; rowIndex < getRowCount(); rowIndex++) {
-			Double[] filteredRow = new Double[getColumnCountFiltered()];
-			for (int colIndex = 0; colIndex < filteredRow.length; colIndex++) {
-				int colIndexOriginal = getIndexOriginal(colIndex);
-				filteredRow[colIndex] = convolve(colIndexOriginal, rowIndex);
-			}
-			add(filteredRow);
-		}
+		insert(0, getRowCount());
+		filter(0, getRowCount());
 	}
 
-	/**
-	 * Calculates the convolved value of the data with the specified column
-	 * and row.
-	 * @param col Column index.
-	 * @param row Row index.
-	 * @return Convolved value using the set kernel.
-	 */
-	private double convolve(int col, int row) {
+	@Override
+	protected void filter(int rowStart, int rowEnd) {
+		if (rowStart >= rowEnd) {
+			return;
+		}
 		Kernel kernel = getKernel();
+		int minIndex = (kernel != null) ? kernel.getMinIndex() : 0;
+		int maxIndex = (kernel != null) ? kernel.getMaxIndex() : 0;
+		int rowCount = rowEnd - rowStart;
+		// The original values are read in the calling thread
+		double[][] values = new double[getColumnCountFiltered()][];
+		for (int colIndex = 0; colIndex < values.length; colIndex++) {
+			values[colIndex] = getOriginalDoubles(getIndexOriginal(colIndex),
+				rowStart + minIndex, rowEnd + maxIndex);
+		}
 		if (kernel == null) {
-			Comparable<?> original = getOriginal(col, row);
-			return DataUtils.getValueOrDefault((Number) original, Double.NaN);
+			for (int colIndex = 0; colIndex < values.length; colIndex++) {
+				setDoubles(getIndexOriginal(colIndex), rowStart, values[colIndex], 0, rowCount);
+			}
+			return;
 		}
-		double sum = 0.0;
-		for (int k = kernel.getMinIndex(); k <= kernel.getMaxIndex(); k++) {
-			int r = row + k;
-			Comparable<?> original = getOriginal(col, r);
-			double v = DataUtils.getValueOrDefault((Number) original, Double.NaN);
-			if (!MathUtils.isCalculatable(v)) {
-				return v;
+
+		Convolver convolver = new Convolver(kernel, rowCount);
+		int blockRows = convolver.getBlockRows();
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int colIndex = 0; colIndex < values.length; colIndex++) {
+			for (int row = 0; row < rowCount; row += blockRows) {
+				tasks.add(new ConvolutionTask(convolver, values[colIndex],
+					getIndexOriginal(colIndex), rowStart, row,
+					Math.min(row + blockRows, rowCount)));
 			}
-			sum += kernel.get(k) * v;
 		}
-		return sum;
+		invokeAll(tasks);
+	}
+
+	@Override
+	protected int[] getFootprint() {
+		Kernel kernel = getKernel();
+		if (kernel == null) {
+			return new int[] {0, 0};
+		}
+		return new int[] {kernel.getMinIndex(), kernel.getMaxIndex()};
 	}
 
 	/**
@@ -118,4 +137,210 @@ public class Convolution extends Filter2D {
 		// Update caches
 		dataUpdated(this);
 	}
+
+	/**
+	 * Task that convolves a block of rows of a column and stores the
+	 * results.
+	 */
+	private final class ConvolutionTask implements Callable<Void> {
+		/** Convolution that is applied. */
+		private final Convolver convolver;
+		/** Original values, starting with the minimal index of the kernel
+		for the first filtered row. */
+		private final double[] values;
+		/** Index of the filtered column in the original data source. */
+		private final int col;
+		/** Index of the row that corresponds to the first value. */
+		private final int rowOffset;
+		/** Index of the first value to be calculated. */
+		private final int start;
+		/** Index after the last value to be calculated. */
+		private final int end;
+
+		/**
+		 * Initializes a new task.
+		 * @param convolver Convolution that is applied.
+		 * @param values Original values, starting with the minimal index of
+		 *        the kernel for the first filtered row.
+		 * @param col Index of the filtered column in the original data
+		 *        source.
+		 * @param rowOffset Index of the row that corresponds to the first
+		 *        value.
+		 * @param start Index of the first value to be calculated.
+		 * @param end Index after the last value to be calculated.
+		 */
+		public ConvolutionTask(Convolver convolver, double[] values, int col,
+				int rowOffset, int start, int end) {
+			this.convolver = convolver;
+			this.values = values;
+			this.col = col;
+			this.rowOffset = rowOffset;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public Void call() {
+			double[] convolved = new double[end - start];
+			convolver.convolve(values, start, convolved);
+			setDoubles(col, rowOffset + start, convolved, 0, convolved.length);
+			return null;
+		}
+	}
+
+	/**
+	 * Class that convolves values with the weights of a kernel. Large kernels
+	 * are applied using fast Fourier transforms, so results may differ from
+	 * direct summation by rounding errors. Instances are immutable and can be
+	 * used by several threads.
+	 */
+	private static final class Convolver {
+		/** Kernel weights, starting with the minimal index. */
+		private final double[] weights;
+		/** Transform of blocks of values, or {@code null} if the values are
+		convolved by direct summation. */
+		private final FFT fft;
+		/** Real part of the kernel spectrum. */
+		private final double[] kernelRe;
+		/** Imaginary part of the kernel spectrum. */
+		private final double[] kernelIm;
+		/** Number of results that are calculated from each transformed
+		block. */
+		private final int step;
+
+		/**
+		 * Initializes a new instance for the specified kernel.
+		 * @param kernel Kernel.
+		 * @param rowCount Number of results that will be calculated.
+		 */
+		public Convolver(Kernel kernel, int rowCount) {
+			weights = new double[kernel.size()];
+			for (int k = 0; k < weights.length; k++) {
+				weights[k] = kernel.get(kernel.getMinIndex() + k);
+			}
+			if (weights.length < FFT_MIN_KERNEL_SIZE || rowCount < weights.length) {
+				fft = null;
+				kernelRe = null;
+				kernelIm = null;
+				step = 0;
+				return;
+			}
+			int valueCount = rowCount + weights.length - 1;
+			int blockSize = Math.min(FFT.getSize(4*weights.length), FFT.getSize(valueCount));
+			fft = new FFT(blockSize);
+			step = blockSize - weights.length + 1;
+			kernelRe = new double[blockSize];
+			kernelIm = new double[blockSize];
+			System.arraycopy(weights, 0, kernelRe, 0, weights.length);
+			fft.transform(kernelRe, kernelIm);
+		}
+
+		/**
+		 * Returns the number of rows that should be calculated at once. For
+		 * large kernels it is a multiple of the rows that are calculated
+		 * from a pair of transformed blocks, so that splitting the rows
+		 * doesn't change the results.
+		 * @return Number of rows.
+		 */
+		public int getBlockRows() {
+			if (fft == null) {
+				return BLOCK_ROWS;
+			}
+			int pairRows = 2*step;
+			return Math.max(1, BLOCK_ROWS/pairRows)*pairRows;
+		}
+
+		/**
+		 * Convolves the specified values with the kernel weights. If a value
+		 * can't be used for calculations, e.g. {@code NaN}, all results that
+		 * depend on it are set to the first such value in their range.
+		 * @param values Values of all rows that are used to calculate the
+		 *        results, starting with the minimal index of the kernel.
+		 * @param start Index of the first result to be calculated.
+		 * @param convolved Array that stores the convolved values.
+		 */
+		public void convolve(double[] values, int start, double[] convolved) {
+			if (fft == null) {
+				for (int i = 0; i < convolved.length; i++) {
+					double sum = 0.0;
+					for (int k = 0; k < weights.length; k++) {
+						sum += weights[k] * values[start + i + k];
+					}
+					convolved[i] = sum;
+				}
+			} else {
+				convolveFFT(values, start, convolved);
+			}
+
+			// Results that depend on values which can't be used for calculations
+			// are set to the first of these values
+			int invalid = -1;
+			int end = Math.min(values.length, start + convolved.length + weights.length - 1);
+			for (int i = end - 1; i >= start; i--) {
+				if (!MathUtils.isCalculatable(values[i])) {
+					invalid = i;
+				}
+				int index = i - start;
+				if (index < convolved.length && invalid >= 0 && invalid < i + weights.length) {
+					convolved[index] = values[invalid];
+				}
+			}
+		}
+
+		/**
+		 * Convolves the specified values with the kernel weights using the
+		 * overlap-save method: the values are split into overlapping blocks
+		 * which are multiplied with the kernel in the frequency domain. Two
+		 * real blocks are transformed at once as real and imaginary part of
+		 * a complex block. Values that can't be used for calculations are
+		 * treated as zero; the results depending on them have to be replaced
+		 * by the caller.
+		 * @param values Values of all rows that are used to calculate the
+		 *        results, starting with the minimal index of the kernel.
+		 * @param start Index of the first result to be calculated.
+		 * @param convolved Array that stores the convolved values.
+		 */
+		private void convolveFFT(double[] values, int start, double[] convolved) {
+			int blockSize = fft.size();
+			double[] re = new double[blockSize];
+			double[] im = new double[blockSize];
+			for (int block = 0; block < convolved.length; block += 2*step) {
+				copyBlock(values, start + block, re);
+				copyBlock(values, start + block + step, im);
+				fft.transform(re, im);
+				// Multiplication with the complex conjugate of the kernel
+				// spectrum results in a correlation as required by the kernel
+				for (int i = 0; i < blockSize; i++) {
+					double r = re[i]*kernelRe[i] + im[i]*kernelIm[i];
+					im[i] = im[i]*kernelRe[i] - re[i]*kernelIm[i];
+					re[i] = r;
+				}
+				fft.inverse(re, im);
+				int count = Math.min(step, convolved.length - block);
+				System.arraycopy(re, 0, convolved, block, count);
+				count = Math.min(step, convolved.length - block - step);
+				if (count > 0) {
+					System.arraycopy(im, 0, convolved, block + step, count);
+				}
+			}
+		}
+
+		/**
+		 * Copies a block of values to the specified array. Values beyond the
+		 * end of the source and values that can't be used for calculations
+		 * are replaced by zero.
+		 * @param values Source values.
+		 * @param start Index of the first value to be copied.
+		 * @param block Destination array.
+		 */
+		private static void copyBlock(double[] values, int start, double[] block) {
+			int end = Math.min(values.length, start + block.length);
+			int i = 0;
+			for (int index = start; index < end; index++, i++) {
+				double value = values[index];
+				block[i] = MathUtils.isCalculatable(value) ? value : 0.0;
+			}
+			Arrays.fill(block, i, block.length, 0.0);
+		}
+	}
 }
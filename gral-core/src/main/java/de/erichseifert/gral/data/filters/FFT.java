@@ -0,0 +1,153 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.filters;
+
+import java.text.MessageFormat;
+
+/**
+ * <p>Class that computes the discrete Fourier transform of complex values
+ * using an iterative radix-2 algorithm. The transform length must be a power
+ * of two; twiddle factors and the bit reversal permutation are calculated
+ * once on creation so that an instance can be used to transform many blocks
+ * of the same length.</p>
+ * <p>Instances are immutable and may be shared between threads.</p>
+ */
+final class FFT {
+	/** Number of complex values transformed at once. */
+	private final int size;
+	/** Cosine of the twiddle factors. */
+	private final double[] cos;
+	/** Sine of the twiddle factors. */
+	private final double[] sin;
+	/** Bit reversed index for each position. */
+	private final int[] reversed;
+
+	/**
+	 * Initializes a new instance for the specified transform length.
+	 * @param size Number of complex values, must be a power of two.
+	 */
+	public FFT(int size) {
+		if (size <= 0 || Integer.bitCount(size) != 1) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Transform length must be a power of two: {0,number,#}", size)); //$NON-NLS-1$
+		}
+		this.size = size;
+		cos = new double[size/2];
+		sin = new double[size/2];
+		for (int i = 0; i < size/2; i++) {
+			double angle = -2.0*Math.PI*i/size;
+			cos[i] = Math.cos(angle);
+			sin[i] = Math.sin(angle);
+		}
+		reversed = new int[size];
+		int bits = Integer.numberOfTrailingZeros(size);
+		for (int i = 1; i < size; i++) {
+			reversed[i] = Integer.reverse(i) >>> (Integer.SIZE - bits);
+		}
+	}
+
+	/**
+	 * Returns the smallest power of two that is greater than or equal to
+	 * the specified value.
+	 * @param value Positive value.
+	 * @return Power of two.
+	 */
+	public static int getSize(int value) {
+		return (value <= 1) ? 1 : Integer.highestOneBit(value - 1) << 1;
+	}
+
+	/**
+	 * Returns the number of complex values transformed at once.
+	 * @return Transform length.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Transforms the specified complex values in place.
+	 * @param re Real parts.
+	 * @param im Imaginary parts.
+	 */
+	public void transform(double[] re, double[] im) {
+		transform(re, im, false);
+	}
+
+	/**
+	 * Applies the inverse transform to the specified complex values in place.
+	 * The results are scaled by the reciprocal of the transform length.
+	 * @param re Real parts.
+	 * @param im Imaginary parts.
+	 */
+	public void inverse(double[] re, double[] im) {
+		transform(re, im, true);
+		double scale = 1.0/size;
+		for (int i = 0; i < size; i++) {
+			re[i] *= scale;
+			im[i] *= scale;
+		}
+	}
+
+	/**
+	 * Transforms the specified complex values in place without scaling.
+	 * @param re Real parts.
+	 * @param im Imaginary parts.
+	 * @param inverse {@code true} if the inverse transform should be
+	 *        calculated.
+	 */
+	private void transform(double[] re, double[] im, boolean inverse) {
+		if (re.length < size || im.length < size) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Expected at least {0,number,#} values, got {1,number,#} and {2,number,#}.", //$NON-NLS-1$
+				size, re.length, im.length));
+		}
+		for (int i = 1; i < size; i++) {
+			int j = reversed[i];
+			if (i < j) {
+				double t = re[i];
+				re[i] = re[j];
+				re[j] = t;
+				t = im[i];
+				im[i] = im[j];
+				im[j] = t;
+			}
+		}
+		double sign = inverse ? -1.0 : 1.0;
+		for (int half = 1; half < size; half <<= 1) {
+			int step = size/(2*half);
+			for (int start = 0; start < size; start += 2*half) {
+				for (int k = 0; k < half; k++) {
+					double wr = cos[k*step];
+					double wi = sign*sin[k*step];
+					int a = start + k;
+					int b = a + half;
+					double tr = wr*re[b] - wi*im[b];
+					double ti = wr*im[b] + wi*re[b];
+					re[b] = re[a] - tr;
+					im[b] = im[a] - ti;
+					re[a] += tr;
+					im[a] += ti;
+				}
+			}
+		}
+	}
+}
@@ -26,11 +26,21 @@ import java.io.ObjectInputStream;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
 
 import de.erichseifert.gral.data.AbstractDataSource;
 import de.erichseifert.gral.data.DataChangeEvent;
 import de.erichseifert.gral.data.DataListener;
 import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.util.ConcurrencyUtils;
 import de.erichseifert.gral.util.MathUtils;
 
 
@@ -41,12 +51,18 @@ import de.erichseifert.gral.util.MathUtils;
  * <p>Functionality includes:</p>
  * <ul>
  *   <li>Different modes for filtering (see {@link Mode})</li>
- *   <li>Support for listening for changes of the original data</li>
+ *   <li>Support for listening for changes of the original data. Filters
+ *   that define a footprint (see {@link #getFootprint()}) only filter the
+ *   rows again that depend on changed rows.</li>
  *   <li>Filtering of multiple columns</li>
+ *   <li>Parallel filtering of columns and blocks of rows using an
+ *   executor (see {@link #setExecutor(ExecutorService)})</li>
  * </ul>
  *
- * <p>Values of filtered columns are buffered. Access to unfiltered columns is
- * delegated to the original data source. Derived classes must make sure the
+ * <p>Values of filtered columns are buffered in primitive arrays. Access to
+ * unfiltered columns is delegated to the original data source. A
+ * {@link #snapshot() snapshot} shares these arrays, which are copied before
+ * they are changed again. Derived classes must make sure the
  * caches are updated when deserialization is done. This can be done by calling
  * {@code dataUpdated(this)} in a custom deserialization method.</p>
  */
@@ -55,6 +71,11 @@ public abstract class Filter2D extends AbstractDataSource
 	/** Version id for serialization. */
 	private static final long serialVersionUID = -5004453681128601437L;
 
+	/** Number of rows that are filtered by a single task. The rows are
+	split independently of the executor, so the results don't depend on
+	the number of threads. */
+	static final int BLOCK_ROWS = 1 << 15;
+
 	/** Type to define the behavior when engaging the borders of a column, i.e.
 	the filter would need more data values than available. */
 	public enum Mode {
@@ -75,10 +96,150 @@ public abstract class Filter2D extends AbstractDataSource
 
 	/** Columns that should be filtered. */
 	private final int[] cols;
-	/** Data that was produced by the filter. */
-	private transient ArrayList<Double[]> rows;
+	/** Values that were produced by the filter, stored column by column.
+	Empty cells are stored as {@code NaN}. */
+	private transient double[][] values;
+	/** Empty cells of each filtered column, or {@code null} for columns
+	without empty cells. */
+	private transient BitSet[] nulls;
+	/** Number of rows that were produced by the filter. */
+	private transient int size;
+	/** Whether the arrays of values are shared with a snapshot and have to
+	be copied before they are changed. */
+	private transient boolean shared;
 	/** Mode for handling. */
 	private Mode mode;
+	/** Executor that runs filter tasks in parallel, or {@code null} if all
+	tasks are run in the calling thread. */
+	private transient ExecutorService executor;
+
+	/**
+	 * Immutable copy of a filter that shares the arrays of filtered values
+	 * with the filter.
+	 */
+	private static final class Snapshot extends AbstractDataSource {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = 6211734589260318735L;
+
+		/** Version of the filter. */
+		private final long version;
+		/** Values of the filtered columns. */
+		private final double[][] values;
+		/** Empty cells of each filtered column. */
+		private final BitSet[] nulls;
+		/** Columns that are filtered. */
+		private final int[] cols;
+		/** Snapshot of the original data source that is used for unfiltered
+		columns, or {@code null} if all columns are filtered. */
+		private final DataSource original;
+		/** Number of columns. */
+		private final int columnCount;
+		/** Number of rows. */
+		private final int rowCount;
+
+		/**
+		 * Initializes a new snapshot.
+		 * @param filter Original filter.
+		 * @param version Version of the filter.
+		 * @param original Snapshot of the original data source, or
+		 *        {@code null} if all columns are filtered.
+		 */
+		public Snapshot(Filter2D filter, long version, DataSource original) {
+			super(filter.getName(), filter.getColumnTypes());
+			this.version = version;
+			this.values = filter.values;
+			this.nulls = filter.nulls;
+			this.cols = filter.cols;
+			this.original = original;
+			this.columnCount = filter.getColumnCount();
+			this.rowCount = filter.size;
+		}
+
+		/**
+		 * Returns the index of the filtered column using the index of the
+		 * original column.
+		 * @param col Index of the original column
+		 * @return Index of the filtered column
+		 */
+		private int getIndex(int col) {
+			if (cols.length == 0) {
+				return col;
+			}
+			return Arrays.binarySearch(cols, col);
+		}
+
+		@Override
+		public Comparable<?> get(int col, int row) {
+			int colPos = getIndex(col);
+			if (colPos < 0) {
+				return original.get(col, row);
+			}
+			checkRows(row, 1);
+			if (nulls[colPos] != null && nulls[colPos].get(row)) {
+				return null;
+			}
+			return values[colPos][row];
+		}
+
+		@Override
+		public double getDouble(int col, int row) {
+			int colPos = getIndex(col);
+			if (colPos < 0) {
+				return original.getDouble(col, row);
+			}
+			checkRows(row, 1);
+			return values[colPos][row];
+		}
+
+		@Override
+		public void getDoubles(int col, int row, double[] values, int offset, int length) {
+			int colPos = getIndex(col);
+			if (colPos < 0) {
+				original.getDoubles(col, row, values, offset, length);
+				return;
+			}
+			checkRows(row, length);
+			System.arraycopy(this.values[colPos], row, values, offset, length);
+		}
+
+		/**
+		 * Throws an exception if the specified range of rows doesn't exist.
+		 * @param row Index of the first row.
+		 * @param length Number of rows.
+		 */
+		private void checkRows(int row, int length) {
+			if (row < 0 || length < 0 || row + length > rowCount) {
+				throw new IndexOutOfBoundsException(MessageFormat.format(
+					"Rows [{0,number,integer}, {1,number,integer}) are out of bounds [0, {2,number,integer}).", //$NON-NLS-1$
+					row, row + length, rowCount));
+			}
+		}
+
+		@Override
+		public int getColumnCount() {
+			return columnCount;
+		}
+
+		@Override
+		public int getRowCount() {
+			return rowCount;
+		}
+
+		@Override
+		public long getVersion() {
+			return version;
+		}
+
+		@Override
+		public DataSource snapshot() {
+			return this;
+		}
+
+		@Override
+		public boolean isSnapshotShared() {
+			return true;
+		}
+	}
 
 	/**
 	 * Initializes a new instance with the specified data source, border
@@ -90,7 +251,9 @@ public abstract class Filter2D extends AbstractDataSource
 	 */
 	@SuppressWarnings("unchecked")
 	public Filter2D(DataSource original, Mode mode, int... cols) {
-		this.rows = new ArrayList<>(original.getRowCount());
+		values = new double[0][];
+		nulls = new BitSet[0];
+		executor = ConcurrencyUtils.getForkJoinPool();
 		this.original = original;
 		this.mode = mode;
 
@@ -141,32 +304,119 @@ public abstract class Filter2D extends AbstractDataSource
 				return Double.NaN;
 			} else if (getMode() == Mode.ZERO) {
 				return 0.0;
-			} else if (getMode() == Mode.REPEAT) {
-				row = MathUtils.limit(row, 0, rowLast);
-			} else if (getMode() == Mode.MIRROR) {
-				int rem = Math.abs(row) / rowLast;
-				int mod = Math.abs(row) % rowLast;
-				if ((rem & 1) == 0) {
-					row = mod;
-				} else {
-					row = rowLast - mod;
-				}
-			} else if (getMode() == Mode.CIRCULAR) {
-				if (row >= 0) {
-					row = row % (rowLast + 1);
-				} else {
-					row = (row + 1) % (rowLast + 1) + rowLast;
-				}
 			}
+			row = getBorderRow(row, rowLast);
 		}
 		return original.get(col, row);
 	}
 
+	/**
+	 * Returns the value of the original data source at the specified column
+	 * and row as a primitive {@code double}.
+	 * @param col Column index.
+	 * @param row Row index.
+	 * @return Original value, or {@code NaN} if the value is empty.
+	 */
+	protected double getOriginalDouble(int col, int row) {
+		int rowLast = original.getRowCount() - 1;
+		if (row < 0 || row > rowLast) {
+			if (getMode() == Mode.OMIT) {
+				return Double.NaN;
+			} else if (getMode() == Mode.ZERO) {
+				return 0.0;
+			}
+			row = getBorderRow(row, rowLast);
+		}
+		return original.getDouble(col, row);
+	}
+
+	/**
+	 * Maps a row index outside of the original data source to a valid row
+	 * index depending on the current mode.
+	 * @param row Row index outside of the original data.
+	 * @param rowLast Index of the last row of the original data.
+	 * @return Row index inside the original data.
+	 */
+	private int getBorderRow(int row, int rowLast) {
+		if (getMode() == Mode.REPEAT) {
+			row = MathUtils.limit(row, 0, rowLast);
+		} else if (getMode() == Mode.MIRROR) {
+			if (rowLast == 0) {
+				return 0;
+			}
+			int rem = Math.abs(row) / rowLast;
+			int mod = Math.abs(row) % rowLast;
+			if ((rem & 1) == 0) {
+				row = mod;
+			} else {
+				row = rowLast - mod;
+			}
+		} else if (getMode() == Mode.CIRCULAR) {
+			if (row >= 0) {
+				row = row % (rowLast + 1);
+			} else {
+				row = (row + 1) % (rowLast + 1) + rowLast;
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * Returns the values of a column of the original data source in the
+	 * specified range of rows. Rows outside of the original data source are
+	 * handled according to the current mode. Filters can use the returned
+	 * values without checking the borders of the data source for each value.
+	 * @param col Column index.
+	 * @param rowStart Index of the first row. It may be negative.
+	 * @param rowEnd Index after the last row. It may be larger than the
+	 *        number of rows.
+	 * @return Original values, or {@code NaN} for empty values.
+	 */
+	protected double[] getOriginalDoubles(int col, int rowStart, int rowEnd) {
+		double[] padded = new double[rowEnd - rowStart];
+		int innerStart = Math.min(Math.max(rowStart, 0), rowEnd);
+		int innerEnd = Math.max(Math.min(rowEnd, original.getRowCount()), innerStart);
+		for (int row = rowStart; row < innerStart; row++) {
+			padded[row - rowStart] = getOriginalDouble(col, row);
+		}
+		if (innerStart < innerEnd) {
+			original.getDoubles(col, innerStart, padded, innerStart - rowStart,
+				innerEnd - innerStart);
+		}
+		for (int row = innerEnd; row < rowEnd; row++) {
+			padded[row - rowStart] = getOriginalDouble(col, row);
+		}
+		return padded;
+	}
+
 	/**
 	 * Clears this Filter2D.
 	 */
 	protected void clear() {
-		rows.clear();
+		unshare();
+		size = 0;
+		Arrays.fill(nulls, null);
+	}
+
+	/**
+	 * Copies the arrays of values if they are shared with a snapshot, so
+	 * they can be changed.
+	 */
+	private void unshare() {
+		if (!shared) {
+			return;
+		}
+		double[][] valuesCopy = new double[values.length][];
+		BitSet[] nullsCopy = new BitSet[nulls.length];
+		for (int colPos = 0; colPos < values.length; colPos++) {
+			valuesCopy[colPos] = Arrays.copyOf(values[colPos], values[colPos].length);
+			if (nulls[colPos] != null) {
+				nullsCopy[colPos] = (BitSet) nulls[colPos].clone();
+			}
+		}
+		values = valuesCopy;
+		nulls = nullsCopy;
+		shared = false;
 	}
 
 	/**
@@ -174,7 +424,12 @@ public abstract class Filter2D extends AbstractDataSource
 	 * @param rowData Row data to be added.
 	 */
 	protected void add(Double[] rowData) {
-		rows.add(rowData);
+		unshare();
+		ensureCapacity(size + 1, rowData.length);
+		int row = size++;
+		for (int colPos = 0; colPos < rowData.length; colPos++) {
+			store(colPos, row, rowData[colPos]);
+		}
 	}
 
 	/**
@@ -182,12 +437,183 @@ public abstract class Filter2D extends AbstractDataSource
 	 * @param rowData Row to be added.
 	 */
 	protected void add(Number[] rowData) {
-		Double[] doubleData = new Double[rowData.length];
-		int i = 0;
-		for (Number value : rowData) {
-			doubleData[i++] = value.doubleValue();
+		unshare();
+		ensureCapacity(size + 1, rowData.length);
+		int row = size++;
+		for (int colPos = 0; colPos < rowData.length; colPos++) {
+			store(colPos, row, rowData[colPos].doubleValue());
+		}
+	}
+
+	/**
+	 * Inserts rows at the specified position. The values of the new rows
+	 * must be set before they are accessed.
+	 * @param row Index of the first new row.
+	 * @param count Number of new rows.
+	 */
+	protected void insert(int row, int count) {
+		unshare();
+		ensureCapacity(size + count, getColumnCountFiltered());
+		for (int colPos = 0; colPos < values.length; colPos++) {
+			System.arraycopy(values[colPos], row, values[colPos], row + count, size - row);
+			if (nulls[colPos] != null) {
+				nulls[colPos] = shift(nulls[colPos], row, count);
+			}
+		}
+		size += count;
+	}
+
+	/**
+	 * Removes rows at the specified position.
+	 * @param row Index of the first row to be removed.
+	 * @param count Number of rows to be removed.
+	 */
+	private void remove(int row, int count) {
+		unshare();
+		for (int colPos = 0; colPos < values.length; colPos++) {
+			System.arraycopy(values[colPos], row + count, values[colPos], row, size - row - count);
+			if (nulls[colPos] != null) {
+				nulls[colPos] = shift(nulls[colPos], row, -count);
+			}
+		}
+		size -= count;
+	}
+
+	/**
+	 * Moves all bits starting at the specified index. Bits in the range
+	 * {@code [index, index - distance)} are discarded if the distance is
+	 * negative.
+	 * @param bits Bits to be moved.
+	 * @param index Index of the first bit to be moved.
+	 * @param distance Number of positions the bits are moved by.
+	 * @return Moved bits, or {@code null} if no bit is set.
+	 */
+	private static BitSet shift(BitSet bits, int index, int distance) {
+		BitSet shifted = bits.get(0, index);
+		for (int i = bits.nextSetBit(index); i >= 0; i = bits.nextSetBit(i + 1)) {
+			if (i >= index - distance) {
+				shifted.set(i + distance);
+			}
+		}
+		return shifted.isEmpty() ? null : shifted;
+	}
+
+	/**
+	 * Makes sure that the specified number of rows and columns can be
+	 * stored.
+	 * @param rowCount Number of rows.
+	 * @param colCount Number of columns.
+	 */
+	private void ensureCapacity(int rowCount, int colCount) {
+		int capacity = values.length > 0 ? values[0].length : 0;
+		if (colCount > values.length) {
+			values = Arrays.copyOf(values, colCount);
+			nulls = Arrays.copyOf(nulls, colCount);
+			for (int colPos = 0; colPos < colCount; colPos++) {
+				if (values[colPos] == null) {
+					values[colPos] = new double[capacity];
+				}
+			}
+		}
+		if (rowCount > capacity) {
+			capacity = Math.max(rowCount, capacity + (capacity >> 1));
+			for (int colPos = 0; colPos < values.length; colPos++) {
+				values[colPos] = Arrays.copyOf(values[colPos], capacity);
+			}
+		}
+	}
+
+	/**
+	 * Stores a value in the specified cell.
+	 * @param colPos Index of the filtered column.
+	 * @param row Row index.
+	 * @param value Value, or {@code null} for an empty cell.
+	 */
+	private void store(int colPos, int row, Double value) {
+		BitSet empty = nulls[colPos];
+		if (value == null) {
+			values[colPos][row] = Double.NaN;
+			if (empty == null) {
+				empty = new BitSet();
+				nulls[colPos] = empty;
+			}
+			empty.set(row);
+			return;
+		}
+		values[colPos][row] = value;
+		if (empty != null) {
+			empty.clear(row);
+		}
+	}
+
+	/**
+	 * Returns the value of the specified cell.
+	 * @param colPos Index of the filtered column.
+	 * @param row Row index.
+	 * @return Value, or {@code null} for an empty cell.
+	 */
+	private Double load(int colPos, int row) {
+		if (nulls[colPos] != null && nulls[colPos].get(row)) {
+			return null;
+		}
+		return values[colPos][row];
+	}
+
+	/**
+	 * Throws an exception if the specified filtered row doesn't exist.
+	 * @param row Row index.
+	 */
+	private void checkRow(int row) {
+		if (row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException(MessageFormat.format(
+				"Row {0,number,integer} is out of bounds [0, {1,number,integer}).", //$NON-NLS-1$
+				row, size));
+		}
+	}
+
+	/**
+	 * Replaces the row with the specified index.
+	 * @param row Row index.
+	 * @param rowData Row data to be stored.
+	 */
+	protected void set(int row, Double[] rowData) {
+		checkRow(row);
+		unshare();
+		ensureCapacity(size, rowData.length);
+		for (int colPos = 0; colPos < rowData.length; colPos++) {
+			store(colPos, row, rowData[colPos]);
+		}
+	}
+
+	/**
+	 * Replaces the filtered values of consecutive rows of a column. Tasks
+	 * that are run by {@link #invokeAll(List)} may set the values of
+	 * different columns or of different rows concurrently.
+	 * @param col Index of the filtered column in the original data source.
+	 * @param row Index of the first row.
+	 * @param source Array containing the values.
+	 * @param offset Index of the first value in the array.
+	 * @param length Number of values.
+	 */
+	protected void setDoubles(int col, int row, double[] source, int offset, int length) {
+		int colPos = getIndex(col);
+		if (colPos < 0) {
+			throw new IllegalArgumentException(
+				"Can't set value in unfiltered column."); //$NON-NLS-1$
+		}
+		if (row < 0 || length < 0 || row + length > size) {
+			throw new IndexOutOfBoundsException(MessageFormat.format(
+				"Rows [{0,number,integer}, {1,number,integer}) are out of bounds [0, {2,number,integer}).", //$NON-NLS-1$
+				row, row + length, size));
+		}
+		unshare();
+		System.arraycopy(source, offset, values[colPos], row, length);
+		BitSet empty = nulls[colPos];
+		if (empty != null) {
+			synchronized (empty) {
+				empty.clear(row, row + length);
+			}
 		}
-		rows.add(doubleData);
 	}
 
 	/**
@@ -201,7 +627,33 @@ public abstract class Filter2D extends AbstractDataSource
 		if (colPos < 0) {
 			return original.get(col, row);
 		}
-		return rows.get(row)[colPos];
+		checkRow(row);
+		return load(colPos, row);
+	}
+
+	@Override
+	public double getDouble(int col, int row) {
+		int colPos = getIndex(col);
+		if (colPos < 0) {
+			return original.getDouble(col, row);
+		}
+		checkRow(row);
+		return values[colPos][row];
+	}
+
+	@Override
+	public void getDoubles(int col, int row, double[] values, int offset, int length) {
+		int colPos = getIndex(col);
+		if (colPos < 0) {
+			original.getDoubles(col, row, values, offset, length);
+			return;
+		}
+		if (row < 0 || length < 0 || row + length > size) {
+			throw new IndexOutOfBoundsException(MessageFormat.format(
+				"Rows [{0,number,integer}, {1,number,integer}) are out of bounds [0, {2,number,integer}).", //$NON-NLS-1$
+				row, row + length, size));
+		}
+		System.arraycopy(this.values[colPos], row, values, offset, length);
 	}
 
 	/**
@@ -217,8 +669,10 @@ public abstract class Filter2D extends AbstractDataSource
 			throw new IllegalArgumentException(
 				"Can't set value in unfiltered column."); //$NON-NLS-1$
 		}
-		Double old = rows.get(row)[colPos];
-		rows.get(row)[colPos] = value;
+		checkRow(row);
+		unshare();
+		Double old = load(colPos, row);
+		store(colPos, row, value);
 		notifyDataUpdated(new DataChangeEvent(this, col, row, old, value));
 		return old;
 	}
@@ -255,6 +709,46 @@ public abstract class Filter2D extends AbstractDataSource
 		return original.getRowCount();
 	}
 
+	/**
+	 * Returns a snapshot that shares the arrays of filtered values with this
+	 * filter. Values of unfiltered columns are read from a snapshot of the
+	 * original data source.
+	 * @return Snapshot of the current values.
+	 */
+	@Override
+	public DataSource snapshot() {
+		// The version is read first, so it is never newer than the values
+		long version = getVersion();
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			DataSource originalSnapshot = null;
+			if (!isFilteringAllColumns()) {
+				originalSnapshot = original.snapshot();
+			}
+			shared = true;
+			return new Snapshot(this, version, originalSnapshot);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns whether all columns are filtered, so that no values have to be
+	 * read from the original data source.
+	 * @return {@code true} if all columns are filtered.
+	 */
+	private boolean isFilteringAllColumns() {
+		return cols.length == 0 || cols.length >= getColumnCount();
+	}
+
+	@Override
+	public boolean isSnapshotShared() {
+		return isFilteringAllColumns() ||
+			((original instanceof AbstractDataSource) &&
+				((AbstractDataSource) original).isSnapshotShared());
+	}
+
 	/**
 	 * Method that is invoked when data has been added.
 	 * This method is invoked by objects that provide support for
@@ -264,8 +758,17 @@ public abstract class Filter2D extends AbstractDataSource
 	 *        have been added.
 	 */
 	public void dataAdded(DataSource source, DataChangeEvent... events) {
-		dataChanged(source, events);
-		notifyDataAdded(events);
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			if (source == original && insertRows(events)) {
+				return;
+			}
+			filter();
+			notifyDataAdded(events);
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
@@ -277,8 +780,17 @@ public abstract class Filter2D extends AbstractDataSource
 	 *        have been updated.
 	 */
 	public void dataUpdated(DataSource source, DataChangeEvent... events) {
-		dataChanged(source, events);
-		notifyDataUpdated(events);
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			if (source == original && updateRows(events)) {
+				return;
+			}
+			filter();
+			notifyDataUpdated(events);
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
@@ -290,20 +802,270 @@ public abstract class Filter2D extends AbstractDataSource
 	 *        have been removed.
 	 */
 	public void dataRemoved(DataSource source, DataChangeEvent... events) {
-		dataChanged(source, events);
-		notifyDataRemoved(events);
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			if (source == original && removeRows(events)) {
+				return;
+			}
+			filter();
+			notifyDataRemoved(events);
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
-	 * Method that is invoked when data has been added, updated, or removed.
-	 * This method is invoked by objects that provide support for
-	 * {@code DataListener}s and should not be called manually.
-	 * @param source Data source that has been changed
-	 * @param events Optional event object describing the data values that
-	 *        have been removed.
+	 * Filters the rows that have been inserted into the original data source
+	 * and the rows whose footprint contains inserted rows.
+	 * @param events Event objects describing the added data values.
+	 * @return {@code true} if the rows have been filtered, {@code false} if
+	 *         all rows have to be filtered again.
 	 */
-	private void dataChanged(DataSource source, DataChangeEvent... events) {
-		filter();
+	private boolean insertRows(DataChangeEvent[] events) {
+		int[] footprint = getFootprint();
+		int[] range = getRange(events);
+		if (footprint == null || range == null) {
+			return false;
+		}
+		int row = range[0];
+		int count = range[1];
+		int rowCount = original.getRowCount();
+		if (row > size || size + count != rowCount) {
+			return false;
+		}
+		insert(row, count);
+		List<int[]> affected = new ArrayList<>();
+		addAffectedRows(affected, footprint, row, count, rowCount);
+		List<DataChangeEvent> updates = refilter(affected, row, row + count);
+
+		notifyRowsAdded(row, count);
+		if (!updates.isEmpty()) {
+			notifyDataUpdated(updates.toArray(new DataChangeEvent[updates.size()]));
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the filtered rows that have been removed from the original
+	 * data source and filters the rows whose footprint contained removed
+	 * rows.
+	 * @param events Event objects describing the removed data values.
+	 * @return {@code true} if the rows have been filtered, {@code false} if
+	 *         all rows have to be filtered again.
+	 */
+	private boolean removeRows(DataChangeEvent[] events) {
+		int[] footprint = getFootprint();
+		int[] range = getRange(events);
+		if (footprint == null || range == null) {
+			return false;
+		}
+		int row = range[0];
+		int count = range[1];
+		int rowCount = original.getRowCount();
+		if (row + count > size || size - count != rowCount) {
+			return false;
+		}
+		remove(row, count);
+		List<int[]> affected = new ArrayList<>();
+		addAffectedRows(affected, footprint, row, 0, rowCount);
+		List<DataChangeEvent> updates = refilter(affected, 0, 0);
+
+		notifyRowsRemoved(row, count);
+		if (!updates.isEmpty()) {
+			notifyDataUpdated(updates.toArray(new DataChangeEvent[updates.size()]));
+		}
+		return true;
+	}
+
+	/**
+	 * Filters the rows whose footprint contains updated values or rows that
+	 * have been shifted out of or into the original data source.
+	 * @param events Event objects describing the updated data values.
+	 * @return {@code true} if the rows have been filtered, {@code false} if
+	 *         all rows have to be filtered again.
+	 */
+	private boolean updateRows(DataChangeEvent[] events) {
+		int[] footprint = getFootprint();
+		if (footprint == null || events == null || events.length == 0) {
+			return false;
+		}
+		int rowCount = original.getRowCount();
+		List<int[]> affected = new ArrayList<>();
+
+		int shift = getShift(events);
+		if (shift > 0) {
+			// The oldest rows have been discarded and new rows appended
+			int kept = size - shift;
+			if (kept < 0 || rowCount < kept) {
+				return false;
+			}
+			remove(0, shift);
+			insert(kept, rowCount - kept);
+			addAffectedRows(affected, footprint, 0, 0, rowCount);
+			addAffectedRows(affected, footprint, kept, rowCount - kept, rowCount);
+			List<DataChangeEvent> updates = refilter(affected, kept, rowCount);
+
+			notifyRowsShifted(rowCount, shift);
+			if (!updates.isEmpty()) {
+				notifyDataUpdated(updates.toArray(new DataChangeEvent[updates.size()]));
+			}
+			return true;
+		}
+
+		if (size != rowCount) {
+			return false;
+		}
+		List<DataChangeEvent> updates = new ArrayList<>();
+		for (DataChangeEvent event : events) {
+			if (event.isRange() || event.getRow() < 0 || event.getRow() >= rowCount) {
+				return false;
+			}
+			if (isFiltered(event.getCol())) {
+				addAffectedRows(affected, footprint, event.getRow(), 1, rowCount);
+			} else {
+				// Values of unfiltered columns are passed through
+				updates.add(event);
+			}
+		}
+		updates.addAll(refilter(affected, 0, 0));
+		if (!updates.isEmpty()) {
+			notifyDataUpdated(updates.toArray(new DataChangeEvent[updates.size()]));
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the ranges of filtered rows that depend on the specified original
+	 * rows. The footprint is extended to contain the filtered row itself,
+	 * because inserted or removed rows also move the filtered rows. If
+	 * values outside of the original data source depend on its size or its
+	 * values, the rows at both ends are added as well.
+	 * @param affected List of ranges of filtered rows.
+	 * @param footprint Smallest and largest offset of the original rows
+	 *        that are used to calculate a filtered row.
+	 * @param row Index of the first original row that has been changed.
+	 * @param count Number of original rows that have been changed.
+	 * @param rowCount Number of filtered rows.
+	 */
+	private void addAffectedRows(List<int[]> affected, int[] footprint,
+			int row, int count, int rowCount) {
+		int offsetMin = Math.min(footprint[0], 0);
+		int offsetMax = Math.max(footprint[1], 0);
+		addRange(affected, row - offsetMax, row + count - offsetMin, rowCount);
+		if (getMode() != Mode.OMIT && getMode() != Mode.ZERO) {
+			addRange(affected, 0, -offsetMin, rowCount);
+			addRange(affected, rowCount - offsetMax, rowCount, rowCount);
+		}
+	}
+
+	/**
+	 * Adds a range of rows that is limited to the existing rows.
+	 * @param ranges List of ranges.
+	 * @param rowStart Index of the first row.
+	 * @param rowEnd Index after the last row.
+	 * @param rowCount Number of rows.
+	 */
+	private static void addRange(List<int[]> ranges, int rowStart, int rowEnd, int rowCount) {
+		rowStart = Math.max(rowStart, 0);
+		rowEnd = Math.min(rowEnd, rowCount);
+		if (rowStart < rowEnd) {
+			ranges.add(new int[] {rowStart, rowEnd});
+		}
+	}
+
+	/**
+	 * Filters the specified ranges of rows and returns events for all
+	 * filtered values that have changed. No events are created for the
+	 * specified range of new rows.
+	 * @param ranges Ranges of rows to be filtered.
+	 * @param newStart Index of the first new row.
+	 * @param newEnd Index after the last new row.
+	 * @return Events describing the changed values.
+	 */
+	private List<DataChangeEvent> refilter(List<int[]> ranges, int newStart, int newEnd) {
+		List<DataChangeEvent> updates = new ArrayList<>();
+		Collections.sort(ranges, new Comparator<int[]>() {
+			public int compare(int[] range1, int[] range2) {
+				return Integer.compare(range1[0], range2[0]);
+			}
+		});
+		int index = 0;
+		while (index < ranges.size()) {
+			// Merge overlapping and adjacent ranges
+			int rowStart = ranges.get(index)[0];
+			int rowEnd = ranges.get(index)[1];
+			for (index++; index < ranges.size() && ranges.get(index)[0] <= rowEnd; index++) {
+				rowEnd = Math.max(rowEnd, ranges.get(index)[1]);
+			}
+
+			double[][] previous = new double[values.length][];
+			BitSet[] previousNulls = new BitSet[values.length];
+			for (int colPos = 0; colPos < values.length; colPos++) {
+				previous[colPos] = Arrays.copyOfRange(values[colPos], rowStart, rowEnd);
+				if (nulls[colPos] != null) {
+					previousNulls[colPos] = nulls[colPos].get(rowStart, rowEnd);
+				}
+			}
+			filter(rowStart, rowEnd);
+			for (int colPos = 0; colPos < values.length; colPos++) {
+				for (int row = rowStart; row < rowEnd; row++) {
+					if (row >= newStart && row < newEnd) {
+						continue;
+					}
+					Double valOld = previous[colPos][row - rowStart];
+					if (previousNulls[colPos] != null && previousNulls[colPos].get(row - rowStart)) {
+						valOld = null;
+					}
+					Double valNew = load(colPos, row);
+					if (valOld == null ? valNew != null : !valOld.equals(valNew)) {
+						updates.add(new DataChangeEvent(
+							this, getIndexOriginal(colPos), row, valOld, valNew));
+					}
+				}
+			}
+		}
+		return updates;
+	}
+
+	/**
+	 * Returns the range of rows if all specified events describe the same
+	 * consecutive rows.
+	 * @param events Event objects.
+	 * @return Index of the first row and number of rows, or {@code null} if
+	 *         the events describe different rows.
+	 */
+	private static int[] getRange(DataChangeEvent[] events) {
+		if (events == null || events.length == 0) {
+			return null;
+		}
+		int row = events[0].getRow();
+		int count = events[0].getRowCount();
+		for (DataChangeEvent event : events) {
+			if (event.getRow() != row || event.getRowCount() != count ||
+					event.getShift() != 0 || row < 0 || count <= 0) {
+				return null;
+			}
+		}
+		return new int[] {row, count};
+	}
+
+	/**
+	 * Returns the number of discarded rows if the specified events only
+	 * describe that the oldest rows have been discarded and new rows have
+	 * been appended.
+	 * @param events Event objects describing the updated data values.
+	 * @return Number of discarded rows, or {@code 0} if the events describe
+	 *         a different change.
+	 */
+	private static int getShift(DataChangeEvent[] events) {
+		int shift = events[0].getShift();
+		for (DataChangeEvent event : events) {
+			if (!event.isRange() || event.getRow() != 0 || event.getShift() != shift) {
+				return 0;
+			}
+		}
+		return shift;
 	}
 
 	/**
@@ -346,6 +1108,101 @@ public abstract class Filter2D extends AbstractDataSource
 	 */
 	protected abstract void filter();
 
+	/**
+	 * Filters the rows in the specified range again and stores them using
+	 * {@link #setDoubles(int, int, double[], int, int)} or
+	 * {@link #set(int, Double[])}. This method is only invoked if
+	 * {@link #getFootprint()} doesn't return {@code null}. The default
+	 * implementation filters all rows.
+	 * @param rowStart Index of the first row.
+	 * @param rowEnd Index after the last row.
+	 */
+	protected void filter(int rowStart, int rowEnd) {
+		filter();
+	}
+
+	/**
+	 * Returns the range of original rows that is used to calculate a
+	 * filtered row. If a range is returned, changes of the original data
+	 * source only cause the filtered rows that depend on the changed rows to
+	 * be filtered again. This requires that there is one filtered row for
+	 * each original row. The default implementation returns {@code null},
+	 * i.e. all rows are filtered again after each change.
+	 * @return Smallest and largest offset of the original rows relative to
+	 *         the filtered row, or {@code null} if all rows depend on each
+	 *         other.
+	 */
+	protected int[] getFootprint() {
+		return null;
+	}
+
+	/**
+	 * Runs the specified tasks and waits until all of them are finished.
+	 * The tasks are run in parallel if an executor has been set and there
+	 * is more than one task, otherwise they are run in the calling thread.
+	 * The shared pool of the library is only used if it has more than one
+	 * thread.
+	 * The original data source should only be accessed by the calling
+	 * thread, because data sources aren't required to be thread-safe.
+	 * @param tasks Tasks to be run.
+	 * @throws IllegalStateException if the calling thread was interrupted
+	 *         or a task threw a checked exception.
+	 */
+	protected void invokeAll(List<Callable<Void>> tasks) {
+		// Tasks store their values concurrently, so the arrays must be copied first
+		unshare();
+		ExecutorService executor = getExecutor();
+		try {
+			boolean parallel = executor != null && tasks.size() > 1 &&
+				(executor != ConcurrencyUtils.getForkJoinPool() || ConcurrencyUtils.isParallel());
+			if (!parallel) {
+				for (Callable<Void> task : tasks) {
+					task.call();
+				}
+				return;
+			}
+			for (Future<Void> result : executor.invokeAll(tasks)) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the executor that is used to filter columns and blocks of
+	 * rows in parallel. By default the fork/join pool shared by the library
+	 * is used.
+	 * @return Executor, or {@code null} if filtering is done in the calling
+	 *         thread.
+	 */
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Sets the executor that is used to filter columns and blocks of rows
+	 * in parallel. The filtered values don't depend on the executor.
+	 * @param executor Executor, or {@code null} if filtering should be done
+	 *        in the calling thread.
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
 	/**
 	 * Returns the Mode of this Filter2D.
 	 * @return Mode of filtering.
@@ -376,7 +1233,9 @@ public abstract class Filter2D extends AbstractDataSource
 		in.defaultReadObject();
 
 		// Handle transient fields
-		rows = new ArrayList<>();
+		values = new double[0][];
+		nulls = new BitSet[0];
+		executor = ConcurrencyUtils.getForkJoinPool();
 
 		// Update caches
 		original.addDataListener(this);
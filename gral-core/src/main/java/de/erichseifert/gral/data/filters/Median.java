@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import de.erichseifert.gral.data.DataSource;
 import de.erichseifert.gral.util.MathUtils;
@@ -72,63 +73,62 @@ public class Median extends Filter2D {
 		if (getWindowSize() <= 0) {
 			return;
 		}
-		List<List<Double>> colWindows =
-				new ArrayList<>(getColumnCount());
+		insert(0, getRowCount());
+		filter(0, getRowCount());
+	}
+
+	@Override
+	protected void filter(int rowStart, int rowEnd) {
+		if (rowStart >= rowEnd) {
+			return;
+		}
+		int windowSize = getWindowSize();
+		int prefill = Math.max(0, windowSize - getOffset());
+		int indexStart = Math.max(0, prefill + rowStart + 1 - windowSize);
+		int indexEnd = prefill + rowEnd;
+		// Range of original rows that pass through the window
+		int rowMin = Math.min(getWindowRow(indexStart, prefill),
+			getWindowRow(Math.max(indexStart, prefill), prefill));
+		int rowMax = getWindowRow(indexEnd - 1, prefill);
+
+		// The original values are read in the calling thread
+		List<Callable<Void>> tasks = new ArrayList<>();
 		for (int colIndex = 0; colIndex < getColumnCountFiltered(); colIndex++) {
 			int colIndexOriginal = getIndexOriginal(colIndex);
-			List<Double> window = new ArrayList<>(getWindowSize());
-			colWindows.add(window);
-			// Pre-fill window
-			for (int rowIndex = getOffset() - getWindowSize(); rowIndex < 0; rowIndex++) {
-				Comparable<?> vOrig = getOriginal(colIndexOriginal, rowIndex);
-				double v = ((Number) vOrig).doubleValue();
-				window.add(v);
+			double[] values = getOriginalDoubles(colIndexOriginal, rowMin, rowMax + 1);
+			for (int row = rowStart; row < rowEnd; row += BLOCK_ROWS) {
+				tasks.add(new MedianTask(values, rowMin, colIndexOriginal,
+					row, Math.min(row + BLOCK_ROWS, rowEnd)));
 			}
 		}
-		for (int rowIndex = 0; rowIndex < getRowCount(); rowIndex++) {
-			Double[] filteredRow = new Double[getColumnCountFiltered()];
-			for (int colIndex = 0; colIndex < filteredRow.length; colIndex++) {
-				List<Double> window = colWindows.get(colIndex);
-				if (window.size() >= getWindowSize()) {
-					window.remove(0);
-				}
-				int colIndexOriginal = getIndexOriginal(colIndex);
-				Comparable<?> vOrig = getOriginal(colIndexOriginal,
-						rowIndex - getOffset() + getWindowSize());
-				double v = ((Number) vOrig).doubleValue();
-				window.add(v);
-				filteredRow[colIndex] = median(window);
-			}
-			add(filteredRow);
+		invokeAll(tasks);
+	}
+
+	@Override
+	protected int[] getFootprint() {
+		if (getWindowSize() <= 0) {
+			return null;
 		}
+		// The first rows also use the values that pre-fill the window
+		return new int[] {
+			Math.min(1 - getOffset(), 1 - getWindowSize()),
+			getWindowSize() - getOffset()
+		};
 	}
 
 	/**
-	 * Calculates the median for the specified values in the window.
-	 * @param w List of values the median will be calculated for.
-	 * @return Median.
+	 * Returns the original row of a value in the sequence of values that
+	 * pass through the window. The sequence starts with the values that
+	 * pre-fill the window, followed by one value for each filtered row.
+	 * @param index Index in the sequence of values.
+	 * @param prefill Number of values that pre-fill the window.
+	 * @return Original row index.
 	 */
-	private double median(List<Double> w) {
-		if (w.size() == 1) {
-			return w.get(0);
+	private int getWindowRow(int index, int prefill) {
+		if (index < prefill) {
+			return getOffset() - getWindowSize() + index;
 		}
-		List<Double> window = new ArrayList<>(w.size());
-		for (Double v : w) {
-			if (!MathUtils.isCalculatable(v)) {
-				return Double.NaN;
-			}
-			window.add(v);
-		}
-		int medianIndex = MathUtils.randomizedSelect(
-				window, 0, window.size() - 1, window.size()/2);
-		double median = window.get(medianIndex);
-		if ((window.size() & 1) == 0) {
-			int medianUpperIndex = MathUtils.randomizedSelect(
-					window, 0, window.size() - 1, window.size()/2 + 1);
-			double medianUpper = window.get(medianUpperIndex);
-			median = (median + medianUpper)/2.0;
-		}
-		return median;
+		return index - prefill - getOffset() + getWindowSize();
 	}
 
 	/**
@@ -182,4 +182,319 @@ public class Median extends Filter2D {
 		// Update caches
 		dataUpdated(this);
 	}
+
+	/**
+	 * Task that calculates the medians of a block of rows of a column and
+	 * stores them.
+	 */
+	private final class MedianTask implements Callable<Void> {
+		/** Original values of all rows that pass through the window. */
+		private final double[] values;
+		/** Index of the row that corresponds to the first value. */
+		private final int rowMin;
+		/** Index of the filtered column in the original data source. */
+		private final int col;
+		/** Index of the first row. */
+		private final int rowStart;
+		/** Index after the last row. */
+		private final int rowEnd;
+
+		/**
+		 * Initializes a new task.
+		 * @param values Original values of all rows that pass through the
+		 *        window.
+		 * @param rowMin Index of the row that corresponds to the first value.
+		 * @param col Index of the filtered column in the original data
+		 *        source.
+		 * @param rowStart Index of the first row.
+		 * @param rowEnd Index after the last row.
+		 */
+		public MedianTask(double[] values, int rowMin, int col, int rowStart, int rowEnd) {
+			this.values = values;
+			this.rowMin = rowMin;
+			this.col = col;
+			this.rowStart = rowStart;
+			this.rowEnd = rowEnd;
+		}
+
+		@Override
+		public Void call() {
+			int windowSize = getWindowSize();
+			int prefill = Math.max(0, windowSize - getOffset());
+			int indexStart = Math.max(0, prefill + rowStart + 1 - windowSize);
+			Window window = new Window(windowSize);
+			// Fill window with the values that precede the first row
+			for (int index = indexStart; index < prefill + rowStart; index++) {
+				window.add(values[getWindowRow(index, prefill) - rowMin]);
+			}
+			double[] medians = new double[rowEnd - rowStart];
+			for (int rowIndex = rowStart; rowIndex < rowEnd; rowIndex++) {
+				if (window.size() >= windowSize) {
+					window.remove();
+				}
+				window.add(values[getWindowRow(prefill + rowIndex, prefill) - rowMin]);
+				medians[rowIndex - rowStart] = window.median();
+			}
+			setDoubles(col, rowStart, medians, 0, medians.length);
+			return null;
+		}
+	}
+
+	/**
+	 * Window of values that calculates the median of its values in
+	 * logarithmic time. Values are added at the end and removed from the
+	 * start of the window. Values that can be used for calculations are kept
+	 * in two heaps: a max-heap with the smaller half of the values and a
+	 * min-heap with the larger half. For windows with an odd number of values
+	 * the median is the largest value of the smaller half, which matches the
+	 * rank used by earlier versions of this filter.
+	 */
+	private static final class Window {
+		/** Values in the window, stored as ring buffer. */
+		private final double[] values;
+		/** Heap that contains the value of each slot, or {@code null} if the
+		value can't be used for calculations. */
+		private final Heap[] heaps;
+		/** Position of each slot in its heap. */
+		private final int[] positions;
+		/** Heap with the smaller half of the values. */
+		private final Heap lower;
+		/** Heap with the larger half of the values. */
+		private final Heap upper;
+		/** Slot of the first value in the window. */
+		private int start;
+		/** Number of values in the window. */
+		private int size;
+		/** Number of values that can't be used for calculations. */
+		private int invalid;
+
+		/**
+		 * Initializes a new empty window.
+		 * @param capacity Maximal number of values.
+		 */
+		public Window(int capacity) {
+			values = new double[capacity];
+			heaps = new Heap[capacity];
+			positions = new int[capacity];
+			lower = new Heap(this, true);
+			upper = new Heap(this, false);
+		}
+
+		/**
+		 * Removes all values from the window.
+		 */
+		public void clear() {
+			start = 0;
+			size = 0;
+			invalid = 0;
+			lower.size = 0;
+			upper.size = 0;
+		}
+
+		/**
+		 * Returns the number of values in the window.
+		 * @return Number of values.
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * Adds a value to the end of the window.
+		 * @param value Value.
+		 */
+		public void add(double value) {
+			int slot = (start + size) % values.length;
+			values[slot] = value;
+			size++;
+			if (!MathUtils.isCalculatable(value)) {
+				heaps[slot] = null;
+				invalid++;
+				return;
+			}
+			if (lower.size > 0 && Double.compare(value, lower.peek()) <= 0) {
+				lower.add(slot);
+			} else {
+				upper.add(slot);
+			}
+			balance();
+		}
+
+		/**
+		 * Removes the first value of the window.
+		 */
+		public void remove() {
+			int slot = start;
+			start = (start + 1) % values.length;
+			size--;
+			Heap heap = heaps[slot];
+			if (heap == null) {
+				invalid--;
+				return;
+			}
+			heap.remove(positions[slot]);
+			balance();
+		}
+
+		/**
+		 * Moves values between the heaps until the lower heap contains the
+		 * smaller half of the values.
+		 */
+		private void balance() {
+			int lowerSize = (lower.size + upper.size)/2;
+			while (lower.size > lowerSize) {
+				upper.add(lower.remove(0));
+			}
+			while (lower.size < lowerSize) {
+				lower.add(upper.remove(0));
+			}
+		}
+
+		/**
+		 * Returns the median of the values in the window. A single value is
+		 * returned as it is, otherwise {@code NaN} is returned if one of the
+		 * values can't be used for calculations.
+		 * @return Median.
+		 */
+		public double median() {
+			if (size == 1) {
+				return values[start];
+			}
+			if (invalid > 0) {
+				return Double.NaN;
+			}
+			if ((size & 1) == 0) {
+				return (lower.peek() + upper.peek())/2.0;
+			}
+			return lower.peek();
+		}
+	}
+
+	/**
+	 * Binary heap of window slots that is ordered by the values of the
+	 * slots. The heap keeps the positions of the slots up to date so that
+	 * arbitrary slots can be removed.
+	 */
+	private static final class Heap {
+		/** Window that contains the values. */
+		private final Window window;
+		/** {@code true} if the largest value is at the top of the heap,
+		{@code false} for the smallest value. */
+		private final boolean max;
+		/** Slots in heap order. */
+		private final int[] slots;
+		/** Number of slots in the heap. */
+		private int size;
+
+		/**
+		 * Initializes a new empty heap.
+		 * @param window Window that contains the values.
+		 * @param max {@code true} if the largest value should be at the top
+		 *        of the heap.
+		 */
+		public Heap(Window window, boolean max) {
+			this.window = window;
+			this.max = max;
+			slots = new int[window.values.length];
+		}
+
+		/**
+		 * Returns the value at the top of the heap.
+		 * @return Largest or smallest value.
+		 */
+		public double peek() {
+			return window.values[slots[0]];
+		}
+
+		/**
+		 * Adds a slot to the heap.
+		 * @param slot Slot of the window.
+		 */
+		public void add(int slot) {
+			window.heaps[slot] = this;
+			set(size++, slot);
+			siftUp(size - 1);
+		}
+
+		/**
+		 * Removes the slot at the specified position of the heap.
+		 * @param position Position in the heap.
+		 * @return Removed slot.
+		 */
+		public int remove(int position) {
+			int slot = slots[position];
+			size--;
+			if (position < size) {
+				set(position, slots[size]);
+				if (!siftUp(position)) {
+					siftDown(position);
+				}
+			}
+			return slot;
+		}
+
+		/**
+		 * Returns whether the value of the first slot has to be closer to the
+		 * top of the heap than the value of the second slot.
+		 * @param slot1 First slot.
+		 * @param slot2 Second slot.
+		 * @return {@code true} if the first slot has precedence.
+		 */
+		private boolean precedes(int slot1, int slot2) {
+			int comparison = Double.compare(window.values[slot1], window.values[slot2]);
+			return max ? comparison > 0 : comparison < 0;
+		}
+
+		/**
+		 * Stores a slot at the specified position of the heap.
+		 * @param position Position in the heap.
+		 * @param slot Slot of the window.
+		 */
+		private void set(int position, int slot) {
+			slots[position] = slot;
+			window.positions[slot] = position;
+		}
+
+		/**
+		 * Moves the slot at the specified position towards the top of the
+		 * heap until the heap order is restored.
+		 * @param position Position in the heap.
+		 * @return {@code true} if the slot was moved.
+		 */
+		private boolean siftUp(int position) {
+			int slot = slots[position];
+			int start = position;
+			while (position > 0) {
+				int parent = (position - 1)/2;
+				if (!precedes(slot, slots[parent])) {
+					break;
+				}
+				set(position, slots[parent]);
+				position = parent;
+			}
+			set(position, slot);
+			return position != start;
+		}
+
+		/**
+		 * Moves the slot at the specified position towards the bottom of the
+		 * heap until the heap order is restored.
+		 * @param position Position in the heap.
+		 */
+		private void siftDown(int position) {
+			int slot = slots[position];
+			while (2*position + 1 < size) {
+				int child = 2*position + 1;
+				if (child + 1 < size && precedes(slots[child + 1], slots[child])) {
+					child++;
+				}
+				if (!precedes(slots[child], slot)) {
+					break;
+				}
+				set(position, slots[child]);
+				position = child;
+			}
+			set(position, slot);
+		}
+	}
 }
@@ -26,6 +26,7 @@ import java.io.ObjectInputStream;
 import java.util.Arrays;
 import java.util.Iterator;
 
+import de.erichseifert.gral.data.AbstractDataSource;
 import de.erichseifert.gral.data.Column;
 import de.erichseifert.gral.data.DataSource;
 import de.erichseifert.gral.data.DataTable;
@@ -75,15 +76,65 @@ public class Resize extends Filter2D {
 		return rows;
 	}
 
+	/**
+	 * Returns whether the size of the original data source is retained, so
+	 * that its values are returned unchanged.
+	 * @return {@code true} if the original values are used, otherwise
+	 *         {@code false}.
+	 */
+	private boolean isOriginalSize() {
+		return (cols <= 0 || cols == getOriginal().getColumnCount()) &&
+			(rows <= 0 || rows == getOriginal().getRowCount());
+	}
+
 	@Override
 	public Comparable<?> get(int col, int row) {
-		if ((cols <= 0 || cols == getOriginal().getColumnCount()) &&
-			(rows <= 0 || rows == getOriginal().getRowCount())) {
+		if (isOriginalSize()) {
 			return getOriginal(col, row);
 		}
 		return super.get(col, row);
 	}
 
+	@Override
+	public double getDouble(int col, int row) {
+		if (isOriginalSize()) {
+			return getOriginalDouble(col, row);
+		}
+		return super.getDouble(col, row);
+	}
+
+	@Override
+	public void getDoubles(int col, int row, double[] values, int offset, int length) {
+		if (isOriginalSize()) {
+			getOriginal().getDoubles(col, row, values, offset, length);
+			return;
+		}
+		super.getDoubles(col, row, values, offset, length);
+	}
+
+	/**
+	 * Returns a snapshot of the resized values, or a snapshot of the
+	 * original data source if its size is retained.
+	 * @return Snapshot of the current values.
+	 */
+	@Override
+	public DataSource snapshot() {
+		if (isOriginalSize()) {
+			return getOriginal().snapshot();
+		}
+		return super.snapshot();
+	}
+
+	@Override
+	public boolean isSnapshotShared() {
+		if (isOriginalSize()) {
+			DataSource original = getOriginal();
+			return (original instanceof AbstractDataSource) &&
+				((AbstractDataSource) original).isSnapshotShared();
+		}
+		return true;
+	}
+
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@Override
 	protected void filter() {
@@ -58,6 +58,45 @@ public abstract class AbstractHistogram2D extends AbstractDataSource
 	 */
 	protected abstract void rebuildCells();
 
+	/**
+	 * Updates the histogram values with data that has been added. The default
+	 * implementation doesn't support incremental updates and returns
+	 * {@code false}, which causes the cells to be rebuilt.
+	 * @param events Event objects describing the data values that have been
+	 *        added.
+	 * @return {@code true} if the histogram values have been updated,
+	 *         {@code false} if the cells have to be rebuilt.
+	 */
+	protected boolean addCells(DataChangeEvent... events) {
+		return false;
+	}
+
+	/**
+	 * Updates the histogram values with data that has been changed. The
+	 * default implementation doesn't support incremental updates and returns
+	 * {@code false}, which causes the cells to be rebuilt.
+	 * @param events Event objects describing the data values that have been
+	 *        updated.
+	 * @return {@code true} if the histogram values have been updated,
+	 *         {@code false} if the cells have to be rebuilt.
+	 */
+	protected boolean updateCells(DataChangeEvent... events) {
+		return false;
+	}
+
+	/**
+	 * Updates the histogram values with data that has been removed. The
+	 * default implementation doesn't support incremental updates and returns
+	 * {@code false}, which causes the cells to be rebuilt.
+	 * @param events Event objects describing the data values that have been
+	 *        removed.
+	 * @return {@code true} if the histogram values have been updated,
+	 *         {@code false} if the cells have to be rebuilt.
+	 */
+	protected boolean removeCells(DataChangeEvent... events) {
+		return false;
+	}
+
 	/**
 	 * Method that is invoked when data has been added.
 	 * This method is invoked by objects that provide support for
@@ -67,7 +106,9 @@ public abstract class AbstractHistogram2D extends AbstractDataSource
 	 *        have been added.
 	 */
 	public void dataAdded(DataSource source, DataChangeEvent... events) {
-		dataChanged(source, events);
+		if (events == null || events.length == 0 || !addCells(events)) {
+			rebuildCells();
+		}
 		notifyDataAdded(events);
 	}
 
@@ -80,7 +121,9 @@ public abstract class AbstractHistogram2D extends AbstractDataSource
 	 *        have been updated.
 	 */
 	public void dataUpdated(DataSource source, DataChangeEvent... events) {
-		dataChanged(source, events);
+		if (events == null || events.length == 0 || !updateCells(events)) {
+			rebuildCells();
+		}
 		notifyDataUpdated(events);
 	}
 
@@ -93,22 +136,12 @@ public abstract class AbstractHistogram2D extends AbstractDataSource
 	 *        have been removed.
 	 */
 	public void dataRemoved(DataSource source, DataChangeEvent... events) {
-		dataChanged(source, events);
+		if (events == null || events.length == 0 || !removeCells(events)) {
+			rebuildCells();
+		}
 		notifyDataRemoved(events);
 	}
 
-	/**
-	 * Method that is invoked when data has been added, updated, or removed.
-	 * This method is invoked by objects that provide support for
-	 * {@code DataListener}s and should not be called manually.
-	 * @param source Data source that has been changed.
-	 * @param events Optional event object describing the data values that
-	 *        have been changed.
-	 */
-	private void dataChanged(DataSource source, DataChangeEvent... events) {
-		rebuildCells();
-	}
-
 	/**
 	 * Returns the data source associated to this histogram.
 	 * @return Data source
@@ -0,0 +1,661 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.statistics;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.text.MessageFormat;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.Lock;
+
+import de.erichseifert.gral.data.AbstractDataSource;
+import de.erichseifert.gral.data.DataChangeEvent;
+import de.erichseifert.gral.data.DataListener;
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.util.ConcurrencyUtils;
+import de.erichseifert.gral.util.MathUtils;
+
+/**
+ * <p>View that counts the numeric values of a column of an other data source
+ * in histogram bins. The bins can be equally sized on a linear or on a
+ * logarithmic scale, or they can be defined by custom breaks. Each bin
+ * contains the values that are greater than or equal to its lower limit and
+ * less than its upper limit. The last bin also contains its upper limit.</p>
+ * <p>The histogram is a data source itself with the bin centers in the first
+ * column and the counts in the second column, so it can be displayed by a
+ * {@link de.erichseifert.gral.plots.BarPlot} directly.</p>
+ * <p>Large columns are counted in parallel: every task counts a chunk of rows
+ * in its own array and the arrays are summed up afterwards. Single values
+ * that are added, updated, or removed are counted incrementally. For
+ * equally sized bins a base histogram with {@link #BASE_RESOLUTION} bins is
+ * maintained, so changing the bin count to a divisor of the resolution
+ * doesn't require to count the values again.</p>
+ */
+public class Histogram1D extends AbstractDataSource implements DataListener {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = 7380573187735394925L;
+
+	/** Number of bins of the base histogram that is used for re-binning.
+	It is divisible by all numbers up to 10 and by many larger ones. */
+	public static final int BASE_RESOLUTION = 5040;
+
+	/**
+	 * Scale on which all bins have equal width.
+	 */
+	public static enum Scale {
+		/** Bins of equal width. */
+		LINEAR,
+		/** Bins whose limits have a constant ratio. */
+		LOGARITHMIC
+	}
+
+	/** Data source that is used to build the histogram. */
+	private final DataSource data;
+	/** Index of the column that is counted. */
+	private final int dataColumn;
+	/** Scale of equally sized bins, or {@code null} for custom breaks. */
+	private final Scale scale;
+	/** Bins of the base histogram, or {@code null} for custom breaks. */
+	private final HistogramBins baseBins;
+	/** Counts of the base histogram, or {@code null} for custom breaks. */
+	private final long[] baseCounts;
+	/** Current bins. */
+	private HistogramBins bins;
+	/** Counts of the current bins. */
+	private long[] counts;
+
+	/**
+	 * Initializes a new histogram with the specified number of equally sized
+	 * bins that cover all values of the column.
+	 * @param data Data source to be analyzed.
+	 * @param col Index of the column to be analyzed.
+	 * @param binCount Number of bins.
+	 */
+	public Histogram1D(DataSource data, int col, int binCount) {
+		this(data, col, Scale.LINEAR, binCount);
+	}
+
+	/**
+	 * Initializes a new histogram with the specified number of bins that are
+	 * equally sized on the specified scale and cover all values of the
+	 * column.
+	 * @param data Data source to be analyzed.
+	 * @param col Index of the column to be analyzed.
+	 * @param scale Scale on which the bins are equally sized.
+	 * @param binCount Number of bins.
+	 */
+	public Histogram1D(DataSource data, int col, Scale scale, int binCount) {
+		this(data, col, scale,
+			data.getColumn(col).getStatistics(Statistics.MIN),
+			data.getColumn(col).getStatistics(Statistics.MAX),
+			binCount);
+	}
+
+	/**
+	 * Initializes a new histogram with the specified number of bins that are
+	 * equally sized on the specified scale.
+	 * @param data Data source to be analyzed.
+	 * @param col Index of the column to be analyzed.
+	 * @param scale Scale on which the bins are equally sized.
+	 * @param min Lower limit of the first bin.
+	 * @param max Upper limit of the last bin.
+	 * @param binCount Number of bins.
+	 */
+	public Histogram1D(DataSource data, int col, Scale scale,
+			double min, double max, int binCount) {
+		super(Double.class, Long.class);
+		if (binCount < 1) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Invalid bin count: {0,number,integer}. A histogram requires at least one bin.", //$NON-NLS-1$
+				binCount));
+		}
+		if (!MathUtils.isCalculatable(min) || !MathUtils.isCalculatable(max)
+				|| min >= max || (scale == Scale.LOGARITHMIC && min <= 0.0)) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Invalid range of {0} bins: {1} to {2}.", //$NON-NLS-1$
+				scale, min, max));
+		}
+		this.data = data;
+		dataColumn = col;
+		this.scale = scale;
+		baseBins = new HistogramBins(min, max, BASE_RESOLUTION,
+			scale == Scale.LOGARITHMIC, true);
+		baseCounts = new long[BASE_RESOLUTION];
+		bins = createBins(binCount);
+		rebuild();
+		data.addDataListener(this);
+	}
+
+	/**
+	 * Initializes a new histogram with bins between the specified breaks.
+	 * @param data Data source to be analyzed.
+	 * @param col Index of the column to be analyzed.
+	 * @param breaks Limits of the bins in ascending order.
+	 */
+	public Histogram1D(DataSource data, int col, Number... breaks) {
+		super(Double.class, Long.class);
+		if (breaks.length < 2) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Invalid break count: {0,number,integer}. A histogram requires at least two breaks to form a bin.", //$NON-NLS-1$
+				breaks.length));
+		}
+		for (int i = 1; i < breaks.length; i++) {
+			if (!(breaks[i].doubleValue() >= breaks[i - 1].doubleValue())) {
+				throw new IllegalArgumentException(MessageFormat.format(
+					"Breaks must be in ascending order: {0} is followed by {1}.", //$NON-NLS-1$
+					breaks[i - 1], breaks[i]));
+			}
+		}
+		this.data = data;
+		dataColumn = col;
+		scale = null;
+		baseBins = null;
+		baseCounts = null;
+		bins = new HistogramBins(true, breaks);
+		rebuild();
+		data.addDataListener(this);
+	}
+
+	/**
+	 * Returns the data source associated to this histogram.
+	 * @return Data source
+	 */
+	public DataSource getData() {
+		return data;
+	}
+
+	/**
+	 * Returns the index of the column that is analyzed.
+	 * @return Column index.
+	 */
+	public int getDataColumn() {
+		return dataColumn;
+	}
+
+	/**
+	 * Returns the scale on which the bins are equally sized.
+	 * @return Scale, or {@code null} if the histogram uses custom breaks.
+	 */
+	public Scale getScale() {
+		return scale;
+	}
+
+	/**
+	 * Returns the number of bins.
+	 * @return Number of bins.
+	 */
+	public int getBinCount() {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			return bins.getCount();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Divides the range of the histogram into the specified number of equally
+	 * sized bins. If {@link #BASE_RESOLUTION} is divisible by the bin count
+	 * the counts are aggregated from the base histogram, otherwise the values
+	 * are counted again.
+	 * @param binCount Number of bins.
+	 * @throws IllegalStateException if the histogram uses custom breaks.
+	 */
+	public void setBinCount(int binCount) {
+		if (scale == null) {
+			throw new IllegalStateException(
+				"The bin count of a histogram with custom breaks can't be changed."); //$NON-NLS-1$
+		}
+		if (binCount < 1) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Invalid bin count: {0,number,integer}. A histogram requires at least one bin.", //$NON-NLS-1$
+				binCount));
+		}
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			bins = createBins(binCount);
+			countBins();
+			notifyDataUpdated();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the lower and upper limit of the specified bin.
+	 * @param bin Bin index.
+	 * @return Extent of the bin.
+	 */
+	public Number[] getBinLimits(int bin) {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			return new Number[] {bins.getBreak(bin), bins.getBreak(bin + 1)};
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of values in the specified bin.
+	 * @param bin Bin index.
+	 * @return Number of values.
+	 */
+	public long getCount(int bin) {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			return counts[bin];
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the center of the specified bin in the first column and the
+	 * number of values in the bin in the second column.
+	 * @param col index of the column to return
+	 * @param row index of the bin to return
+	 * @return the specified value of the data cell
+	 */
+	public Comparable<?> get(int col, int row) {
+		Lock lock = getReadLock();
+		lock.lock();
+		try {
+			if (col == 1) {
+				return counts[row];
+			}
+			double lower = bins.getBreak(row);
+			double upper = bins.getBreak(row + 1);
+			if (scale == Scale.LOGARITHMIC) {
+				return Math.sqrt(lower*upper);
+			}
+			return (lower + upper)/2.0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int getRowCount() {
+		return getBinCount();
+	}
+
+	/**
+	 * Method that is invoked when data has been added.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been added.
+	 */
+	public void dataAdded(DataSource source, DataChangeEvent... events) {
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			if (!addValues(events)) {
+				rebuild();
+			}
+			notifyDataUpdated();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Method that is invoked when data has been updated.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been updated.
+	 */
+	public void dataUpdated(DataSource source, DataChangeEvent... events) {
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			if (!updateValues(events)) {
+				rebuild();
+			}
+			notifyDataUpdated();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Method that is invoked when data has been removed.
+	 * This method is invoked by objects that provide support for
+	 * {@code DataListener}s and should not be called manually.
+	 * @param source Data source that has been changed.
+	 * @param events Optional event object describing the data values that
+	 *        have been removed.
+	 */
+	public void dataRemoved(DataSource source, DataChangeEvent... events) {
+		Lock lock = getWriteLock();
+		lock.lock();
+		try {
+			if (!removeValues(events)) {
+				rebuild();
+			}
+			notifyDataUpdated();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Counts the values that have been added.
+	 * @param events Event objects describing the added values.
+	 * @return {@code true} if the values have been counted, {@code false} if
+	 *         all values have to be counted again.
+	 */
+	private boolean addValues(DataChangeEvent... events) {
+		if (events == null || events.length == 0) {
+			return false;
+		}
+		for (DataChangeEvent event : events) {
+			if (event.getCol() != dataColumn) {
+				continue;
+			}
+			if (event.isRange()) {
+				if (!countRows(event.getRow(), event.getRowCount())) {
+					return false;
+				}
+			} else if (event.getNew() == null) {
+				return false;
+			} else {
+				count(event.getNew(), 1);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Counts the values that have been updated.
+	 * @param events Event objects describing the updated values.
+	 * @return {@code true} if the values have been counted, {@code false} if
+	 *         all values have to be counted again.
+	 */
+	private boolean updateValues(DataChangeEvent... events) {
+		if (events == null || events.length == 0) {
+			return false;
+		}
+		for (DataChangeEvent event : events) {
+			if (event.isRange()) {
+				if (event.getShift() != 0) {
+					return false;
+				}
+				// Reordered rows don't change the counts
+				continue;
+			}
+			if (event.getCol() != dataColumn) {
+				continue;
+			}
+			if (event.getOld() == null && event.getNew() == null) {
+				return false;
+			}
+			count(event.getOld(), -1);
+			count(event.getNew(), 1);
+		}
+		return true;
+	}
+
+	/**
+	 * Uncounts the values that have been removed.
+	 * @param events Event objects describing the removed values.
+	 * @return {@code true} if the values have been uncounted, {@code false}
+	 *         if all values have to be counted again.
+	 */
+	private boolean removeValues(DataChangeEvent... events) {
+		if (events == null || events.length == 0) {
+			return false;
+		}
+		for (DataChangeEvent event : events) {
+			if (event.isRange()) {
+				return false;
+			}
+			if (event.getCol() != dataColumn) {
+				continue;
+			}
+			if (event.getOld() == null) {
+				return false;
+			}
+			count(event.getOld(), -1);
+		}
+		return true;
+	}
+
+	/**
+	 * Counts the values of consecutive rows of the analyzed column.
+	 * @param row Index of the first row.
+	 * @param rowCount Number of rows.
+	 * @return {@code true} if the rows have been counted, {@code false} if
+	 *         the rows don't exist anymore.
+	 */
+	private boolean countRows(int row, int rowCount) {
+		if (row < 0 || row + rowCount > data.getRowCount()) {
+			return false;
+		}
+		double[] values = new double[Math.min(rowCount, Statistics.BLOCK_SIZE)];
+		for (int offset = 0; offset < rowCount; offset += values.length) {
+			int length = Math.min(values.length, rowCount - offset);
+			data.getDoubles(dataColumn, row + offset, values, 0, length);
+			for (int i = 0; i < length; i++) {
+				count(values[i], 1);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Changes the counts of the bins that contain the specified value.
+	 * @param value Value.
+	 * @param delta Amount by which the counts will be changed.
+	 */
+	private void count(Comparable<?> value, int delta) {
+		if (value instanceof Number) {
+			count(((Number) value).doubleValue(), delta);
+		}
+	}
+
+	/**
+	 * Changes the counts of the bins that contain the specified value.
+	 * @param value Value.
+	 * @param delta Amount by which the counts will be changed.
+	 */
+	private void count(double value, int delta) {
+		int index = bins.indexOf(value);
+		if (index >= 0) {
+			counts[index] += delta;
+		}
+		if (baseBins != null) {
+			index = baseBins.indexOf(value);
+			if (index >= 0) {
+				baseCounts[index] += delta;
+			}
+		}
+	}
+
+	/**
+	 * Creates equally sized bins that cover the range of the base histogram.
+	 * If possible, the bins are combined from the bins of the base histogram,
+	 * so the values in each bin are exactly those in its base bins.
+	 * @param binCount Number of bins.
+	 * @return Bins.
+	 */
+	private HistogramBins createBins(int binCount) {
+		if (BASE_RESOLUTION % binCount == 0) {
+			return baseBins.combine(BASE_RESOLUTION/binCount);
+		}
+		return new HistogramBins(baseBins.getBreak(0),
+			baseBins.getBreak(BASE_RESOLUTION), binCount,
+			scale == Scale.LOGARITHMIC, true);
+	}
+
+	/**
+	 * Counts all values of the analyzed column.
+	 */
+	private void rebuild() {
+		if (baseBins != null) {
+			long[] base = count(data, dataColumn, baseBins);
+			System.arraycopy(base, 0, baseCounts, 0, base.length);
+		}
+		countBins();
+	}
+
+	/**
+	 * Determines the counts of the current bins. The counts are aggregated
+	 * from the base histogram if its bins can be combined to the current
+	 * bins, otherwise the values are counted again.
+	 */
+	private void countBins() {
+		int binCount = bins.getCount();
+		if (baseBins == null || BASE_RESOLUTION % binCount != 0) {
+			counts = count(data, dataColumn, bins);
+			return;
+		}
+		counts = new long[binCount];
+		int factor = BASE_RESOLUTION/binCount;
+		for (int i = 0; i < baseCounts.length; i++) {
+			counts[i/factor] += baseCounts[i];
+		}
+	}
+
+	/**
+	 * Counts the values of a column in the specified bins. The values of
+	 * large data sources are counted in parallel.
+	 * @param source Data source.
+	 * @param col Column index.
+	 * @param bins Bins.
+	 * @return Number of values in each bin.
+	 */
+	private static long[] count(DataSource source, int col, HistogramBins bins) {
+		int rowCount = source.getRowCount();
+		if (rowCount <= Statistics.PARALLEL_THRESHOLD || !ConcurrencyUtils.isParallel()
+				|| !Statistics.isSnapshotShared(source)) {
+			return count(source, col, bins, 0, rowCount);
+		}
+		// The chunks are read from a snapshot, so they are consistent
+		DataSource snapshot = source.snapshot();
+		return ConcurrencyUtils.getForkJoinPool().invoke(
+			new CountTask(snapshot, col, bins, 0, snapshot.getRowCount()));
+	}
+
+	/**
+	 * Counts the values of a range of rows in the specified bins.
+	 * @param source Data source.
+	 * @param col Column index.
+	 * @param bins Bins.
+	 * @param rowStart Index of the first row.
+	 * @param rowEnd Index after the last row.
+	 * @return Number of values in each bin.
+	 */
+	private static long[] count(DataSource source, int col, HistogramBins bins,
+			int rowStart, int rowEnd) {
+		long[] counts = new long[bins.getCount()];
+		double[] values = new double[Math.min(Statistics.BLOCK_SIZE, Math.max(rowEnd - rowStart, 0))];
+		for (int blockStart = rowStart; blockStart < rowEnd; blockStart += values.length) {
+			int length = Math.min(values.length, rowEnd - blockStart);
+			source.getDoubles(col, blockStart, values, 0, length);
+			for (int i = 0; i < length; i++) {
+				int index = bins.indexOf(values[i]);
+				if (index >= 0) {
+					counts[index]++;
+				}
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Task that counts the values of a range of rows. Large ranges are split
+	 * into two halves whose counts are added.
+	 */
+	static final class CountTask extends RecursiveTask<long[]> {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = -5524401930402383418L;
+
+		/** Data source. */
+		private final DataSource source;
+		/** Column index. */
+		private final int col;
+		/** Bins. */
+		private final HistogramBins bins;
+		/** Index of the first row. */
+		private final int rowStart;
+		/** Index after the last row. */
+		private final int rowEnd;
+
+		/**
+		 * Initializes a new task for the specified range.
+		 * @param source Data source.
+		 * @param col Column index.
+		 * @param bins Bins.
+		 * @param rowStart Index of the first row.
+		 * @param rowEnd Index after the last row.
+		 */
+		public CountTask(DataSource source, int col, HistogramBins bins,
+				int rowStart, int rowEnd) {
+			this.source = source;
+			this.col = col;
+			this.bins = bins;
+			this.rowStart = rowStart;
+			this.rowEnd = rowEnd;
+		}
+
+		@Override
+		protected long[] compute() {
+			if (rowEnd - rowStart <= Statistics.CHUNK_SIZE) {
+				return count(source, col, bins, rowStart, rowEnd);
+			}
+			int rowMid = (rowStart + rowEnd) >>> 1;
+			CountTask left = new CountTask(source, col, bins, rowStart, rowMid);
+			CountTask right = new CountTask(source, col, bins, rowMid, rowEnd);
+			left.fork();
+			long[] counts = right.compute();
+			long[] leftCounts = left.join();
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] += leftCounts[i];
+			}
+			return counts;
+		}
+	}
+
+	/**
+	 * Custom deserialization method.
+	 * @param in Input stream.
+	 * @throws ClassNotFoundException if a serialized class doesn't exist anymore.
+	 * @throws IOException if there is an error while reading data from the
+	 *         input stream.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws ClassNotFoundException, IOException {
+		// Normal deserialization
+		in.defaultReadObject();
+
+		// Restore listeners
+		data.addDataListener(this);
+	}
+}
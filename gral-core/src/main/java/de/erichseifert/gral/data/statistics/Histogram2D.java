@@ -27,10 +27,9 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
+import de.erichseifert.gral.data.DataChangeEvent;
 import de.erichseifert.gral.data.DataSource;
 import de.erichseifert.gral.graphics.Orientation;
 
@@ -41,6 +40,10 @@ import de.erichseifert.gral.graphics.Orientation;
  * a number of cells or breakpoints between histogram cells can be passed
  * as an array to create unequally sized cells.</p>
  * <p>For ease of use the histogram is a data source itself.</p>
+ * <p>Cells are located by arithmetic for equally sized cells and by binary
+ * search otherwise. Single values that are added, updated, or removed are
+ * counted incrementally, so appending a value to the analyzed data source
+ * costs constant time.</p>
  */
 public class Histogram2D extends AbstractHistogram2D {
 	/** Version id for serialization. */
@@ -54,18 +57,21 @@ public class Histogram2D extends AbstractHistogram2D {
 	/** Bin cells that store all aggregation counts. */
 	private final List<long[]> cellList;
 
+	/** Primitive representations of the intervals used to locate cells. */
+	private transient List<HistogramBins> bins;
 	/** Minimum values for cells. */
-	private transient Map<Integer, Long> cacheMin;
+	private transient long[] cacheMin;
 	/** Maximum values for cells. */
-	private transient Map<Integer, Long> cacheMax;
+	private transient long[] cacheMax;
 
 	private Histogram2D(DataSource data, Orientation orientation) {
 		super(data);
 		this.orientation = orientation;
 		breaks = new ArrayList<>();
 		cellList = new ArrayList<>();
-		cacheMin = new HashMap<>();
-		cacheMax = new HashMap<>();
+		bins = new ArrayList<>();
+		cacheMin = new long[0];
+		cacheMax = new long[0];
 	}
 
 	/**
@@ -101,6 +107,7 @@ public class Histogram2D extends AbstractHistogram2D {
 			}
 			this.breaks.add(breaks);
 		}
+		createBins();
 		dataUpdated(getData());
 	}
 
@@ -124,25 +131,33 @@ public class Histogram2D extends AbstractHistogram2D {
 				breaks.length, count));
 		}
 		Collections.addAll(this.breaks, breaks);
+		createBins();
 		dataUpdated(getData());
 	}
 
+	/**
+	 * Creates the primitive representations of all breaks.
+	 */
+	private void createBins() {
+		bins.clear();
+		for (Number[] brk : breaks) {
+			bins.add(new HistogramBins(false, brk));
+		}
+	}
+
 	/**
 	 * (Re-)populates the cells of this AbstractHistogram2D.
 	 */
 	@Override
 	protected void rebuildCells() {
-		// FIXME Very naive implementation
 		cellList.clear();
-		cacheMin.clear();
-		cacheMax.clear();
+		cacheMin = new long[bins.size()];
+		cacheMax = new long[bins.size()];
 
 		// Iterate over histogram data sets
 		int breakIndex = 0;
-		for (Number[] brk : breaks) {
-			long[] cells = new long[brk.length - 1];
-			long colMin = Long.MAX_VALUE;
-			long colMax = Long.MIN_VALUE;
+		for (HistogramBins brk : bins) {
+			long[] cells = new long[brk.getCount()];
 
 			Iterable<? extends Comparable<?>> data;
 			if (orientation == Orientation.VERTICAL) {
@@ -156,31 +171,162 @@ public class Histogram2D extends AbstractHistogram2D {
 				if (!(cell instanceof Number)) {
 					continue;
 				}
-				Number numericCell = (Number) cell;
-				double val = numericCell.doubleValue();
-				// Iterate over histogram rows
-				for (int i = 0; i < brk.length - 1; i++) {
-					// Put the value into corresponding class
-					if ((val >= brk[i].doubleValue())
-							&& (val < brk[i + 1].doubleValue())) {
-						cells[i]++;
-						if (cells[i] > colMax) {
-							colMax = cells[i];
-						}
-						if (cells[i] < colMin) {
-							colMin = cells[i];
-						}
-						break;
-					}
+				int index = brk.indexOf(((Number) cell).doubleValue());
+				if (index >= 0) {
+					cells[index]++;
 				}
 			}
 			cellList.add(cells);
-			cacheMin.put(breakIndex, colMin);
-			cacheMax.put(breakIndex, colMax);
+			updateLimits(breakIndex);
 			breakIndex++;
 		}
 	}
 
+	@Override
+	protected boolean addCells(DataChangeEvent... events) {
+		if (orientation != Orientation.VERTICAL) {
+			// Added rows change the records that are aggregated
+			return false;
+		}
+		for (DataChangeEvent event : events) {
+			int col = event.getCol();
+			if (col < 0 || col >= bins.size()) {
+				continue;
+			}
+			if (event.isRange()) {
+				if (!countRows(col, event.getRow(), event.getRowCount())) {
+					return false;
+				}
+			} else if (event.getNew() == null) {
+				return false;
+			} else {
+				count(col, event.getNew(), 1);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	protected boolean updateCells(DataChangeEvent... events) {
+		for (DataChangeEvent event : events) {
+			if (event.isRange()) {
+				if (event.getShift() != 0 || orientation != Orientation.VERTICAL) {
+					return false;
+				}
+				// Reordered rows don't change the counts of a column
+				continue;
+			}
+			if (event.getOld() == null && event.getNew() == null) {
+				return false;
+			}
+			int col = event.getCol();
+			if (orientation == Orientation.HORIZONTAL) {
+				col = event.getRow();
+			}
+			if (col < 0 || col >= bins.size()) {
+				continue;
+			}
+			count(col, event.getOld(), -1);
+			count(col, event.getNew(), 1);
+		}
+		return true;
+	}
+
+	@Override
+	protected boolean removeCells(DataChangeEvent... events) {
+		if (orientation != Orientation.VERTICAL) {
+			// Removed rows change the records that are aggregated
+			return false;
+		}
+		for (DataChangeEvent event : events) {
+			if (event.isRange() || event.getOld() == null) {
+				return false;
+			}
+			int col = event.getCol();
+			if (col < 0 || col >= bins.size()) {
+				continue;
+			}
+			count(col, event.getOld(), -1);
+		}
+		return true;
+	}
+
+	/**
+	 * Counts the values of consecutive rows of the specified column.
+	 * @param col Column index.
+	 * @param row Index of the first row.
+	 * @param rowCount Number of rows.
+	 * @return {@code true} if the rows have been counted, {@code false} if
+	 *         the rows don't exist anymore.
+	 */
+	private boolean countRows(int col, int row, int rowCount) {
+		DataSource data = getData();
+		if (row < 0 || row + rowCount > data.getRowCount()) {
+			return false;
+		}
+		double[] values = new double[Math.min(rowCount, Statistics.BLOCK_SIZE)];
+		for (int offset = 0; offset < rowCount; offset += values.length) {
+			int length = Math.min(values.length, rowCount - offset);
+			data.getDoubles(col, row + offset, values, 0, length);
+			for (int i = 0; i < length; i++) {
+				count(col, values[i], 1);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Changes the count of the cell that contains the specified value.
+	 * @param col Column index.
+	 * @param value Value.
+	 * @param delta Amount by which the count will be changed.
+	 */
+	private void count(int col, Comparable<?> value, int delta) {
+		if (value instanceof Number) {
+			count(col, ((Number) value).doubleValue(), delta);
+		}
+	}
+
+	/**
+	 * Changes the count of the cell that contains the specified value.
+	 * @param col Column index.
+	 * @param value Value.
+	 * @param delta Amount by which the count will be changed.
+	 */
+	private void count(int col, double value, int delta) {
+		int index = bins.get(col).indexOf(value);
+		if (index < 0) {
+			return;
+		}
+		long[] cells = cellList.get(col);
+		long count = cells[index];
+		cells[index] = count + delta;
+		if ((count == cacheMin[col] && delta > 0)
+				|| (count == cacheMax[col] && delta < 0)) {
+			// The cell might have been the only one with an extreme count
+			updateLimits(col);
+		} else {
+			cacheMin[col] = Math.min(cacheMin[col], cells[index]);
+			cacheMax[col] = Math.max(cacheMax[col], cells[index]);
+		}
+	}
+
+	/**
+	 * Determines the minimum and maximum count of the cells in the specified
+	 * column.
+	 * @param col Column index.
+	 */
+	private void updateLimits(int col) {
+		long colMin = Long.MAX_VALUE;
+		long colMax = Long.MIN_VALUE;
+		for (long cell : cellList.get(col)) {
+			colMin = Math.min(colMin, cell);
+			colMax = Math.max(colMax, cell);
+		}
+		cacheMin[col] = colMin;
+		cacheMax[col] = colMax;
+	}
+
 	/**
 	 * Returns the direction in which the histogram values will be accumulated.
 	 * @return Horizontal or vertical orientation.
@@ -250,7 +396,12 @@ public class Histogram2D extends AbstractHistogram2D {
 		in.defaultReadObject();
 
 		// Handle transient fields
-		cacheMin = new HashMap<>();
-		cacheMax = new HashMap<>();
+		bins = new ArrayList<>();
+		createBins();
+		cacheMin = new long[cellList.size()];
+		cacheMax = new long[cellList.size()];
+		for (int col = 0; col < cellList.size(); col++) {
+			updateLimits(col);
+		}
 	}
 }
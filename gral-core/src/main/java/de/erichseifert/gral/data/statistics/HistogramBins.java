@@ -0,0 +1,206 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.statistics;
+
+import java.io.Serializable;
+
+import de.erichseifert.gral.util.MathUtils;
+
+/**
+ * Class that stores the breaks of histogram cells in a primitive array and
+ * locates the cell of a value. Cells contain values greater than or equal to
+ * their lower break and less than their upper break. Optionally, the last
+ * cell also contains its upper break. Cells of equal width,
+ * either on a linear or on a logarithmic scale, are located arithmetically
+ * in constant time, all other cells are located by binary search.
+ */
+final class HistogramBins implements Serializable {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = -2408713542860358547L;
+
+	/** Maximal relative deviation of breaks from equal spacing. */
+	private static final double UNIFORM_TOLERANCE = 1e-9;
+
+	/** Break values in ascending order. */
+	private final double[] breaks;
+	/** Whether the last cell contains its upper break. */
+	private final boolean closed;
+	/** Whether the cells are equally sized on a logarithmic scale. */
+	private final boolean logarithmic;
+	/** Width of the cells if all cells are equally sized, otherwise NaN. */
+	private final double width;
+
+	/**
+	 * Initializes a new instance with the specified breaks.
+	 * @param closed Whether the last cell contains its upper break.
+	 * @param breaks Break values in ascending order.
+	 */
+	public HistogramBins(boolean closed, Number... breaks) {
+		this.closed = closed;
+		this.breaks = new double[breaks.length];
+		for (int i = 0; i < breaks.length; i++) {
+			this.breaks[i] = breaks[i].doubleValue();
+		}
+		logarithmic = false;
+		width = getUniformWidth(this.breaks);
+	}
+
+	/**
+	 * Initializes a new instance with equally sized cells.
+	 * @param min Lower break of the first cell.
+	 * @param max Upper break of the last cell.
+	 * @param count Number of cells.
+	 * @param logarithmic Whether the cells are equally sized on a logarithmic
+	 *        scale.
+	 * @param closed Whether the last cell contains its upper break.
+	 */
+	public HistogramBins(double min, double max, int count,
+			boolean logarithmic, boolean closed) {
+		this.closed = closed;
+		this.logarithmic = logarithmic;
+		double origin = transform(min);
+		width = (transform(max) - origin)/count;
+		breaks = new double[count + 1];
+		for (int i = 0; i < count; i++) {
+			double value = origin + i*width;
+			breaks[i] = logarithmic ? Math.pow(10.0, value) : value;
+		}
+		breaks[0] = min;
+		breaks[count] = max;
+	}
+
+	/**
+	 * Initializes a new instance with the specified properties.
+	 * @param breaks Break values in ascending order.
+	 * @param closed Whether the last cell contains its upper break.
+	 * @param logarithmic Whether the cells are equally sized on a logarithmic
+	 *        scale.
+	 * @param width Width of the cells if all cells are equally sized,
+	 *        otherwise NaN.
+	 */
+	private HistogramBins(double[] breaks, boolean closed, boolean logarithmic,
+			double width) {
+		this.breaks = breaks;
+		this.closed = closed;
+		this.logarithmic = logarithmic;
+		this.width = width;
+	}
+
+	/**
+	 * Returns the width of the cells if the specified breaks are equally
+	 * spaced.
+	 * @param breaks Break values in ascending order.
+	 * @return Width of a cell, or NaN if the cells aren't equally sized.
+	 */
+	private static double getUniformWidth(double[] breaks) {
+		int cellCount = breaks.length - 1;
+		if (cellCount < 1) {
+			return Double.NaN;
+		}
+		double width = (breaks[cellCount] - breaks[0])/cellCount;
+		if (!(width > 0.0)) {
+			return Double.NaN;
+		}
+		double tolerance = width*UNIFORM_TOLERANCE;
+		for (int i = 1; i < cellCount; i++) {
+			if (Math.abs(breaks[i] - (breaks[0] + i*width)) > tolerance) {
+				return Double.NaN;
+			}
+		}
+		return width;
+	}
+
+	/**
+	 * Maps a value to the scale on which the cells are equally sized.
+	 * @param value Value.
+	 * @return Scaled value.
+	 */
+	private double transform(double value) {
+		return logarithmic ? Math.log10(value) : value;
+	}
+
+	/**
+	 * Returns the number of cells.
+	 * @return Number of cells.
+	 */
+	public int getCount() {
+		return breaks.length - 1;
+	}
+
+	/**
+	 * Returns the break with the specified index.
+	 * @param index Index of the break.
+	 * @return Break value.
+	 */
+	public double getBreak(int index) {
+		return breaks[index];
+	}
+
+	/**
+	 * Returns bins whose cells combine the specified number of adjacent cells
+	 * of these bins. The breaks of the combined bins are a subset of these
+	 * breaks, so each combined cell contains exactly the values of its
+	 * cells.
+	 * @param factor Number of cells that are combined.
+	 * @return Combined bins.
+	 */
+	public HistogramBins combine(int factor) {
+		int count = getCount()/factor;
+		double[] combined = new double[count + 1];
+		for (int i = 0; i <= count; i++) {
+			combined[i] = breaks[i*factor];
+		}
+		return new HistogramBins(combined, closed, logarithmic, width*factor);
+	}
+
+	/**
+	 * Returns the index of the cell that contains the specified value.
+	 * @param value Value.
+	 * @return Index of the cell, or {@code -1} if the value isn't
+	 *         contained in any cell.
+	 */
+	public int indexOf(double value) {
+		int last = breaks.length - 1;
+		if (last < 1 || !(value >= breaks[0] && value < breaks[last])) {
+			if (closed && last >= 1 && value == breaks[last]) {
+				return last - 1;
+			}
+			return -1;
+		}
+		int index;
+		if (!Double.isNaN(width)) {
+			index = (int) ((transform(value) - transform(breaks[0]))/width);
+			index = Math.max(0, Math.min(index, last - 1));
+			// Correct rounding errors
+			while (index > 0 && value < breaks[index]) {
+				index--;
+			}
+		} else {
+			index = MathUtils.binarySearchFloor(breaks, value);
+		}
+		// Skip cells with zero width
+		while (index < last - 1 && value >= breaks[index + 1]) {
+			index++;
+		}
+		return index;
+	}
+}
@@ -0,0 +1,344 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.statistics;
+
+import java.io.Serializable;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Random;
+
+import de.erichseifert.gral.util.MathUtils;
+
+/**
+ * <p>Approximate summary of the distribution of a stream of values that can
+ * answer quantile queries in constant space. The implementation follows the
+ * KLL sketch by Karnin, Lang, and Liberty: Values are collected in a
+ * hierarchy of buffers, and a full buffer is sorted and every other value
+ * is promoted to the next level with twice the weight.</p>
+ *
+ * <p>The accuracy is controlled by the parameter {@code k}: The rank error of
+ * a quantile is about {@code 1.7/k} with high probability, and the sketch
+ * stores about {@code 3k} values regardless of the number of added values.
+ * Sketches with the same parameter can be {@link #merge(QuantileSketch)
+ * merged}, e.g. to summarize data that is spread across several data
+ * sources. Minimum and maximum are always exact.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public class QuantileSketch implements Serializable {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = -2097946599298736395L;
+
+	/** Default accuracy parameter. */
+	public static final int DEFAULT_K = 200;
+
+	/** Ratio of the capacities of adjacent levels. */
+	private static final double CAPACITY_RATIO = 2.0/3.0;
+	/** Smallest capacity of a level. */
+	private static final int MIN_CAPACITY = 2;
+
+	/** Accuracy parameter. */
+	private final int k;
+	/** Values stored in each level. Values of level {@code h} have the
+	weight {@code 2^h}. */
+	private double[][] levels;
+	/** Number of values stored in each level. */
+	private int[] levelSizes;
+	/** Number of levels in use. */
+	private int levelCount;
+	/** Number of values stored in all levels. */
+	private int size;
+	/** Maximal number of values stored in all levels. */
+	private int maxSize;
+	/** Number of added values. */
+	private long count;
+	/** Smallest added value. */
+	private double min;
+	/** Largest added value. */
+	private double max;
+	/** Random source for choosing the promoted values. */
+	private final Random random;
+
+	/**
+	 * Creates a new sketch with the default accuracy.
+	 */
+	public QuantileSketch() {
+		this(DEFAULT_K);
+	}
+
+	/**
+	 * Creates a new sketch with the specified accuracy.
+	 * @param k Accuracy parameter. Larger values reduce the error and
+	 *        increase the memory usage.
+	 */
+	public QuantileSketch(int k) {
+		if (k < MIN_CAPACITY) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Invalid accuracy parameter: {0,number,integer}", k)); //$NON-NLS-1$
+		}
+		this.k = k;
+		random = new Random();
+		levels = new double[1][];
+		levelSizes = new int[1];
+		min = Double.NaN;
+		max = Double.NaN;
+		addLevel();
+	}
+
+	/**
+	 * Returns the accuracy parameter.
+	 * @return Accuracy parameter.
+	 */
+	public int getK() {
+		return k;
+	}
+
+	/**
+	 * Returns the number of values that have been added.
+	 * @return Number of values.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the smallest value that has been added.
+	 * @return Minimum, or {@code NaN} if the sketch is empty.
+	 */
+	public double getMin() {
+		return min;
+	}
+
+	/**
+	 * Returns the largest value that has been added.
+	 * @return Maximum, or {@code NaN} if the sketch is empty.
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * Adds a value to the sketch. Values that are not calculatable are
+	 * ignored.
+	 * @param value Value to be added.
+	 */
+	public void add(double value) {
+		if (!MathUtils.isCalculatable(value)) {
+			return;
+		}
+		if (count == 0L || value < min) {
+			min = value;
+		}
+		if (count == 0L || value > max) {
+			max = value;
+		}
+		count++;
+		append(0, value);
+		if (size >= maxSize) {
+			compress();
+		}
+	}
+
+	/**
+	 * Adds all values of another sketch to this sketch. The other sketch
+	 * isn't changed.
+	 * @param other Sketch to be merged.
+	 */
+	public void merge(QuantileSketch other) {
+		if (other.k != k) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Sketches with different accuracy parameters can''t be merged: {0,number,integer} != {1,number,integer}", //$NON-NLS-1$
+				k, other.k));
+		}
+		if (other.count == 0L) {
+			return;
+		}
+		if (count == 0L || other.min < min) {
+			min = other.min;
+		}
+		if (count == 0L || other.max > max) {
+			max = other.max;
+		}
+		count += other.count;
+		while (levelCount < other.levelCount) {
+			addLevel();
+		}
+		for (int h = 0; h < other.levelCount; h++) {
+			for (int i = 0; i < other.levelSizes[h]; i++) {
+				append(h, other.levels[h][i]);
+			}
+		}
+		while (size >= maxSize) {
+			compress();
+		}
+	}
+
+	/**
+	 * Returns an estimate of the specified quantile.
+	 * @param q Quantile in range [0, 1].
+	 * @return Estimated quantile value, or {@code NaN} if the sketch is
+	 *         empty.
+	 */
+	public double quantile(double q) {
+		return quantiles(q)[0];
+	}
+
+	/**
+	 * Returns estimates of the specified quantiles.
+	 * @param qs Quantiles in range [0, 1].
+	 * @return Estimated quantile values in the order of the requested
+	 *         quantiles, or {@code NaN} values if the sketch is empty.
+	 */
+	public double[] quantiles(double... qs) {
+		double[] quantiles = new double[qs.length];
+		for (double q : qs) {
+			if (!(q >= 0.0 && q <= 1.0)) {
+				throw new IllegalArgumentException(MessageFormat.format(
+					"Quantile must be in range [0, 1]: {0}", q)); //$NON-NLS-1$
+			}
+		}
+		if (count == 0L) {
+			Arrays.fill(quantiles, Double.NaN);
+			return quantiles;
+		}
+
+		// Sort all stored values together with their weights
+		double[] values = new double[size];
+		long[] weights = new long[size];
+		int index = 0;
+		for (int h = 0; h < levelCount; h++) {
+			Arrays.sort(levels[h], 0, levelSizes[h]);
+		}
+		int[] positions = new int[levelCount];
+		while (index < size) {
+			int hMin = -1;
+			for (int h = 0; h < levelCount; h++) {
+				if (positions[h] < levelSizes[h] && (hMin < 0 ||
+						levels[h][positions[h]] < levels[hMin][positions[hMin]])) {
+					hMin = h;
+				}
+			}
+			values[index] = levels[hMin][positions[hMin]++];
+			weights[index] = 1L << hMin;
+			index++;
+		}
+
+		long totalWeight = 0L;
+		for (long weight : weights) {
+			totalWeight += weight;
+		}
+		for (int j = 0; j < qs.length; j++) {
+			double q = qs[j];
+			if (q <= 0.0) {
+				quantiles[j] = min;
+				continue;
+			} else if (q >= 1.0) {
+				quantiles[j] = max;
+				continue;
+			}
+			double rank = q*totalWeight;
+			long cumulativeWeight = 0L;
+			quantiles[j] = max;
+			for (int i = 0; i < values.length; i++) {
+				cumulativeWeight += weights[i];
+				if (cumulativeWeight >= rank) {
+					quantiles[j] = values[i];
+					break;
+				}
+			}
+		}
+		return quantiles;
+	}
+
+	/**
+	 * Returns the capacity of the specified level. Lower levels have smaller
+	 * capacities, because their values have smaller weights.
+	 * @param h Index of the level.
+	 * @return Capacity.
+	 */
+	private int getCapacity(int h) {
+		int depth = levelCount - h - 1;
+		return Math.max(MIN_CAPACITY, (int) Math.ceil(k*Math.pow(CAPACITY_RATIO, depth)));
+	}
+
+	/**
+	 * Adds a level on top of the existing levels.
+	 */
+	private void addLevel() {
+		if (levelCount == levels.length) {
+			levels = Arrays.copyOf(levels, levelCount + 1);
+			levelSizes = Arrays.copyOf(levelSizes, levelCount + 1);
+		}
+		levels[levelCount] = new double[MIN_CAPACITY];
+		levelCount++;
+		maxSize = 0;
+		for (int h = 0; h < levelCount; h++) {
+			maxSize += getCapacity(h);
+		}
+	}
+
+	/**
+	 * Appends a value to the specified level.
+	 * @param h Index of the level.
+	 * @param value Value.
+	 */
+	private void append(int h, double value) {
+		double[] level = levels[h];
+		int levelSize = levelSizes[h];
+		if (levelSize == level.length) {
+			level = Arrays.copyOf(level, 2*levelSize);
+			levels[h] = level;
+		}
+		level[levelSize] = value;
+		levelSizes[h] = levelSize + 1;
+		size++;
+	}
+
+	/**
+	 * Compacts the lowest level that exceeds its capacity: The level is
+	 * sorted and every other value is promoted to the next level.
+	 */
+	private void compress() {
+		for (int h = 0; h < levelCount; h++) {
+			int levelSize = levelSizes[h];
+			if (levelSize < getCapacity(h)) {
+				continue;
+			}
+			if (h + 1 >= levelCount) {
+				addLevel();
+			}
+			double[] level = levels[h];
+			Arrays.sort(level, 0, levelSize);
+			// An odd value stays in the level
+			int start = levelSize & 1;
+			int offset = random.nextBoolean() ? 1 : 0;
+			for (int i = start + offset; i < levelSize; i += 2) {
+				append(h + 1, level[i]);
+			}
+			levelSizes[h] = start;
+			size -= levelSize - start;
+			if (size < maxSize) {
+				return;
+			}
+		}
+	}
+}
@@ -21,18 +21,42 @@
  */
 package de.erichseifert.gral.data.statistics;
 
+import java.text.MessageFormat;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RecursiveTask;
 
+import de.erichseifert.gral.data.AbstractDataSource;
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.util.ConcurrencyUtils;
 import de.erichseifert.gral.util.DataUtils;
 import de.erichseifert.gral.util.MathUtils;
-import de.erichseifert.gral.util.SortedList;
 
 
 /**
- * A class that computes and stores various statistical information
- * for an Iterable of values.
+ * <p>A class that computes and stores various statistical information
+ * for an Iterable of values.</p>
+ *
+ * <p>All statistics are calculated lazily and cached. If the analyzed data
+ * changes, the cached values can be updated incrementally using
+ * {@link #add(double)} and {@link #remove(double)}, or discarded using
+ * {@link #invalidate()}. Basic aggregates like the number of values, sums,
+ * and moments are updated in constant time. Minimum and maximum are only
+ * recalculated from the data if a value was removed that equaled one of
+ * them. Quantiles are always recalculated after changes.</p>
+ *
+ * <p>For data that grows continuously, quantiles can be
+ * {@link #setQuantileSketchAccuracy(int) approximated} by a
+ * {@link QuantileSketch} instead. The sketch is built once and is then
+ * updated with every {@link #add(double) added} value, so quartiles can be
+ * requested after every change without reading the data again. Removing a
+ * value discards the sketch.</p>
+ *
+ * <p>Instances are thread-safe. The data is read without holding the
+ * monitor of this object, because data sources update their statistics while
+ * they hold their write lock. Results that were calculated while the
+ * statistics changed are returned, but they are not cached.</p>
  */
 public class Statistics {
 	/** Key for specifying the total number of elements.
@@ -84,10 +108,38 @@ public class Statistics {
 	/** Key for specifying the 3rd quartile (or 75th quantile). */
 	public static final String QUARTILE_3 = "quantile75"; //$NON-NLS-1$
 
+	/** Minimal number of values for which the aggregates are calculated
+	in parallel. */
+	static final int PARALLEL_THRESHOLD = 1 << 18;
+	/** Number of values that are aggregated by a single parallel task. */
+	static final int CHUNK_SIZE = 1 << 16;
+	/** Number of rows that are read at once. */
+	static final int BLOCK_SIZE = 1024;
+
 	/** Data values that are used to build statistical aggregates. */
 	private final Iterable<? extends Comparable<?>> data;
+	/** Data source whose values are used to build statistical aggregates,
+	or {@code null} if the data isn't a data source. */
+	private final DataSource source;
+	/** Index of the analyzed column, or {@code -1} if all columns of the
+	data source are analyzed. */
+	private final int col;
 	/** Table statistics stored by key. */
 	private final Map<String, Double> statistics;
+	/** Running aggregates of the data, or {@code null} if they haven't been
+	calculated yet. */
+	private Moments moments;
+	/** Whether minimum and maximum of the running aggregates are valid. */
+	private boolean extremaValid;
+	/** Accuracy parameter of the sketch that approximates quantiles, or
+	{@code 0} if quantiles are calculated exactly. */
+	private int quantileSketchAccuracy;
+	/** Sketch that is kept up to date with added values, or {@code null} if
+	it hasn't been built yet. */
+	private QuantileSketch sketch;
+	/** Number of changes of the statistics, used to detect whether the data
+	changed while it was read. */
+	private long changes;
 
 	/**
 	 * Initializes a new object with the specified data values.
@@ -96,44 +148,70 @@ public class Statistics {
 	public Statistics(Iterable<? extends Comparable<?>> data) {
 		statistics = new HashMap<>();
 		this.data = data;
+		this.source = (data instanceof DataSource) ? (DataSource) data : null;
+		this.col = -1;
 	}
 
 	/**
-	 * Utility method that calculates basic statistics like element count, sum,
-	 * or mean.
+	 * Initializes a new object with the values of a single column of the
+	 * specified data source.
+	 * @param source Data source to be analyzed.
+	 * @param col Index of the column to be analyzed.
+	 */
+	public Statistics(DataSource source, int col) {
+		statistics = new HashMap<>();
+		this.data = source;
+		this.source = source;
+		this.col = col;
+	}
+
+	/**
+	 * Running aggregates of a sequence of values. The higher order moments
+	 * are updated with every added value, so all basic statistics can be
+	 * calculated in a single pass.
 	 *
 	 * Notes: Calculation of higher order statistics is based on formulas from
 	 * http://people.xiph.org/~tterribe/notes/homs.html
-	 *
-	 * @param data Data values used to calculate statistics
-	 * @param stats A {@code Map} that should store the new statistics.
 	 */
-	private void createBasicStats(Iterable<? extends Comparable<?>> data, Map<String, Double> stats) {
-		double n = 0.0;
-		double sum = 0.0;
-		double sum2 = 0.0;
-		double sum3 = 0.0;
-		double sum4 = 0.0;
-		double mean = 0.0;
-		double sumOfDiffSquares = 0.0;
-		double sumOfDiffCubics = 0.0;
-		double sumOfDiffQuads = 0.0;
+	static final class Moments {
+		/** Number of values. */
+		private double n;
+		/** Sum of all values. */
+		private double sum;
+		/** Sum of all value squares. */
+		private double sum2;
+		/** Sum of all value cubics. */
+		private double sum3;
+		/** Sum of all value quads. */
+		private double sum4;
+		/** Arithmetic mean. */
+		private double mean;
+		/** Second central moment. */
+		private double sumOfDiffSquares;
+		/** Third central moment. */
+		private double sumOfDiffCubics;
+		/** Fourth central moment. */
+		private double sumOfDiffQuads;
+		/** Smallest value. */
+		private double min = Double.NaN;
+		/** Largest value. */
+		private double max = Double.NaN;
 
-		for (Comparable<?> cell : data) {
-			if (!(cell instanceof Number)) {
-				continue;
-			}
-			Number numericCell = (Number) cell;
-			if (!MathUtils.isCalculatable(numericCell)) {
-				continue;
+		/**
+		 * Adds a value to the aggregates. Values that are not calculatable
+		 * are ignored.
+		 * @param val Value to be added.
+		 */
+		public void add(double val) {
+			if (!MathUtils.isCalculatable(val)) {
+				return;
 			}
-			double val = numericCell.doubleValue();
 
-			if (!stats.containsKey(MIN) || val < stats.get(MIN)) {
-				stats.put(MIN, val);
+			if (n == 0.0 || val < min) {
+				min = val;
 			}
-			if (!stats.containsKey(MAX) || val > stats.get(MAX)) {
-				stats.put(MAX, val);
+			if (n == 0.0 || val > max) {
+				max = val;
 			}
 
 			n++;
@@ -156,54 +234,430 @@ public class Statistics {
 			sumOfDiffSquares += term1;
 		}
 
-		stats.put(N, n);
-		stats.put(SUM,  sum);
-		stats.put(SUM2, sum2);
-		stats.put(SUM3, sum3);
-		stats.put(SUM4, sum4);
-		stats.put(MEAN, mean);
-		stats.put(SUM_OF_DIFF_QUADS, sumOfDiffQuads);
-		stats.put(SUM_OF_DIFF_CUBICS, sumOfDiffCubics);
-		stats.put(SUM_OF_DIFF_SQUARES, sumOfDiffSquares);
+		/**
+		 * Removes a value that has been added before from the aggregates.
+		 * Values that are not calculatable are ignored. Minimum and maximum
+		 * are not updated.
+		 * @param val Value to be removed.
+		 */
+		public void remove(double val) {
+			if (!MathUtils.isCalculatable(val) || n == 0.0) {
+				return;
+			}
+			if (n == 1.0) {
+				n = 0.0;
+				sum = sum2 = sum3 = sum4 = 0.0;
+				mean = sumOfDiffSquares = sumOfDiffCubics = sumOfDiffQuads = 0.0;
+				min = max = Double.NaN;
+				return;
+			}
+
+			double val2 = val*val;
+			sum -= val;
+			sum2 -= val2;
+			sum3 -= val2*val;
+			sum4 -= val2*val2;
+
+			// Inverse of the update in add(double)
+			double meanPrev = (n*mean - val)/(n - 1.0);
+			double delta = val - meanPrev;
+			double deltaN = delta/n;
+			double deltaN2 = deltaN*deltaN;
+			double term1 = delta*deltaN*(n - 1.0);
+			double sumOfDiffSquaresPrev = sumOfDiffSquares - term1;
+			double sumOfDiffCubicsPrev = sumOfDiffCubics - term1*deltaN*(n - 2.0) +
+				3.0*deltaN*sumOfDiffSquaresPrev;
+			sumOfDiffQuads -= term1*deltaN2*(n*n - 3.0*n + 3.0) +
+				6.0*deltaN2*sumOfDiffSquaresPrev - 4.0*deltaN*sumOfDiffCubicsPrev;
+			sumOfDiffCubics = sumOfDiffCubicsPrev;
+			sumOfDiffSquares = sumOfDiffSquaresPrev;
+			mean = meanPrev;
+
+			n--;
+		}
+
+		/**
+		 * Merges the aggregates of another sequence of values into these
+		 * aggregates, so that they describe the values of both sequences.
+		 * The central moments are combined with the pairwise formulas
+		 * from http://www.osti.gov/scitech/servlets/purl/1028931
+		 * @param other Aggregates of the other sequence.
+		 */
+		public void merge(Moments other) {
+			if (other.n == 0.0) {
+				return;
+			}
+			if (n == 0.0) {
+				n = other.n;
+				sum = other.sum;
+				sum2 = other.sum2;
+				sum3 = other.sum3;
+				sum4 = other.sum4;
+				mean = other.mean;
+				sumOfDiffSquares = other.sumOfDiffSquares;
+				sumOfDiffCubics = other.sumOfDiffCubics;
+				sumOfDiffQuads = other.sumOfDiffQuads;
+				min = other.min;
+				max = other.max;
+				return;
+			}
+
+			min = Math.min(min, other.min);
+			max = Math.max(max, other.max);
+			sum += other.sum;
+			sum2 += other.sum2;
+			sum3 += other.sum3;
+			sum4 += other.sum4;
+
+			double na = n;
+			double nb = other.n;
+			double nSum = na + nb;
+			double delta = other.mean - mean;
+			double deltaN = delta/nSum;
+			double deltaN2 = deltaN*deltaN;
+			double term1 = delta*deltaN*na*nb;
+
+			sumOfDiffQuads += other.sumOfDiffQuads +
+				term1*deltaN2*(na*na - na*nb + nb*nb) +
+				6.0*deltaN2*(na*na*other.sumOfDiffSquares + nb*nb*sumOfDiffSquares) +
+				4.0*deltaN*(na*other.sumOfDiffCubics - nb*sumOfDiffCubics);
+			sumOfDiffCubics += other.sumOfDiffCubics +
+				term1*deltaN*(na - nb) +
+				3.0*deltaN*(na*other.sumOfDiffSquares - nb*sumOfDiffSquares);
+			sumOfDiffSquares += other.sumOfDiffSquares + term1;
+			mean += deltaN*nb;
+			n = nSum;
+		}
+
+		/**
+		 * Stores all aggregates in the specified map.
+		 * @param stats A {@code Map} that should store the statistics.
+		 * @param extrema Whether minimum and maximum should be stored.
+		 */
+		public void put(Map<String, Double> stats, boolean extrema) {
+			if (extrema && n > 0.0) {
+				stats.put(MIN, min);
+				stats.put(MAX, max);
+			}
+			stats.put(N, n);
+			stats.put(SUM,  sum);
+			stats.put(SUM2, sum2);
+			stats.put(SUM3, sum3);
+			stats.put(SUM4, sum4);
+			stats.put(MEAN, mean);
+			stats.put(SUM_OF_DIFF_QUADS, sumOfDiffQuads);
+			stats.put(SUM_OF_DIFF_CUBICS, sumOfDiffCubics);
+			stats.put(SUM_OF_DIFF_SQUARES, sumOfDiffSquares);
 
-		stats.put(VARIANCE, sumOfDiffSquares/(n - 1.0));
-		stats.put(POPULATION_VARIANCE, sumOfDiffSquares/n);
-		stats.put(SKEWNESS,
-			(sumOfDiffCubics/n)/Math.pow(sumOfDiffSquares/n, 3.0/2.0) - 3.0);
-		stats.put(KURTOSIS,
-			(n*sumOfDiffQuads)/(sumOfDiffSquares*sumOfDiffSquares) - 3.0);
+			stats.put(VARIANCE, sumOfDiffSquares/(n - 1.0));
+			stats.put(POPULATION_VARIANCE, sumOfDiffSquares/n);
+			stats.put(SKEWNESS,
+				(sumOfDiffCubics/n)/Math.pow(sumOfDiffSquares/n, 3.0/2.0) - 3.0);
+			stats.put(KURTOSIS,
+				(n*sumOfDiffQuads)/(sumOfDiffSquares*sumOfDiffSquares) - 3.0);
+		}
 	}
 
 	/**
-	 * Utility method that calculates quantiles for the given data values and
-	 * stores the results in {@code stats}.
-	 * @param stats {@code Map} for storing results
-	 * @see de.erichseifert.gral.util.MathUtils#quantile(java.util.List,double)
+	 * Utility method that calculates basic statistics like element count, sum,
+	 * or mean. If the data is a {@code DataSource} its values are read
+	 * in blocks without boxing. Large data sources are split into chunks
+	 * whose aggregates are calculated in parallel and merged.
+	 *
+	 * @return Aggregates of all data values.
 	 */
-	private void createDistributionStats(Iterable<? extends Comparable<?>> data, Map<String, Double> stats) {
-		// Create sorted list of data
-		List<Double> values = new SortedList<>();
-		for (Comparable<?> cell : data) {
-			if (!(cell instanceof Number)) {
-				continue;
+	private Moments createMoments() {
+		if (source == null) {
+			Moments moments = new Moments();
+			for (Comparable<?> cell : data) {
+				if (cell instanceof Number) {
+					moments.add(((Number) cell).doubleValue());
+				}
 			}
-			Number numericCell = (Number) cell;
-			double value = numericCell.doubleValue();
-			if (MathUtils.isCalculatable(value)) {
-				values.add(value);
+			return moments;
+		}
+		int colMin = (col >= 0) ? col : 0;
+		int colMax = (col >= 0) ? col : source.getColumnCount() - 1;
+		int colCount = colMax - colMin + 1;
+		int rowCount = source.getRowCount();
+		if ((long) rowCount*colCount <= PARALLEL_THRESHOLD || !ConcurrencyUtils.isParallel()
+				|| !isSnapshotShared(source)) {
+			return createMoments(source, colMin, colMax, 0, rowCount);
+		}
+		// The chunks are read from a snapshot, so they are consistent
+		DataSource snapshot = source.snapshot();
+		rowCount = snapshot.getRowCount();
+		return ConcurrencyUtils.getForkJoinPool().invoke(
+			new MomentsTask(snapshot, colMin, colMax, 0, rowCount));
+	}
+
+	/**
+	 * Returns whether a snapshot of the specified data source can be created
+	 * without copying every row. Other data sources are read sequentially,
+	 * because the parallel tasks need a consistent snapshot.
+	 * @param source Data source.
+	 * @return {@code true} if snapshots share the values of the data source.
+	 */
+	static boolean isSnapshotShared(DataSource source) {
+		return (source instanceof AbstractDataSource) &&
+			((AbstractDataSource) source).isSnapshotShared();
+	}
+
+	/**
+	 * Calculates the aggregates of a range of rows and columns of a data
+	 * source.
+	 * @param source Data source.
+	 * @param colMin Index of the first column.
+	 * @param colMax Index of the last column.
+	 * @param rowStart Index of the first row.
+	 * @param rowEnd Index after the last row.
+	 * @return Aggregates of the values.
+	 */
+	private static Moments createMoments(DataSource source, int colMin, int colMax,
+			int rowStart, int rowEnd) {
+		Moments moments = new Moments();
+		double[] values = new double[Math.min(BLOCK_SIZE, rowEnd - rowStart)];
+		for (int blockStart = rowStart; blockStart < rowEnd; blockStart += BLOCK_SIZE) {
+			int length = Math.min(BLOCK_SIZE, rowEnd - blockStart);
+			for (int colIndex = colMin; colIndex <= colMax; colIndex++) {
+				source.getDoubles(colIndex, blockStart, values, 0, length);
+				for (int i = 0; i < length; i++) {
+					moments.add(values[i]);
+				}
 			}
 		}
+		return moments;
+	}
 
-		if (values.size() <= 0) {
-			return;
+	/**
+	 * Task that calculates the aggregates of a range of rows by splitting it
+	 * in halves until the chunks are small enough, and by merging the
+	 * aggregates of the halves.
+	 */
+	static final class MomentsTask extends RecursiveTask<Moments> {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = 3870620693722262473L;
+
+		/** Data source. */
+		private final DataSource source;
+		/** Index of the first column. */
+		private final int colMin;
+		/** Index of the last column. */
+		private final int colMax;
+		/** Index of the first row. */
+		private final int rowStart;
+		/** Index after the last row. */
+		private final int rowEnd;
+
+		/**
+		 * Initializes a new task for the specified range.
+		 * @param source Data source.
+		 * @param colMin Index of the first column.
+		 * @param colMax Index of the last column.
+		 * @param rowStart Index of the first row.
+		 * @param rowEnd Index after the last row.
+		 */
+		public MomentsTask(DataSource source, int colMin, int colMax, int rowStart, int rowEnd) {
+			this.source = source;
+			this.colMin = colMin;
+			this.colMax = colMax;
+			this.rowStart = rowStart;
+			this.rowEnd = rowEnd;
 		}
 
-		stats.put(QUARTILE_1, MathUtils.quantile(values, 0.25));
-		stats.put(QUARTILE_2, MathUtils.quantile(values, 0.50));
-		stats.put(QUARTILE_3, MathUtils.quantile(values, 0.75));
+		@Override
+		protected Moments compute() {
+			int colCount = colMax - colMin + 1;
+			if ((long) (rowEnd - rowStart)*colCount <= CHUNK_SIZE) {
+				return createMoments(source, colMin, colMax, rowStart, rowEnd);
+			}
+			int rowMid = (rowStart + rowEnd) >>> 1;
+			MomentsTask left = new MomentsTask(source, colMin, colMax, rowStart, rowMid);
+			MomentsTask right = new MomentsTask(source, colMin, colMax, rowMid, rowEnd);
+			left.fork();
+			Moments moments = right.compute();
+			moments.merge(left.join());
+			return moments;
+		}
+	}
+
+	/**
+	 * Utility method that calculates the quartiles of the data values and
+	 * stores the results in {@code stats}. The quartiles are selected from
+	 * a primitive copy of the values in linear time, or they are estimated
+	 * by the sketch if quantiles are approximated.
+	 * @param stats {@code Map} for storing results
+	 * @see de.erichseifert.gral.util.MathUtils#quantiles(double[], int, double...)
+	 */
+	private void createDistributionStats(Map<String, Double> stats) {
+		double[] quartiles;
+		if (getQuantileSketchAccuracy() > 0) {
+			QuantileSketch sketch = getSketch();
+			synchronized (this) {
+				if (sketch.getCount() <= 0L) {
+					return;
+				}
+				quartiles = sketch.quantiles(0.25, 0.50, 0.75);
+			}
+		} else {
+			double[] values = getValues();
+			if (values.length <= 0) {
+				return;
+			}
+			quartiles = MathUtils.quantiles(values, values.length, 0.25, 0.50, 0.75);
+		}
+		stats.put(QUARTILE_1, quartiles[0]);
+		stats.put(QUARTILE_2, quartiles[1]);
+		stats.put(QUARTILE_3, quartiles[2]);
 		stats.put(MEDIAN, stats.get(QUARTILE_2));
 	}
 
+	/**
+	 * Returns a copy of all calculatable data values in a primitive array.
+	 * If the data is a {@code DataSource} its values are read in blocks
+	 * without boxing.
+	 * @return Unsorted data values.
+	 */
+	private double[] getValues() {
+		double[] values;
+		int size = 0;
+		if (source != null) {
+			int colMin = (col >= 0) ? col : 0;
+			int colMax = (col >= 0) ? col : source.getColumnCount() - 1;
+			int rowCount = source.getRowCount();
+			values = new double[rowCount*(colMax - colMin + 1)];
+			for (int colIndex = colMin; colIndex <= colMax; colIndex++) {
+				source.getDoubles(colIndex, 0, values, size, rowCount);
+				size += rowCount;
+			}
+			int calculatableCount = 0;
+			for (int i = 0; i < size; i++) {
+				if (MathUtils.isCalculatable(values[i])) {
+					values[calculatableCount++] = values[i];
+				}
+			}
+			size = calculatableCount;
+		} else {
+			values = new double[16];
+			for (Comparable<?> cell : data) {
+				if (!(cell instanceof Number)) {
+					continue;
+				}
+				double value = ((Number) cell).doubleValue();
+				if (!MathUtils.isCalculatable(value)) {
+					continue;
+				}
+				if (size == values.length) {
+					values = Arrays.copyOf(values, 2*size);
+				}
+				values[size++] = value;
+			}
+		}
+		return (size == values.length) ? values : Arrays.copyOf(values, size);
+	}
+
+	/**
+	 * Returns the sketch that approximates the quantiles of the data values.
+	 * If quantiles are approximated, the sketch is built when it is needed
+	 * for the first time and kept up to date afterwards. Otherwise a new
+	 * sketch with the default accuracy is built with every call. The cached
+	 * sketch must only be accessed while the monitor of this object is held.
+	 * @return Sketch of the data values.
+	 */
+	private QuantileSketch getSketch() {
+		int k;
+		long changes;
+		synchronized (this) {
+			if (sketch != null) {
+				return sketch;
+			}
+			k = quantileSketchAccuracy;
+			changes = this.changes;
+		}
+		QuantileSketch sketch = new QuantileSketch((k > 0) ? k : QuantileSketch.DEFAULT_K);
+		for (double value : getValues()) {
+			sketch.add(value);
+		}
+		synchronized (this) {
+			if (k > 0 && changes == this.changes) {
+				this.sketch = sketch;
+			}
+		}
+		return sketch;
+	}
+
+	/**
+	 * Returns the specified quantile of the data values. The quantile is
+	 * calculated with the same method as the quartiles, but it is not
+	 * cached.
+	 * @param q Quantile in range [0, 1].
+	 * @return Quantile value, or <i>NaN</i> if there are no calculatable
+	 *         values.
+	 */
+	public double quantile(double q) {
+		if (!(q >= 0.0 && q <= 1.0)) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Quantile must be in range [0, 1]: {0}", q)); //$NON-NLS-1$
+		}
+		if (getQuantileSketchAccuracy() > 0) {
+			QuantileSketch sketch = getSketch();
+			synchronized (this) {
+				return sketch.quantile(q);
+			}
+		}
+		double[] values = getValues();
+		return MathUtils.quantile(values, values.length, q);
+	}
+
+	/**
+	 * Returns the accuracy parameter of the sketch that approximates
+	 * quantiles.
+	 * @return Accuracy parameter, or {@code 0} if quantiles are calculated
+	 *         exactly.
+	 */
+	public synchronized int getQuantileSketchAccuracy() {
+		return quantileSketchAccuracy;
+	}
+
+	/**
+	 * Sets whether quantiles are approximated by a {@link QuantileSketch}
+	 * with the specified accuracy parameter or calculated exactly.
+	 * @param k Accuracy parameter of the sketch, or {@code 0} to calculate
+	 *        quantiles exactly.
+	 * @see QuantileSketch#QuantileSketch(int)
+	 */
+	public synchronized void setQuantileSketchAccuracy(int k) {
+		if (k < 0 || k == 1) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Invalid accuracy parameter: {0,number,integer}", k)); //$NON-NLS-1$
+		}
+		quantileSketchAccuracy = k;
+		sketch = null;
+		statistics.clear();
+		changes++;
+	}
+
+	/**
+	 * Returns a sketch of the data values that can be
+	 * {@link QuantileSketch#merge(QuantileSketch) merged} with sketches of
+	 * other data, e.g. to summarize data that is spread across several
+	 * data sources. The returned sketch is a copy and can be changed freely.
+	 * Its accuracy parameter is the one of the approximated quantiles, or
+	 * {@link QuantileSketch#DEFAULT_K} if quantiles are calculated exactly.
+	 * @return Sketch of the data values.
+	 */
+	public QuantileSketch getQuantileSketch() {
+		QuantileSketch sketch = getSketch();
+		synchronized (this) {
+			if (sketch != this.sketch) {
+				return sketch;
+			}
+			QuantileSketch copy = new QuantileSketch(sketch.getK());
+			copy.merge(sketch);
+			return copy;
+		}
+	}
+
 	/**
 	 * Returns the specified statistics value.
 	 * @param key Requested information.
@@ -211,16 +665,97 @@ public class Statistics {
 	 *         if the specified statistical value does not exist
 	 */
 	public double get(String key) {
-		if (!statistics.containsKey(key)) {
-			if (MEDIAN.equals(key) || QUARTILE_1.equals(key) ||
-					QUARTILE_2.equals(key) || QUARTILE_3.equals(key)) {
-				createDistributionStats(data, statistics);
-			} else {
-				createBasicStats(data, statistics);
+		boolean distribution = MEDIAN.equals(key) || QUARTILE_1.equals(key) ||
+			QUARTILE_2.equals(key) || QUARTILE_3.equals(key);
+		boolean extrema = MIN.equals(key) || MAX.equals(key);
+		long changes;
+		synchronized (this) {
+			if (!statistics.containsKey(key) && !distribution && moments != null
+					&& (!extrema || extremaValid)) {
+				moments.put(statistics, extremaValid);
+			}
+			if (statistics.containsKey(key)) {
+				return DataUtils.getValueOrDefault(statistics.get(key), Double.NaN);
+			}
+			changes = this.changes;
+		}
+
+		// The data is read without holding the monitor
+		Map<String, Double> stats = new HashMap<>();
+		Moments moments = null;
+		if (distribution) {
+			createDistributionStats(stats);
+		} else {
+			moments = createMoments();
+			moments.put(stats, true);
+		}
+		synchronized (this) {
+			if (changes == this.changes) {
+				if (moments != null) {
+					this.moments = moments;
+					extremaValid = true;
+				}
+				statistics.putAll(stats);
 			}
 		}
+		return DataUtils.getValueOrDefault(stats.get(key), Double.NaN);
+	}
 
-		Double v = statistics.get(key);
-		return DataUtils.getValueOrDefault(v, Double.NaN);
+	/**
+	 * Updates the statistics after a value has been added to the analyzed
+	 * data. Non-numeric values are represented by {@code NaN} and don't
+	 * change the statistics.
+	 * @param value Value that has been added.
+	 */
+	public synchronized void add(double value) {
+		if (!MathUtils.isCalculatable(value)) {
+			return;
+		}
+		statistics.clear();
+		changes++;
+		if (moments != null) {
+			moments.add(value);
+		}
+		if (sketch != null) {
+			sketch.add(value);
+		}
+	}
+
+	/**
+	 * Updates the statistics after a value has been removed from the
+	 * analyzed data. Non-numeric values are represented by {@code NaN} and
+	 * don't change the statistics. If the value equals the current minimum
+	 * or maximum, these will be recalculated from the data when they are
+	 * requested the next time.
+	 * @param value Value that has been removed.
+	 */
+	public synchronized void remove(double value) {
+		if (!MathUtils.isCalculatable(value)) {
+			return;
+		}
+		statistics.clear();
+		sketch = null;
+		changes++;
+		if (moments == null) {
+			return;
+		}
+		if (!(value > moments.min && value < moments.max)) {
+			extremaValid = false;
+		}
+		moments.remove(value);
+		if (moments.n == 0.0) {
+			extremaValid = true;
+		}
+	}
+
+	/**
+	 * Discards all cached statistics, so they will be recalculated from the
+	 * data when they are requested the next time.
+	 */
+	public synchronized void invalidate() {
+		statistics.clear();
+		moments = null;
+		sketch = null;
+		changes++;
 	}
 }
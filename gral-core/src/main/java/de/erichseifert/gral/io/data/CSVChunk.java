@@ -0,0 +1,251 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.MutableDataSource;
+import de.erichseifert.gral.data.NumericDataTable;
+
+/**
+ * Class that buffers parsed rows column by column before they are added to
+ * a table in one step. If all columns are of type {@code Double},
+ * {@code Float}, or {@code Integer}, the values are stored in primitive
+ * arrays and added to a {@link NumericDataTable}, otherwise they are stored
+ * as objects and added to a {@link DataTable}.
+ */
+final class CSVChunk {
+	/** Initial number of rows that can be stored. */
+	private static final int INITIAL_CAPACITY = 256;
+
+	/** Data types of all columns. */
+	private final Class<? extends Comparable<?>>[] types;
+	/** Whether the values are stored in primitive arrays. */
+	private final boolean numeric;
+	/** Primitive values of each column. */
+	private double[][] numbers;
+	/** Indexes of empty cells in each column. */
+	private final BitSet[] nulls;
+	/** Values of each column. */
+	private Comparable<?>[][] values;
+	/** Number of complete rows. */
+	private int rowCount;
+
+	/**
+	 * Initializes a new instance for columns of the specified types.
+	 * @param types Data types of all columns.
+	 */
+	public CSVChunk(Class<? extends Comparable<?>>[] types) {
+		this.types = types;
+		numeric = isNumeric(types);
+		if (numeric) {
+			numbers = new double[types.length][INITIAL_CAPACITY];
+			nulls = new BitSet[types.length];
+			for (int col = 0; col < types.length; col++) {
+				nulls[col] = new BitSet();
+			}
+		} else {
+			values = new Comparable<?>[types.length][INITIAL_CAPACITY];
+			nulls = null;
+		}
+	}
+
+	/**
+	 * Returns whether all columns can be stored in primitive arrays without
+	 * loss of precision.
+	 * @param types Data types of all columns.
+	 * @return {@code true} if all columns are of type {@code Double},
+	 *         {@code Float}, or {@code Integer}.
+	 */
+	private static boolean isNumeric(Class<? extends Comparable<?>>[] types) {
+		for (Class<? extends Comparable<?>> type : types) {
+			if (!Double.class.equals(type) && !Float.class.equals(type) &&
+					!Integer.class.equals(type)) {
+				return false;
+			}
+		}
+		return types.length > 0;
+	}
+
+	/**
+	 * Creates an empty table that can store the rows of chunks with the
+	 * specified column types.
+	 * @param types Data types of all columns.
+	 * @return Empty table.
+	 */
+	@SuppressWarnings("unchecked")
+	public static MutableDataSource createTable(Class<? extends Comparable<?>>[] types) {
+		if (isNumeric(types)) {
+			return new NumericDataTable(types);
+		}
+		return new DataTable(types);
+	}
+
+	/**
+	 * Returns the number of complete rows.
+	 * @return Number of rows.
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Stores a numeric value in the current row.
+	 * @param col Column index.
+	 * @param value Value.
+	 */
+	public void addNumber(int col, double value) {
+		if (numeric) {
+			numbers[col][rowCount] = value;
+			return;
+		}
+		Class<? extends Comparable<?>> type = types[col];
+		if (Integer.class.equals(type)) {
+			values[col][rowCount] = (int) value;
+		} else if (Float.class.equals(type)) {
+			values[col][rowCount] = (float) value;
+		} else {
+			values[col][rowCount] = value;
+		}
+	}
+
+	/**
+	 * Stores a value in the current row.
+	 * @param col Column index.
+	 * @param value Value.
+	 */
+	public void addValue(int col, Comparable<?> value) {
+		values[col][rowCount] = value;
+	}
+
+	/**
+	 * Stores an empty cell in the current row.
+	 * @param col Column index.
+	 */
+	public void addNull(int col) {
+		if (numeric) {
+			nulls[col].set(rowCount);
+		} else {
+			values[col][rowCount] = null;
+		}
+	}
+
+	/**
+	 * Completes the current row.
+	 */
+	public void endRow() {
+		rowCount++;
+		int capacity = numeric ? numbers[0].length : values[0].length;
+		if (rowCount < capacity) {
+			return;
+		}
+		capacity *= 2;
+		for (int col = 0; col < types.length; col++) {
+			if (numeric) {
+				numbers[col] = Arrays.copyOf(numbers[col], capacity);
+			} else {
+				values[col] = Arrays.copyOf(values[col], capacity);
+			}
+		}
+	}
+
+	/**
+	 * Returns the value of the specified cell of a complete row.
+	 * @param col Column index.
+	 * @param row Row index.
+	 * @return Value of the cell, or {@code null} if the cell is empty.
+	 */
+	public Comparable<?> get(int col, int row) {
+		if (!numeric) {
+			return values[col][row];
+		}
+		if (nulls[col].get(row)) {
+			return null;
+		}
+		double value = numbers[col][row];
+		Class<? extends Comparable<?>> type = types[col];
+		if (Integer.class.equals(type)) {
+			return (int) value;
+		} else if (Float.class.equals(type)) {
+			return (float) value;
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the value of the specified cell of a complete row as a
+	 * primitive {@code double}.
+	 * @param col Column index.
+	 * @param row Row index.
+	 * @return Value of the cell, or {@code NaN} if the cell is empty or not
+	 *         numeric.
+	 */
+	public double getDouble(int col, int row) {
+		if (numeric) {
+			return nulls[col].get(row) ? Double.NaN : numbers[col][row];
+		}
+		Comparable<?> value = values[col][row];
+		if (!(value instanceof Number)) {
+			return Double.NaN;
+		}
+		return ((Number) value).doubleValue();
+	}
+
+	/**
+	 * Adds all complete rows to the specified table and removes them from
+	 * this chunk. The cells of an incomplete row are kept.
+	 * @param table Table that was created by {@link #createTable(Class[])}.
+	 */
+	public void flush(MutableDataSource table) {
+		if (rowCount == 0) {
+			return;
+		}
+		if (numeric) {
+			((NumericDataTable) table).addColumns(rowCount, nulls, numbers);
+			for (int col = 0; col < types.length; col++) {
+				boolean empty = nulls[col].get(rowCount);
+				nulls[col].clear();
+				nulls[col].set(0, empty);
+				numbers[col][0] = numbers[col][rowCount];
+			}
+		} else {
+			List<List<Comparable<?>>> rows = new ArrayList<>(rowCount);
+			for (int row = 0; row < rowCount; row++) {
+				Comparable<?>[] rowValues = new Comparable<?>[types.length];
+				for (int col = 0; col < types.length; col++) {
+					rowValues[col] = values[col][row];
+				}
+				rows.add(Arrays.asList(rowValues));
+			}
+			((DataTable) table).addAll(rows);
+			for (Comparable<?>[] columnValues : values) {
+				columnValues[0] = columnValues[rowCount];
+				Arrays.fill(columnValues, 1, rowCount + 1, null);
+			}
+		}
+		rowCount = 0;
+	}
+}
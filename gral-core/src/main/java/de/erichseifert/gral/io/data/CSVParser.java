@@ -0,0 +1,477 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+/**
+ * <p>Streaming parser for CSV or TSV content. The characters are passed in
+ * blocks of arbitrary size, so the input never has to be held in memory
+ * completely. Completed rows are stored in a {@link CSVChunk}.</p>
+ * <p>Cells are separated by a separator character and rows are separated by
+ * {@code \n}, {@code \r\n}, or {@code \r}. Quotes may wrap cell content
+ * including separators and line breaks, two consecutive quotes inside quotes
+ * represent a quote character. Whitespace at the beginning and at the end of
+ * a cell is ignored. Numbers of type {@code Double} and {@code Integer} are
+ * parsed directly from the characters, other types are parsed by their
+ * static {@code parse} methods.</p>
+ * @see <a href="http://tools.ietf.org/html/rfc4180">RFC 4180</a>
+ */
+final class CSVParser {
+	/** Largest integer up to which all integers can be represented exactly
+	as double values. */
+	private static final long MAX_EXACT_DOUBLE = 1L << 53;
+	/** Powers of ten that can be represented exactly as double values. */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/**
+	 * Ways of converting cell content to a value.
+	 */
+	private enum CellType {
+		/** Type for {@code Double} values. */
+		DOUBLE,
+		/** Type for {@code Float} values. */
+		FLOAT,
+		/** Type for {@code Integer} values. */
+		INTEGER,
+		/** Type for {@code Long} values. */
+		LONG,
+		/** Type for {@code String} values. */
+		STRING,
+		/** Type for values that are parsed by a static {@code parse} method. */
+		OTHER
+	}
+
+	/** Column separator character. */
+	private final char separator;
+	/** Data types of all columns. */
+	private final Class<? extends Comparable<?>>[] types;
+	/** Ways of converting the content of each column. */
+	private final CellType[] cellTypes;
+	/** Methods for parsing the content of columns of type
+	{@link CellType#OTHER}. */
+	private final Method[] parseMethods;
+
+	/** Content of the current cell. */
+	private char[] cell;
+	/** Number of characters in the current cell. */
+	private int cellLength;
+	/** Index of the current column. */
+	private int col;
+	/** Index of the current row. */
+	private long row;
+	/** Whether the current row contains any characters. */
+	private boolean rowStarted;
+	/** Whether the current position is inside quotes. */
+	private boolean quoted;
+	/** Whether the previous character closed a quote. */
+	private boolean quoteClosed;
+	/** Whether the previous character was a carriage return. */
+	private boolean carriageReturn;
+
+	/**
+	 * Initializes a new parser for columns of the specified types.
+	 * @param separator Column separator character.
+	 * @param types Data types of all columns.
+	 */
+	public CSVParser(char separator, Class<? extends Comparable<?>>[] types) {
+		this.separator = separator;
+		this.types = types;
+		cellTypes = new CellType[types.length];
+		parseMethods = new Method[types.length];
+		for (int col = 0; col < types.length; col++) {
+			Class<? extends Comparable<?>> type = types[col];
+			if (Double.class.equals(type)) {
+				cellTypes[col] = CellType.DOUBLE;
+			} else if (Float.class.equals(type)) {
+				cellTypes[col] = CellType.FLOAT;
+			} else if (Integer.class.equals(type)) {
+				cellTypes[col] = CellType.INTEGER;
+			} else if (Long.class.equals(type)) {
+				cellTypes[col] = CellType.LONG;
+			} else if (String.class.isAssignableFrom(type)) {
+				cellTypes[col] = CellType.STRING;
+			} else {
+				cellTypes[col] = CellType.OTHER;
+				parseMethods[col] = getParseMethod(type);
+				if (parseMethods[col] == null) {
+					throw new IllegalArgumentException(MessageFormat.format(
+						"Unsupported data type {0} in column {1,number,integer}.", //$NON-NLS-1$
+						type.getSimpleName(), col));
+				}
+			}
+		}
+		cell = new char[64];
+	}
+
+	/**
+	 * Sets the index of the current row that is used in error messages.
+	 * @param row Row index.
+	 */
+	public void setRow(long row) {
+		this.row = row;
+	}
+
+	/**
+	 * Parses the specified characters and stores all completed rows in the
+	 * specified chunk. Incomplete rows are continued by the next call.
+	 * @param chars Buffer with characters.
+	 * @param offset Index of the first character.
+	 * @param length Number of characters.
+	 * @param chunk Chunk that stores the rows.
+	 * @throws IOException if a cell doesn't match the column type.
+	 */
+	public void parse(char[] chars, int offset, int length, CSVChunk chunk)
+			throws IOException {
+		int end = offset + length;
+		int i = offset;
+		while (i < end) {
+			char c = chars[i];
+			if (carriageReturn) {
+				carriageReturn = false;
+				if (c == '\n') {
+					i++;
+					continue;
+				}
+			}
+			if (quoted) {
+				if (c == '"') {
+					quoted = false;
+					quoteClosed = true;
+				} else {
+					append(c);
+				}
+				i++;
+				continue;
+			}
+			if (quoteClosed) {
+				quoteClosed = false;
+				if (c == '"') {
+					// Two quotes inside quotes represent a quote
+					append(c);
+					quoted = true;
+					i++;
+					continue;
+				}
+			}
+
+			// Skip unquoted content
+			int start = i;
+			while (c != separator && c != '\n' && c != '\r' && c != '"') {
+				if (++i == end) {
+					append(chars, start, end);
+					return;
+				}
+				c = chars[i];
+			}
+
+			if (c == '"') {
+				append(chars, start, i);
+				rowStarted = true;
+				quoted = true;
+			} else {
+				if (cellLength == 0) {
+					// The cell can be converted without copying
+					endCell(chars, start, i, chunk);
+				} else {
+					append(chars, start, i);
+					endCell(cell, 0, cellLength, chunk);
+				}
+				if (c == separator) {
+					rowStarted = true;
+				} else {
+					endRow();
+					chunk.endRow();
+					carriageReturn = c == '\r';
+				}
+			}
+			i++;
+		}
+	}
+
+	/**
+	 * Completes the last row if the content didn't end with a row separator.
+	 * @param chunk Chunk that stores the rows.
+	 * @throws IOException if a cell doesn't match the column type.
+	 */
+	public void finish(CSVChunk chunk) throws IOException {
+		if (rowStarted) {
+			endCell(cell, 0, cellLength, chunk);
+			endRow();
+			chunk.endRow();
+		}
+		quoted = false;
+		quoteClosed = false;
+		carriageReturn = false;
+	}
+
+	/**
+	 * Appends a character to the current cell.
+	 * @param c Character.
+	 */
+	private void append(char c) {
+		if (cellLength == cell.length) {
+			cell = Arrays.copyOf(cell, 2*cell.length);
+		}
+		cell[cellLength++] = c;
+		rowStarted = true;
+	}
+
+	/**
+	 * Appends a range of characters to the current cell.
+	 * @param chars Characters.
+	 * @param start Index of the first character.
+	 * @param end Index after the last character.
+	 */
+	private void append(char[] chars, int start, int end) {
+		int length = end - start;
+		if (length <= 0) {
+			return;
+		}
+		if (cellLength + length > cell.length) {
+			cell = Arrays.copyOf(cell, Math.max(2*cell.length, cellLength + length));
+		}
+		System.arraycopy(chars, start, cell, cellLength, length);
+		cellLength += length;
+		rowStarted = true;
+	}
+
+	/**
+	 * Converts the content of the current cell and stores it in the chunk.
+	 * @param chars Characters that contain the cell content.
+	 * @param start Index of the first character.
+	 * @param end Index after the last character.
+	 * @param chunk Chunk that stores the rows.
+	 * @throws IOException if the cell doesn't match the column type.
+	 */
+	private void endCell(char[] chars, int start, int end, CSVChunk chunk)
+			throws IOException {
+		// Check for a valid number of columns
+		if (col >= types.length) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Too many columns in line {0,number,integer}: got {1,number,integer}, but expected {2,number,integer}.", //$NON-NLS-1$
+				row + 1, col + 1, types.length));
+		}
+
+		while (start < end && chars[start] <= ' ') {
+			start++;
+		}
+		while (end > start && chars[end - 1] <= ' ') {
+			end--;
+		}
+		cellLength = 0;
+
+		CellType cellType = cellTypes[col];
+		if (start == end) {
+			if (cellType == CellType.STRING) {
+				chunk.addValue(col, ""); //$NON-NLS-1$
+			} else {
+				chunk.addNull(col);
+			}
+			col++;
+			return;
+		}
+
+		try {
+			switch (cellType) {
+			case DOUBLE:
+				chunk.addNumber(col, parseDouble(chars, start, end));
+				break;
+			case FLOAT:
+				chunk.addNumber(col, Float.parseFloat(new String(chars, start, end - start)));
+				break;
+			case INTEGER:
+				chunk.addNumber(col, parseInteger(chars, start, end));
+				break;
+			case LONG:
+				chunk.addValue(col, Long.parseLong(new String(chars, start, end - start)));
+				break;
+			case STRING:
+				chunk.addValue(col, new String(chars, start, end - start));
+				break;
+			default:
+				chunk.addValue(col, (Comparable<?>) parseMethods[col].invoke(
+					null, new String(chars, start, end - start)));
+				break;
+			}
+		} catch (NumberFormatException e) {
+			throw createTypeMismatch(chars, start, end);
+		} catch (IllegalArgumentException e) {
+			throw new RuntimeException(MessageFormat.format(
+				"Could not invoke method for parsing data type {0} in column {1,number,integer}.", //$NON-NLS-1$
+				types[col].getSimpleName(), col));
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(MessageFormat.format(
+				"Could not access method for parsing data type {0} in column {1,number,integer}.", //$NON-NLS-1$
+				types[col].getSimpleName(), col));
+		} catch (InvocationTargetException e) {
+			throw createTypeMismatch(chars, start, end);
+		}
+		col++;
+	}
+
+	/**
+	 * Creates an exception for cell content that doesn't match the column
+	 * type.
+	 * @param chars Characters that contain the cell content.
+	 * @param start Index of the first character of the cell content.
+	 * @param end Index after the last character of the cell content.
+	 * @return Exception.
+	 */
+	private IOException createTypeMismatch(char[] chars, int start, int end) {
+		return new IOException(MessageFormat.format(
+			"Type mismatch in line {0,number,integer}, column {1,number,integer}: got \"{2}\", but expected {3} value.", //$NON-NLS-1$
+			row + 1, col + 1, new String(chars, start, end - start), types[col].getSimpleName()));
+	}
+
+	/**
+	 * Completes the current row.
+	 */
+	private void endRow() {
+		// Check for a valid number of columns
+		if (col < types.length) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Not enough columns in line {0,number,integer}: got {1,number,integer}, but expected {2,number,integer}.", //$NON-NLS-1$
+				row + 1, col, types.length));
+		}
+		row++;
+		col = 0;
+		rowStarted = false;
+	}
+
+	/**
+	 * Parses a decimal number without exponent directly from the specified
+	 * characters if it can be converted exactly. All other numbers are
+	 * parsed by {@link Double#parseDouble(String)}.
+	 * @param chars Characters.
+	 * @param start Index of the first character.
+	 * @param end Index after the last character.
+	 * @return Parsed value.
+	 * @throws NumberFormatException if the characters don't represent a
+	 *         number.
+	 */
+	static double parseDouble(char[] chars, int start, int end) {
+		int i = start;
+		boolean negative = chars[i] == '-';
+		if (negative || chars[i] == '+') {
+			i++;
+		}
+		long mantissa = 0L;
+		int digits = 0;
+		int fractionDigits = 0;
+		boolean point = false;
+		for (; i < end; i++) {
+			char c = chars[i];
+			if (c >= '0' && c <= '9' && digits < 18) {
+				mantissa = 10L*mantissa + (c - '0');
+				digits++;
+				if (point) {
+					fractionDigits++;
+				}
+			} else if (c == '.' && !point) {
+				point = true;
+			} else {
+				digits = -1;
+				break;
+			}
+		}
+		if (digits <= 0 || mantissa > MAX_EXACT_DOUBLE ||
+				fractionDigits >= POWERS_OF_TEN.length) {
+			return Double.parseDouble(new String(chars, start, end - start));
+		}
+		// Both operands are exact, so the quotient is rounded correctly
+		double value = mantissa/POWERS_OF_TEN[fractionDigits];
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parses a decimal integer directly from the specified characters.
+	 * @param chars Characters.
+	 * @param start Index of the first character.
+	 * @param end Index after the last character.
+	 * @return Parsed value.
+	 * @throws NumberFormatException if the characters don't represent an
+	 *         integer.
+	 */
+	static int parseInteger(char[] chars, int start, int end) {
+		int i = start;
+		boolean negative = chars[i] == '-';
+		if (negative || chars[i] == '+') {
+			i++;
+		}
+		if (i == end || end - i > 10) {
+			return Integer.parseInt(new String(chars, start, end - start));
+		}
+		long value = 0L;
+		for (; i < end; i++) {
+			char c = chars[i];
+			if (c < '0' || c > '9') {
+				throw new NumberFormatException(MessageFormat.format(
+					"For input string: \"{0}\"", //$NON-NLS-1$
+					new String(chars, start, end - start)));
+			}
+			value = 10L*value + (c - '0');
+		}
+		if (negative) {
+			value = -value;
+		}
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			return Integer.parseInt(new String(chars, start, end - start));
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Returns a method that can return a parsed value of the specified type.
+	 * @param c Desired type.
+	 * @return Method that parses a data type.
+	 */
+	private static Method getParseMethod(Class<?> c) {
+		Method parse = null;
+		for (Method m : c.getMethods()) {
+			boolean isStatic = m.toString().contains("static"); //$NON-NLS-1$
+			if (!isStatic) {
+				continue;
+			}
+			Class<?>[] types = m.getParameterTypes();
+			boolean hasStringParameter =
+				(types.length == 1) && String.class.equals(types[0]);
+			if (!hasStringParameter) {
+				continue;
+			}
+			// Check method name for a pattern like "parseInt*" for Integer or
+			// "parseSho*" for Short to avoid collisions
+			if (!m.getName().startsWith("parse" + c.getSimpleName().substring(0, 3))) {  //$NON-NLS-1$
+				continue;
+			}
+			parse = m;
+		}
+		return parse;
+	}
+}
@@ -21,24 +21,32 @@
  */
 package de.erichseifert.gral.io.data;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.text.MessageFormat;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Scanner;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import de.erichseifert.gral.data.DataSource;
-import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.MutableDataSource;
 import de.erichseifert.gral.io.IOCapabilities;
+import de.erichseifert.gral.util.ConcurrencyUtils;
 import de.erichseifert.gral.util.Messages;
-import de.erichseifert.gral.util.StatefulTokenizer;
-import de.erichseifert.gral.util.StatefulTokenizer.Token;
 
 
 /**
@@ -53,12 +61,27 @@ import de.erichseifert.gral.util.StatefulTokenizer.Token;
  * DataReader reader = factory.get("text/csv");
  * reader.read(new FileInputStream(filename), Integer.class, Double.class);
  * </pre>
+ * <p>The content is parsed in a single pass while it is read, so only a
+ * small buffer of characters is kept in memory. If all columns are of type
+ * {@code Double}, {@code Float}, or {@code Integer} the values are stored
+ * in primitive arrays of a {@link de.erichseifert.gral.data.NumericDataTable},
+ * otherwise a {@link de.erichseifert.gral.data.DataTable} is created.</p>
+ * <p>Files can be parsed in parallel by setting {@link #PARALLELISM} to a
+ * value greater than one. The file is split into byte ranges that start
+ * after row separators outside of quotes. The ranges are parsed
+ * concurrently and their rows are added in the original order. Parallel
+ * parsing requires a file channel or a file input stream and a default
+ * character set that encodes ASCII characters as single bytes.</p>
  * @see <a href="http://tools.ietf.org/html/rfc4180">RFC 4180</a>
  */
 public class CSVReader extends AbstractDataReader {
 	/** Key for specifying a {@link Character} value that defines the
 	delimiting character used to separate columns. */
 	public static final String SEPARATOR_CHAR = "separator"; //$NON-NLS-1$
+	/** Key for specifying an {@link Integer} value that defines the number
+	of byte ranges of a file that are parsed in parallel. By default files
+	are parsed sequentially. */
+	public static final String PARALLELISM = "parallelism"; //$NON-NLS-1$
 
 	static {
 		addCapabilities(new IOCapabilities(
@@ -77,53 +100,12 @@ public class CSVReader extends AbstractDataReader {
 		));
 	}
 
-	/**
-	 * Token types for analyzing CSV or TSV input.
-	 */
-	private enum CSVTokenType {
-		/** Type for text tokens containing empty content. */
-		EMPTY_SPACE,
-		/** Type for text tokens containing value content. */
-		TEXT,
-		/** Type for quotes that may wrap value content. */
-		QUOTE,
-		/** Type for row separators. */
-		ROW_SEPARATOR,
-		/** Type for column separators. */
-		COLUMN_SEPARATOR,
-	}
-
-	/**
-	 *
-	 */
-	private static final class CSVTokenizer extends StatefulTokenizer {
-		/**
-		 * Initializes a new tokenizer instance with a grammar to analyze CSV
-		 * or TSV content. The character that separates columns must be
-		 * provided.
-		 * @param separator Column separator character.
-		 */
-		public CSVTokenizer(char separator) {
-			addJoinedType(CSVTokenType.TEXT);
-			addIgnoredType(CSVTokenType.QUOTE);
-
-			// Basic Set of rules for analyzing CSV content
-			putRules(
-				new Rule("\n|\r\n|\r", CSVTokenType.ROW_SEPARATOR),
-				new Rule(Pattern.quote(String.valueOf(separator)),
-						CSVTokenType.COLUMN_SEPARATOR),
-				new Rule("\"", CSVTokenType.QUOTE, "quoted"),
-				new Rule("[ \t]+", CSVTokenType.EMPTY_SPACE),
-				new Rule(".", CSVTokenType.TEXT)
-			);
-			// Set of rules that is valid inside quoted content
-			putRules("quoted",
-				new Rule("(\")\"", CSVTokenType.TEXT),
-				new Rule("\"", CSVTokenType.QUOTE, "#pop"),
-				new Rule(".", CSVTokenType.TEXT)
-			);
-		}
-	}
+	/** Number of characters that are read at once. */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/** Number of rows that are added to the table at once. */
+	private static final int CHUNK_ROWS = 1 << 12;
+	/** Minimal number of bytes that are parsed by a parallel task. */
+	private static final long MIN_RANGE_SIZE = 1L << 16;
 
 	/**
 	 * Creates a new instance with the specified MIME type. The delimiter is
@@ -138,6 +120,7 @@ public class CSVReader extends AbstractDataReader {
 		} else {
 			setDefault(SEPARATOR_CHAR, ',');
 		}
+		setDefault(PARALLELISM, 1);
 	}
 
 	/**
@@ -150,141 +133,349 @@ public class CSVReader extends AbstractDataReader {
 	 */
 	public DataSource read(InputStream input, Class<? extends Comparable<?>>... types)
 			throws IOException {
-		// Read all contents from the input stream
-		Scanner scanner = new Scanner(input).useDelimiter("\\Z");
-		String content = scanner.next();
+		if (input instanceof FileInputStream && isParallel()) {
+			return read(((FileInputStream) input).getChannel(), types);
+		}
+		return read(new InputStreamReader(input), types);
+	}
+
+	/**
+	 * Returns a DataSource that was imported from a channel. The bytes are
+	 * decoded with the default character set.
+	 * @param input Channel to be read.
+	 * @param types Number types for the columns of the DataSource.
+	 * @return DataSource Imported data.
+	 * @throws IOException when the file format is not valid or when
+	 *         experiencing an error during file operations.
+	 */
+	public DataSource read(ReadableByteChannel input, Class<? extends Comparable<?>>... types)
+			throws IOException {
+		if (input instanceof FileChannel && isParallel()) {
+			DataSource data = readParallel((FileChannel) input, types);
+			if (data != null) {
+				return data;
+			}
+		}
+		return read(Channels.newReader(input, Charset.defaultCharset().newDecoder(), -1), types);
+	}
 
-		// Tokenize the string
+	/**
+	 * Returns a DataSource that was imported from a character stream.
+	 * @param input Characters to be read.
+	 * @param types Number types for the columns of the DataSource.
+	 * @return DataSource Imported data.
+	 * @throws IOException when the file format is not valid or when
+	 *         experiencing an error during file operations.
+	 */
+	public DataSource read(Reader input, Class<? extends Comparable<?>>... types)
+			throws IOException {
 		Character separator = getSetting(SEPARATOR_CHAR);
-		CSVTokenizer tokenizer = new CSVTokenizer(separator);
-		List<Token> tokens = tokenizer.tokenize(content);
+		CSVParser parser = new CSVParser(separator, types);
+		CSVChunk chunk = new CSVChunk(types);
+		MutableDataSource data = CSVChunk.createTable(types);
 
-		// Add row token if there was no trailing line break
-		Token lastToken = tokens.get(tokens.size() - 1);
-		if (lastToken.getType() != CSVTokenType.ROW_SEPARATOR) {
-			Token eof = new Token(lastToken.getEnd(), lastToken.getEnd(),
-				CSVTokenType.ROW_SEPARATOR, "");
-			tokens.add(eof);
+		char[] buffer = new char[BUFFER_SIZE];
+		int length;
+		while ((length = input.read(buffer)) >= 0) {
+			parser.parse(buffer, 0, length, chunk);
+			if (chunk.getRowCount() >= CHUNK_ROWS) {
+				chunk.flush(data);
+			}
 		}
+		parser.finish(chunk);
+		chunk.flush(data);
 
-		// Find methods for all column data types that can be used to convert
-		// the text to the column data type
-		Map<Class<? extends Comparable<?>>, Method> parseMethods =
-				new HashMap<>();
-		for (Class<? extends Comparable<?>> type : types) {
-			if (parseMethods.containsKey(type)) {
-				continue;
-			}
-			Method parseMethod = getParseMethod(type);
-			if (parseMethod != null) {
-				parseMethods.put(type, parseMethod);
-			}
+		return data;
+	}
+
+	/**
+	 * Returns whether files should be parsed in parallel.
+	 * @return {@code true} if more than one byte range should be parsed in
+	 *         parallel and the default character set allows to split files.
+	 */
+	private boolean isParallel() {
+		Number parallelism = getSetting(PARALLELISM);
+		if (parallelism == null || parallelism.intValue() <= 1) {
+			return false;
 		}
+		return isSplittable(Charset.defaultCharset());
+	}
 
-		// Process the data and store the data.
-		DataTable data = new DataTable(types);
-		List<Comparable<?>> row = new LinkedList<>();
-		int rowIndex = 0;
-		int colIndex = 0;
-		StringBuilder cellContent = new StringBuilder();
-		for (Token token : tokens) {
-			if (token.getType() == CSVTokenType.TEXT ||
-					token.getType() == CSVTokenType.EMPTY_SPACE) {
-				// Store the token text
-				cellContent.append(token.getContent());
-			} else if (token.getType() == CSVTokenType.COLUMN_SEPARATOR ||
-					token.getType() == CSVTokenType.ROW_SEPARATOR) {
-				// Check for a valid number of columns
-				if (colIndex >= types.length) {
-					throw new IllegalArgumentException(MessageFormat.format(
-						"Too many columns in line {0,number,integer}: got {1,number,integer}, but expected {2,number,integer}.", //$NON-NLS-1$
-						rowIndex + 1, colIndex + 1, types.length));
-				}
+	/**
+	 * Returns whether text in the specified character set can be split into
+	 * rows without decoding it. This requires that row separators and quotes
+	 * are single bytes that can't be part of other characters.
+	 * @param charset Character set.
+	 * @return {@code true} if row separators can be found in the bytes.
+	 */
+	static boolean isSplittable(Charset charset) {
+		String name = charset.name();
+		return "UTF-8".equals(name) || "US-ASCII".equals(name) || //$NON-NLS-1$ //$NON-NLS-2$
+			name.startsWith("ISO-8859-") || name.startsWith("windows-125"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
 
-				// We need to add the cell to the row in both cases because
-				// rows don't have a trailing column token
-				Class<? extends Comparable<?>> colType = types[colIndex];
-				Method parseMethod = parseMethods.get(colType);
-				Comparable<?> cell = null;
-				try {
-					cell = (Comparable<?>) parseMethod.invoke(
-						null, cellContent.toString().trim());
+	/**
+	 * Parses the remaining content of a file in parallel. If the content
+	 * can't be parsed, it is parsed again sequentially to report the error
+	 * with the correct line number.
+	 * @param input File to be read.
+	 * @param types Number types for the columns of the DataSource.
+	 * @return DataSource Imported data, or {@code null} if the file is too
+	 *         small to be parsed in parallel.
+	 * @throws IOException when the file format is not valid or when
+	 *         experiencing an error during file operations.
+	 */
+	private DataSource readParallel(FileChannel input, Class<? extends Comparable<?>>[] types)
+			throws IOException {
+		long start = input.position();
+		long end = input.size();
+		Number parallelism = getSetting(PARALLELISM);
+		int rangeCount = (int) Math.min(parallelism.intValue(), (end - start)/MIN_RANGE_SIZE);
+		if (rangeCount <= 1) {
+			return null;
+		}
 
-				} catch (IllegalArgumentException e) {
-					throw new RuntimeException(MessageFormat.format(
-						"Could not invoke method for parsing data type {0} in column {1,number,integer}.", //$NON-NLS-1$
-						types[colIndex].getSimpleName(), colIndex));
-				} catch (IllegalAccessException e) {
-					throw new RuntimeException(MessageFormat.format(
-						"Could not access method for parsing data type {0} in column {1,number,integer}.", //$NON-NLS-1$
-						types[colIndex].getSimpleName(), colIndex));
-				} catch (InvocationTargetException e) {
-					if (cellContent.length() > 0) {
-						throw new IOException(MessageFormat.format(
-							"Type mismatch in line {0,number,integer}, column {1,number,integer}: got \"{2}\", but expected {3} value.", //$NON-NLS-1$
-							rowIndex + 1, colIndex + 1, cellContent.toString(), colType.getSimpleName()));
-					}
-				}
-				row.add(cell);
-				colIndex++;
+		ForkJoinPool pool = ConcurrencyUtils.getForkJoinPool();
+		long[] rowStarts = findRowStarts(pool, input, start, end, rangeCount);
+		Character separator = getSetting(SEPARATOR_CHAR);
+		List<Future<CSVChunk>> chunks = new ArrayList<>(rangeCount);
+		for (int i = 0; i < rangeCount; i++) {
+			chunks.add(pool.submit(new RangeParser(
+				input, rowStarts[i], rowStarts[i + 1], separator, types)));
+		}
 
-				if (token.getType() == CSVTokenType.ROW_SEPARATOR) {
-					// Check for a valid number of columns
-					if (row.size() < types.length) {
-						throw new IllegalArgumentException(MessageFormat.format(
-							"Not enough columns in line {0,number,integer}: got {1,number,integer}, but expected {2,number,integer}.", //$NON-NLS-1$
-							rowIndex + 1, row.size(), types.length));
-					}
+		// Add the rows of all ranges in their original order
+		MutableDataSource data = CSVChunk.createTable(types);
+		try {
+			for (Future<CSVChunk> chunk : chunks) {
+				chunk.get().flush(data);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			for (Future<CSVChunk> chunk : chunks) {
+				chunk.cancel(false);
+			}
+			if (!(e.getCause() instanceof IOException) &&
+					!(e.getCause() instanceof IllegalArgumentException)) {
+				throw new IOException(e.getCause());
+			}
+			input.position(start);
+			return read(Channels.newReader(input, Charset.defaultCharset().newDecoder(), -1), types);
+		}
+		input.position(end);
+		return data;
+	}
 
-					// Add the row to the table
-					data.add(row);
-					rowIndex++;
+	/**
+	 * Splits the specified part of a file into ranges of about equal size
+	 * that start with a row. The quotes in each range are counted in
+	 * parallel to find out whether a range starts inside quotes. Each range
+	 * ends after the first row separator outside of quotes that follows the
+	 * nominal end of the range.
+	 * @param pool Pool that executes parallel tasks.
+	 * @param input File.
+	 * @param start Position of the first byte.
+	 * @param end Position after the last byte.
+	 * @param rangeCount Number of ranges.
+	 * @return Start positions of all ranges followed by the end position.
+	 * @throws IOException if the file can't be read.
+	 */
+	private static long[] findRowStarts(ForkJoinPool pool, final FileChannel input,
+			long start, long end, int rangeCount) throws IOException {
+		final long[] nominalStarts = new long[rangeCount + 1];
+		for (int i = 0; i <= rangeCount; i++) {
+			nominalStarts[i] = start + (end - start)*i/rangeCount;
+		}
 
-					// Start a new row
-					row.clear();
-					colIndex = 0;
+		List<Future<Long>> quoteCounts = new ArrayList<>(rangeCount);
+		for (int i = 0; i < rangeCount; i++) {
+			final int range = i;
+			quoteCounts.add(pool.submit(new Callable<Long>() {
+				public Long call() throws IOException {
+					return countQuotes(input, nominalStarts[range], nominalStarts[range + 1]);
 				}
-				cellContent = new StringBuilder();
-			}
+			}));
 		}
 
-		return data;
+		long[] rowStarts = new long[rangeCount + 1];
+		rowStarts[0] = start;
+		rowStarts[rangeCount] = end;
+		long quotes = 0L;
+		try {
+			for (int i = 1; i < rangeCount; i++) {
+				quotes += quoteCounts.get(i - 1).get();
+				boolean quoted = quotes % 2L != 0L;
+				rowStarts[i] = findRowStart(input, nominalStarts[i], end, quoted);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+		return rowStarts;
 	}
 
 	/**
-	 * Returns a method that can return a parsed value of the specified type.
-	 * @param c Desired type.
-	 * @return Method that parses a data type.
+	 * Returns the number of quote characters in the specified part of a
+	 * file.
+	 * @param input File.
+	 * @param start Position of the first byte.
+	 * @param end Position after the last byte.
+	 * @return Number of quotes.
+	 * @throws IOException if the file can't be read.
 	 */
-	private static Method getParseMethod(Class<?> c) {
-		Method parse = null;
+	private static long countQuotes(FileChannel input, long start, long end)
+			throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		long quotes = 0L;
+		long position = start;
+		while (position < end) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), end - position));
+			int length = input.read(buffer, position);
+			if (length < 0) {
+				break;
+			}
+			byte[] bytes = buffer.array();
+			for (int i = 0; i < length; i++) {
+				if (bytes[i] == '"') {
+					quotes++;
+				}
+			}
+			position += length;
+		}
+		return quotes;
+	}
 
-		if (String.class.isAssignableFrom(c)) {
-			try {
-				parse = String.class.getMethod("valueOf", Object.class);
-			} catch (NoSuchMethodException e) {
+	/**
+	 * Returns the position after the first row separator outside of quotes
+	 * in the specified part of a file.
+	 * @param input File.
+	 * @param start Position where the search starts.
+	 * @param end Position after the last byte.
+	 * @param quoted Whether the start position is inside quotes.
+	 * @return Position of the first byte of the next row, or {@code end} if
+	 *         there is no further row.
+	 * @throws IOException if the file can't be read.
+	 */
+	private static long findRowStart(FileChannel input, long start, long end,
+			boolean quoted) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		boolean carriageReturn = false;
+		long position = start;
+		while (position < end) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), end - position));
+			int length = input.read(buffer, position);
+			if (length < 0) {
+				break;
 			}
-		} else {
-			for (Method m : c.getMethods()) {
-				boolean isStatic = m.toString().contains("static"); //$NON-NLS-1$
-				if (!isStatic) {
-					continue;
+			byte[] bytes = buffer.array();
+			for (int i = 0; i < length; i++) {
+				byte b = bytes[i];
+				if (carriageReturn) {
+					// A line feed belongs to the preceding carriage return
+					return b == '\n' ? position + i + 1 : position + i;
 				}
-				Class<?>[] types = m.getParameterTypes();
-				boolean hasStringParameter =
-					(types.length == 1) && String.class.equals(types[0]);
-				if (!hasStringParameter) {
-					continue;
+				if (b == '"') {
+					quoted = !quoted;
+				} else if (!quoted && b == '\n') {
+					return position + i + 1;
+				} else if (!quoted && b == '\r') {
+					carriageReturn = true;
 				}
-				// Check method name for a pattern like "parseInt*" for Integer or
-				// "parseSho*" for Short to avoid collisions
-				if (!m.getName().startsWith("parse" + c.getSimpleName().substring(0, 3))) {  //$NON-NLS-1$
-					continue;
+			}
+			position += length;
+		}
+		return end;
+	}
+
+	/**
+	 * Task that parses the rows of a range of a file.
+	 */
+	private static final class RangeParser implements Callable<CSVChunk> {
+		/** File to be read. */
+		private final FileChannel input;
+		/** Position of the first byte. */
+		private final long start;
+		/** Position after the last byte. */
+		private final long end;
+		/** Column separator character. */
+		private final char separator;
+		/** Data types of all columns. */
+		private final Class<? extends Comparable<?>>[] types;
+
+		/**
+		 * Initializes a new task for the specified range.
+		 * @param input File to be read.
+		 * @param start Position of the first byte.
+		 * @param end Position after the last byte.
+		 * @param separator Column separator character.
+		 * @param types Data types of all columns.
+		 */
+		public RangeParser(FileChannel input, long start, long end,
+				char separator, Class<? extends Comparable<?>>[] types) {
+			this.input = input;
+			this.start = start;
+			this.end = end;
+			this.separator = separator;
+			this.types = types;
+		}
+
+		/**
+		 * Decodes and parses all bytes of the range.
+		 * @return Chunk with all rows of the range.
+		 * @throws IOException if the range can't be read or parsed.
+		 */
+		public CSVChunk call() throws IOException {
+			CSVParser parser = new CSVParser(separator, types);
+			CSVChunk chunk = new CSVChunk(types);
+			CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+			CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+			long position = start;
+			boolean endOfInput;
+			do {
+				bytes.limit(bytes.position() + (int) Math.min(bytes.remaining(), end - position));
+				int length = input.read(bytes, position);
+				if (length > 0) {
+					position += length;
 				}
-				parse = m;
+				endOfInput = length < 0 || position >= end;
+				bytes.flip();
+				CoderResult result;
+				do {
+					result = decoder.decode(bytes, chars, endOfInput);
+					parse(parser, chars, chunk);
+				} while (result.isOverflow());
+				bytes.compact();
+			} while (!endOfInput);
+			while (decoder.flush(chars).isOverflow()) {
+				parse(parser, chars, chunk);
 			}
+			parse(parser, chars, chunk);
+			parser.finish(chunk);
+			return chunk;
 		}
 
-		return parse;
+		/**
+		 * Parses all decoded characters and clears the buffer.
+		 * @param parser Parser.
+		 * @param chars Decoded characters.
+		 * @param chunk Chunk that stores the rows.
+		 * @throws IOException if the characters can't be parsed.
+		 */
+		private static void parse(CSVParser parser, CharBuffer chars, CSVChunk chunk)
+				throws IOException {
+			chars.flip();
+			parser.parse(chars.array(), chars.position(), chars.remaining(), chunk);
+			chars.clear();
+		}
 	}
 }
@@ -0,0 +1,258 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.text.MessageFormat;
+
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.data.MappedDataSource;
+import de.erichseifert.gral.io.IOCapabilities;
+import de.erichseifert.gral.util.Messages;
+
+/**
+ * <p>Class that writes all values of a {@code DataSource} to a binary
+ * column file. Column files can be opened instantly using a
+ * {@link MappedDataSource}, which reads the values directly from the mapped
+ * file instead of loading them into memory. See {@link MappedDataSource}
+ * for a description of the file format. Only {@code Double},
+ * {@code Float}, {@code Long}, and {@code Integer} columns can be
+ * written.</p>
+ * <p>{@code ColumnFileWriter} instances should be obtained by the
+ * {@link DataWriterFactory} rather than being created manually:</p>
+ * <pre>
+ * DataWriterFactory factory = DataWriterFactory.getInstance();
+ * DataWriter writer = factory.get("application/x-gral-columns");
+ * writer.write(data, new FileOutputStream(filename));
+ * </pre>
+ */
+public class ColumnFileWriter extends AbstractDataWriter {
+	/** Size of the buffer that is used for writing. */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	static {
+		addCapabilities(new IOCapabilities(
+			"GCOL", //$NON-NLS-1$
+			Messages.getString("DataIO.gcolDescription"), //$NON-NLS-1$
+			"application/x-gral-columns", //$NON-NLS-1$
+			new String[] {"gcol"} //$NON-NLS-1$
+		));
+	}
+
+	/**
+	 * Creates a new instance with the specified MIME type.
+	 * @param mimeType MIME type of the file format to be written.
+	 */
+	public ColumnFileWriter(String mimeType) {
+		super(mimeType);
+	}
+
+	/**
+	 * Stores the specified data source.
+	 * @param data DataSource to be stored.
+	 * @param output OutputStream to be written to.
+	 * @throws IOException if writing the data failed
+	 */
+	public void write(DataSource data, OutputStream output) throws IOException {
+		// Values must not change while the header and the values are written
+		data = data.snapshot();
+
+		int columnCount = data.getColumnCount();
+		int rowCount = data.getRowCount();
+		Class<? extends Comparable<?>>[] types = data.getColumnTypes();
+
+		int[] typeCodes = new int[columnCount];
+		boolean[] hasNulls = new boolean[columnCount];
+		for (int col = 0; col < columnCount; col++) {
+			typeCodes[col] = MappedDataSource.getTypeCode(types[col]);
+			if (typeCodes[col] < 0) {
+				throw new IOException(MessageFormat.format(
+					"Column {0,number,integer} has the unsupported type {1}. Only Double, Float, Long, and Integer columns can be written.", //$NON-NLS-1$
+					col, types[col]));
+			}
+			hasNulls[col] = containsNulls(data, col);
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put(MappedDataSource.MAGIC.getBytes("US-ASCII")); //$NON-NLS-1$
+		buffer.putInt(MappedDataSource.FORMAT_VERSION);
+		buffer.putInt(columnCount);
+		buffer.putLong(rowCount);
+
+		long offset = MappedDataSource.HEADER_SIZE +
+			(long) columnCount*MappedDataSource.COLUMN_HEADER_SIZE;
+		for (int col = 0; col < columnCount; col++) {
+			long valuesOffset = offset;
+			offset = align(offset + (long) rowCount*MappedDataSource.getTypeSize(typeCodes[col]));
+			long nullsOffset = -1L;
+			if (hasNulls[col]) {
+				nullsOffset = offset;
+				offset = align(offset + (rowCount + 7L)/8);
+			}
+			ensureRemaining(buffer, output, MappedDataSource.COLUMN_HEADER_SIZE);
+			buffer.putInt(typeCodes[col]);
+			buffer.putInt(hasNulls[col] ? MappedDataSource.FLAG_NULLS : 0);
+			buffer.putLong(valuesOffset);
+			buffer.putLong(nullsOffset);
+		}
+
+		for (int col = 0; col < columnCount; col++) {
+			writeValues(data, col, typeCodes[col], buffer, output);
+			if (hasNulls[col]) {
+				writeNulls(data, col, buffer, output);
+			}
+		}
+		flush(buffer, output);
+		output.flush();
+	}
+
+	/**
+	 * Returns whether the specified column contains empty cells.
+	 * @param data Data source.
+	 * @param col Column index.
+	 * @return {@code true} if there is at least one empty cell.
+	 */
+	private static boolean containsNulls(DataSource data, int col) {
+		for (int row = 0; row < data.getRowCount(); row++) {
+			// Only NaN values can be empty cells, which avoids boxing
+			if (Double.isNaN(data.getDouble(col, row)) && data.get(col, row) == null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Writes all values of a column. Empty cells are written as zero.
+	 * @param data Data source.
+	 * @param col Column index.
+	 * @param typeCode Type code of the column.
+	 * @param buffer Buffer.
+	 * @param output Output stream.
+	 * @throws IOException if writing the data failed
+	 */
+	private static void writeValues(DataSource data, int col, int typeCode,
+			ByteBuffer buffer, OutputStream output) throws IOException {
+		int size = MappedDataSource.getTypeSize(typeCode);
+		for (int row = 0; row < data.getRowCount(); row++) {
+			ensureRemaining(buffer, output, size);
+			if (typeCode == MappedDataSource.TYPE_LONG) {
+				// Long values are boxed to avoid a loss of precision
+				Comparable<?> value = data.get(col, row);
+				buffer.putLong((value instanceof Number) ? ((Number) value).longValue() : 0L);
+				continue;
+			}
+			double value = data.getDouble(col, row);
+			if (Double.isNaN(value) && typeCode != MappedDataSource.TYPE_DOUBLE
+					&& typeCode != MappedDataSource.TYPE_FLOAT) {
+				value = 0.0;
+			}
+			if (typeCode == MappedDataSource.TYPE_DOUBLE) {
+				buffer.putDouble(value);
+			} else if (typeCode == MappedDataSource.TYPE_FLOAT) {
+				buffer.putFloat((float) value);
+			} else {
+				buffer.putInt((int) value);
+			}
+		}
+		pad(buffer, output);
+	}
+
+	/**
+	 * Writes the bitmap of empty cells of a column.
+	 * @param data Data source.
+	 * @param col Column index.
+	 * @param buffer Buffer.
+	 * @param output Output stream.
+	 * @throws IOException if writing the data failed
+	 */
+	private static void writeNulls(DataSource data, int col,
+			ByteBuffer buffer, OutputStream output) throws IOException {
+		int rowCount = data.getRowCount();
+		for (int row = 0; row < rowCount; row += 8) {
+			int bits = 0;
+			for (int bit = 0; bit < 8 && row + bit < rowCount; bit++) {
+				if (Double.isNaN(data.getDouble(col, row + bit))
+						&& data.get(col, row + bit) == null) {
+					bits |= 1 << bit;
+				}
+			}
+			ensureRemaining(buffer, output, 1);
+			buffer.put((byte) bits);
+		}
+		pad(buffer, output);
+	}
+
+	/**
+	 * Returns the smallest multiple of eight that is greater than or equal
+	 * to the specified offset.
+	 * @param offset Offset in bytes.
+	 * @return Aligned offset.
+	 */
+	private static long align(long offset) {
+		return (offset + 7L) & ~7L;
+	}
+
+	/**
+	 * Writes zero bytes until the number of written bytes is a multiple of
+	 * eight. This works because the buffer size is a multiple of eight.
+	 * @param buffer Buffer.
+	 * @param output Output stream.
+	 * @throws IOException if writing the data failed
+	 */
+	private static void pad(ByteBuffer buffer, OutputStream output) throws IOException {
+		while ((buffer.position() & 7) != 0) {
+			ensureRemaining(buffer, output, 1);
+			buffer.put((byte) 0);
+		}
+	}
+
+	/**
+	 * Writes the buffer to the output stream if it cannot store the
+	 * specified number of bytes anymore.
+	 * @param buffer Buffer.
+	 * @param output Output stream.
+	 * @param size Number of bytes that will be stored.
+	 * @throws IOException if writing the data failed
+	 */
+	private static void ensureRemaining(ByteBuffer buffer, OutputStream output, int size)
+			throws IOException {
+		if (buffer.remaining() < size) {
+			flush(buffer, output);
+		}
+	}
+
+	/**
+	 * Writes the contents of the buffer to the output stream and clears the
+	 * buffer.
+	 * @param buffer Buffer.
+	 * @param output Output stream.
+	 * @throws IOException if writing the data failed
+	 */
+	private static void flush(ByteBuffer buffer, OutputStream output) throws IOException {
+		output.write(buffer.array(), 0, buffer.position());
+		buffer.clear();
+	}
+}
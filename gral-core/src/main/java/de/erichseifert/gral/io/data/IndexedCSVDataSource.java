@@ -0,0 +1,583 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.erichseifert.gral.data.AbstractDataSource;
+import de.erichseifert.gral.data.DataSource;
+
+/**
+ * <p>Read-only data source that parses the rows of a CSV file on demand.
+ * When the data source is opened, the file is scanned once to find the
+ * byte offset of every {@value #BLOCK_ROWS}th row. This index is much
+ * smaller than the parsed values and it can be stored next to the file to
+ * skip the scan when the file is opened again.</p>
+ *
+ * <p>The file is memory mapped, and blocks of rows are parsed into columns
+ * only when their values are accessed. The most recently used blocks are
+ * kept in a cache of limited size, so the required memory doesn't depend on
+ * the size of the file. The file format is the same that is supported by
+ * {@link CSVReader} and the default character set must encode row
+ * separators and quotes as single bytes, e.g. UTF-8 or ISO-8859-1.</p>
+ *
+ * <p>Cells that don't match their column type are reported when the block
+ * containing them is parsed, i.e. by throwing an
+ * {@code IllegalArgumentException} from {@link #get(int, int)}. The file
+ * must not be modified as long as it is used by the data source.</p>
+ */
+public class IndexedCSVDataSource extends AbstractDataSource {
+	/** Version id for serialization. */
+	private static final long serialVersionUID = 4812318226360583017L;
+
+	/** Number of rows in a block that is parsed at once. */
+	public static final int BLOCK_ROWS = 1 << 10;
+	/** Default number of blocks that are kept in the cache. */
+	public static final int DEFAULT_CACHE_SIZE = 64;
+	/** Suffix that is appended to the file name to get the name of the
+	index file. */
+	public static final String INDEX_SUFFIX = ".gidx"; //$NON-NLS-1$
+
+	/** Magic bytes that identify an index file. */
+	private static final String INDEX_MAGIC = "GRALCIDX"; //$NON-NLS-1$
+	/** Version of the index file format. */
+	private static final int INDEX_VERSION = 1;
+	/** Size of the index file header in bytes. */
+	private static final int INDEX_HEADER_SIZE = 40;
+	/** Number of address bits of a single mapped segment. */
+	private static final int SEGMENT_BITS = 30;
+	/** Maximal size of a single mapped segment in bytes. */
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+	/** Size of the buffer that is used to scan the file in bytes. */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/** CSV file. */
+	private final File file;
+	/** Column separator character. */
+	private final char separator;
+	/** Whether the index is stored in a file. */
+	private final boolean persistIndex;
+	/** Maximal number of parsed blocks in the cache. */
+	private int cacheSize;
+	/** Number of rows. */
+	private int rowCount;
+	/** Byte offset of the first row of each block followed by the size of
+	the file. */
+	private transient long[] blockOffsets;
+	/** Mapped content of the file. Files larger than {@link #SEGMENT_SIZE}
+	are split into several segments. */
+	private transient ByteBuffer[] segments;
+	/** Character set of the file. */
+	private transient Charset charset;
+	/** Parsed blocks in the order of their last access. */
+	private transient Map<Integer, CSVChunk> cache;
+
+	/**
+	 * Opens the specified CSV file with comma separated columns without
+	 * storing its index.
+	 * @param file CSV file.
+	 * @param types Data types of all columns.
+	 * @throws IOException if the file cannot be read.
+	 */
+	public IndexedCSVDataSource(File file, Class<? extends Comparable<?>>... types)
+			throws IOException {
+		this(file, ',', false, types);
+	}
+
+	/**
+	 * Opens the specified CSV file. If {@code persistIndex} is {@code true},
+	 * the index is read from the file returned by {@link #getIndexFile()}
+	 * if it is up to date, otherwise the index is created and written to
+	 * that file.
+	 * @param file CSV file.
+	 * @param separator Column separator character.
+	 * @param persistIndex Whether the index is stored next to the file.
+	 * @param types Data types of all columns.
+	 * @throws IOException if the file cannot be read or if the index
+	 *         cannot be written.
+	 */
+	public IndexedCSVDataSource(File file, char separator, boolean persistIndex,
+			Class<? extends Comparable<?>>... types) throws IOException {
+		super(file.getName(), types);
+		this.file = file;
+		this.separator = separator;
+		this.persistIndex = persistIndex;
+		cacheSize = DEFAULT_CACHE_SIZE;
+		// Check for supported column types
+		new CSVParser(separator, types);
+		open();
+	}
+
+	/**
+	 * Creates or reads the index and maps the file into memory.
+	 * @throws IOException if the file cannot be read or if the index
+	 *         cannot be written.
+	 */
+	private void open() throws IOException {
+		charset = Charset.defaultCharset();
+		if (!CSVReader.isSplittable(charset)) {
+			throw new IOException(MessageFormat.format(
+				"Files with character set {0} cannot be indexed.", charset)); //$NON-NLS-1$
+		}
+		RandomAccessFile input = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try {
+			FileChannel channel = input.getChannel();
+			long size = channel.size();
+			blockOffsets = persistIndex ? readIndex(size) : null;
+			if (blockOffsets == null) {
+				blockOffsets = createIndex(channel, size);
+				if (persistIndex) {
+					writeIndex(size);
+				}
+			}
+			segments = map(channel, size);
+		} finally {
+			// Mapped buffers stay valid after the channel has been closed
+			input.close();
+		}
+		cache = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	/**
+	 * Scans the file for row separators outside of quotes and returns the
+	 * offset of every {@value #BLOCK_ROWS}th row.
+	 * @param channel File channel.
+	 * @param size Size of the file in bytes.
+	 * @return Offsets of all blocks followed by the size of the file.
+	 * @throws IOException if the file cannot be read or has too many rows.
+	 */
+	private long[] createIndex(FileChannel channel, long size) throws IOException {
+		long[] offsets = new long[16];
+		long rows = 0L;
+		long rowStart = 0L;
+		boolean quoted = false;
+		boolean carriageReturn = false;
+
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		byte[] bytes = buffer.array();
+		long position = 0L;
+		while (position < size) {
+			buffer.clear();
+			int length = channel.read(buffer, position);
+			if (length < 0) {
+				break;
+			}
+			for (int i = 0; i < length; i++) {
+				byte b = bytes[i];
+				if (carriageReturn) {
+					carriageReturn = false;
+					// A line feed belongs to the preceding carriage return
+					rowStart = b == '\n' ? position + i + 1 : position + i;
+					rows++;
+					if ((rows & (BLOCK_ROWS - 1)) == 0) {
+						offsets = addOffset(offsets, rows, rowStart);
+					}
+					if (b == '\n') {
+						continue;
+					}
+				}
+				if (b == '"') {
+					quoted = !quoted;
+				} else if (!quoted && b == '\n') {
+					rowStart = position + i + 1;
+					rows++;
+					if ((rows & (BLOCK_ROWS - 1)) == 0) {
+						offsets = addOffset(offsets, rows, rowStart);
+					}
+				} else if (!quoted && b == '\r') {
+					carriageReturn = true;
+				}
+			}
+			position += length;
+		}
+		if (carriageReturn) {
+			rowStart = size;
+			rows++;
+		}
+		if (rowStart < size) {
+			// The last row doesn't end with a row separator
+			rows++;
+		}
+		if (rows > Integer.MAX_VALUE) {
+			throw new IOException(MessageFormat.format(
+				"{0} has too many rows: {1,number,integer}.", file, rows)); //$NON-NLS-1$
+		}
+		rowCount = (int) rows;
+
+		int blockCount = (rowCount + BLOCK_ROWS - 1)/BLOCK_ROWS;
+		offsets = Arrays.copyOf(offsets, blockCount + 1);
+		offsets[blockCount] = size;
+		for (int block = 0; block < blockCount; block++) {
+			if (offsets[block + 1] - offsets[block] > Integer.MAX_VALUE) {
+				throw new IOException(MessageFormat.format(
+					"Rows {0,number,integer} to {1,number,integer} of {2} are too large.", //$NON-NLS-1$
+					(long) block*BLOCK_ROWS + 1, (long) (block + 1)*BLOCK_ROWS, file));
+			}
+		}
+		return offsets;
+	}
+
+	/**
+	 * Stores the offset of the block that starts after the specified
+	 * number of rows.
+	 * @param offsets Block offsets.
+	 * @param rows Number of preceding rows.
+	 * @param offset Byte offset of the block.
+	 * @return Array containing the offset, which may be a larger copy of
+	 *         {@code offsets}.
+	 */
+	private static long[] addOffset(long[] offsets, long rows, long offset) {
+		int block = (int) (rows/BLOCK_ROWS);
+		if (block >= offsets.length) {
+			offsets = Arrays.copyOf(offsets, 2*offsets.length);
+		}
+		offsets[block] = offset;
+		return offsets;
+	}
+
+	/**
+	 * Maps the file into one or more buffers that aren't larger than
+	 * {@link #SEGMENT_SIZE}.
+	 * @param channel File channel.
+	 * @param size Size of the file in bytes.
+	 * @return Mapped buffers.
+	 * @throws IOException if the file cannot be mapped.
+	 */
+	private static ByteBuffer[] map(FileChannel channel, long size) throws IOException {
+		int segmentCount = (int) Math.max(1, (size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+		ByteBuffer[] segments = new ByteBuffer[segmentCount];
+		for (int segment = 0; segment < segmentCount; segment++) {
+			long start = (long) segment << SEGMENT_BITS;
+			long length = Math.min(SEGMENT_SIZE, size - start);
+			segments[segment] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+		}
+		return segments;
+	}
+
+	/**
+	 * Returns the file that stores the index of the CSV file.
+	 * @return Index file.
+	 */
+	public File getIndexFile() {
+		return new File(file.getPath() + INDEX_SUFFIX);
+	}
+
+	/**
+	 * Reads the index from the index file if it belongs to the current
+	 * version of the CSV file. Index files contain a header with the magic
+	 * bytes, the format version, the number of rows per block, the size and
+	 * modification time of the CSV file, and the number of rows. The header
+	 * is followed by the offsets of all blocks and the size of the file. All
+	 * numbers are stored in little-endian byte order.
+	 * @param size Size of the CSV file in bytes.
+	 * @return Offsets of all blocks followed by the size of the file, or
+	 *         {@code null} if there is no valid index file.
+	 * @throws IOException if the index file cannot be read.
+	 */
+	private long[] readIndex(long size) throws IOException {
+		File indexFile = getIndexFile();
+		if (!indexFile.isFile() || indexFile.length() < INDEX_HEADER_SIZE) {
+			return null;
+		}
+		RandomAccessFile input = new RandomAccessFile(indexFile, "r"); //$NON-NLS-1$
+		try {
+			FileChannel channel = input.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			if (channel.read(header, 0L) < INDEX_HEADER_SIZE) {
+				return null;
+			}
+			header.flip();
+			byte[] magic = new byte[INDEX_MAGIC.length()];
+			header.get(magic);
+			if (!Arrays.equals(magic, INDEX_MAGIC.getBytes("US-ASCII")) || //$NON-NLS-1$
+					header.getInt() != INDEX_VERSION || header.getInt() != BLOCK_ROWS ||
+					header.getLong() != size || header.getLong() != file.lastModified()) {
+				return null;
+			}
+			long rows = header.getLong();
+			if (rows < 0 || rows > Integer.MAX_VALUE) {
+				return null;
+			}
+			int blockCount = (int) ((rows + BLOCK_ROWS - 1)/BLOCK_ROWS);
+			if (channel.size() != INDEX_HEADER_SIZE + 8L*(blockCount + 1)) {
+				return null;
+			}
+			ByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY,
+				INDEX_HEADER_SIZE, 8L*(blockCount + 1));
+			content.order(ByteOrder.LITTLE_ENDIAN);
+			long[] offsets = new long[blockCount + 1];
+			content.asLongBuffer().get(offsets);
+			if (offsets[blockCount] != size) {
+				return null;
+			}
+			rowCount = (int) rows;
+			return offsets;
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Writes the index to the index file.
+	 * @param size Size of the CSV file in bytes.
+	 * @throws IOException if the index file cannot be written.
+	 */
+	private void writeIndex(long size) throws IOException {
+		ByteBuffer content = ByteBuffer.allocate(INDEX_HEADER_SIZE + 8*blockOffsets.length);
+		content.order(ByteOrder.LITTLE_ENDIAN);
+		content.put(INDEX_MAGIC.getBytes("US-ASCII")); //$NON-NLS-1$
+		content.putInt(INDEX_VERSION);
+		content.putInt(BLOCK_ROWS);
+		content.putLong(size);
+		content.putLong(file.lastModified());
+		content.putLong(rowCount);
+		for (long offset : blockOffsets) {
+			content.putLong(offset);
+		}
+		content.flip();
+
+		FileOutputStream output = new FileOutputStream(getIndexFile());
+		try {
+			FileChannel channel = output.getChannel();
+			while (content.hasRemaining()) {
+				channel.write(content);
+			}
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Returns the CSV file.
+	 * @return CSV file.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the maximal number of parsed blocks that are kept in memory.
+	 * @return Number of blocks with {@value #BLOCK_ROWS} rows each.
+	 */
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * Sets the maximal number of parsed blocks that are kept in memory.
+	 * @param cacheSize Number of blocks with {@value #BLOCK_ROWS} rows
+	 *        each.
+	 * @throws IllegalArgumentException if the size is negative.
+	 */
+	public void setCacheSize(int cacheSize) {
+		if (cacheSize < 0) {
+			throw new IllegalArgumentException(MessageFormat.format(
+				"Invalid cache size: {0,number,integer}.", cacheSize)); //$NON-NLS-1$
+		}
+		synchronized (cache) {
+			this.cacheSize = cacheSize;
+			trimCache();
+		}
+	}
+
+	/**
+	 * Removes the least recently used blocks until the cache isn't larger
+	 * than its maximal size.
+	 */
+	private void trimCache() {
+		Iterator<CSVChunk> blocks = cache.values().iterator();
+		while (cache.size() > cacheSize) {
+			blocks.next();
+			blocks.remove();
+		}
+	}
+
+	/**
+	 * Returns the parsed rows of the specified block. The block is parsed
+	 * if it isn't in the cache.
+	 * @param block Block index.
+	 * @return Parsed rows.
+	 */
+	private CSVChunk getBlock(int block) {
+		synchronized (cache) {
+			CSVChunk chunk = cache.get(block);
+			if (chunk != null) {
+				return chunk;
+			}
+		}
+		CSVChunk chunk = parseBlock(block);
+		synchronized (cache) {
+			cache.put(block, chunk);
+			trimCache();
+		}
+		return chunk;
+	}
+
+	/**
+	 * Decodes and parses the rows of the specified block.
+	 * @param block Block index.
+	 * @return Parsed rows.
+	 * @throws IllegalArgumentException if a row doesn't match the column
+	 *         types.
+	 * @throws IllegalStateException if the file has been changed.
+	 */
+	private CSVChunk parseBlock(int block) {
+		long start = blockOffsets[block];
+		byte[] bytes = new byte[(int) (blockOffsets[block + 1] - start)];
+		int length = 0;
+		while (length < bytes.length) {
+			long position = start + length;
+			ByteBuffer segment = segments[(int) (position >>> SEGMENT_BITS)].duplicate();
+			segment.position((int) (position & (SEGMENT_SIZE - 1)));
+			int count = Math.min(bytes.length - length, segment.remaining());
+			segment.get(bytes, length, count);
+			length += count;
+		}
+		CharBuffer chars = charset.decode(ByteBuffer.wrap(bytes));
+
+		Class<? extends Comparable<?>>[] types = getColumnTypes();
+		CSVParser parser = new CSVParser(separator, types);
+		parser.setRow((long) block*BLOCK_ROWS);
+		CSVChunk chunk = new CSVChunk(types);
+		try {
+			parser.parse(chars.array(), chars.arrayOffset() + chars.position(),
+				chars.remaining(), chunk);
+			parser.finish(chunk);
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+
+		int expectedRows = Math.min(BLOCK_ROWS, rowCount - block*BLOCK_ROWS);
+		if (chunk.getRowCount() != expectedRows) {
+			throw new IllegalStateException(MessageFormat.format(
+				"{0} has been changed: expected {1,number,integer} rows in block {2,number,integer}, got {3,number,integer}.", //$NON-NLS-1$
+				file, expectedRows, block, chunk.getRowCount()));
+		}
+		return chunk;
+	}
+
+	/**
+	 * Returns the value with the specified row and column index.
+	 * @param col index of the column to return
+	 * @param row index of the row to return
+	 * @return the specified value of the data cell
+	 */
+	public Comparable<?> get(int col, int row) {
+		if (row < 0 || row >= rowCount) {
+			return null;
+		}
+		return getBlock(row/BLOCK_ROWS).get(col, row % BLOCK_ROWS);
+	}
+
+	/**
+	 * Returns the value with the specified row and column index as a
+	 * primitive {@code double} without boxing it.
+	 * @param col index of the column to return
+	 * @param row index of the row to return
+	 * @return the specified value of the data cell, or {@code NaN} if the
+	 *         cell is empty or not numeric
+	 */
+	@Override
+	public double getDouble(int col, int row) {
+		if (row < 0 || row >= rowCount) {
+			return Double.NaN;
+		}
+		return getBlock(row/BLOCK_ROWS).getDouble(col, row % BLOCK_ROWS);
+	}
+
+	/**
+	 * Copies the numeric values of consecutive rows of a column block by
+	 * block.
+	 * @param col index of the column
+	 * @param row index of the first row
+	 * @param values destination array
+	 * @param offset index of the first element in the destination array
+	 * @param length number of rows to copy
+	 * @throws IndexOutOfBoundsException if the rows don't exist
+	 */
+	@Override
+	public void getDoubles(int col, int row, double[] values, int offset, int length) {
+		if (row < 0 || length < 0 || row + length > rowCount) {
+			throw new IndexOutOfBoundsException(MessageFormat.format(
+				"Rows [{0,number,integer}, {1,number,integer}) are out of bounds [0, {2,number,integer}).", //$NON-NLS-1$
+				row, row + length, rowCount));
+		}
+		int end = row + length;
+		while (row < end) {
+			CSVChunk chunk = getBlock(row/BLOCK_ROWS);
+			int blockEnd = Math.min(end, (row/BLOCK_ROWS + 1)*BLOCK_ROWS);
+			for (; row < blockEnd; row++) {
+				values[offset++] = chunk.getDouble(col, row % BLOCK_ROWS);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of rows of the data source.
+	 * @return number of rows in the data source.
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Returns this instance, because the values never change.
+	 * @return This data source.
+	 */
+	@Override
+	public DataSource snapshot() {
+		return this;
+	}
+
+	@Override
+	public boolean isSnapshotShared() {
+		return true;
+	}
+
+	/**
+	 * Custom deserialization method that opens the file again.
+	 * @param in Input stream.
+	 * @throws ClassNotFoundException if a serialized class doesn't exist anymore.
+	 * @throws IOException if there is an error while reading data from the
+	 *         input stream.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws ClassNotFoundException, IOException {
+		in.defaultReadObject();
+		open();
+	}
+}
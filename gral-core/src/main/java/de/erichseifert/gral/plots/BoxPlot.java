@@ -38,10 +38,12 @@ import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.List;
 
+import de.erichseifert.gral.data.AbstractDataSource;
 import de.erichseifert.gral.data.Column;
 import de.erichseifert.gral.data.DataSource;
 import de.erichseifert.gral.data.DataTable;
 import de.erichseifert.gral.data.Row;
+import de.erichseifert.gral.data.statistics.QuantileSketch;
 import de.erichseifert.gral.data.statistics.Statistics;
 import de.erichseifert.gral.graphics.AbstractDrawable;
 import de.erichseifert.gral.graphics.Drawable;
@@ -758,6 +760,64 @@ public class BoxPlot extends XYPlot {
 		return stats;
 	}
 
+	/**
+	 * Extracts statistics for box-and-whisker plots from data that is spread
+	 * across several data sources with the same columns, e.g. shards of a
+	 * large table. The rows are not read again: For each column the
+	 * {@link Statistics#getQuantileSketch() quantile sketches} of all data
+	 * sources are merged, so quartiles and median are approximated while
+	 * minimum and maximum are exact. The result has the same columns as
+	 * the result of {@link #createBoxData(DataSource)}.
+	 * @param sources Data sources with the same columns.
+	 * @return New data source with (columnIndex, median, min, quartile1,
+	 *         quartile3, max)
+	 */
+	@SuppressWarnings("unchecked")
+	public static DataSource createMergedBoxData(DataSource... sources) {
+		if (sources.length == 0) {
+			throw new IllegalArgumentException(
+				"Cannot extract statistics without data sources.");
+		}
+		int colCount = sources[0].getColumnCount();
+		for (DataSource source : sources) {
+			if (source.getColumnCount() != colCount) {
+				throw new IllegalArgumentException(
+					"Cannot extract statistics from data sources with different columns.");
+			}
+		}
+
+		DataTable stats = new DataTable(Integer.class, Double.class,
+			Double.class, Double.class, Double.class, Double.class);
+
+		// Generate statistical values for each column
+		for (int c = 0; c < colCount; c++) {
+			if (!sources[0].isColumnNumeric(c)) {
+				continue;
+			}
+			QuantileSketch sketch = null;
+			for (DataSource source : sources) {
+				Statistics statistics = (source instanceof AbstractDataSource) ?
+					((AbstractDataSource) source).getStatistics(c) :
+					new Statistics(source, c);
+				if (sketch == null) {
+					sketch = statistics.getQuantileSketch();
+				} else {
+					sketch.merge(statistics.getQuantileSketch());
+				}
+			}
+			double[] quartiles = sketch.quantiles(0.25, 0.50, 0.75);
+			stats.add(
+				c + 1,
+				quartiles[1],
+				sketch.getMin(),
+				quartiles[0],
+				quartiles[2],
+				sketch.getMax()
+			);
+		}
+		return stats;
+	}
+
 	@Override
 	public void add(int index, DataSource source, boolean visible) {
 		if (getData().size() > 0) {
@@ -42,6 +42,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import de.erichseifert.gral.data.AbstractDataSource;
 import de.erichseifert.gral.data.DataSource;
 import de.erichseifert.gral.data.DummyData;
 import de.erichseifert.gral.data.Row;
@@ -382,11 +383,23 @@ public class XYPlot extends AbstractPlot implements Navigable, AxisListener {
 				AxisRenderer axisXRenderer = plot.getAxisRenderer(axisNames[0]);
 				AxisRenderer axisYRenderer = plot.getAxisRenderer(axisNames[1]);
 
+				// Read all values from a snapshot, so other threads can
+				// change the data while it is painted. Snapshots that would
+				// copy every row aren't worth it, so other data sources are
+				// read directly.
+				DataSource snapshot = s;
+				if (s instanceof AbstractDataSource &&
+						((AbstractDataSource) s).isSnapshotShared()) {
+					snapshot = s.snapshot();
+				}
 				List<DataPoint> points = new LinkedList<>();
-				for (int i = 0; i < s.getRowCount(); i++) {
-					Row row = new Row(s, i);
-					Number valueX = (Number) row.get(colX);
-					Number valueY = (Number) row.get(colY);
+				for (int i = 0; i < snapshot.getRowCount(); i++) {
+					double valueX = snapshot.getDouble(colX, i);
+					double valueY = snapshot.getDouble(colY, i);
+					if (Double.isNaN(valueX) || Double.isNaN(valueY)) {
+						continue;
+					}
+					Row row = new Row(snapshot, i);
 
 					PointND<Double> axisPosX = (axisXRenderer != null)
 						? axisXRenderer.getPosition(axisX, valueX, true, false)
@@ -0,0 +1,66 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.util;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Abstract class that contains utility functions for executing work in
+ * parallel.
+ */
+public abstract class ConcurrencyUtils {
+	/**
+	 * Holder of the pool that executes parallel computations. The pool is
+	 * created when it is needed for the first time.
+	 */
+	private static final class PoolHolder {
+		/** Pool that executes parallel computations. */
+		static final ForkJoinPool POOL = new ForkJoinPool();
+	}
+
+	/**
+	 * Default constructor that prevents creation of class.
+	 */
+	private ConcurrencyUtils() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns the fork/join pool that is shared by all parallel computations
+	 * of the library. Its parallelism equals the number of available
+	 * processors and its worker threads don't prevent the virtual machine
+	 * from exiting.
+	 * @return Shared pool.
+	 */
+	public static ForkJoinPool getForkJoinPool() {
+		return PoolHolder.POOL;
+	}
+
+	/**
+	 * Returns whether parallel computations can run on more than one
+	 * processor.
+	 * @return {@code true} if the shared pool uses more than one thread.
+	 */
+	public static boolean isParallel() {
+		return getForkJoinPool().getParallelism() > 1;
+	}
+}
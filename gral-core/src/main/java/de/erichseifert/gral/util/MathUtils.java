@@ -21,6 +21,7 @@
  */
 package de.erichseifert.gral.util;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
@@ -328,6 +329,82 @@ public abstract class MathUtils {
 		a.set(i1, tmp);
 	}
 
+	/**
+	 * <p>Perform a search on an unsorted array {@code a} of primitive values
+	 * to find the <i>i</i>th smallest element. The array contents are
+	 * modified during the operation! Afterwards all elements before the
+	 * returned index are smaller than or equal to the element at the index,
+	 * and all elements after it are greater than or equal to it.</p>
+	 * <p>The search uses random pivots and sorts the remaining range if
+	 * partitioning doesn't make enough progress, so it takes linear time on
+	 * average and never more than {@code O(n log n)} time.</p>
+	 * @param a Unsorted array
+	 * @param lower Starting index
+	 * @param upper End index
+	 * @param i Smallness rank of value to search starting at 1
+	 * @return Index of the element that is the <i>i</i>th smallest in array
+	 * <i>a</i>
+	 */
+	public static int randomizedSelect(double[] a, int lower, int upper, int i) {
+		if (a.length == 0) {
+			return -1;
+		}
+		int index = lower + i - 1;
+		int depthLimit = 2*(Integer.SIZE - Integer.numberOfLeadingZeros(upper - lower + 1));
+		while (lower < upper) {
+			if (depthLimit-- == 0) {
+				Arrays.sort(a, lower, upper + 1);
+				return index;
+			}
+			int pivot = randomizedPartition(a, lower, upper);
+			if (index == pivot) {
+				return index;
+			} else if (index < pivot) {
+				upper = pivot - 1;
+			} else {
+				lower = pivot + 1;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Rearranges an array of primitive values in two partitions using random
+	 * sampling. The array is permuted so that the elements of the lower
+	 * partition are always smaller than those of the upper partition.
+	 * @param a Unsorted array
+	 * @param lower Starting index
+	 * @param upper End index
+	 * @return Pivot point of the partitioned array
+	 */
+	private static int randomizedPartition(double[] a, int lower, int upper) {
+		int i = lower + RANDOM.nextInt(upper - lower + 1);
+		exchange(a, upper, i);
+		double x = a[upper];
+		int pivot = lower - 1;
+		for (int j = lower; j < upper; j++) {
+			if (a[j] <= x) {
+				pivot++;
+				exchange(a, pivot, j);
+			}
+		}
+		exchange(a, pivot + 1, upper);
+		return pivot + 1;
+	}
+
+	/**
+	 * Swaps two elements at indexes {@code i1} and {@code i2} of an
+	 * array of primitive values in-place.
+	 * @param a Array
+	 * @param i1 First element index
+	 * @param i2 Second element index
+	 */
+	private static void exchange(double[] a, int i1, int i2) {
+		double tmp = a[i2];
+		a[i2] = a[i1];
+		a[i1] = tmp;
+	}
+
 	/**
 	 * <p>Returns the magnitude of the specified number. Example for magnitude
 	 * base 10:</p>
@@ -389,6 +466,95 @@ public abstract class MathUtils {
 		return values.get(i) + (values.get(i + 1) - values.get(i))*(c + d*xFrac);
 	}
 
+	/**
+	 * Calculates a quantile of unsorted primitive values in linear time with
+	 * the same method as {@link #quantile(List, double)}. The first
+	 * {@code length} elements of the array are reordered.
+	 * @param values Unsorted data values.
+	 * @param length Number of values to use.
+	 * @param q Quantile in range [0, 1]
+	 * @return Quantile value
+	 */
+	public static double quantile(double[] values, int length, double q) {
+		return quantiles(values, length, q)[0];
+	}
+
+	/**
+	 * Calculates several quantiles of unsorted primitive values with the
+	 * same method as {@link #quantile(List, double)}. The array is only
+	 * partitioned around the ranks that are needed, so that {@code k}
+	 * quantiles of {@code n} values take {@code O(n log k)} time. The first
+	 * {@code length} elements of the array are reordered.
+	 * @param values Unsorted data values.
+	 * @param length Number of values to use.
+	 * @param qs Quantiles in range [0, 1]
+	 * @return Quantile values in the order of the requested quantiles, or
+	 *         {@code NaN} values if {@code length} is zero.
+	 */
+	public static double[] quantiles(double[] values, int length, double... qs) {
+		double[] quantiles = new double[qs.length];
+		if (length <= 0) {
+			Arrays.fill(quantiles, Double.NaN);
+			return quantiles;
+		}
+
+		// Collect the ranks of all values that are needed
+		int[] ranks = new int[2*qs.length];
+		int rankCount = 0;
+		for (double q : qs) {
+			double x = (length - 1.0)*q;
+			int i = limit((int) Math.floor(x), 0, length - 1);
+			ranks[rankCount++] = i;
+			if (x > i && i + 1 < length) {
+				ranks[rankCount++] = i + 1;
+			}
+		}
+		Arrays.sort(ranks, 0, rankCount);
+		int distinctCount = 0;
+		for (int r = 0; r < rankCount; r++) {
+			if (distinctCount == 0 || ranks[r] != ranks[distinctCount - 1]) {
+				ranks[distinctCount++] = ranks[r];
+			}
+		}
+		select(values, 0, length - 1, ranks, 0, distinctCount - 1);
+
+		// R type 7 interpolation between the selected values
+		for (int j = 0; j < qs.length; j++) {
+			double x = (length - 1.0)*qs[j];
+			int i = limit((int) Math.floor(x), 0, length - 1);
+			double xFrac = x - i;
+			if (xFrac <= 0.0 || i + 1 >= length) {
+				quantiles[j] = values[i];
+			} else {
+				quantiles[j] = values[i] + (values[i + 1] - values[i])*xFrac;
+			}
+		}
+		return quantiles;
+	}
+
+	/**
+	 * Moves the elements with the specified sorted ranks to their final
+	 * positions by selecting the middle rank and processing the partitions
+	 * on both sides of it recursively.
+	 * @param a Unsorted array
+	 * @param lower Starting index
+	 * @param upper End index
+	 * @param ranks Sorted indexes of the elements to be selected.
+	 * @param rankLower Index of the first rank to be selected.
+	 * @param rankUpper Index of the last rank to be selected.
+	 */
+	private static void select(double[] a, int lower, int upper,
+			int[] ranks, int rankLower, int rankUpper) {
+		if (rankLower > rankUpper || lower >= upper) {
+			return;
+		}
+		int rankMid = (rankLower + rankUpper) >>> 1;
+		int index = ranks[rankMid];
+		randomizedSelect(a, lower, upper, index - lower + 1);
+		select(a, lower, index - 1, ranks, rankLower, rankMid - 1);
+		select(a, index + 1, upper, ranks, rankMid + 1, rankUpper);
+	}
+
 	/**
 	 * Returns whether a specified {@code java.lang.Number} object can be
 	 * used for calculations. {@code null} values, {@code NaN} values
@@ -25,7 +25,10 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -51,6 +54,10 @@ public class AbstractDataSourceTest {
 			super(name);
 		}
 
+		public void fireDataAdded() {
+			notifyDataAdded();
+		}
+
 		@Override
 		public Comparable<?> get(int col, int row) {
 			return null;
@@ -67,6 +74,26 @@ public class AbstractDataSourceTest {
 		}
 	}
 
+	private static class CountingDataListener implements DataListener {
+		private final List<String> calls;
+		private final String name;
+
+		public CountingDataListener(List<String> calls, String name) {
+			this.calls = calls;
+			this.name = name;
+		}
+
+		public void dataAdded(DataSource source, DataChangeEvent... events) {
+			calls.add(name);
+		}
+
+		public void dataUpdated(DataSource source, DataChangeEvent... events) {
+		}
+
+		public void dataRemoved(DataSource source, DataChangeEvent... events) {
+		}
+	}
+
 	private AbstractDataSource source;
 
 	@Before
@@ -124,4 +151,54 @@ public class AbstractDataSourceTest {
 		DataSource rowStatistics = source.getRowStatistics(Statistics.N);
 		assertThat(rowStatistics.getRowCount(), is(rowCount));
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testListenersAreNotifiedOnceInOrderOfRegistration() {
+		StubAbstractDataSource stub = new StubAbstractDataSource();
+		List<String> calls = new ArrayList<>();
+		DataListener listener1 = new CountingDataListener(calls, "1");
+		DataListener listener2 = new CountingDataListener(calls, "2");
+		stub.addDataListener(listener1);
+		stub.addDataListener(listener2);
+		stub.addDataListener(listener1);
+
+		stub.fireDataAdded();
+
+		assertEquals(Arrays.asList("1", "2"), calls);
+	}
+
+	@Test
+	public void testRemovedListenersAreNotNotified() {
+		StubAbstractDataSource stub = new StubAbstractDataSource();
+		List<String> calls = new ArrayList<>();
+		DataListener listener1 = new CountingDataListener(calls, "1");
+		DataListener listener2 = new CountingDataListener(calls, "2");
+		stub.addDataListener(listener1);
+		stub.addDataListener(listener2);
+
+		stub.removeDataListener(listener1);
+		stub.removeDataListener(listener1);
+		stub.fireDataAdded();
+
+		assertEquals(Arrays.asList("2"), calls);
+	}
+
+	@Test
+	public void testListenerCanBeRemovedDuringNotification() {
+		final StubAbstractDataSource stub = new StubAbstractDataSource();
+		final List<String> calls = new ArrayList<>();
+		stub.addDataListener(new CountingDataListener(calls, "1") {
+			@Override
+			public void dataAdded(DataSource source, DataChangeEvent... events) {
+				super.dataAdded(source, events);
+				stub.removeDataListener(this);
+			}
+		});
+		stub.addDataListener(new CountingDataListener(calls, "2"));
+
+		stub.fireDataAdded();
+		stub.fireDataAdded();
+
+		assertEquals(Arrays.asList("1", "2", "2"), calls);
+	}
+}
@@ -160,6 +160,78 @@ public class ColumnTest {
 		assertEquals(original.size(), deserialized.size());
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testColumnOfDataSourceReflectsChanges() {
+		DataTable table = new DataTable(Integer.class, Double.class);
+		table.add(1, 1.5);
+		table.add(2, 2.5);
+		Column<?> column = table.getColumn(1);
+
+		table.add(3, 3.5);
+
+		assertEquals(3, column.size());
+		assertEquals(3.5, column.get(2));
+		assertEquals(3.5, column.getStatistics(Statistics.MAX), DELTA);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSnapshotDoesNotReflectChanges() {
+		DataTable table = new DataTable(Integer.class);
+		table.add(1);
+		table.add(2);
+		Column<?> snapshot = table.getColumn(0).snapshot();
+
+		table.set(0, 0, 42);
+
+		assertEquals(2, snapshot.size());
+		assertEquals(1, snapshot.get(0));
+		assertEquals(2.0, snapshot.getStatistics(Statistics.MAX), DELTA);
+		assertEquals(42, table.getColumn(0).get(0));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testDoubleIteratorReturnsPrimitiveValues() {
+		DataTable table = new DataTable(Integer.class, String.class);
+		table.add(1, "a");
+		table.add(null, "b");
+		table.add(3, "c");
+
+		Column.DoubleIterator iterator = table.getColumn(0).doubleIterator();
+		assertEquals(1.0, iterator.nextDouble(), DELTA);
+		assertTrue(Double.isNaN(iterator.nextDouble()));
+		assertEquals(3.0, iterator.nextDouble(), DELTA);
+		assertFalse(iterator.hasNext());
+		assertTrue(Double.isNaN(table.getColumn(1).getDouble(0)));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testColumnOfDataSourceEqualsCopy() {
+		DataTable table = new DataTable(Integer.class);
+		table.add(1);
+		table.add(2);
+		Column<?> view = table.getColumn(0);
+		Column<Integer> copy = new Column<>(Integer.class, 1, 2);
+
+		assertTrue(view.equals(copy));
+		assertEquals(copy.hashCode(), view.hashCode());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSerializationOfColumnOfDataSource() throws IOException, ClassNotFoundException {
+		DataTable table = new DataTable(Integer.class);
+		table.add(1);
+		table.add(2);
+		Column<?> original = table.getColumn(0);
+		Column<?> deserialized = TestUtils.serializeAndDeserialize(original);
+
+		assertEquals(original, deserialized);
+	}
+
 	@Test
 	public void testGetTypeReturnsDataType() {
 		Column<Integer> column = col1;
@@ -25,6 +25,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
+import java.util.Arrays;
+
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -108,6 +110,35 @@ public class DataSeriesTest {
 		assertEquals(2, series.getColumnCount());
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testEventsAddAll() {
+		DataTable source = new DataTable(Integer.class, Integer.class, Integer.class);
+		DataSeries series = new DataSeries(source, 2, 1);
+		final DataChangeEvent[][] received = new DataChangeEvent[1][];
+		series.addDataListener(new DataListener() {
+			public void dataAdded(DataSource source, DataChangeEvent... events) {
+				received[0] = events;
+			}
+			public void dataUpdated(DataSource source, DataChangeEvent... events) {
+			}
+			public void dataRemoved(DataSource source, DataChangeEvent... events) {
+			}
+		});
+
+		source.addAll(Arrays.asList(
+			Arrays.asList(1, 2, 3),
+			Arrays.asList(4, 5, 6)
+		));
+
+		assertNotNull(received[0]);
+		assertEquals(2, received[0].length);
+		assertEquals(series, received[0][0].getSource());
+		assertEquals(1, received[0][0].getCol());
+		assertEquals(0, received[0][1].getCol());
+		assertEquals(2, received[0][0].getRowCount());
+	}
+
 	@Test
 	public void testToString() {
 		DataSeries series = new DataSeries("name", table, 2, 1);
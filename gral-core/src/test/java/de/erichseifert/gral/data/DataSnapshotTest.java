@@ -0,0 +1,175 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.comparators.Descending;
+
+public class DataSnapshotTest {
+	private static final double DELTA = TestUtils.DELTA;
+
+	@SuppressWarnings("unchecked")
+	private static DataTable createTable() {
+		DataTable table = new DataTable(Integer.class, String.class);
+		table.add(1, "a");
+		table.add(2, "b");
+		table.add(3, "c");
+		return table;
+	}
+
+	private static void assertValues(DataSource snapshot) {
+		assertEquals(3, snapshot.getRowCount());
+		assertEquals(2, snapshot.getColumnCount());
+		assertEquals(1, snapshot.get(0, 0));
+		assertEquals("b", snapshot.get(1, 1));
+		assertEquals(3.0, snapshot.getDouble(0, 2), DELTA);
+		assertNull(snapshot.get(0, 3));
+	}
+
+	@Test
+	public void testDataTableSnapshotIsUnaffectedByChanges() {
+		DataTable table = createTable();
+		DataSource snapshot = table.snapshot();
+
+		table.add(4, "d");
+		assertValues(snapshot);
+		table.set(0, 0, 10);
+		assertValues(snapshot);
+		table.sort(new Descending(0));
+		assertValues(snapshot);
+		table.remove(1);
+		assertValues(snapshot);
+		table.clear();
+		table.add(5, "e");
+		assertValues(snapshot);
+		assertEquals(5, table.get(0, 0));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testNumericDataTableSnapshotIsUnaffectedByChanges() {
+		NumericDataTable table = new NumericDataTable(Integer.class, Double.class);
+		table.add(1, 1.0);
+		table.add(2, null);
+		table.add(3, 3.0);
+		DataSource snapshot = table.snapshot();
+
+		table.add(4, 4.0);
+		table.set(1, 1, 2.0);
+		table.remove(0);
+		assertEquals(3, snapshot.getRowCount());
+		assertEquals(1, snapshot.get(0, 0));
+		assertNull(snapshot.get(1, 1));
+		assertTrue(Double.isNaN(snapshot.getDouble(1, 1)));
+		table.clear();
+		table.add(5, 5.0);
+		assertEquals(1, snapshot.get(0, 0));
+		assertEquals(3.0, snapshot.getDouble(1, 2), DELTA);
+		assertEquals(5, table.get(0, 0));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testRingBufferDataTableSnapshotIsUnaffectedByChanges() {
+		RingBufferDataTable table = new RingBufferDataTable(3, Integer.class);
+		table.add(1);
+		table.add(2);
+		table.add(3);
+		table.add(4);
+		DataSource snapshot = table.snapshot();
+
+		table.add(5);
+		table.add(6);
+		assertEquals(3, snapshot.getRowCount());
+		assertEquals(2, snapshot.get(0, 0));
+		assertEquals(3, snapshot.get(0, 1));
+		assertEquals(4.0, snapshot.getDouble(0, 2), DELTA);
+		assertEquals(4, table.get(0, 0));
+	}
+
+	@Test
+	public void testDataSeriesSnapshot() {
+		DataTable table = createTable();
+		DataSeries series = new DataSeries(table, 1);
+		DataSource snapshot = series.snapshot();
+
+		table.set(1, 0, "z");
+		assertEquals(1, snapshot.getColumnCount());
+		assertEquals("a", snapshot.get(0, 0));
+		assertEquals("z", series.get(0, 0));
+	}
+
+	@Test
+	public void testSnapshotOfSnapshot() {
+		DataSource snapshot = createTable().snapshot();
+		assertSame(snapshot, snapshot.snapshot());
+	}
+
+	@Test
+	public void testRecord() {
+		DataSource snapshot = createTable().snapshot();
+		assertEquals(new Record(2, "b"), snapshot.getRecord(1));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testRecordOutOfBounds() {
+		DataTable table = createTable();
+		DataSource snapshot = table.snapshot();
+		table.add(4, "d");
+		snapshot.getRecord(3);
+	}
+
+	@Test
+	public void testVersion() {
+		DataTable table = createTable();
+		long version = table.getVersion();
+		DataSource snapshot = table.snapshot();
+		assertEquals(version, snapshot.getVersion());
+
+		table.add(4, "d");
+		assertTrue(table.getVersion() > version);
+		assertEquals(version, snapshot.getVersion());
+
+		version = table.getVersion();
+		table.set(0, 0, 10);
+		assertTrue(table.getVersion() > version);
+		version = table.getVersion();
+		table.remove(0);
+		assertTrue(table.getVersion() > version);
+	}
+
+	@Test
+	public void testDataSeriesVersion() {
+		DataTable table = createTable();
+		DataSeries series = new DataSeries(table, 0);
+		assertEquals(table.getVersion(), series.getVersion());
+		table.add(4, "d");
+		assertEquals(table.getVersion(), series.getVersion());
+	}
+}
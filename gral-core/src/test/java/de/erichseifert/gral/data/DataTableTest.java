@@ -30,7 +30,11 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -147,6 +151,41 @@ public class DataTableTest {
 		}
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAddAll() {
+		int sizeBefore = table.getRowCount();
+		List<List<Integer>> rows = Arrays.asList(
+			Arrays.asList(9, 12),
+			Arrays.asList(10, 13),
+			Arrays.asList(11, 14)
+		);
+
+		int rowIndex = table.addAll(rows);
+
+		assertEquals(sizeBefore, rowIndex);
+		assertEquals(sizeBefore + 3, table.getRowCount());
+		assertEquals(10, table.get(0, sizeBefore + 1));
+		assertEquals(14, table.get(1, sizeBefore + 2));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAddAllDoesNotAddAnyRowIfOneRowIsInvalid() {
+		int sizeBefore = table.getRowCount();
+		List<List<? extends Comparable<?>>> rows = Arrays.<List<? extends Comparable<?>>>asList(
+			Arrays.asList(9, 12),
+			Arrays.asList(10.0, 13.0)
+		);
+
+		try {
+			table.addAll(rows);
+			fail("Expected IllegalArgumentException exception.");
+		} catch (IllegalArgumentException e) {
+		}
+		assertEquals(sizeBefore, table.getRowCount());
+	}
+
 	@Test
 	public void testAddCollectionReturnsInsertedPosition() {
 		DataTable table = new DataTable();
@@ -303,6 +342,27 @@ public class DataTableTest {
 		assertEquals(78, listener.added[1].getNew());
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testEventsAddAll() {
+		MockDataListener listener = new MockDataListener();
+		table.addDataListener(listener);
+		int sizeBefore = table.getRowCount();
+
+		table.addAll(Arrays.asList(
+			Arrays.asList(12, 34),
+			Arrays.asList(56, 78)
+		));
+
+		assertNotNull(listener.added);
+		assertEquals(2, listener.added.length);
+		for (int col = 0; col < listener.added.length; col++) {
+			assertEquals(col, listener.added[col].getCol());
+			assertEquals(sizeBefore, listener.added[col].getRow());
+			assertEquals(2, listener.added[col].getRowCount());
+		}
+	}
+
 	@Test
 	public void testEventsUpdate() {
 		int row = table.add(12, 34);
@@ -405,4 +465,50 @@ public class DataTableTest {
 		table.setName("name");
 		assertEquals("name", table.getName());
 	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testConcurrentAddAndRead() throws InterruptedException {
+		final DataTable data = new DataTable(Integer.class, Integer.class);
+		final int rowCount = 20000;
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicReference<Throwable> error = new AtomicReference<>();
+		Thread writer = new Thread(new Runnable() {
+			public void run() {
+				try {
+					start.await();
+					for (int row = 0; row < rowCount; row++) {
+						data.add(row, -row);
+					}
+				} catch (Throwable t) {
+					error.compareAndSet(null, t);
+				}
+			}
+		});
+		Thread reader = new Thread(new Runnable() {
+			public void run() {
+				try {
+					start.await();
+					for (int i = 0; i < rowCount; i++) {
+						int row = data.getRowCount() - 1;
+						if (row >= 0) {
+							Record record = data.getRecord(row);
+							assertEquals(Integer.valueOf(row), record.get(0));
+							assertEquals(Integer.valueOf(-row), record.get(1));
+						}
+					}
+				} catch (Throwable t) {
+					error.compareAndSet(null, t);
+				}
+			}
+		});
+		writer.start();
+		reader.start();
+		start.countDown();
+		writer.join();
+		reader.join();
+
+		assertNull(error.get());
+		assertEquals(rowCount, data.getRowCount());
+	}
 }
@@ -26,6 +26,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
 import de.erichseifert.gral.data.comparators.ComparatorTest;
+import de.erichseifert.gral.data.expressions.ExpressionsTests;
 import de.erichseifert.gral.data.filters.FiltersTests;
 import de.erichseifert.gral.data.statistics.StatisticsTests;
 
@@ -34,6 +35,13 @@ import de.erichseifert.gral.data.statistics.StatisticsTests;
 	// Tests for classes
 	AbstractDataSourceTest.class,
 	DataTableTest.class,
+	NumericDataTableTest.class,
+	RingBufferDataTableTest.class,
+	SegmentedDataTableTest.class,
+	DataSnapshotTest.class,
+	MappedDataSourceTest.class,
+	RowSorterTest.class,
+	SortedColumnIndexTest.class,
 	DataSeriesTest.class,
 	RowSubsetTest.class,
 	EnumeratedDataTest.class,
@@ -45,7 +53,8 @@ import de.erichseifert.gral.data.statistics.StatisticsTests;
 	// Tests for sub-packages
 	ComparatorTest.class,
 	StatisticsTests.class,
-	FiltersTests.class
+	FiltersTests.class,
+	ExpressionsTests.class
 })
 public class DataTests {
 }
@@ -0,0 +1,136 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.statistics.Statistics;
+import de.erichseifert.gral.io.data.DataWriter;
+import de.erichseifert.gral.io.data.DataWriterFactory;
+
+public class MappedDataSourceTest {
+	private static final double DELTA = TestUtils.DELTA;
+
+	private static File file;
+	private static MappedDataSource data;
+
+	@BeforeClass
+	@SuppressWarnings("unchecked")
+	public static void setUpBeforeClass() throws IOException {
+		DataTable table = new DataTable(Double.class, Float.class, Long.class, Integer.class);
+		table.add(1.0, 1.5f, Long.MAX_VALUE, 1);
+		table.add(null, 2.5f, 2L, null);
+		table.add(3.0, null, -3L, 3);
+
+		file = File.createTempFile("gral", ".gcol");
+		DataWriter writer = DataWriterFactory.getInstance().get("application/x-gral-columns");
+		OutputStream output = new FileOutputStream(file);
+		try {
+			writer.write(table, output);
+		} finally {
+			output.close();
+		}
+		data = new MappedDataSource(file);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		data = null;
+		file.deleteOnExit();
+	}
+
+	@Test
+	public void testCreate() {
+		assertEquals(file.getName(), data.getName());
+		assertEquals(file, data.getFile());
+		assertEquals(4, data.getColumnCount());
+		assertEquals(3, data.getRowCount());
+		assertEquals(Float.class, data.getColumnTypes()[1]);
+		assertEquals(Long.class, data.getColumnTypes()[2]);
+	}
+
+	@Test
+	public void testGet() {
+		assertEquals(1.0, data.get(0, 0));
+		assertEquals(2.5f, data.get(1, 1));
+		assertEquals(Long.MAX_VALUE, data.get(2, 0));
+		assertEquals(-3L, data.get(2, 2));
+		assertEquals(3, data.get(3, 2));
+		assertNull(data.get(0, 1));
+		assertNull(data.get(1, 2));
+		assertNull(data.get(3, 1));
+		assertNull(data.get(0, 3));
+	}
+
+	@Test
+	public void testGetDouble() {
+		assertEquals(3.0, data.getDouble(0, 2), DELTA);
+		assertEquals(1.5, data.getDouble(1, 0), DELTA);
+		assertEquals(2.0, data.getDouble(2, 1), DELTA);
+		assertTrue(Double.isNaN(data.getDouble(0, 1)));
+		assertTrue(Double.isNaN(data.getDouble(3, 3)));
+	}
+
+	@Test
+	public void testStatistics() {
+		assertEquals(4.0, data.getColumn(0).getStatistics(Statistics.SUM), DELTA);
+		assertEquals(4.0, data.getColumn(3).getStatistics(Statistics.SUM), DELTA);
+	}
+
+	@Test
+	public void testSnapshot() {
+		assertSame(data, data.snapshot());
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidFile() throws IOException {
+		File invalid = File.createTempFile("gral", ".gcol");
+		invalid.deleteOnExit();
+		OutputStream output = new FileOutputStream(invalid);
+		try {
+			output.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24});
+		} finally {
+			output.close();
+		}
+		new MappedDataSource(invalid);
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		MappedDataSource deserialized = TestUtils.serializeAndDeserialize(data);
+		assertEquals(data.getRowCount(), deserialized.getRowCount());
+		assertEquals(Long.MAX_VALUE, deserialized.get(2, 0));
+	}
+}
@@ -0,0 +1,403 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.comparators.Ascending;
+import de.erichseifert.gral.data.comparators.Descending;
+import de.erichseifert.gral.data.statistics.Statistics;
+
+public class NumericDataTableTest {
+	private static final double DELTA = TestUtils.DELTA;
+
+	private static class MockDataListener implements DataListener {
+		private DataChangeEvent[] added;
+		private DataChangeEvent[] updated;
+		private DataChangeEvent[] removed;
+
+		public void dataAdded(DataSource source, DataChangeEvent... events) {
+			added = events;
+		}
+
+		public void dataUpdated(DataSource source, DataChangeEvent... events) {
+			updated = events;
+		}
+
+		public void dataRemoved(DataSource source, DataChangeEvent... events) {
+			removed = events;
+		}
+	}
+
+	private NumericDataTable table;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		table = new NumericDataTable(Integer.class, Double.class);
+		table.add(1, 1.0); // 0
+		table.add(2, 3.0); // 1
+		table.add(3, 2.0); // 2
+		table.add(4, 6.0); // 3
+		table.add(5, 4.0); // 4
+		table.add(6, 8.0); // 5
+		table.add(7, 9.0); // 6
+		table.add(8, 11.0); // 7
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testCreate() {
+		NumericDataTable table1 = new NumericDataTable(Integer.class, Double.class, Long.class, Float.class);
+		assertEquals(4, table1.getColumnCount());
+		assertEquals(0, table1.getRowCount());
+		Class<? extends Comparable<?>>[] types1 = table1.getColumnTypes();
+		assertEquals(Integer.class, types1[0]);
+		assertEquals(Double.class, types1[1]);
+		assertEquals(Long.class, types1[2]);
+		assertEquals(Float.class, types1[3]);
+
+		NumericDataTable table2 = new NumericDataTable(3, Double.class);
+		assertEquals(3, table2.getColumnCount());
+
+		NumericDataTable table3 = new NumericDataTable(table);
+		assertEquals(table.getColumnCount(), table3.getColumnCount());
+		assertEquals(table.getRowCount(), table3.getRowCount());
+		for (int row = 0; row < table.getRowCount(); row++) {
+			assertEquals(table.getRecord(row), table3.getRecord(row));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	@SuppressWarnings("unchecked")
+	public void testCreateWithUnsupportedTypeThrowsException() {
+		new NumericDataTable(Double.class, String.class);
+	}
+
+	@Test
+	public void testAdd() {
+		int sizeBefore = table.getRowCount();
+		table.add(0, -1.0);
+		int rowIndex = table.add(2, -3.0);
+		assertEquals(sizeBefore + 2, table.getRowCount());
+		assertEquals(table.getRowCount() - 1, rowIndex);
+
+		// Wrong number of columns
+		try {
+			table.add(1);
+			fail("Expected IllegalArgumentException exception.");
+		} catch (IllegalArgumentException e) {
+		}
+
+		// Wrong type of columns
+		try {
+			table.add(1.0, 1.0);
+			fail("Expected IllegalArgumentException exception.");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAddAll() {
+		MockDataListener listener = new MockDataListener();
+		table.addDataListener(listener);
+		int sizeBefore = table.getRowCount();
+
+		int rowIndex = table.addAll(Arrays.asList(
+			Arrays.asList(9, 12.0),
+			Arrays.asList(10, 13.0)
+		));
+
+		assertEquals(sizeBefore, rowIndex);
+		assertEquals(sizeBefore + 2, table.getRowCount());
+		assertEquals(10, table.get(0, sizeBefore + 1));
+		assertEquals(2, listener.added.length);
+		assertEquals(sizeBefore, listener.added[1].getRow());
+		assertEquals(2, listener.added[1].getRowCount());
+	}
+
+	@Test
+	public void testAddColumns() {
+		MockDataListener listener = new MockDataListener();
+		table.addDataListener(listener);
+		int sizeBefore = table.getRowCount();
+
+		int rowIndex = table.addColumns(
+			new double[] {9.0, 10.0, Double.NaN},
+			new double[] {12.5, 13.5, Double.NaN}
+		);
+
+		assertEquals(sizeBefore, rowIndex);
+		assertEquals(sizeBefore + 3, table.getRowCount());
+		assertEquals(10, table.get(0, sizeBefore + 1));
+		assertEquals(13.5, table.get(1, sizeBefore + 1));
+		// NaN is stored as empty cell in integer columns
+		assertNull(table.get(0, sizeBefore + 2));
+		assertEquals(Double.NaN, table.get(1, sizeBefore + 2));
+		assertEquals(2, listener.added.length);
+		assertEquals(3, listener.added[0].getRowCount());
+	}
+
+	@Test
+	public void testAddColumnsWithCountAndNulls() {
+		int sizeBefore = table.getRowCount();
+		BitSet empty = new BitSet();
+		empty.set(1);
+
+		int rowIndex = table.addColumns(2, new BitSet[] {null, empty},
+			new double[] {9.0, 10.0, 11.0},
+			new double[] {12.5, 13.5, 14.5}
+		);
+
+		assertEquals(sizeBefore, rowIndex);
+		assertEquals(sizeBefore + 2, table.getRowCount());
+		assertEquals(9, table.get(0, sizeBefore));
+		assertEquals(12.5, table.get(1, sizeBefore));
+		assertEquals(10, table.get(0, sizeBefore + 1));
+		assertNull(table.get(1, sizeBefore + 1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddColumnsWithTooFewValuesThrowsException() {
+		table.addColumns(3, null, new double[] {1.0, 2.0, 3.0}, new double[] {1.0});
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddColumnsWithDifferentLengthsThrowsException() {
+		table.addColumns(new double[] {1.0, 2.0}, new double[] {1.0});
+	}
+
+	@Test
+	public void testGetReturnsValuesOfColumnType() {
+		assertEquals(6, table.get(0, 5));
+		assertEquals(8.0, table.get(1, 5));
+		assertEquals(Integer.class, table.get(0, 5).getClass());
+		assertEquals(Double.class, table.get(1, 5).getClass());
+		assertNull(table.get(0, table.getRowCount()));
+	}
+
+	@Test
+	public void testGetDouble() {
+		assertEquals(6.0, table.getDouble(0, 5), DELTA);
+		assertEquals(8.0, table.getDouble(1, 5), DELTA);
+		assertEquals(Double.NaN, table.getDouble(0, table.getRowCount()), DELTA);
+	}
+
+	@Test
+	public void testEmptyCells() {
+		int row = table.add(null, 2.0);
+		assertNull(table.get(0, row));
+		assertEquals(Double.NaN, table.getDouble(0, row), DELTA);
+		assertEquals(2.0, table.getDouble(1, row), DELTA);
+
+		table.set(0, row, 42);
+		assertEquals(42, table.get(0, row));
+
+		table.set(1, row, null);
+		assertNull(table.get(1, row));
+
+		// Empty cells are moved along with removed rows
+		table.remove(0);
+		assertNull(table.get(1, row - 1));
+		assertEquals(42, table.get(0, row - 1));
+	}
+
+	@Test
+	public void testSet() {
+		int sizeBefore = table.getRowCount();
+
+		table.set(0, 2, -1);
+		assertEquals(sizeBefore, table.getRowCount());
+		assertEquals(-1, table.get(0, 2));
+
+		// Wrong type
+		try {
+			table.set(0, 2, 1.0);
+			fail("Expected IllegalArgumentException exception.");
+		} catch (IllegalArgumentException e) {
+		}
+
+		// Illegal column index
+		try {
+			table.set(2, 0, 1);
+			fail("Expected IndexOutOfBoundsException exception.");
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	@Test
+	public void testRemove() {
+		int sizeBefore = table.getRowCount();
+		table.remove(0);
+		assertEquals(sizeBefore - 1, table.getRowCount());
+		assertEquals(2, table.get(0, 0));
+		table.removeLast();
+		assertEquals(sizeBefore - 2, table.getRowCount());
+		assertEquals(7, table.get(0, table.getRowCount() - 1));
+
+		// Invalid (negative) index
+		try {
+			table.remove(-1);
+			fail("Expected IndexOutOfBoundsException exception.");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		// Invalid (positive) index
+		try {
+			table.remove(table.getRowCount());
+			fail("Expected IndexOutOfBoundsException exception.");
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	@Test
+	public void testClear() {
+		table.clear();
+		assertEquals(0, table.getRowCount());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSort() {
+		NumericDataTable table = new NumericDataTable(Integer.class, Long.class, Float.class);
+		int[] original = {
+				9,	1,	3,
+				4,	4,	2,
+				4,	2,	1,
+				8,	1,	9,
+				8,	1,	7,
+				6,	2,	4,
+				4,	6,	5,
+				3,	3,	5
+		};
+		int i = 0;
+		while (i < original.length) {
+			table.add(original[i++], (long) original[i++], (float) original[i++]);
+		}
+
+		table.sort(new Ascending(1), new Descending(0), new Ascending(2));
+
+		int[] expected = {
+				9,	1,	3,
+				8,	1,	7,
+				8,	1,	9,
+				6,	2,	4,
+				4,	2,	1,
+				3,	3,	5,
+				4,	4,	2,
+				4,	6,	5
+		};
+		i = 0;
+		while (i < expected.length) {
+			assertEquals(expected[i], table.getDouble(i%3, i/3), DELTA);
+			i++;
+		}
+	}
+
+	@Test
+	public void testColumn() {
+		Column<?> column = table.getColumn(1);
+		assertEquals(Double.class, column.getType());
+		assertEquals(table.getRowCount(), column.size());
+		assertEquals(11.0, column.get(7));
+		assertEquals(1.0, column.getStatistics(Statistics.MIN), DELTA);
+		assertEquals(11.0, column.getStatistics(Statistics.MAX), DELTA);
+	}
+
+	@Test
+	public void testStatistics() {
+		DataTable boxed = new DataTable(table);
+		String[] stats = { Statistics.N, Statistics.SUM, Statistics.MEAN,
+				Statistics.VARIANCE, Statistics.MIN, Statistics.MAX, Statistics.MEDIAN };
+		for (String stat : stats) {
+			assertEquals(stat,
+				boxed.getStatistics().get(stat),
+				table.getStatistics().get(stat),
+				DELTA);
+		}
+	}
+
+	@Test
+	public void testEvents() {
+		MockDataListener listener = new MockDataListener();
+		table.addDataListener(listener);
+
+		int row = table.add(56, 78.0);
+		assertNotNull(listener.added);
+		assertEquals(2, listener.added.length);
+		assertEquals(row, listener.added[1].getRow());
+		assertEquals(78.0, listener.added[1].getNew());
+
+		table.set(1, row, 42.0);
+		assertEquals(1, listener.updated.length);
+		assertEquals(78.0, listener.updated[0].getOld());
+		assertEquals(42.0, listener.updated[0].getNew());
+
+		table.remove(row);
+		assertEquals(2, listener.removed.length);
+		assertEquals(56, listener.removed[0].getOld());
+		assertEquals(42.0, listener.removed[1].getOld());
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		table.add(null, 0.5);
+		DataSource original = table;
+		DataSource deserialized = TestUtils.serializeAndDeserialize(original);
+
+		assertArrayEquals(original.getColumnTypes(), deserialized.getColumnTypes());
+		assertEquals(original.getRowCount(), deserialized.getRowCount());
+		for (int row = 0; row < original.getRowCount(); row++) {
+			assertEquals(original.getRecord(row), deserialized.getRecord(row));
+		}
+	}
+
+	@Test
+	public void testGetDoubles() {
+		double[] values = new double[5];
+		table.getDoubles(1, 2, values, 1, 4);
+		assertArrayEquals(new double[] {0.0, 2.0, 6.0, 4.0, 8.0}, values, DELTA);
+
+		table.set(0, 3, null);
+		table.getDoubles(0, 2, values, 0, 3);
+		assertEquals(3.0, values[0], DELTA);
+		assertEquals(Double.NaN, values[1], DELTA);
+		assertEquals(5.0, values[2], DELTA);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetDoublesOutOfBoundsThrowsException() {
+		table.getDoubles(0, 6, new double[4], 0, 4);
+	}
+}
@@ -0,0 +1,373 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.comparators.Ascending;
+import de.erichseifert.gral.data.statistics.Statistics;
+
+public class RingBufferDataTableTest {
+	private static final double DELTA = TestUtils.DELTA;
+
+	private static class MockDataListener implements DataListener {
+		private DataChangeEvent[] added;
+		private DataChangeEvent[] updated;
+		private DataChangeEvent[] removed;
+
+		public void dataAdded(DataSource source, DataChangeEvent... events) {
+			added = events;
+		}
+
+		public void dataUpdated(DataSource source, DataChangeEvent... events) {
+			updated = events;
+		}
+
+		public void dataRemoved(DataSource source, DataChangeEvent... events) {
+			removed = events;
+		}
+	}
+
+	private RingBufferDataTable table;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		table = new RingBufferDataTable(4, Integer.class, String.class);
+		table.add(1, "a"); // 0
+		table.add(2, "b"); // 1
+		table.add(3, "c"); // 2
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testCreate() {
+		RingBufferDataTable copy = new RingBufferDataTable(2, table);
+		assertEquals(2, copy.getCapacity());
+		assertEquals(2, copy.getRowCount());
+		assertEquals(2, copy.get(0, 0));
+		assertEquals("c", copy.get(1, 1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	@SuppressWarnings("unchecked")
+	public void testCreateWithInvalidCapacityThrowsException() {
+		new RingBufferDataTable(0, Integer.class);
+	}
+
+	@Test
+	public void testAdd() {
+		assertFalse(table.isFull());
+		int rowIndex = table.add(4, "d");
+		assertEquals(3, rowIndex);
+		assertTrue(table.isFull());
+		assertEquals(4, table.getRowCount());
+	}
+
+	@Test
+	public void testAddReplacesOldestRow() {
+		table.add(4, "d");
+		table.add(5, "e");
+		int rowIndex = table.add(6, "f");
+
+		assertEquals(3, rowIndex);
+		assertEquals(4, table.getRowCount());
+		assertEquals(3, table.get(0, 0));
+		assertEquals("c", table.get(1, 0));
+		assertEquals(6, table.get(0, 3));
+		assertEquals(6.0, table.getDouble(0, 3), DELTA);
+		assertEquals(Double.NaN, table.getDouble(1, 3), DELTA);
+		assertEquals("f", table.getRecord(3).get(1));
+		assertNull(table.get(0, 4));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAddAll() {
+		int rowIndex = table.addAll(Arrays.asList(
+			Arrays.asList(4, "d"),
+			Arrays.asList(5, "e"),
+			Arrays.asList(6, "f")
+		));
+		assertEquals(1, rowIndex);
+		assertEquals(4, table.getRowCount());
+		assertEquals(3, table.get(0, 0));
+		assertEquals(4, table.get(0, 1));
+		assertEquals(6, table.get(0, 3));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAddAllMoreRowsThanCapacity() {
+		MockDataListener listener = new MockDataListener();
+		table.addDataListener(listener);
+		int rowIndex = table.addAll(Arrays.asList(
+			Arrays.asList(4, "d"),
+			Arrays.asList(5, "e"),
+			Arrays.asList(6, "f"),
+			Arrays.asList(7, "g"),
+			Arrays.asList(8, "h"),
+			Arrays.asList(9, "i")
+		));
+		assertEquals(0, rowIndex);
+		assertEquals(4, table.getRowCount());
+		for (int row = 0; row < 4; row++) {
+			assertEquals(row + 6, table.get(0, row));
+		}
+		// Only the three rows that existed before have been discarded
+		assertNull(listener.added);
+		assertEquals(2, listener.updated.length);
+		for (DataChangeEvent event : listener.updated) {
+			assertEquals(0, event.getRow());
+			assertEquals(4, event.getRowCount());
+			assertEquals(3, event.getShift());
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAddAllMoreRowsThanCapacityToEmptyTable() {
+		RingBufferDataTable data = new RingBufferDataTable(2, Integer.class);
+		MockDataListener listener = new MockDataListener();
+		data.addDataListener(listener);
+		data.addAll(Arrays.asList(
+			Arrays.asList(1),
+			Arrays.asList(2),
+			Arrays.asList(3)
+		));
+		assertEquals(2, data.getRowCount());
+		assertEquals(2, data.get(0, 0));
+		assertEquals(3, data.get(0, 1));
+		assertNull(listener.updated);
+		assertEquals(1, listener.added.length);
+		assertEquals(0, listener.added[0].getRow());
+		assertEquals(2, listener.added[0].getRowCount());
+	}
+
+	@Test
+	public void testGetWithNegativeIndex() {
+		// The position of row -1 would wrap around to the newest row
+		table.add(4, "d");
+		table.add(5, "e");
+		assertNull(table.get(0, -1));
+		assertEquals(Double.NaN, table.getDouble(0, -1), DELTA);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testStatisticsAfterShift() {
+		Statistics colStats = table.getStatistics(0);
+		Statistics tableStats = table.getStatistics();
+		assertEquals(6.0, colStats.get(Statistics.SUM), DELTA);
+		assertEquals(3.0, tableStats.get(Statistics.N), DELTA);
+
+		table.add(4, "d");
+		table.add(5, "e");
+		table.addAll(Arrays.asList(
+			Arrays.asList(6, "f"),
+			Arrays.asList(7, "g")
+		));
+
+		// Rows 4 to 7 remain
+		assertEquals(4.0, colStats.get(Statistics.N), DELTA);
+		assertEquals(22.0, colStats.get(Statistics.SUM), DELTA);
+		assertEquals(4.0, colStats.get(Statistics.MIN), DELTA);
+		assertEquals(7.0, colStats.get(Statistics.MAX), DELTA);
+		assertEquals(4.0, tableStats.get(Statistics.N), DELTA);
+		assertEquals(22.0, tableStats.get(Statistics.SUM), DELTA);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testShiftDoesNotRecalculateStatistics() {
+		final AtomicInteger reads = new AtomicInteger();
+		RingBufferDataTable data = new RingBufferDataTable(100, Double.class) {
+			@Override
+			public void getDoubles(int col, int row, double[] values, int offset, int length) {
+				reads.addAndGet(length);
+				super.getDoubles(col, row, values, offset, length);
+			}
+		};
+		for (int i = 0; i < 100; i++) {
+			data.add((double) i);
+		}
+		Statistics colStats = data.getStatistics(0);
+		assertEquals(4950.0, colStats.get(Statistics.SUM), DELTA);
+		reads.set(0);
+
+		for (int i = 100; i < 110; i++) {
+			data.add((double) i);
+		}
+
+		assertEquals(5950.0, colStats.get(Statistics.SUM), DELTA);
+		assertEquals(59.5, colStats.get(Statistics.MEAN), DELTA);
+		assertEquals(0, reads.get());
+		// The extrema are only calculated again, because the minimum was discarded
+		assertEquals(10.0, colStats.get(Statistics.MIN), DELTA);
+		assertEquals(109.0, colStats.get(Statistics.MAX), DELTA);
+	}
+
+	@Test
+	public void testRemove() {
+		table.add(4, "d");
+		table.add(5, "e");
+
+		table.remove(1);
+		assertEquals(3, table.getRowCount());
+		assertEquals(2, table.get(0, 0));
+		assertEquals(4, table.get(0, 1));
+		assertEquals(5, table.get(0, 2));
+
+		table.removeLast();
+		assertEquals(2, table.getRowCount());
+		assertEquals(4, table.get(0, 1));
+
+		table.add(6, "f");
+		assertEquals(6, table.get(0, 2));
+	}
+
+	@Test
+	public void testClear() {
+		table.add(4, "d");
+		table.add(5, "e");
+		table.clear();
+		assertEquals(0, table.getRowCount());
+		table.add(6, "f");
+		assertEquals(6, table.get(0, 0));
+	}
+
+	@Test
+	public void testSet() {
+		table.add(4, "d");
+		table.add(5, "e");
+		Comparable<?> old = table.set(0, 0, 42);
+		assertEquals(2, old);
+		assertEquals(42, table.get(0, 0));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testSetBeyondRowCountThrowsException() {
+		// The position of row 4 would wrap around to the oldest row
+		table.add(4, "d");
+		table.add(5, "e");
+		table.set(0, 4, 42);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetRecordBeyondRowCountThrowsException() {
+		table.getRecord(3);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetRecordWithNegativeIndexThrowsException() {
+		table.getRecord(-1);
+	}
+
+	@Test
+	public void testGetColumn() {
+		table.add(4, "d");
+		table.add(5, "e");
+		Column<?> col = table.getColumn(0);
+		assertEquals(4, col.size());
+		assertEquals(2, col.get(0));
+		assertEquals(5, col.get(3));
+	}
+
+	@Test
+	public void testSort() {
+		table.add(4, "d");
+		table.add(0, "e");
+		table.sort(new Ascending(0));
+		assertEquals(0, table.get(0, 0));
+		assertEquals(2, table.get(0, 1));
+		assertEquals(4, table.get(0, 3));
+	}
+
+	@Test
+	public void testEventsAdd() {
+		MockDataListener listener = new MockDataListener();
+		table.addDataListener(listener);
+
+		table.add(4, "d");
+		assertNotNull(listener.added);
+		assertNull(listener.updated);
+		assertEquals(3, listener.added[0].getRow());
+	}
+
+	@Test
+	public void testEventsShift() {
+		table.add(4, "d");
+		MockDataListener listener = new MockDataListener();
+		table.addDataListener(listener);
+
+		table.add(5, "e");
+		assertNull(listener.added);
+		assertNull(listener.removed);
+		assertNotNull(listener.updated);
+		assertEquals(2, listener.updated.length);
+		for (int col = 0; col < listener.updated.length; col++) {
+			DataChangeEvent event = listener.updated[col];
+			assertEquals(col, event.getCol());
+			assertEquals(0, event.getRow());
+			assertEquals(4, event.getRowCount());
+			assertEquals(1, event.getShift());
+		}
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		table.add(4, "d");
+		table.add(5, "e");
+		DataSource deserialized = TestUtils.serializeAndDeserialize(table);
+
+		assertEquals(table.getRowCount(), deserialized.getRowCount());
+		for (int row = 0; row < table.getRowCount(); row++) {
+			assertEquals(table.getRecord(row), deserialized.getRecord(row));
+		}
+	}
+
+	@Test
+	public void testGetDoublesWrapsAround() {
+		table.add(4, "d");
+		table.add(5, "e");
+		table.add(6, "f");
+
+		double[] values = new double[4];
+		table.getDoubles(0, 0, values, 0, 4);
+		assertEquals(3.0, values[0], DELTA);
+		assertEquals(4.0, values[1], DELTA);
+		assertEquals(5.0, values[2], DELTA);
+		assertEquals(6.0, values[3], DELTA);
+	}
+}
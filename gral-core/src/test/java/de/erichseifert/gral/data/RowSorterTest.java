@@ -0,0 +1,110 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.erichseifert.gral.data.comparators.Ascending;
+import de.erichseifert.gral.data.comparators.DataComparator;
+import de.erichseifert.gral.data.comparators.Descending;
+
+public class RowSorterTest {
+	@SuppressWarnings("unchecked")
+	private static DataTable createTable(int rowCount) {
+		DataTable table = new DataTable(Double.class, Integer.class, String.class);
+		Random random = new Random(42);
+		for (int row = 0; row < rowCount; row++) {
+			Double x = (random.nextInt(10) == 0) ? null : (double) random.nextInt(100);
+			Integer y = (random.nextInt(10) == 0) ? null : random.nextInt(5);
+			table.add(x, y, String.valueOf((char) ('a' + random.nextInt(26))));
+		}
+		return table;
+	}
+
+	/**
+	 * Sorts the row indexes using the comparators directly on the records.
+	 */
+	private static int[] sortRecords(DataSource data, final DataComparator... comparators) {
+		final Record[] records = new Record[data.getRowCount()];
+		Integer[] order = new Integer[records.length];
+		for (int row = 0; row < records.length; row++) {
+			records[row] = data.getRecord(row);
+			order[row] = row;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer row1, Integer row2) {
+				for (DataComparator comparator : comparators) {
+					int result = comparator.compare(records[row1], records[row2]);
+					if (result != 0) {
+						return result;
+					}
+				}
+				return 0;
+			}
+		});
+		int[] expected = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			expected[i] = order[i];
+		}
+		return expected;
+	}
+
+	@Test
+	public void testAscending() {
+		DataTable table = createTable(200);
+		DataComparator[] comparators = {new Ascending(0)};
+		assertArrayEquals(sortRecords(table, comparators), RowSorter.sort(table, comparators));
+	}
+
+	@Test
+	public void testDescending() {
+		DataTable table = createTable(200);
+		DataComparator[] comparators = {new Descending(1), new Ascending(0)};
+		assertArrayEquals(sortRecords(table, comparators), RowSorter.sort(table, comparators));
+	}
+
+	@Test
+	public void testNonNumericColumn() {
+		DataTable table = createTable(200);
+		DataComparator[] comparators = {new Ascending(2), new Descending(0)};
+		assertArrayEquals(sortRecords(table, comparators), RowSorter.sort(table, comparators));
+	}
+
+	@Test
+	public void testParallel() {
+		DataTable table = createTable(3*RowSorter.PARALLEL_THRESHOLD);
+		DataComparator[] comparators = {new Ascending(1), new Descending(2), new Ascending(0)};
+		assertArrayEquals(sortRecords(table, comparators), RowSorter.sort(table, comparators));
+	}
+
+	@Test
+	public void testEmpty() {
+		assertEquals(0, RowSorter.sort(createTable(0), new Ascending(0)).length);
+	}
+}
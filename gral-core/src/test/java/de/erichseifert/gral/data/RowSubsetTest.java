@@ -23,9 +23,13 @@ package de.erichseifert.gral.data;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -40,20 +44,55 @@ public class RowSubsetTest {
 		/** Version id for serialization. */
 		private static final long serialVersionUID = -601722212974379219L;
 
+		public int acceptCount;
+
 		public MockRowSubset(DataSource original) {
 			super(original);
 		}
 
 		@Override
 		public boolean accept(Row row) {
+			acceptCount++;
 			Comparable<?> cell = row.get(0);
 			return (cell instanceof Number) &&
 				(((Number) cell).doubleValue() % 2.0) == 0.0;
 		}
 	}
 
+	private static final class AcceptAllRowSubset extends RowSubset {
+		/** Version id for serialization. */
+		private static final long serialVersionUID = 4372957014573617296L;
+
+		public AcceptAllRowSubset(DataSource original) {
+			super(original);
+		}
+
+		@Override
+		public boolean accept(Row row) {
+			return true;
+		}
+	}
+
+	private static final class EventRecorder implements DataListener {
+		public final List<DataChangeEvent> added = new ArrayList<DataChangeEvent>();
+		public final List<DataChangeEvent> updated = new ArrayList<DataChangeEvent>();
+		public final List<DataChangeEvent> removed = new ArrayList<DataChangeEvent>();
+
+		public void dataAdded(DataSource source, DataChangeEvent... events) {
+			added.addAll(Arrays.asList(events));
+		}
+
+		public void dataUpdated(DataSource source, DataChangeEvent... events) {
+			updated.addAll(Arrays.asList(events));
+		}
+
+		public void dataRemoved(DataSource source, DataChangeEvent... events) {
+			removed.addAll(Arrays.asList(events));
+		}
+	}
+
 	private DataTable table;
-	private RowSubset data;
+	private MockRowSubset data;
 
 	@Before
 	@SuppressWarnings("unchecked")
@@ -105,6 +144,20 @@ public class RowSubsetTest {
 		assertTrue(data.getRowCount() > sizeBefore);
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testDataAddedAll() {
+		int sizeBefore = data.getRowCount();
+		table.addAll(Arrays.asList(
+			Arrays.asList(10, -1),
+			Arrays.asList(11, -2),
+			Arrays.asList(12, -3)
+		));
+		assertEquals(sizeBefore + 2, data.getRowCount());
+		assertEquals(12, data.get(0, data.getRowCount() - 1));
+		assertEquals(-3, data.get(1, data.getRowCount() - 1));
+	}
+
 	@Test
 	public void testDataUpdated() {
 		int sizeBefore = data.getRowCount();
@@ -130,6 +183,147 @@ public class RowSubsetTest {
 		assertTrue(data.getRowCount() < sizeBefore);
 	}
 
+	@Test
+	public void testDataAddedTestsOnlyNewRows() {
+		data.acceptCount = 0;
+		table.add(10, -1);
+		table.add(11, -2);
+		assertEquals(2, data.acceptCount);
+		assertEquals(5, data.getRowCount());
+		assertEquals(10, data.get(0, 4));
+	}
+
+	@Test
+	public void testDataAddedEvents() {
+		EventRecorder recorder = new EventRecorder();
+		data.addDataListener(recorder);
+		table.add(10, -1);
+		table.add(11, -2);
+		assertEquals(2, recorder.added.size());
+		for (DataChangeEvent event : recorder.added) {
+			assertSame(data, event.getSource());
+			assertEquals(4, event.getRow());
+		}
+	}
+
+	@Test
+	public void testDataUpdatedTestsOnlyChangedRow() {
+		EventRecorder recorder = new EventRecorder();
+		data.addDataListener(recorder);
+		data.acceptCount = 0;
+
+		// Value of an accepted row changes but row stays accepted
+		table.set(1, 3, 42);
+		assertEquals(1, data.acceptCount);
+		assertEquals(1, recorder.updated.size());
+		assertEquals(1, recorder.updated.get(0).getRow());
+		assertEquals(42, recorder.updated.get(0).getNew());
+
+		// Row becomes accepted
+		table.set(0, 2, 0);
+		assertEquals(2, data.acceptCount);
+		assertEquals(5, data.getRowCount());
+		assertEquals(0, data.get(0, 1));
+		assertEquals(table.getColumnCount(), recorder.added.size());
+		assertEquals(1, recorder.added.get(0).getRow());
+
+		// Row is no longer accepted
+		table.set(0, 1, 1);
+		assertEquals(3, data.acceptCount);
+		assertEquals(4, data.getRowCount());
+		assertEquals(0, data.get(0, 0));
+		assertEquals(table.getColumnCount(), recorder.removed.size());
+		assertEquals(0, recorder.removed.get(0).getRow());
+		assertEquals(2, recorder.removed.get(0).getOld());
+	}
+
+	@Test
+	public void testDataRemovedShiftsRows() {
+		EventRecorder recorder = new EventRecorder();
+		data.addDataListener(recorder);
+		data.acceptCount = 0;
+
+		// Remove a rejected row
+		table.remove(0);
+		assertEquals(0, data.acceptCount);
+		assertEquals(4, data.getRowCount());
+		assertEquals(2, data.get(0, 0));
+		assertEquals(8, data.get(0, 3));
+		assertTrue(recorder.removed.isEmpty());
+
+		// Remove an accepted row
+		table.remove(2);
+		assertEquals(0, data.acceptCount);
+		assertEquals(3, data.getRowCount());
+		assertEquals(2, data.get(0, 0));
+		assertEquals(6, data.get(0, 1));
+		assertEquals(8, data.get(0, 2));
+		assertEquals(table.getColumnCount(), recorder.removed.size());
+		assertEquals(1, recorder.removed.get(0).getRow());
+		assertSame(data, recorder.removed.get(0).getSource());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testRingBufferShift() {
+		RingBufferDataTable ring = new RingBufferDataTable(4, Integer.class);
+		for (int i = 0; i < 4; i++) {
+			ring.add(i);
+		}
+		MockRowSubset subset = new MockRowSubset(ring);
+		assertEquals(2, subset.getRowCount());
+
+		subset.acceptCount = 0;
+		ring.add(4);
+		ring.add(5);
+		assertEquals(2, subset.acceptCount);
+		assertEquals(2, subset.getRowCount());
+		assertEquals(2, subset.get(0, 0));
+		assertEquals(4, subset.get(0, 1));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testRingBufferWrapsWithinAddAll() {
+		RingBufferDataTable ring = new RingBufferDataTable(3, Integer.class);
+		ring.add(0);
+		ring.add(1);
+		RowSubset subset = new AcceptAllRowSubset(ring);
+
+		ring.addAll(Arrays.asList(
+			Arrays.asList(2),
+			Arrays.asList(3),
+			Arrays.asList(4),
+			Arrays.asList(5),
+			Arrays.asList(6)
+		));
+
+		assertEquals(3, subset.getRowCount());
+		for (int row = 0; row < 3; row++) {
+			assertEquals(row + 4, subset.get(0, row));
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testShiftLargerThanRowCountFiltersAgain() {
+		RingBufferDataTable ring = new RingBufferDataTable(3, Integer.class);
+		ring.add(0);
+		ring.add(1);
+		RowSubset subset = new AcceptAllRowSubset(ring);
+		ring.add(2);
+		ring.add(3);
+
+		// Discarding more rows than the subset has tested requires a rescan
+		DataChangeEvent event = new DataChangeEvent(ring, 0, 0, ring.getRowCount(), 5);
+		subset.dataUpdated(ring, event);
+
+		assertEquals(3, subset.getRowCount());
+		for (int row = 0; row < 3; row++) {
+			assertEquals(row + 1, subset.get(0, row));
+		}
+	}
+
 	@Test
 	public void testSerialization() throws IOException, ClassNotFoundException {
 		DataSource original = data;
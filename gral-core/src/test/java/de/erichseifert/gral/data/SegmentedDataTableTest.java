@@ -0,0 +1,349 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.comparators.Ascending;
+import de.erichseifert.gral.data.statistics.Statistics;
+
+public class SegmentedDataTableTest {
+	private static final double DELTA = TestUtils.DELTA;
+
+	private static class MockDataListener implements DataListener {
+		private DataChangeEvent[] added;
+		private DataChangeEvent[] removed;
+
+		public void dataAdded(DataSource source, DataChangeEvent... events) {
+			added = events;
+		}
+
+		public void dataUpdated(DataSource source, DataChangeEvent... events) {
+		}
+
+		public void dataRemoved(DataSource source, DataChangeEvent... events) {
+			removed = events;
+		}
+	}
+
+	private SegmentedDataTable table;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		table = new SegmentedDataTable(3, Integer.class, String.class);
+		for (int i = 0; i < 8; i++) {
+			table.add(i, String.valueOf((char) ('a' + i)));
+		}
+	}
+
+	@Test
+	public void testCreate() {
+		SegmentedDataTable copy = new SegmentedDataTable(2, table);
+		assertEquals(2, copy.getChunkSize());
+		assertEquals(8, copy.getRowCount());
+		assertEquals(4, copy.getChunkCount());
+		assertEquals("h", copy.get(1, 7));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	@SuppressWarnings("unchecked")
+	public void testCreateInvalidChunkSize() {
+		new SegmentedDataTable(0, Integer.class);
+	}
+
+	@Test
+	public void testAdd() {
+		assertEquals(8, table.getRowCount());
+		assertEquals(3, table.getChunkCount());
+		for (int row = 0; row < 8; row++) {
+			assertEquals(row, table.get(0, row));
+			assertEquals((double) row, table.getDouble(0, row), DELTA);
+		}
+		assertEquals("d", table.get(1, 3));
+		assertNull(table.get(0, 8));
+		assertTrue(Double.isNaN(table.getDouble(0, -1)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddInvalidType() {
+		table.add("x", "y");
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAddAll() {
+		MockDataListener listener = new MockDataListener();
+		table.addDataListener(listener);
+		List<List<Comparable<?>>> rows = Arrays.asList(
+			Arrays.<Comparable<?>>asList(8, "i"),
+			Arrays.<Comparable<?>>asList(9, "j"));
+		assertEquals(8, table.addAll(rows));
+		assertEquals(10, table.getRowCount());
+		assertEquals(4, table.getChunkCount());
+		assertEquals("j", table.get(1, 9));
+		assertEquals(2, listener.added.length);
+		assertEquals(2, listener.added[0].getRowCount());
+	}
+
+	@Test
+	public void testRemove() {
+		table.remove(4);
+		assertEquals(7, table.getRowCount());
+		assertEquals(3, table.get(0, 3));
+		assertEquals(5, table.get(0, 4));
+		assertEquals(7, table.get(0, 6));
+
+		// Removing the remaining rows of a chunk releases it
+		table.remove(3);
+		table.remove(3);
+		assertEquals(2, table.getChunkCount());
+		assertEquals(6, table.get(0, 3));
+		assertEquals(new Record(7, "h"), table.getRecord(4));
+
+		table.removeLast();
+		assertEquals(4, table.getRowCount());
+		assertEquals(6, table.get(0, 3));
+	}
+
+	@Test
+	public void testRemoveEvents() {
+		MockDataListener listener = new MockDataListener();
+		table.addDataListener(listener);
+		table.remove(2);
+		assertEquals(2, listener.removed.length);
+		assertEquals(2, listener.removed[0].getOld());
+		assertEquals("c", listener.removed[1].getOld());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testRemoveInvalidRow() {
+		table.remove(8);
+	}
+
+	@Test
+	public void testRemoveFirst() {
+		MockDataListener listener = new MockDataListener();
+		table.addDataListener(listener);
+		table.removeFirst(4);
+		assertEquals(4, table.getRowCount());
+		assertEquals(2, table.getChunkCount());
+		assertEquals(4, table.get(0, 0));
+		assertEquals(7, table.get(0, 3));
+		assertEquals(2, listener.removed.length);
+		assertEquals(0, listener.removed[0].getRow());
+		assertEquals(4, listener.removed[0].getRowCount());
+
+		table.add(8, "i");
+		assertEquals(8, table.get(0, 4));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRemoveFirstTooManyRows() {
+		table.removeFirst(9);
+	}
+
+	@Test
+	public void testCompact() {
+		table.remove(7);
+		table.remove(0);
+		table.compact();
+		assertEquals(6, table.getRowCount());
+		for (int row = 0; row < 6; row++) {
+			assertEquals(row + 1, table.get(0, row));
+		}
+	}
+
+	@Test
+	public void testRemoveMostRowsOfChunk() {
+		table.remove(5);
+		table.remove(3);
+		table.removeFirst(2);
+		assertEquals(4, table.getRowCount());
+		assertEquals(3, table.getChunkCount());
+		int[] expected = {2, 4, 6, 7};
+		for (int row = 0; row < expected.length; row++) {
+			assertEquals(expected[row], table.get(0, row));
+		}
+		table.compact();
+		for (int row = 0; row < expected.length; row++) {
+			assertEquals(expected[row], table.get(0, row));
+			assertEquals(expected[row], table.getDouble(0, row), DELTA);
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testScatteredRemovals() {
+		SegmentedDataTable data = new SegmentedDataTable(1000, Integer.class);
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 2500; i++) {
+			data.add(i);
+			expected.add(i);
+		}
+		data.removeFirst(130);
+		expected.subList(0, 130).clear();
+		// Remove every seventh row, which leaves the chunks populated enough
+		for (int row = expected.size() - 1; row >= 0; row -= 7) {
+			data.remove(row);
+			expected.remove(row);
+		}
+		// Rows that are added afterwards lie behind the deleted rows
+		for (int i = 2500; i < 2600; i++) {
+			data.add(i);
+			expected.add(i);
+		}
+		data.remove(expected.size() - 50);
+		expected.remove(expected.size() - 50);
+
+		assertEquals(expected.size(), data.getRowCount());
+		double[] values = new double[expected.size() + 2];
+		data.getDoubles(0, 0, values, 1, expected.size());
+		DataSource snapshot = data.snapshot();
+		double[] snapshotValues = new double[expected.size()];
+		snapshot.getDoubles(0, 0, snapshotValues, 0, expected.size());
+		for (int row = 0; row < expected.size(); row++) {
+			assertEquals(expected.get(row), data.get(0, row));
+			assertEquals(expected.get(row), values[row + 1], DELTA);
+			assertEquals(expected.get(row), snapshotValues[row], DELTA);
+		}
+		assertEquals(0.0, values[0], DELTA);
+		assertEquals(0.0, values[values.length - 1], DELTA);
+	}
+
+	@Test
+	public void testGetDoublesWithNull() {
+		table.remove(4);
+		table.add(null, "i");
+		double[] values = new double[3];
+		table.getDoubles(0, 5, values, 0, 3);
+		assertEquals(6.0, values[0], DELTA);
+		assertEquals(7.0, values[1], DELTA);
+		assertTrue(Double.isNaN(values[2]));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetDoublesInvalidRows() {
+		table.getDoubles(0, 6, new double[3], 0, 3);
+	}
+
+	@Test
+	public void testClear() {
+		table.clear();
+		assertEquals(0, table.getRowCount());
+		assertEquals(0, table.getChunkCount());
+		table.add(1, "x");
+		assertEquals("x", table.get(1, 0));
+	}
+
+	@Test
+	public void testSet() {
+		table.remove(0);
+		assertEquals(5, table.set(0, 4, 50));
+		assertEquals(50, table.get(0, 4));
+		assertEquals("f", table.get(1, 4));
+	}
+
+	@Test
+	public void testSort() {
+		table.set(0, 0, 20);
+		table.remove(3);
+		table.sort(new Ascending(0));
+		assertEquals(7, table.getRowCount());
+		assertEquals(1, table.get(0, 0));
+		assertEquals(20, table.get(0, 6));
+		assertEquals("a", table.get(1, 6));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSortNumericColumns() {
+		SegmentedDataTable data = new SegmentedDataTable(4, Double.class, Long.class, String.class);
+		for (int i = 0; i < 10; i++) {
+			data.add((double) ((i*7) % 10), (long) i, (i == 3) ? null : String.valueOf(i));
+		}
+		data.add(null, 10L, "10");
+		data.remove(5);
+		DataSource snapshot = data.snapshot();
+		data.sort(new Ascending(0));
+
+		assertEquals(10, data.getRowCount());
+		assertEquals(3, data.getChunkCount());
+		for (int row = 0; row < 9; row++) {
+			double value = data.getDouble(0, row);
+			long index = (Long) data.get(1, row);
+			assertEquals((index*7) % 10, value, DELTA);
+			assertEquals((index == 3) ? null : String.valueOf(index), data.get(2, row));
+			if (row > 0) {
+				assertTrue(data.getDouble(0, row - 1) < value);
+			}
+		}
+		assertNull(data.get(0, 9));
+		assertEquals(10L, data.get(1, 9));
+		assertEquals(6L, snapshot.get(1, 5));
+		assertEquals(45.0 - 5.0, data.getStatistics(0).get(Statistics.SUM), DELTA);
+	}
+
+	@Test
+	public void testStatistics() {
+		table.remove(0);
+		table.removeFirst(2);
+		assertEquals(3 + 4 + 5 + 6 + 7, table.getStatistics().get(Statistics.SUM), DELTA);
+		assertEquals(3.0, table.getStatistics(0).get(Statistics.MIN), DELTA);
+	}
+
+	@Test
+	public void testSnapshot() {
+		DataSource snapshot = table.snapshot();
+		table.remove(1);
+		table.set(0, 0, 10);
+		table.add(8, "i");
+		table.removeFirst(3);
+		table.compact();
+		assertEquals(8, snapshot.getRowCount());
+		for (int row = 0; row < 8; row++) {
+			assertEquals(row, snapshot.get(0, row));
+		}
+		assertEquals(7.0, snapshot.getDouble(0, 7), DELTA);
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		table.remove(1);
+		SegmentedDataTable deserialized = TestUtils.serializeAndDeserialize(table);
+		assertEquals(table.getRowCount(), deserialized.getRowCount());
+		for (int row = 0; row < table.getRowCount(); row++) {
+			assertEquals(table.getRecord(row), deserialized.getRecord(row));
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.comparators.Descending;
+
+public class SortedColumnIndexTest {
+	private static final double DELTA = TestUtils.DELTA;
+
+	private DataTable table;
+	private SortedColumnIndex index;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		table = new DataTable(Double.class, String.class);
+		table.add(3.0, "a"); // 0
+		table.add(1.0, "b"); // 1
+		table.add(null, "c"); // 2
+		table.add(2.0, "d"); // 3
+		table.add(1.0, "e"); // 4
+		index = new SortedColumnIndex(table, 0);
+	}
+
+	@Test
+	public void testCreate() {
+		assertEquals(table, index.getData());
+		assertEquals(0, index.getColumn());
+		assertEquals(4, index.size());
+		assertEquals(1, index.getRow(0));
+		assertEquals(4, index.getRow(1));
+		assertEquals(3.0, index.getValue(3), DELTA);
+	}
+
+	@Test
+	public void testBounds() {
+		assertEquals(0, index.lowerBound(0.0));
+		assertEquals(0, index.lowerBound(1.0));
+		assertEquals(2, index.upperBound(1.0));
+		assertEquals(2, index.lowerBound(1.5));
+		assertEquals(4, index.upperBound(3.0));
+		assertEquals(4, index.lowerBound(5.0));
+	}
+
+	@Test
+	public void testGetRows() {
+		assertArrayEquals(new int[] {1, 4, 3}, index.getRows(1.0, 2.0));
+		assertArrayEquals(new int[] {3, 0}, index.getRows(1.5, 10.0));
+		assertArrayEquals(new int[0], index.getRows(2.5, 2.9));
+		assertArrayEquals(new int[0], index.getRows(3.0, 1.0));
+	}
+
+	@Test
+	public void testAppend() {
+		assertEquals(4, index.size());
+		table.add(4.0, "f");
+		table.add(null, "g");
+		table.add(5.0, "h");
+		assertEquals(6, index.size());
+		assertArrayEquals(new int[] {0, 5, 7}, index.getRows(3.0, 5.0));
+	}
+
+	@Test
+	public void testAppendUnsorted() {
+		assertEquals(4, index.size());
+		table.add(0.5, "f");
+		assertEquals(5, index.size());
+		assertEquals(5, index.getRow(0));
+	}
+
+	@Test
+	public void testChanges() {
+		assertEquals(4, index.size());
+		table.set(0, 2, 2.5);
+		assertArrayEquals(new int[] {3, 2}, index.getRows(2.0, 2.9));
+		table.remove(0);
+		assertArrayEquals(new int[] {2, 1}, index.getRows(2.0, 3.0));
+		table.clear();
+		assertEquals(0, index.size());
+	}
+
+	@Test
+	public void testSort() {
+		assertEquals(4, index.size());
+		table.sort(new Descending(0));
+		assertArrayEquals(new int[] {2, 1}, index.getRows(2.0, 5.0));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testInvalidPosition() {
+		index.getRow(4);
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.expressions;
+
+import static de.erichseifert.gral.data.expressions.Expression.col;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.statistics.Statistics;
+
+public class ComputedDataTest {
+	private static final double DELTA = TestUtils.DELTA;
+
+	private DataTable table;
+	private ComputedData data;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		table = new DataTable(Integer.class, Double.class, Double.class);
+		table.add(1, 2.0, 4.0); // 0
+		table.add(2, 3.0, 0.5); // 1
+		table.add(3, null, 2.0); // 2
+		table.add(4, 9.0, 3.0); // 3
+
+		data = new ComputedData(table, col(0), col(1).div(col(2)));
+	}
+
+	@Test
+	public void testCreate() {
+		assertEquals(2, data.getColumnCount());
+		assertArrayEquals(new Class<?>[] {Double.class, Double.class}, data.getColumnTypes());
+		assertEquals(table.getRowCount(), data.getRowCount());
+		assertSame(table, data.getOriginal());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCreateWithNullExpressionThrowsException() {
+		new ComputedData(table, col(0), null);
+	}
+
+	@Test
+	public void testGet() {
+		assertEquals(1.0, data.get(0, 0));
+		assertEquals(0.5, data.get(1, 0));
+		assertEquals(6.0, data.get(1, 1));
+		assertNull(data.get(1, 2));
+		assertEquals(Double.NaN, data.getDouble(1, 2), DELTA);
+		assertEquals(3.0, data.getDouble(1, 3), DELTA);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetOutOfBoundsThrowsException() {
+		data.getDouble(0, 4);
+	}
+
+	@Test
+	public void testOriginalChanged() {
+		table.add(5, 1.0, 4.0);
+		assertEquals(5, data.getRowCount());
+		assertEquals(0.25, data.getDouble(1, 4), DELTA);
+
+		table.set(1, 0, 8.0);
+		assertEquals(2.0, data.getDouble(1, 0), DELTA);
+	}
+
+	@Test
+	public void testStatistics() {
+		assertEquals(10.0, data.getStatistics(0).get(Statistics.SUM), DELTA);
+		table.add(10, 0.0, 1.0);
+		assertEquals(20.0, data.getStatistics(0).get(Statistics.SUM), DELTA);
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		ComputedData deserialized = TestUtils.serializeAndDeserialize(data);
+		assertEquals(data.getRowCount(), deserialized.getRowCount());
+		for (int row = 0; row < data.getRowCount(); row++) {
+			for (int col = 0; col < data.getColumnCount(); col++) {
+				assertEquals(data.get(col, row), deserialized.get(col, row));
+			}
+		}
+	}
+}
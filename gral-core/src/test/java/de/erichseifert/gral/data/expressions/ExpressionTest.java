@@ -0,0 +1,155 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.expressions;
+
+import static de.erichseifert.gral.data.expressions.Expression.col;
+import static de.erichseifert.gral.data.expressions.Expression.constant;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.NumericDataTable;
+
+public class ExpressionTest {
+	private static final double DELTA = TestUtils.DELTA;
+
+	private NumericDataTable table;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		table = new NumericDataTable(Integer.class, Double.class);
+		table.add(1, 2.0); // 0
+		table.add(2, 0.5); // 1
+		table.add(3, null); // 2
+		table.add(4, 8.0); // 3
+	}
+
+	private double[] evaluate(Expression expression) {
+		double[] values = new double[table.getRowCount()];
+		expression.evaluate(table, 0, values, 0, values.length);
+		return values;
+	}
+
+	private boolean[] evaluate(Predicate predicate) {
+		boolean[] result = new boolean[table.getRowCount()];
+		predicate.evaluate(table, 0, result, 0, result.length);
+		return result;
+	}
+
+	@Test
+	public void testColumn() {
+		assertArrayEquals(new double[] {1.0, 2.0, 3.0, 4.0}, evaluate(col(0)), DELTA);
+		double[] values = evaluate(col(1));
+		assertEquals(2.0, values[0], DELTA);
+		assertEquals(Double.NaN, values[2], DELTA);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidColumnThrowsException() {
+		col(-1);
+	}
+
+	@Test
+	public void testConstant() {
+		assertArrayEquals(new double[] {1.5, 1.5, 1.5, 1.5}, evaluate(constant(1.5)), DELTA);
+	}
+
+	@Test
+	public void testArithmetic() {
+		assertArrayEquals(new double[] {3.0, 4.0, 5.0, 6.0}, evaluate(col(0).add(2.0)), DELTA);
+		assertArrayEquals(new double[] {-1.0, 0.0, 1.0, 2.0}, evaluate(col(0).sub(2.0)), DELTA);
+		assertArrayEquals(new double[] {2.0, 4.0, 6.0, 8.0}, evaluate(col(0).mul(2.0)), DELTA);
+		assertArrayEquals(new double[] {0.5, 1.0, 1.5, 2.0}, evaluate(col(0).div(2.0)), DELTA);
+		assertArrayEquals(new double[] {-1.0, -2.0, -3.0, -4.0}, evaluate(col(0).neg()), DELTA);
+
+		double[] values = evaluate(col(0).div(col(1)));
+		assertEquals(0.5, values[0], DELTA);
+		assertEquals(4.0, values[1], DELTA);
+		assertEquals(Double.NaN, values[2], DELTA);
+		assertEquals(0.5, values[3], DELTA);
+
+		values = evaluate(col(0).add(col(0).mul(col(0))).sub(constant(1.0)));
+		assertArrayEquals(new double[] {1.0, 5.0, 11.0, 19.0}, values, DELTA);
+	}
+
+	@Test
+	public void testEvaluateWithOffset() {
+		double[] values = new double[4];
+		col(0).mul(col(0)).evaluate(table, 1, values, 2, 2);
+		assertArrayEquals(new double[] {0.0, 0.0, 4.0, 9.0}, values, DELTA);
+	}
+
+	@Test
+	public void testComparisons() {
+		assertArrayEquals(new boolean[] {false, false, true, true}, evaluate(col(0).gt(2.0)));
+		assertArrayEquals(new boolean[] {false, true, true, true}, evaluate(col(0).ge(2.0)));
+		assertArrayEquals(new boolean[] {true, false, false, false}, evaluate(col(0).lt(2.0)));
+		assertArrayEquals(new boolean[] {true, true, false, false}, evaluate(col(0).le(2.0)));
+		assertArrayEquals(new boolean[] {false, true, false, false}, evaluate(col(0).eq(2.0)));
+		assertArrayEquals(new boolean[] {true, false, true, true}, evaluate(col(0).ne(2.0)));
+		assertArrayEquals(new boolean[] {false, true, false, false}, evaluate(col(0).gt(col(1))));
+		assertArrayEquals(new boolean[] {false, true, true, false}, evaluate(col(0).between(2.0, 3.0)));
+	}
+
+	@Test
+	public void testComparisonsWithNaN() {
+		assertArrayEquals(new boolean[] {true, false, false, true}, evaluate(col(1).ge(1.0)));
+		assertArrayEquals(new boolean[] {false, true, false, false}, evaluate(col(1).lt(1.0)));
+		assertArrayEquals(new boolean[] {false, false, false, false}, evaluate(col(1).between(3.0, 5.0)));
+	}
+
+	@Test
+	public void testJunctions() {
+		Predicate large = col(0).gt(1.0);
+		Predicate small = col(1).lt(5.0);
+		assertArrayEquals(new boolean[] {false, true, false, false}, evaluate(large.and(small)));
+		assertArrayEquals(new boolean[] {true, true, true, true}, evaluate(large.or(small)));
+		assertArrayEquals(new boolean[] {true, false, false, false}, evaluate(large.not()));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testBoxedColumns() {
+		DataTable data = new DataTable(Integer.class, String.class);
+		data.add(1, "a");
+		data.add(2, "b");
+		double[] values = new double[2];
+		col(0).mul(col(1)).evaluate(data, 0, values, 0, 2);
+		assertEquals(Double.NaN, values[0], DELTA);
+		col(0).mul(10.0).evaluate(data, 0, values, 0, 2);
+		assertArrayEquals(new double[] {10.0, 20.0}, values, DELTA);
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		Predicate original = col(0).gt(1.0).and(col(1).div(2.0).between(0.0, 2.0));
+		Predicate deserialized = TestUtils.serializeAndDeserialize(original);
+		assertArrayEquals(evaluate(original), evaluate(deserialized));
+	}
+}
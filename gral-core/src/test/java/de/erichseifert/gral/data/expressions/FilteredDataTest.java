@@ -0,0 +1,153 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.expressions;
+
+import static de.erichseifert.gral.data.expressions.Expression.col;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.DataChangeEvent;
+import de.erichseifert.gral.data.DataListener;
+import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.data.NumericDataTable;
+import de.erichseifert.gral.plots.XYPlot;
+
+public class FilteredDataTest {
+	private static final double DELTA = TestUtils.DELTA;
+
+	private static final class MockDataListener implements DataListener {
+		private int updateCount;
+
+		public void dataAdded(DataSource source, DataChangeEvent... events) {
+		}
+
+		public void dataUpdated(DataSource source, DataChangeEvent... events) {
+			updateCount++;
+		}
+
+		public void dataRemoved(DataSource source, DataChangeEvent... events) {
+		}
+	}
+
+	private NumericDataTable table;
+	private FilteredData data;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		table = new NumericDataTable(Integer.class, Double.class);
+		table.add(1, 0.2); // 0
+		table.add(2, 0.6); // 1
+		table.add(3, 0.9); // 2
+		table.add(4, 0.1); // 3
+		table.add(5, 0.7); // 4
+		table.add(6, null); // 5
+
+		data = new FilteredData(table, col(1).gt(0.5).and(col(0).between(2.0, 4.0)));
+	}
+
+	@Test
+	public void testCreate() {
+		assertEquals(table.getColumnCount(), data.getColumnCount());
+		assertArrayEquals(table.getColumnTypes(), data.getColumnTypes());
+		assertEquals(2, data.getRowCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCreateWithoutPredicateThrowsException() {
+		new FilteredData(table, null);
+	}
+
+	@Test
+	public void testGet() {
+		assertEquals(2, data.get(0, 0));
+		assertEquals(0.6, data.get(1, 0));
+		assertEquals(3, data.get(0, 1));
+		assertEquals(0.9, data.getDouble(1, 1), DELTA);
+	}
+
+	@Test
+	public void testGetDoubles() {
+		double[] values = new double[2];
+		data.getDoubles(0, 0, values, 0, 2);
+		assertArrayEquals(new double[] {2.0, 3.0}, values, DELTA);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetDoublesOutOfBoundsThrowsException() {
+		data.getDoubles(0, 1, new double[2], 0, 2);
+	}
+
+	@Test
+	public void testOriginalChanged() {
+		MockDataListener listener = new MockDataListener();
+		data.addDataListener(listener);
+
+		table.set(1, 3, 0.8);
+		assertEquals(1, listener.updateCount);
+		assertEquals(3, data.getRowCount());
+		assertEquals(4, data.get(0, 2));
+
+		table.remove(1);
+		assertEquals(2, listener.updateCount);
+		assertEquals(2, data.getRowCount());
+		assertEquals(3, data.get(0, 0));
+	}
+
+	@Test
+	public void testLargeData() {
+		NumericDataTable large = new NumericDataTable(Double.class);
+		int rowCount = 3*Expression.BLOCK_SIZE + 17;
+		for (int i = 0; i < rowCount; i++) {
+			large.add((double) i);
+		}
+		FilteredData filtered = new FilteredData(large, col(0).div(2.0).gt(col(0).div(2.0).sub(0.25)).and(
+			col(0).ge(Expression.BLOCK_SIZE - 1.0)));
+		assertEquals(rowCount - Expression.BLOCK_SIZE + 1, filtered.getRowCount());
+		assertEquals(Expression.BLOCK_SIZE - 1.0, filtered.getDouble(0, 0), DELTA);
+		assertEquals(rowCount - 1.0, filtered.getDouble(0, filtered.getRowCount() - 1), DELTA);
+	}
+
+	@Test
+	public void testPlot() {
+		XYPlot plot = new XYPlot(data);
+		assertTrue(plot.contains(data));
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		FilteredData deserialized = TestUtils.serializeAndDeserialize(data);
+		assertEquals(data.getRowCount(), deserialized.getRowCount());
+		for (int row = 0; row < data.getRowCount(); row++) {
+			for (int col = 0; col < data.getColumnCount(); col++) {
+				assertEquals(data.get(col, row), deserialized.get(col, row));
+			}
+		}
+	}
+}
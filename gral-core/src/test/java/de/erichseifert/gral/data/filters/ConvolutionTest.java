@@ -23,16 +23,27 @@ package de.erichseifert.gral.data.filters;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.DataChangeEvent;
+import de.erichseifert.gral.data.DataListener;
+import de.erichseifert.gral.data.DataSource;
 import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.EnumeratedData;
+import de.erichseifert.gral.data.RingBufferDataTable;
 import de.erichseifert.gral.data.statistics.Statistics;
 
 public class ConvolutionTest {
@@ -165,6 +176,233 @@ public class ConvolutionTest {
 		assertEquals( 3.0, ((Number) filter.get(1, 7)).doubleValue(), DELTA);
 	}
 
+	private static final class EventCounter implements DataListener {
+		public int added;
+		public int updated;
+		public int removed;
+
+		public void dataAdded(DataSource source, DataChangeEvent... events) {
+			added += events.length;
+		}
+
+		public void dataUpdated(DataSource source, DataChangeEvent... events) {
+			updated += events.length;
+		}
+
+		public void dataRemoved(DataSource source, DataChangeEvent... events) {
+			removed += events.length;
+		}
+	}
+
+	private static void assertFiltered(DataSource data, Kernel kernel,
+			Filter2D.Mode mode, Convolution filter) {
+		Convolution expected = new Convolution(data, kernel, mode, 0, 1);
+		assertEquals(expected.getRowCount(), filter.getRowCount());
+		for (int row = 0; row < expected.getRowCount(); row++) {
+			for (int col = 0; col < expected.getColumnCount(); col++) {
+				assertEquals(
+					String.format("Wrong data in mode %s at col=%d, row=%d.", mode, col, row),
+					expected.get(col, row), filter.get(col, row));
+			}
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testIncrementalUpdates() {
+		Kernel asymmetric = new Kernel(1, new double[] {0.5, 1.0, 2.0, -1.0});
+		for (Filter2D.Mode mode : Filter2D.Mode.values()) {
+			DataTable data = new DataTable(Double.class, Double.class, String.class);
+			for (int row = 0; row < 20; row++) {
+				data.add((double) (row*row % 7), row*0.5, String.valueOf(row));
+			}
+			Convolution filter = new Convolution(data, asymmetric, mode, 0, 1);
+
+			data.add(3.0, 4.0, "x");
+			assertFiltered(data, asymmetric, mode, filter);
+			data.add(null, 1.0, "y");
+			assertFiltered(data, asymmetric, mode, filter);
+			data.set(0, 10, 100.0);
+			assertFiltered(data, asymmetric, mode, filter);
+			data.set(2, 11, "z");
+			assertFiltered(data, asymmetric, mode, filter);
+			data.remove(5);
+			assertFiltered(data, asymmetric, mode, filter);
+			data.remove(data.getRowCount() - 1);
+			assertFiltered(data, asymmetric, mode, filter);
+			data.remove(0);
+			assertFiltered(data, asymmetric, mode, filter);
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testIncrementalShift() {
+		for (Filter2D.Mode mode : Filter2D.Mode.values()) {
+			RingBufferDataTable data = new RingBufferDataTable(10, Double.class, Double.class);
+			Convolution filter = new Convolution(data, kernel, mode, 0, 1);
+			for (int row = 0; row < 25; row++) {
+				data.add((double) row, (double) (row % 3));
+				assertFiltered(data, kernel, mode, filter);
+			}
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAppendOnlyNotifiesAffectedRows() {
+		DataTable data = new DataTable(Double.class, Double.class);
+		for (int row = 0; row < 1000; row++) {
+			data.add((double) row, 1.0);
+		}
+		Convolution filter = new Convolution(data, kernel, Filter2D.Mode.ZERO, 0);
+		EventCounter counter = new EventCounter();
+		filter.addDataListener(counter);
+
+		data.add(1000.0, 1.0);
+
+		assertEquals(1001, filter.getRowCount());
+		assertEquals(2, counter.added);
+		// Only the previous last row depends on the new row
+		assertEquals(1, counter.updated);
+		assertEquals(0, counter.removed);
+		assertEquals(2997.0, filter.getDouble(0, 999), DELTA);
+		assertEquals(1999.0, filter.getDouble(0, 1000), DELTA);
+	}
+
+	private static void assertConvolved(DataSource data, Kernel kernel,
+			Filter2D.Mode mode, Convolution filter) {
+		assertEquals(data.getRowCount(), filter.getRowCount());
+		int rows = data.getRowCount();
+		for (int col = 0; col < data.getColumnCount(); col++) {
+			double[] values = filter.getOriginalDoubles(col,
+				kernel.getMinIndex(), rows + kernel.getMaxIndex());
+			for (int row = 0; row < rows; row++) {
+				double expected = 0.0;
+				for (int k = kernel.getMinIndex(); k <= kernel.getMaxIndex(); k++) {
+					double value = values[row + k - kernel.getMinIndex()];
+					if (Double.isNaN(value)) {
+						expected = value;
+						break;
+					}
+					expected += kernel.get(k)*value;
+				}
+				assertEquals(
+					String.format("Wrong data in mode %s at col=%d, row=%d.", mode, col, row),
+					expected, filter.getDouble(col, row), 1e-9);
+			}
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testLargeKernel() {
+		double[] weights = new double[2*Convolution.FFT_MIN_KERNEL_SIZE + 1];
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] = Math.sin(i) + 0.5;
+		}
+		Kernel large = new Kernel(40, weights);
+		for (Filter2D.Mode mode : Filter2D.Mode.values()) {
+			DataTable data = new DataTable(Double.class, Double.class);
+			for (int row = 0; row < 1000; row++) {
+				data.add(Math.cos(row*0.1)*row, (double) (row % 17));
+			}
+			data.set(0, 500, Double.NaN);
+			data.set(1, 20, null);
+			Convolution filter = new Convolution(data, large, mode, 0, 1);
+			assertConvolved(data, large, mode, filter);
+
+			data.add(5.0, 3.0);
+			assertConvolved(data, large, mode, filter);
+			data.set(0, 700, 1000.0);
+			assertConvolved(data, large, mode, filter);
+		}
+	}
+
+	@Test
+	public void testBinomialKernelOfLargeSize() {
+		Kernel binomial = Kernel.getBinomial(2001);
+		double sum = 0.0;
+		for (int i = binomial.getMinIndex(); i <= binomial.getMaxIndex(); i++) {
+			sum += binomial.get(i);
+		}
+		assertEquals(1.0, sum, DELTA);
+		assertTrue(binomial.get(0) > binomial.get(1));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testExecutor() throws InterruptedException {
+		DataTable data = new DataTable(Double.class, Double.class, Double.class);
+		for (int row = 0; row < 2*Filter2D.BLOCK_ROWS + 100; row++) {
+			data.add(Math.sin(row*0.01), (double) (row % 13), row % 1000 == 0 ? Double.NaN : row*0.5);
+		}
+		Kernel large = Kernel.getBinomial(2*Convolution.FFT_MIN_KERNEL_SIZE + 1);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (Kernel k : new Kernel[] {kernel, large}) {
+				Convolution serial = new Convolution(data, k, Filter2D.Mode.MIRROR, 0, 1, 2);
+				serial.setExecutor(null);
+				serial.setMode(Filter2D.Mode.MIRROR);
+				assertNull(serial.getExecutor());
+
+				Convolution parallel = new Convolution(data, k, Filter2D.Mode.MIRROR, 0, 1, 2);
+				parallel.setExecutor(executor);
+				parallel.setMode(Filter2D.Mode.MIRROR);
+				assertSame(executor, parallel.getExecutor());
+
+				for (int col = 0; col < data.getColumnCount(); col++) {
+					for (int row = 0; row < data.getRowCount(); row++) {
+						assertEquals(serial.get(col, row), parallel.get(col, row));
+					}
+				}
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSnapshot() {
+		DataTable data = new DataTable(Double.class, String.class);
+		for (int i = 0; i < 8; i++) {
+			data.add((double) i, String.valueOf(i));
+		}
+		Convolution filter = new Convolution(data, kernel, Filter2D.Mode.REPEAT, 0);
+		assertTrue(filter.isSnapshotShared());
+		DataSource snapshot = filter.snapshot();
+		assertSame(snapshot, snapshot.snapshot());
+		double[] expected = new double[8];
+		filter.getDoubles(0, 0, expected, 0, expected.length);
+
+		data.set(0, 3, 100.0);
+		data.set(1, 3, "x");
+		data.add(8.0, "8");
+
+		assertEquals(9, filter.getRowCount());
+		assertEquals(106.0, filter.getDouble(0, 3), DELTA);
+		assertEquals(8, snapshot.getRowCount());
+		double[] values = new double[8];
+		snapshot.getDoubles(0, 0, values, 0, values.length);
+		assertArrayEquals(expected, values, DELTA);
+		assertEquals(expected[3], snapshot.get(0, 3));
+		assertEquals("3", snapshot.get(1, 3));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSnapshotSharedWithOriginal() {
+		DataTable data = new DataTable(Double.class);
+		data.add(1.0);
+		// Only the enumerated column is read from the original data source
+		EnumeratedData enumerated = new EnumeratedData(data);
+		assertFalse(enumerated.isSnapshotShared());
+		assertFalse(new Convolution(enumerated, kernel, Filter2D.Mode.ZERO, 1).isSnapshotShared());
+		assertTrue(new Convolution(enumerated, kernel, Filter2D.Mode.ZERO, 0, 1).isSnapshotShared());
+	}
+
 	@Test
 	public void testSerialization() throws IOException, ClassNotFoundException {
 		Convolution original = new Convolution(table, kernel, Filter2D.Mode.ZERO, 0, 1);
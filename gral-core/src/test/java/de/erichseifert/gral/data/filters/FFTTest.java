@@ -0,0 +1,98 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.filters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class FFTTest {
+	private static final double DELTA = 1e-12;
+
+	@Test
+	public void testCreate() {
+		assertEquals(8, new FFT(8).size());
+		for (int size : new int[] {0, -4, 6}) {
+			try {
+				new FFT(size);
+				fail("Creating a transform with a length that is not a power of two must raise an IllegalArgumentException.");
+			} catch (IllegalArgumentException e) {
+			}
+		}
+	}
+
+	@Test
+	public void testGetSize() {
+		assertEquals(1, FFT.getSize(0));
+		assertEquals(1, FFT.getSize(1));
+		assertEquals(2, FFT.getSize(2));
+		assertEquals(8, FFT.getSize(5));
+		assertEquals(1024, FFT.getSize(1024));
+		assertEquals(2048, FFT.getSize(1025));
+	}
+
+	@Test
+	public void testTransform() {
+		int size = 16;
+		double[] re = new double[size];
+		double[] im = new double[size];
+		double[] expectedRe = new double[size];
+		double[] expectedIm = new double[size];
+		for (int i = 0; i < size; i++) {
+			re[i] = Math.sin(i) + i;
+			im[i] = Math.cos(3*i);
+		}
+		// Direct calculation of the discrete Fourier transform
+		for (int k = 0; k < size; k++) {
+			for (int n = 0; n < size; n++) {
+				double angle = -2.0*Math.PI*k*n/size;
+				expectedRe[k] += re[n]*Math.cos(angle) - im[n]*Math.sin(angle);
+				expectedIm[k] += re[n]*Math.sin(angle) + im[n]*Math.cos(angle);
+			}
+		}
+		double[] originalRe = re.clone();
+		double[] originalIm = im.clone();
+
+		FFT fft = new FFT(size);
+		fft.transform(re, im);
+		for (int k = 0; k < size; k++) {
+			assertEquals(expectedRe[k], re[k], DELTA);
+			assertEquals(expectedIm[k], im[k], DELTA);
+		}
+
+		fft.inverse(re, im);
+		for (int n = 0; n < size; n++) {
+			assertEquals(originalRe[n], re[n], DELTA);
+			assertEquals(originalIm[n], im[n], DELTA);
+		}
+	}
+
+	@Test
+	public void testTransformTooFewValues() {
+		try {
+			new FFT(8).transform(new double[4], new double[8]);
+			fail("Transforming too few values must raise an IllegalArgumentException.");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
@@ -32,7 +32,8 @@ import org.junit.runners.Suite;
 	ConvolutionTest.class,
 	MedianTest.class,
 	ResizeTest.class,
-	AccumulationTest.class
+	AccumulationTest.class,
+	FFTTest.class
 })
 public class FiltersTests {
 }
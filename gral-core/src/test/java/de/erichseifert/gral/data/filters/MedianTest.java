@@ -25,12 +25,19 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.DataSource;
 import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.RingBufferDataTable;
 import de.erichseifert.gral.data.statistics.Statistics;
 
 public class MedianTest {
@@ -88,6 +95,127 @@ public class MedianTest {
 		assertEquals(0, filter.getOffset());
 	}
 
+	private static void assertFiltered(DataSource data, int windowSize, int offset,
+			Filter2D.Mode mode, Median filter) {
+		Median expected = new Median(data, windowSize, offset, mode, 0, 1);
+		assertEquals(expected.getRowCount(), filter.getRowCount());
+		for (int row = 0; row < expected.getRowCount(); row++) {
+			for (int col = 0; col < expected.getColumnCount(); col++) {
+				assertEquals(
+					String.format("Wrong data for window %d+%d in mode %s at col=%d, row=%d.",
+						windowSize, offset, mode, col, row),
+					expected.get(col, row), filter.get(col, row));
+			}
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testIncrementalUpdates() {
+		int[][] windows = {{3, 1}, {4, 0}, {2, 5}, {5, 2}};
+		for (int[] window : windows) {
+			for (Filter2D.Mode mode : Filter2D.Mode.values()) {
+				DataTable data = new DataTable(Integer.class, Integer.class, Integer.class);
+				for (int row = 0; row < 20; row++) {
+					data.add(row*row % 7, row % 4, row);
+				}
+				Median filter = new Median(data, window[0], window[1], mode, 0, 1);
+
+				data.add(3, 4, 20);
+				assertFiltered(data, window[0], window[1], mode, filter);
+				data.set(0, 10, 100);
+				assertFiltered(data, window[0], window[1], mode, filter);
+				data.set(2, 11, 0);
+				assertFiltered(data, window[0], window[1], mode, filter);
+				data.remove(5);
+				assertFiltered(data, window[0], window[1], mode, filter);
+				data.remove(0);
+				assertFiltered(data, window[0], window[1], mode, filter);
+				data.remove(data.getRowCount() - 1);
+				assertFiltered(data, window[0], window[1], mode, filter);
+			}
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testIncrementalShift() {
+		for (Filter2D.Mode mode : Filter2D.Mode.values()) {
+			RingBufferDataTable data = new RingBufferDataTable(10, Integer.class, Integer.class);
+			Median filter = new Median(data, 3, 1, mode, 0, 1);
+			for (int row = 0; row < 25; row++) {
+				data.add(row % 5, row);
+				assertFiltered(data, 3, 1, mode, filter);
+			}
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testLargeWindow() {
+		Random random = new Random(42);
+		DataTable data = new DataTable(Double.class);
+		for (int row = 0; row < 2000; row++) {
+			data.add((double) random.nextInt(50));
+		}
+		data.set(0, 1000, Double.NaN);
+
+		for (int windowSize : new int[] {101, 100}) {
+			int offset = 50;
+			Median filter = new Median(data, windowSize, offset, Filter2D.Mode.REPEAT, 0);
+			double[] window = new double[windowSize];
+			// Rows whose window lies completely inside the data and doesn't
+			// contain values that pre-fill the window
+			for (int row = windowSize - 1; row < data.getRowCount() - windowSize + offset; row++) {
+				boolean invalid = false;
+				for (int i = 0; i < windowSize; i++) {
+					window[i] = data.getDouble(0, row - offset + 1 + i);
+					invalid |= Double.isNaN(window[i]);
+				}
+				Arrays.sort(window);
+				double expected;
+				if (invalid) {
+					expected = Double.NaN;
+				} else if ((windowSize & 1) == 0) {
+					expected = (window[windowSize/2 - 1] + window[windowSize/2])/2.0;
+				} else {
+					expected = window[windowSize/2 - 1];
+				}
+				assertEquals(String.format("Wrong median for window %d at row %d.", windowSize, row),
+					expected, filter.getDouble(0, row), 0.0);
+			}
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testExecutor() throws InterruptedException {
+		Random random = new Random(42);
+		DataTable data = new DataTable(Double.class, Double.class);
+		for (int row = 0; row < 2*Filter2D.BLOCK_ROWS + 100; row++) {
+			data.add((double) random.nextInt(100), random.nextGaussian());
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Median serial = new Median(data, 101, 50, Filter2D.Mode.REPEAT, 0, 1);
+			serial.setExecutor(null);
+			serial.setMode(Filter2D.Mode.REPEAT);
+
+			Median parallel = new Median(data, 101, 50, Filter2D.Mode.REPEAT, 0, 1);
+			parallel.setExecutor(executor);
+			parallel.setMode(Filter2D.Mode.REPEAT);
+
+			for (int col = 0; col < data.getColumnCount(); col++) {
+				for (int row = 0; row < data.getRowCount(); row++) {
+					assertEquals(serial.get(col, row), parallel.get(col, row));
+				}
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		}
+	}
+
 	@Test
 	public void testSerialization() throws IOException, ClassNotFoundException {
 		Filter2D original = new Median(table, 3, 1, Filter2D.Mode.REPEAT, 0);
@@ -23,10 +23,16 @@ package de.erichseifert.gral.data.statistics;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.Before;
 import org.junit.Test;
 
+import de.erichseifert.gral.data.DataSource;
 import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.RingBufferDataTable;
+import de.erichseifert.gral.data.comparators.Descending;
 import de.erichseifert.gral.graphics.Orientation;
 
 public class AbstractHistogram2DTest {
@@ -135,4 +141,60 @@ public class AbstractHistogram2DTest {
 		table.remove(0);
 		assertEquals(2L, histogram.get(0, 0));
 	}
+
+	@Test
+	public void testDataUpdate() {
+		AbstractHistogram2D histogram = new Histogram2D(table, Orientation.VERTICAL, 4);
+		table.set(0, 7, 1);
+		assertEquals(4L, histogram.get(0, 0));
+		assertEquals(0L, histogram.get(0, 3));
+		table.set(1, 4, null);
+		assertEquals(5L, histogram.get(1, 0));
+		assertEquals(1L, histogram.get(1, 1));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testIncrementalUpdatesMatchRebuild() {
+		Histogram2D histogram = new Histogram2D(table, Orientation.VERTICAL,
+				new Number[][] {{1, 2, 2, 3.5, 5}, {1.0, 3.0, 5.0, 7.0, 9.0}});
+		table.add(2, 5);
+		List<List<Integer>> rows = Arrays.asList(
+			Arrays.asList(3, 7), Arrays.asList(1, 1), Arrays.asList(9, 0));
+		table.addAll(rows);
+		table.set(0, 1, 4);
+		table.remove(2);
+		table.sort(new Descending(1));
+		assertCells(new Histogram2D(table, Orientation.VERTICAL,
+				new Number[][] {{1, 2, 2, 3.5, 5}, {1.0, 3.0, 5.0, 7.0, 9.0}}), histogram);
+
+		Number[][] rowBreaks = new Number[table.getRowCount()][];
+		Arrays.fill(rowBreaks, new Number[] {0, 3, 10});
+		Histogram2D horizontal = new Histogram2D(table, Orientation.HORIZONTAL, rowBreaks);
+		table.set(1, 0, 2);
+		table.set(0, 3, 5);
+		assertCells(new Histogram2D(table, Orientation.HORIZONTAL, rowBreaks), horizontal);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testRingBuffer() {
+		RingBufferDataTable buffer = new RingBufferDataTable(4, Integer.class);
+		Number[] breaks = {0, 2, 4, 6};
+		Histogram2D histogram = new Histogram2D(buffer, Orientation.VERTICAL, breaks);
+		for (int i = 0; i < 7; i++) {
+			buffer.add(i);
+			assertCells(new Histogram2D(buffer, Orientation.VERTICAL, breaks), histogram);
+		}
+	}
+
+	private static void assertCells(DataSource expected, DataSource actual) {
+		assertEquals(expected.getColumnCount(), actual.getColumnCount());
+		assertEquals(expected.getRowCount(), actual.getRowCount());
+		for (int col = 0; col < expected.getColumnCount(); col++) {
+			for (int row = 0; row < expected.getRowCount(); row++) {
+				assertEquals(expected.get(col, row), actual.get(col, row));
+			}
+		}
+	}
 }
@@ -0,0 +1,183 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.statistics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.comparators.Descending;
+import de.erichseifert.gral.data.statistics.Histogram1D.Scale;
+import de.erichseifert.gral.plots.BarPlot;
+import de.erichseifert.gral.plots.XYPlot;
+import de.erichseifert.gral.util.ConcurrencyUtils;
+
+public class Histogram1DTest {
+	private static final double DELTA = 1e-10;
+
+	private DataTable table;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		table = new DataTable(Integer.class, Double.class);
+		int[] values = {1, 1, 2, 2, 5, 1, 2, 4};
+		for (int i = 0; i < values.length; i++) {
+			table.add(i, (double) values[i]);
+		}
+	}
+
+	private static long[] getCounts(Histogram1D histogram) {
+		long[] counts = new long[histogram.getBinCount()];
+		for (int bin = 0; bin < counts.length; bin++) {
+			counts[bin] = histogram.getCount(bin);
+		}
+		return counts;
+	}
+
+	@Test
+	public void testEqualBins() {
+		Histogram1D histogram = new Histogram1D(table, 1, 4);
+
+		assertEquals(4, histogram.getRowCount());
+		assertEquals(2, histogram.getColumnCount());
+		assertEquals(Scale.LINEAR, histogram.getScale());
+		// The maximum is contained in the last bin
+		assertArrayEquals(new long[] {3L, 3L, 0L, 2L}, getCounts(histogram));
+		assertEquals(1.0, histogram.getBinLimits(0)[0].doubleValue(), DELTA);
+		assertEquals(2.0, histogram.getBinLimits(0)[1].doubleValue(), DELTA);
+		assertEquals(1.5, (Double) histogram.get(0, 0), DELTA);
+		assertEquals(3L, histogram.get(1, 0));
+	}
+
+	@Test
+	public void testCustomBreaks() {
+		Histogram1D histogram = new Histogram1D(table, 1, -1.0, 0.5, 2.0, 2.8, 5.0);
+
+		assertEquals(null, histogram.getScale());
+		assertArrayEquals(new long[] {0L, 3L, 3L, 2L}, getCounts(histogram));
+		assertEquals(2.4, (Double) histogram.get(0, 2), DELTA);
+	}
+
+	@Test
+	public void testLogarithmicBins() {
+		table.add(8, 1000.0);
+		Histogram1D histogram = new Histogram1D(table, 1, Scale.LOGARITHMIC, 1.0, 10000.0, 4);
+
+		assertArrayEquals(new long[] {8L, 0L, 0L, 1L}, getCounts(histogram));
+		assertEquals(10.0, histogram.getBinLimits(1)[0].doubleValue(), DELTA);
+		assertEquals(100.0, histogram.getBinLimits(1)[1].doubleValue(), 1e-8);
+		assertEquals(Math.sqrt(10.0), (Double) histogram.get(0, 0), DELTA);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidBinCount() {
+		new Histogram1D(table, 1, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidLogarithmicRange() {
+		new Histogram1D(table, 1, Scale.LOGARITHMIC, 0.0, 10.0, 4);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDescendingBreaks() {
+		new Histogram1D(table, 1, 1.0, 3.0, 2.0);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testSetBinCountWithCustomBreaks() {
+		new Histogram1D(table, 1, 1.0, 2.0, 3.0).setBinCount(4);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSetBinCount() {
+		Random random = new Random(42L);
+		for (int i = 0; i < 1000; i++) {
+			table.add(i, random.nextDouble()*10.0);
+		}
+		Histogram1D histogram = new Histogram1D(table, 1, Scale.LINEAR, 0.0, 10.0, 10);
+		// Aggregated from the base histogram
+		histogram.setBinCount(7);
+		assertEquals(7, histogram.getRowCount());
+		assertArrayEquals(getCounts(new Histogram1D(table, 1, Scale.LINEAR, 0.0, 10.0, 7)),
+			getCounts(histogram));
+		// Counted again
+		histogram.setBinCount(11);
+		assertArrayEquals(getCounts(new Histogram1D(table, 1, Scale.LINEAR, 0.0, 10.0, 11)),
+			getCounts(histogram));
+		histogram.setBinCount(1);
+		assertEquals(1008L, histogram.getCount(0));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testIncrementalUpdates() {
+		Histogram1D histogram = new Histogram1D(table, 1, Scale.LINEAR, 0.0, 6.0, 6);
+		Histogram1D custom = new Histogram1D(table, 1, 0.0, 1.5, 3.0, 6.0);
+		table.add(8, 3.5);
+		table.set(1, 0, 5.5);
+		table.remove(2);
+		table.sort(new Descending(1));
+
+		assertArrayEquals(getCounts(new Histogram1D(table, 1, Scale.LINEAR, 0.0, 6.0, 6)),
+			getCounts(histogram));
+		assertArrayEquals(getCounts(new Histogram1D(table, 1, 0.0, 1.5, 3.0, 6.0)),
+			getCounts(custom));
+		histogram.setBinCount(3);
+		assertArrayEquals(new long[] {2L, 3L, 3L}, getCounts(histogram));
+	}
+
+	@Test
+	public void testParallelCountsMatchSequentialCounts() {
+		int rowCount = 3*Statistics.CHUNK_SIZE + 17;
+		@SuppressWarnings("unchecked")
+		DataTable data = new DataTable(Double.class);
+		Random random = new Random(23L);
+		for (int i = 0; i < rowCount; i++) {
+			data.add(random.nextGaussian());
+		}
+		Histogram1D histogram = new Histogram1D(data, 0, Scale.LINEAR, -4.0, 4.0, 9);
+		HistogramBins bins = new HistogramBins(-4.0, 4.0, 9, false, true);
+
+		long[] counts = ConcurrencyUtils.getForkJoinPool().invoke(
+			new Histogram1D.CountTask(data, 0, bins, 0, rowCount));
+		assertArrayEquals(getCounts(histogram), counts);
+	}
+
+	@Test
+	public void testBarPlot() {
+		Histogram1D histogram = new Histogram1D(table, 1, 4);
+		BarPlot plot = new BarPlot(histogram);
+
+		assertTrue(plot.contains(histogram));
+		assertTrue(plot.getAxis(XYPlot.AXIS_X).getMin().doubleValue() <= 1.5);
+		assertTrue(plot.getAxis(XYPlot.AXIS_Y).getMax().doubleValue() >= 3.0);
+	}
+}
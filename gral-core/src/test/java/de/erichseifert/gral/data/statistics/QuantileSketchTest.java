@@ -0,0 +1,140 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.data.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+
+public class QuantileSketchTest {
+	private static final double DELTA = 1e-10;
+	/** Tolerated rank error. */
+	private static final double RANK_ERROR = 0.02;
+
+	private static double rank(double[] sorted, double value) {
+		int index = Arrays.binarySearch(sorted, value);
+		if (index < 0) {
+			index = -index - 1;
+		}
+		return (double) index/sorted.length;
+	}
+
+	@Test
+	public void testEmpty() {
+		QuantileSketch sketch = new QuantileSketch();
+		assertEquals(0L, sketch.getCount());
+		assertEquals(Double.NaN, sketch.getMin(), DELTA);
+		assertEquals(Double.NaN, sketch.quantile(0.5), DELTA);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidAccuracyThrowsException() {
+		new QuantileSketch(1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidQuantileThrowsException() {
+		new QuantileSketch().quantile(-0.1);
+	}
+
+	@Test
+	public void testSmallDataIsExact() {
+		QuantileSketch sketch = new QuantileSketch();
+		for (int i = 1; i <= 9; i++) {
+			sketch.add(i);
+		}
+		sketch.add(Double.NaN);
+		assertEquals(9L, sketch.getCount());
+		assertEquals(1.0, sketch.quantile(0.0), DELTA);
+		assertEquals(5.0, sketch.quantile(0.5), DELTA);
+		assertEquals(9.0, sketch.quantile(1.0), DELTA);
+	}
+
+	@Test
+	public void testAccuracy() {
+		Random random = new Random(42L);
+		QuantileSketch sketch = new QuantileSketch();
+		double[] values = new double[200000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextGaussian();
+			sketch.add(values[i]);
+		}
+		Arrays.sort(values);
+
+		assertEquals(values.length, sketch.getCount());
+		assertEquals(values[0], sketch.getMin(), DELTA);
+		assertEquals(values[values.length - 1], sketch.getMax(), DELTA);
+		double[] qs = {0.01, 0.25, 0.5, 0.75, 0.99};
+		double[] quantiles = sketch.quantiles(qs);
+		for (int i = 0; i < qs.length; i++) {
+			assertEquals(qs[i], rank(values, quantiles[i]), RANK_ERROR);
+		}
+	}
+
+	@Test
+	public void testMerge() {
+		Random random = new Random(7L);
+		QuantileSketch merged = new QuantileSketch();
+		double[] values = new double[100000];
+		for (int part = 0; part < 4; part++) {
+			QuantileSketch sketch = new QuantileSketch();
+			for (int i = part; i < values.length; i += 4) {
+				// Each part has a different distribution
+				values[i] = part + random.nextDouble();
+				sketch.add(values[i]);
+			}
+			merged.merge(sketch);
+		}
+		Arrays.sort(values);
+
+		assertEquals(values.length, merged.getCount());
+		assertEquals(values[0], merged.getMin(), DELTA);
+		assertEquals(values[values.length - 1], merged.getMax(), DELTA);
+		for (double q : new double[] {0.1, 0.25, 0.5, 0.75, 0.9}) {
+			assertEquals(q, rank(values, merged.quantile(q)), RANK_ERROR);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMergeWithDifferentAccuracyThrowsException() {
+		new QuantileSketch(100).merge(new QuantileSketch(200));
+	}
+
+	@Test
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		QuantileSketch original = new QuantileSketch();
+		for (int i = 0; i < 10000; i++) {
+			original.add(i);
+		}
+		QuantileSketch deserialized = TestUtils.serializeAndDeserialize(original);
+		assertEquals(original.getCount(), deserialized.getCount());
+		assertEquals(original.quantile(0.5), deserialized.quantile(0.5), DELTA);
+		assertTrue(Math.abs(deserialized.quantile(0.5) - 5000.0) < 200.0);
+	}
+}
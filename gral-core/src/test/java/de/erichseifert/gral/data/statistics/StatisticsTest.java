@@ -25,10 +25,21 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Before;
 import org.junit.Test;
 
+import de.erichseifert.gral.data.DataChangeEvent;
+import de.erichseifert.gral.data.DataListener;
+import de.erichseifert.gral.data.DataSource;
 import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.NumericDataTable;
+import de.erichseifert.gral.util.ConcurrencyUtils;
 import org.hamcrest.CoreMatchers;
 
 public class StatisticsTest {
@@ -244,5 +255,227 @@ public class StatisticsTest {
 		assertEquals(-32.0, ((Number) table.getColumnStatistics(Statistics.SUM).get(1, 0)).doubleValue(), DELTA);
 	}
 
-	// TODO Add tests for dataAdded and dataRemoved
+	@Test
+	public void testDataAddedAfterCalculation() {
+		assertEquals(24.0, stats.get(Statistics.N), DELTA);
+		Statistics colStats = table.getStatistics(1);
+		assertEquals(24.0, colStats.get(Statistics.SUM), DELTA);
+
+		table.add(24, -11, 42);
+
+		assertEquals( 27.0, stats.get(Statistics.N),   DELTA);
+		assertEquals(-11.0, stats.get(Statistics.MIN), DELTA);
+		assertEquals( 42.0, stats.get(Statistics.MAX), DELTA);
+		assertEquals(140.0, stats.get(Statistics.SUM), DELTA);
+		assertEquals(  9.0, colStats.get(Statistics.N),   DELTA);
+		assertEquals(-11.0, colStats.get(Statistics.MIN), DELTA);
+		assertEquals( 13.0, colStats.get(Statistics.SUM), DELTA);
+		assertEquals(-11.0, table.getColumn(1).getStatistics(Statistics.MIN), DELTA);
+	}
+
+	@Test
+	public void testDataRemovedAfterCalculation() {
+		Statistics colStats = table.getStatistics(0);
+		assertEquals(0.0, colStats.get(Statistics.MIN), DELTA);
+		assertEquals(5.0, colStats.get(Statistics.MAX), DELTA);
+		assertEquals(17.0/8.0, colStats.get(Statistics.MEAN), DELTA);
+
+		// Removes the minimum of column 0
+		table.remove(0);
+
+		assertEquals( 7.0, colStats.get(Statistics.N), DELTA);
+		assertEquals(17.0, colStats.get(Statistics.SUM), DELTA);
+		assertEquals(17.0/7.0, colStats.get(Statistics.MEAN), DELTA);
+		assertEquals( 1.0, colStats.get(Statistics.MIN), DELTA);
+		assertEquals( 5.0, colStats.get(Statistics.MAX), DELTA);
+		assertEquals(82.0, stats.get(Statistics.SUM), DELTA);
+	}
+
+	@Test
+	public void testDataUpdatedAfterCalculation() {
+		Statistics colStats = table.getStatistics(2);
+		assertEquals(9.0, colStats.get(Statistics.MAX), DELTA);
+		assertEquals(5.5, colStats.get(Statistics.MEDIAN), DELTA);
+
+		table.set(2, 7, 1);
+
+		assertEquals(8.0, colStats.get(Statistics.MAX), DELTA);
+		assertEquals(1.0, colStats.get(Statistics.MIN), DELTA);
+		assertEquals(36.0, colStats.get(Statistics.SUM), DELTA);
+		assertEquals(4.5, colStats.get(Statistics.MEDIAN), DELTA);
+	}
+
+	@Test
+	public void testConcurrentReadsDuringAdd() throws InterruptedException {
+		final int rowCount = 20000;
+		final DataTable data = new DataTable(Double.class);
+		final Statistics colStats = data.getStatistics(0);
+		final AtomicInteger mismatches = new AtomicInteger();
+		// Listeners are notified after the statistics have been updated
+		data.addDataListener(new DataListener() {
+			@Override
+			public void dataAdded(DataSource source, DataChangeEvent... events) {
+				if (colStats.get(Statistics.N) != source.getRowCount()) {
+					mismatches.incrementAndGet();
+				}
+			}
+
+			@Override
+			public void dataUpdated(DataSource source, DataChangeEvent... events) {
+			}
+
+			@Override
+			public void dataRemoved(DataSource source, DataChangeEvent... events) {
+			}
+		});
+		final AtomicBoolean done = new AtomicBoolean();
+		Thread reader = new Thread() {
+			@Override
+			public void run() {
+				while (!done.get()) {
+					colStats.invalidate();
+					colStats.get(Statistics.N);
+				}
+			}
+		};
+		reader.start();
+		try {
+			for (int i = 0; i < rowCount; i++) {
+				data.add((double) i);
+			}
+		} finally {
+			done.set(true);
+			reader.join();
+		}
+
+		assertEquals(0, mismatches.get());
+		assertEquals(rowCount, colStats.get(Statistics.N), DELTA);
+		assertEquals(rowCount*(rowCount - 1.0)/2.0, colStats.get(Statistics.SUM), DELTA);
+	}
+
+	@Test
+	public void testRemoveRestoresMoments() {
+		Statistics expected = new Statistics(table, 0);
+		Statistics incremental = new Statistics(table, 1);
+		incremental.get(Statistics.N);
+		// Replace all values of column 1 by the values of column 0
+		for (int row = 0; row < table.getRowCount(); row++) {
+			incremental.remove(((Number) table.get(1, row)).doubleValue());
+			incremental.add(((Number) table.get(0, row)).doubleValue());
+		}
+
+		String[] keys = {
+			Statistics.N, Statistics.SUM, Statistics.SUM2, Statistics.MEAN,
+			Statistics.SUM_OF_DIFF_SQUARES, Statistics.SUM_OF_DIFF_CUBICS,
+			Statistics.SUM_OF_DIFF_QUADS
+		};
+		for (String key : keys) {
+			assertEquals(key, expected.get(key), incremental.get(key), 1e-8);
+		}
+	}
+
+	@Test
+	public void testMergedMomentsMatchSequentialMoments() {
+		NumericDataTable large = new NumericDataTable(Double.class, Double.class);
+		Random random = new Random(42L);
+		Statistics.Moments expected = new Statistics.Moments();
+		int rowCount = 3*Statistics.PARALLEL_THRESHOLD/4 + 17;
+		for (int row = 0; row < rowCount; row++) {
+			double value1 = 100.0 + 10.0*random.nextGaussian();
+			double value2 = Math.exp(random.nextDouble());
+			large.add(value1, value2);
+			expected.add(value1);
+			expected.add(value2);
+		}
+		Statistics.Moments merged = ConcurrencyUtils.getForkJoinPool().invoke(
+			new Statistics.MomentsTask(large, 0, 1, 0, rowCount));
+
+		Map<String, Double> expectedStats = new HashMap<>();
+		expected.put(expectedStats, true);
+		Map<String, Double> mergedStats = new HashMap<>();
+		merged.put(mergedStats, true);
+		assertEquals(expectedStats.keySet(), mergedStats.keySet());
+		for (Map.Entry<String, Double> entry : expectedStats.entrySet()) {
+			double value = entry.getValue();
+			assertEquals(entry.getKey(), value, mergedStats.get(entry.getKey()),
+				1e-9*Math.max(1.0, Math.abs(value)));
+		}
+	}
+
+	@Test
+	public void testMergeWithEmptyMoments() {
+		Statistics.Moments moments = new Statistics.Moments();
+		Statistics.Moments other = new Statistics.Moments();
+		other.add(1.0);
+		other.add(3.0);
+		moments.merge(other);
+		moments.merge(new Statistics.Moments());
+
+		Map<String, Double> stats = new HashMap<>();
+		moments.put(stats, true);
+		assertEquals(2.0, stats.get(Statistics.N), DELTA);
+		assertEquals(2.0, stats.get(Statistics.MEAN), DELTA);
+		assertEquals(2.0, stats.get(Statistics.SUM_OF_DIFF_SQUARES), DELTA);
+		assertEquals(1.0, stats.get(Statistics.MIN), DELTA);
+		assertEquals(3.0, stats.get(Statistics.MAX), DELTA);
+	}
+
+	@Test
+	public void testQuantile() {
+		assertEquals(0.0, stats.quantile(0.0), DELTA);
+		assertEquals(stats.get(Statistics.QUARTILE_1), stats.quantile(0.25), DELTA);
+		assertEquals(stats.get(Statistics.MEDIAN), stats.quantile(0.5), DELTA);
+		assertEquals(stats.get(Statistics.QUARTILE_3), stats.quantile(0.75), DELTA);
+		assertEquals(9.0, stats.quantile(1.0), DELTA);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidQuantileThrowsException() {
+		stats.quantile(1.5);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testQuantileSketch() {
+		DataTable live = new DataTable(Double.class);
+		for (int i = 0; i < 1000; i++) {
+			live.add((double) i);
+		}
+		Statistics liveStats = live.getStatistics(0);
+		liveStats.setQuantileSketchAccuracy(400);
+		assertEquals(400, liveStats.getQuantileSketchAccuracy());
+		assertEquals(500.0, liveStats.get(Statistics.MEDIAN), 20.0);
+		assertEquals(250.0, liveStats.quantile(0.25), 20.0);
+
+		// Added values update the sketch
+		for (int i = 1000; i < 3000; i++) {
+			live.add((double) i);
+		}
+		assertEquals(1500.0, liveStats.get(Statistics.MEDIAN), 60.0);
+		assertEquals(750.0, liveStats.get(Statistics.QUARTILE_1), 60.0);
+		assertEquals(2250.0, liveStats.get(Statistics.QUARTILE_3), 60.0);
+		assertEquals(3000L, liveStats.getQuantileSketch().getCount());
+
+		// Removed values discard the sketch
+		live.remove(0);
+		assertEquals(2999L, liveStats.getQuantileSketch().getCount());
+
+		// Switch back to exact quantiles
+		liveStats.setQuantileSketchAccuracy(0);
+		assertEquals(1500.0, liveStats.get(Statistics.MEDIAN), DELTA);
+	}
+
+	@Test
+	public void testQuantileSketchIsCopy() {
+		stats.setQuantileSketchAccuracy(100);
+		QuantileSketch sketch = stats.getQuantileSketch();
+		sketch.add(1000.0);
+		assertEquals(24L, stats.getQuantileSketch().getCount());
+		assertEquals(9.0, stats.getQuantileSketch().getMax(), DELTA);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidQuantileSketchAccuracyThrowsException() {
+		stats.setQuantileSketchAccuracy(-1);
+	}
 }
@@ -28,6 +28,8 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses({
 	HistogramTest.class,
 	StatisticsTest.class,
+	QuantileSketchTest.class,
+	Histogram1DTest.class,
 	AbstractHistogram2DTest.class
 })
 public class StatisticsTests {
@@ -0,0 +1,87 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CSVParserTest {
+	private static double parseDouble(String text) {
+		return CSVParser.parseDouble(text.toCharArray(), 0, text.length());
+	}
+
+	private static int parseInteger(String text) {
+		return CSVParser.parseInteger(text.toCharArray(), 0, text.length());
+	}
+
+	@Test
+	public void testParseDoubleMatchesJavaParser() {
+		String[] texts = {
+			"0", "-0", "+1", "1.", ".5", "0.1", "0.3", "123.456", "-98765.4321",
+			"9007199254740993", "0.000000000000000000001", "1.7976931348623157E308",
+			"4.9e-324", "12345678901234567890", "Infinity", "-NaN"
+		};
+		for (String text : texts) {
+			assertEquals(text, Double.parseDouble(text), parseDouble(text), 0.0);
+			assertEquals(text, Double.doubleToRawLongBits(Double.parseDouble(text)),
+				Double.doubleToRawLongBits(parseDouble(text)));
+		}
+	}
+
+	@Test
+	public void testParseDoubleIsCorrectlyRounded() {
+		Random random = new Random(7L);
+		for (int i = 0; i < 10000; i++) {
+			String text = Long.toString(random.nextLong() % 100000000000L) + "." +
+				Integer.toString(random.nextInt(100000));
+			assertEquals(text, Double.doubleToRawLongBits(Double.parseDouble(text)),
+				Double.doubleToRawLongBits(parseDouble(text)));
+		}
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testParseDoubleThrowsExceptionForText() {
+		parseDouble("1.2.3");
+	}
+
+	@Test
+	public void testParseInteger() {
+		assertEquals(0, parseInteger("-0"));
+		assertEquals(42, parseInteger("+42"));
+		assertEquals(Integer.MAX_VALUE, parseInteger("2147483647"));
+		assertEquals(Integer.MIN_VALUE, parseInteger("-2147483648"));
+		assertEquals(7, parseInteger("00000000000007"));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testParseIntegerThrowsExceptionForDecimal() {
+		parseInteger("1.0");
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testParseIntegerThrowsExceptionForSign() {
+		parseInteger("-");
+	}
+}
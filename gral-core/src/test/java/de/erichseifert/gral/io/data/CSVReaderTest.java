@@ -23,16 +23,26 @@ package de.erichseifert.gral.io.data;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.text.MessageFormat;
 import java.text.ParseException;
 
 import org.junit.Test;
 
 import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.NumericDataTable;
 
 public class CSVReaderTest {
 	@Test
@@ -265,4 +275,176 @@ public class CSVReaderTest {
 		assertEquals(-21.0, data.get(2, 1));
 		assertEquals(-22.0, data.get(2, 2));
 	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testQuotedLineBreaks() throws IOException {
+		InputStream input = new ByteArrayInputStream((
+			"\"foo\r\nbar\",1\n" +
+			"\"a,\"\"b\"\"\",2\n"
+		).getBytes());
+		DataReader reader = DataReaderFactory.getInstance().get("text/csv");
+		DataSource data = reader.read(input, String.class, Integer.class);
+
+		assertEquals(2, data.getRowCount());
+		assertEquals("foo\r\nbar", data.get(0, 0));
+		assertEquals("a,\"b\"", data.get(0, 1));
+		assertEquals(2, data.get(1, 1));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testNumericColumnsAreStoredInPrimitiveTable() throws IOException {
+		CSVReader reader = new CSVReader("text/csv");
+		DataSource numeric = reader.read(new StringReader("1,2.5,3.5\n"),
+			Integer.class, Float.class, Double.class);
+		DataSource mixed = reader.read(new StringReader("1,2.5,foo\n"),
+			Integer.class, Double.class, String.class);
+
+		assertTrue(numeric instanceof NumericDataTable);
+		assertEquals(2.5f, numeric.get(1, 0));
+		assertTrue(mixed instanceof DataTable);
+		assertEquals(1, mixed.get(0, 0));
+		assertEquals("foo", mixed.get(2, 0));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testLargeInput() throws IOException {
+		int rowCount = 20000;
+		StringBuilder content = new StringBuilder();
+		for (int row = 0; row < rowCount; row++) {
+			content.append(row).append(",\"").append(row*0.25).append("\",")
+				.append(row % 3 == 0 ? "" : "x").append("\r\n");
+		}
+		CSVReader reader = new CSVReader("text/csv");
+		DataSource data = reader.read(
+			Channels.newChannel(new ByteArrayInputStream(content.toString().getBytes())),
+			Long.class, Double.class, String.class);
+
+		assertEquals(rowCount, data.getRowCount());
+		for (int row = 0; row < rowCount; row += 997) {
+			assertEquals((long) row, data.get(0, row));
+			assertEquals(row*0.25, data.get(1, row));
+			assertEquals(row % 3 == 0 ? "" : "x", data.get(2, row));
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testNumberFormats() throws IOException {
+		InputStream input = new ByteArrayInputStream((
+			"+7,1e3\n" +
+			" 2147483647 ,0.1\n" +
+			"-2147483648,-123456789012345678901234567890.5\n" +
+			"0,NaN\n"
+		).getBytes());
+		DataReader reader = DataReaderFactory.getInstance().get("text/csv");
+		DataSource data = reader.read(input, Integer.class, Double.class);
+
+		assertEquals(7, data.get(0, 0));
+		assertEquals(1e3, data.get(1, 0));
+		assertEquals(Integer.MAX_VALUE, data.get(0, 1));
+		assertEquals(0.1, data.get(1, 1));
+		assertEquals(Integer.MIN_VALUE, data.get(0, 2));
+		assertEquals(-123456789012345678901234567890.5, data.get(1, 2));
+		assertEquals(Double.NaN, data.get(1, 3));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testIntegerOverflow() throws IOException {
+		InputStream input = new ByteArrayInputStream("2147483648\n".getBytes());
+		DataReader reader = DataReaderFactory.getInstance().get("text/csv");
+		try {
+			reader.read(input, Integer.class);
+			fail("Expected IOException");
+		} catch (IOException e) {
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testEmptyInput() throws IOException {
+		InputStream input = new ByteArrayInputStream(new byte[0]);
+		DataReader reader = DataReaderFactory.getInstance().get("text/csv");
+		DataSource data = reader.read(input, Integer.class, Double.class);
+
+		assertEquals(0, data.getRowCount());
+	}
+
+	private static File createFile(String content) throws IOException {
+		File file = File.createTempFile("gral", ".csv");
+		file.deleteOnExit();
+		OutputStream output = new FileOutputStream(file);
+		try {
+			output.write(content.getBytes());
+		} finally {
+			output.close();
+		}
+		return file;
+	}
+
+	private static DataSource read(File file, int parallelism,
+			Class<? extends Comparable<?>>... types) throws IOException {
+		CSVReader reader = new CSVReader("text/csv");
+		reader.setSetting(CSVReader.PARALLELISM, parallelism);
+		InputStream input = new FileInputStream(file);
+		try {
+			return reader.read(input, types);
+		} finally {
+			input.close();
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testParallelInput() throws IOException {
+		int rowCount = 30000;
+		StringBuilder content = new StringBuilder();
+		for (int row = 0; row < rowCount; row++) {
+			content.append(row).append(',').append(row*0.5).append(",\"");
+			if (row % 7 == 0) {
+				content.append("a\r\nb");
+			} else if (row % 5 == 0) {
+				content.append("\"\"\nc");
+			}
+			content.append('"').append(row % 2 == 0 ? "\r\n" : "\n");
+		}
+		File file = createFile(content.toString());
+
+		DataSource expected = read(file, 1, Integer.class, Double.class, String.class);
+		DataSource actual = read(file, 4, Integer.class, Double.class, String.class);
+
+		assertEquals(rowCount, expected.getRowCount());
+		assertEquals(expected.getRowCount(), actual.getRowCount());
+		for (int row = 0; row < rowCount; row++) {
+			assertEquals(row, expected.get(0, row));
+			for (int col = 0; col < expected.getColumnCount(); col++) {
+				assertEquals(expected.get(col, row), actual.get(col, row));
+			}
+		}
+		assertEquals("a\r\nb", actual.get(2, 7));
+		assertEquals("\"\nc", actual.get(2, 5));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testParallelInputWithInvalidRow() throws IOException {
+		int rowCount = 30000;
+		StringBuilder content = new StringBuilder();
+		for (int row = 0; row < rowCount; row++) {
+			content.append(row).append(',').append(row*0.5).append("\n");
+		}
+		content.append("1\n");
+		File file = createFile(content.toString());
+
+		try {
+			read(file, 4, Integer.class, Double.class);
+			fail("Expected IllegalArgumentException because there are not enough columns.");
+		} catch (IllegalArgumentException e) {
+			String line = MessageFormat.format("line {0,number,integer}:", rowCount + 1); //$NON-NLS-1$
+			assertTrue(e.getMessage(), e.getMessage().contains(line));
+		}
+	}
 }
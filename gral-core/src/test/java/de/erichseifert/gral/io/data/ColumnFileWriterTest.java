@@ -0,0 +1,108 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.MappedDataSource;
+
+public class ColumnFileWriterTest {
+	private static DataTable data;
+
+	@BeforeClass
+	@SuppressWarnings("unchecked")
+	public static void setUpBeforeClass() {
+		data = new DataTable(Double.class, Integer.class);
+		data.add(1.5, 10);
+		data.add(2.5, null);
+		data.add(3.5, 30);
+	}
+
+	@Test
+	public void testFactory() {
+		DataWriter writer = DataWriterFactory.getInstance().get("application/x-gral-columns");
+		assertNotNull(writer);
+		assertEquals(ColumnFileWriter.class, writer.getClass());
+	}
+
+	@Test
+	public void testWrite() throws IOException {
+		DataWriter writer = DataWriterFactory.getInstance().get("application/x-gral-columns");
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		writer.write(data, output);
+
+		ByteBuffer file = ByteBuffer.wrap(output.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+		byte[] magic = new byte[8];
+		file.get(magic);
+		assertEquals(MappedDataSource.MAGIC, new String(magic, "US-ASCII"));
+		assertEquals(MappedDataSource.FORMAT_VERSION, file.getInt());
+		assertEquals(2, file.getInt());
+		assertEquals(3L, file.getLong());
+
+		// Double column without empty cells
+		assertEquals(MappedDataSource.TYPE_DOUBLE, file.getInt());
+		assertEquals(0, file.getInt());
+		long doubleOffset = file.getLong();
+		assertEquals(-1L, file.getLong());
+		// Integer column with an empty cell
+		assertEquals(MappedDataSource.TYPE_INTEGER, file.getInt());
+		assertEquals(MappedDataSource.FLAG_NULLS, file.getInt());
+		long intOffset = file.getLong();
+		long nullsOffset = file.getLong();
+
+		assertEquals(72L, doubleOffset);
+		assertEquals(2.5, file.getDouble((int) doubleOffset + 8), 0.0);
+		assertEquals(96L, intOffset);
+		assertEquals(30, file.getInt((int) intOffset + 8));
+		assertEquals(112L, nullsOffset);
+		assertEquals(2, file.get((int) nullsOffset));
+		assertEquals(120, output.size());
+	}
+
+	@Test(expected = IOException.class)
+	@SuppressWarnings("unchecked")
+	public void testUnsupportedType() throws IOException {
+		DataTable strings = new DataTable(String.class);
+		strings.add("a");
+		DataWriter writer = DataWriterFactory.getInstance().get("application/x-gral-columns");
+		writer.write(strings, new ByteArrayOutputStream());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testEmpty() throws IOException {
+		DataWriter writer = DataWriterFactory.getInstance().get("application/x-gral-columns");
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		writer.write(new DataTable(Long.class), output);
+		assertEquals(48, output.size());
+	}
+}
@@ -29,7 +29,10 @@ import org.junit.runners.Suite;
 	DataReaderFactoryTest.class,
 	DataWriterFactoryTest.class,
 	CSVReaderTest.class,
+	CSVParserTest.class,
+	IndexedCSVDataSourceTest.class,
 	CSVWriterTest.class,
+	ColumnFileWriterTest.class,
 	ImageReaderTest.class,
 	ImageWriterTest.class
 })
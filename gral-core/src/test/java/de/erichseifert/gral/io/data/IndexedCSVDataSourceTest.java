@@ -0,0 +1,242 @@
+/*
+ * GRAL: GRAphing Library for Java(R)
+ *
+ * (C) Copyright 2009-2017 Erich Seifert <dev[at]erichseifert.de>,
+ * Michael Seifert <mseifert[at]error-reports.org>
+ *
+ * This file is part of GRAL.
+ *
+ * GRAL is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * GRAL is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with GRAL.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.erichseifert.gral.io.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.MessageFormat;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.erichseifert.gral.TestUtils;
+import de.erichseifert.gral.data.DataSource;
+
+public class IndexedCSVDataSourceTest {
+	private static final int ROW_COUNT = 3000;
+
+	private static File file;
+	private static DataSource expected;
+
+	@BeforeClass
+	@SuppressWarnings("unchecked")
+	public static void setUpBeforeClass() throws IOException {
+		StringBuilder content = new StringBuilder();
+		for (int row = 0; row < ROW_COUNT; row++) {
+			content.append(row).append(',').append(row % 11 == 0 ? "" : row*0.5).append(",\"");
+			if (row % 7 == 0) {
+				content.append("a\r\nb");
+			} else {
+				content.append(row % 3);
+			}
+			content.append('"');
+			if (row < ROW_COUNT - 1) {
+				content.append(row % 2 == 0 ? "\r\n" : "\n");
+			}
+		}
+		file = createFile(content.toString());
+
+		CSVReader reader = new CSVReader("text/csv");
+		expected = reader.read(new ByteArrayInputStream(content.toString().getBytes()),
+			Integer.class, Double.class, String.class);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		new File(file.getPath() + IndexedCSVDataSource.INDEX_SUFFIX).delete();
+		file.delete();
+	}
+
+	private static File createFile(String content) throws IOException {
+		File file = File.createTempFile("gral", ".csv");
+		file.deleteOnExit();
+		OutputStream output = new FileOutputStream(file);
+		try {
+			output.write(content.getBytes());
+		} finally {
+			output.close();
+		}
+		return file;
+	}
+
+	private static void assertContent(DataSource data) {
+		assertEquals(expected.getRowCount(), data.getRowCount());
+		assertEquals(expected.getColumnCount(), data.getColumnCount());
+		for (int row = 0; row < ROW_COUNT; row++) {
+			for (int col = 0; col < expected.getColumnCount(); col++) {
+				assertEquals(expected.get(col, row), data.get(col, row));
+			}
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testContent() throws IOException {
+		IndexedCSVDataSource data = new IndexedCSVDataSource(
+			file, Integer.class, Double.class, String.class);
+
+		assertEquals(ROW_COUNT, data.getRowCount());
+		assertEquals(Integer.class, data.getColumnTypes()[0]);
+		assertContent(data);
+		assertEquals("a\r\nb", data.get(2, 7));
+		assertNull(data.get(1, 11));
+		assertNull(data.get(0, -1));
+		assertNull(data.get(0, ROW_COUNT));
+		assertTrue(Double.isNaN(data.getDouble(1, 11)));
+		assertEquals(6.0, data.getDouble(1, 12), 0.0);
+		assertSame(data, data.snapshot());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testGetDoubles() throws IOException {
+		IndexedCSVDataSource data = new IndexedCSVDataSource(
+			file, Integer.class, Double.class, String.class);
+
+		double[] values = new double[2000];
+		data.getDoubles(0, 500, values, 0, values.length);
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(500 + i, values[i], 0.0);
+		}
+		try {
+			data.getDoubles(0, ROW_COUNT - 1, values, 0, 2);
+			fail("Expected IndexOutOfBoundsException.");
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testCacheSize() throws IOException {
+		IndexedCSVDataSource data = new IndexedCSVDataSource(
+			file, Integer.class, Double.class, String.class);
+		assertEquals(IndexedCSVDataSource.DEFAULT_CACHE_SIZE, data.getCacheSize());
+
+		data.setCacheSize(0);
+		assertEquals(0, data.getCacheSize());
+		assertContent(data);
+		data.setCacheSize(1);
+		assertContent(data);
+		try {
+			data.setCacheSize(-1);
+			fail("Expected IllegalArgumentException because of a negative cache size.");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testPersistedIndex() throws IOException {
+		File indexFile = new File(file.getPath() + IndexedCSVDataSource.INDEX_SUFFIX);
+		indexFile.delete();
+
+		IndexedCSVDataSource data = new IndexedCSVDataSource(
+			file, ',', true, Integer.class, Double.class, String.class);
+		assertEquals(indexFile, data.getIndexFile());
+		assertTrue(indexFile.isFile());
+		assertContent(data);
+
+		// The stored index is used
+		long modified = indexFile.lastModified();
+		data = new IndexedCSVDataSource(
+			file, ',', true, Integer.class, Double.class, String.class);
+		assertEquals(modified, indexFile.lastModified());
+		assertContent(data);
+
+		// An invalid index is replaced
+		OutputStream output = new FileOutputStream(indexFile);
+		try {
+			output.write(new byte[64]);
+		} finally {
+			output.close();
+		}
+		data = new IndexedCSVDataSource(
+			file, ',', true, Integer.class, Double.class, String.class);
+		assertContent(data);
+		assertFalse(indexFile.length() == 64);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSeparator() throws IOException {
+		File semicolons = createFile("1;2\r\n3;\"4\"\r\n");
+		IndexedCSVDataSource data = new IndexedCSVDataSource(
+			semicolons, ';', false, Integer.class, Integer.class);
+		assertEquals(2, data.getRowCount());
+		assertEquals(1, data.get(0, 0));
+		assertEquals(4, data.get(1, 1));
+		semicolons.delete();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testEmptyFile() throws IOException {
+		File empty = createFile("");
+		IndexedCSVDataSource data = new IndexedCSVDataSource(empty, Double.class);
+		assertEquals(0, data.getRowCount());
+		assertNull(data.get(0, 0));
+		empty.delete();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testInvalidCell() throws IOException {
+		StringBuilder content = new StringBuilder();
+		for (int row = 0; row < 2000; row++) {
+			content.append(row == 1500 ? "x" : String.valueOf(row)).append('\n');
+		}
+		File invalid = createFile(content.toString());
+		IndexedCSVDataSource data = new IndexedCSVDataSource(invalid, Integer.class);
+
+		// The invalid cell is only found when its block is parsed
+		assertEquals(2000, data.getRowCount());
+		assertEquals(10, data.get(0, 10));
+		try {
+			data.get(0, 1500);
+			fail("Expected IllegalArgumentException because of an invalid cell.");
+		} catch (IllegalArgumentException e) {
+			String line = MessageFormat.format("line {0,number,integer},", 1501); //$NON-NLS-1$
+			assertTrue(e.getMessage(), e.getMessage().contains(line));
+		}
+		invalid.delete();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSerialization() throws IOException, ClassNotFoundException {
+		IndexedCSVDataSource data = new IndexedCSVDataSource(
+			file, Integer.class, Double.class, String.class);
+		IndexedCSVDataSource deserialized = TestUtils.serializeAndDeserialize(data);
+		assertContent(deserialized);
+	}
+}
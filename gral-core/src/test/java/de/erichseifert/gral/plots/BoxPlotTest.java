@@ -34,6 +34,7 @@ import static org.junit.Assert.fail;
 
 import de.erichseifert.gral.TestUtils;
 import de.erichseifert.gral.data.DataSource;
+import de.erichseifert.gral.data.DataTable;
 import de.erichseifert.gral.data.DummyData;
 import de.erichseifert.gral.data.EnumeratedData;
 import de.erichseifert.gral.graphics.DrawingContext;
@@ -96,6 +97,38 @@ public class BoxPlotTest {
 		}
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testCreateMergedBoxData() {
+		DataTable shard1 = new DataTable(Double.class, String.class);
+		DataTable shard2 = new DataTable(Double.class, String.class);
+		DataTable all = new DataTable(Double.class, String.class);
+		for (int i = 0; i < 100; i++) {
+			DataTable shard = (i % 3 == 0) ? shard1 : shard2;
+			shard.add((double) i, "a");
+			all.add((double) i, "a");
+		}
+
+		DataSource merged = BoxPlot.createMergedBoxData(shard1, shard2);
+		DataSource exact = BoxPlot.createBoxData(all);
+		assertEquals(1, merged.getRowCount());
+		assertEquals(1, merged.get(0, 0));
+		assertEquals(0.0, ((Number) merged.get(2, 0)).doubleValue(), DELTA);
+		assertEquals(99.0, ((Number) merged.get(5, 0)).doubleValue(), DELTA);
+		// Small data is summarized exactly apart from the quantile method
+		for (int col = 1; col < 5; col++) {
+			assertEquals(((Number) exact.get(col, 0)).doubleValue(),
+				((Number) merged.get(col, 0)).doubleValue(), 1.0);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	@SuppressWarnings("unchecked")
+	public void testCreateMergedBoxDataWithDifferentColumnsThrowsException() {
+		BoxPlot.createMergedBoxData(new DataTable(Double.class),
+			new DataTable(Double.class, Double.class));
+	}
+
 	@Test
 	public void testSerialization() throws IOException, ClassNotFoundException {
 		BoxPlot original = plot;
@@ -21,13 +21,16 @@
  */
 package de.erichseifert.gral.util;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -156,6 +159,37 @@ public class MathUtilsTest {
 		assertEquals(-1, MathUtils.randomizedSelect(b, 0, a.size() - 1, 1));
 	}
 
+	@Test
+	public void testRandomizedSelectPrimitive() {
+		double[] a = {13.0, 5.0, 8.0, 3.0, 1.0, 2.0, 1.0};
+		double[] sorted = a.clone();
+		Arrays.sort(sorted);
+
+		for (int i = 0; i < a.length; i++) {
+			int index = MathUtils.randomizedSelect(a, 0, a.length - 1, i + 1);
+			assertEquals(i, index);
+			assertEquals(sorted[i], a[index], DELTA);
+		}
+
+		// Check for integrity after selecting
+		Arrays.sort(a);
+		assertArrayEquals(sorted, a, DELTA);
+
+		// Check behavior for empty arrays
+		assertEquals(-1, MathUtils.randomizedSelect(new double[0], 0, 0, 1));
+	}
+
+	@Test
+	public void testRandomizedSelectPrimitiveWithDuplicates() {
+		double[] a = new double[10000];
+		Arrays.fill(a, 1.0);
+		a[1234] = 0.0;
+		int index = MathUtils.randomizedSelect(a, 0, a.length - 1, 1);
+		assertEquals(0.0, a[index], DELTA);
+		index = MathUtils.randomizedSelect(a, 0, a.length - 1, a.length);
+		assertEquals(1.0, a[index], DELTA);
+	}
+
 	@Test
 	public void testMagnitude() {
 		assertEquals( -0.01, MathUtils.magnitude(10.0,  -0.05), DELTA);
@@ -183,6 +217,36 @@ public class MathUtilsTest {
 		assertEquals(75.00, MathUtils.quantile(values, 1.0), DELTA);
 	}
 
+	@Test
+	public void testQuantilesPrimitive() {
+		double[] values = {75.0, 11.4, 60.0, 21.3, 40.1, 17.3, 70.0, 25.9, 50.5};
+		double[] quantiles = MathUtils.quantiles(values, values.length,
+			0.0, 0.1, 0.2, 0.3, 0.4, 0.5, 0.6, 0.7, 0.8, 0.9, 1.0);
+		assertArrayEquals(new double[] {
+			11.40, 16.12, 19.70, 23.14, 28.74, 40.10, 48.42, 56.20, 64.00, 71.00, 75.00
+		}, quantiles, DELTA);
+
+		assertEquals(40.10, MathUtils.quantile(values, values.length, 0.5), DELTA);
+		assertEquals(Double.NaN, MathUtils.quantile(values, 0, 0.5), DELTA);
+	}
+
+	@Test
+	public void testQuantilesPrimitiveMatchSortedQuantiles() {
+		Random random = new Random(1234L);
+		double[] values = new double[1001];
+		List<Double> sorted = new ArrayList<>(values.length);
+		for (int i = 0; i < values.length; i++) {
+			values[i] = Math.floor(100.0*random.nextDouble());
+			sorted.add(values[i]);
+		}
+		Collections.sort(sorted);
+		double[] qs = {0.01, 0.25, 0.333, 0.5, 0.75, 0.999};
+		double[] quantiles = MathUtils.quantiles(values, values.length, qs);
+		for (int i = 0; i < qs.length; i++) {
+			assertEquals(MathUtils.quantile(sorted, qs[i]), quantiles[i], DELTA);
+		}
+	}
+
 	@Test
 	public void testIsCalculatable() {
 		// Number
@@ -39,7 +39,7 @@ import javax.swing.Timer;
 import de.erichseifert.gral.data.Column;
 import de.erichseifert.gral.data.DataSeries;
 import de.erichseifert.gral.data.DataSource;
-import de.erichseifert.gral.data.DataTable;
+import de.erichseifert.gral.data.RingBufferDataTable;
 import de.erichseifert.gral.data.statistics.Statistics;
 import de.erichseifert.gral.examples.ExamplePanel;
 import de.erichseifert.gral.graphics.Insets2D;
@@ -56,13 +56,13 @@ import de.erichseifert.gral.ui.InteractivePanel;
 import de.erichseifert.gral.util.GraphicsUtils;
 
 final class UpdateTask implements ActionListener {
-	private final DataTable data;
+	private final RingBufferDataTable data;
 	private final Plot plot;
 	private final JComponent component;
 	private Method getTotalPhysicalMemorySize;
 	private Method getFreePhysicalMemorySize;
 
-	public UpdateTask(DataTable data, XYPlot plot, JComponent comp) {
+	public UpdateTask(RingBufferDataTable data, XYPlot plot, JComponent comp) {
 		this.data = data;
 		this.plot = plot;
 		this.component = comp;
@@ -112,8 +112,8 @@ final class UpdateTask implements ActionListener {
 		long memVmFree = Runtime.getRuntime().freeMemory();
 		long memVmUsed = memVmTotal - memVmFree;
 
+		// Replaces the oldest row because the buffer is full
 		data.add(time, memSysUsed/1024L/1024L, memVmTotal/1024L/1024L, memVmUsed/1024L/1024L);
-		data.remove(0);
 
 		Column col1 = data.getColumn(0);
 		plot.getAxis(XYPlot.AXIS_X).setRange(
@@ -144,7 +144,8 @@ public class MemoryUsage extends ExamplePanel {
 
 	@SuppressWarnings("unchecked")
 	public MemoryUsage() {
-		DataTable data = new DataTable(Double.class, Long.class, Long.class, Long.class);
+		RingBufferDataTable data = new RingBufferDataTable(BUFFER_SIZE,
+			Double.class, Long.class, Long.class, Long.class);
 		double time = System.currentTimeMillis();
 		for (int i=BUFFER_SIZE - 1; i>=0; i--) {
 			data.add(time - i*INTERVAL, null, null, null);